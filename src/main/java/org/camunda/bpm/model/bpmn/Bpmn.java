@@ -15,15 +15,35 @@ package org.camunda.bpm.model.bpmn;
 import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN20_NS;
 import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.CAMUNDA_NS;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.camunda.bpm.model.bpmn.builder.ProcessBuilder;
+import org.camunda.bpm.model.bpmn.impl.BpmnDefinitionsScanner;
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
 import org.camunda.bpm.model.bpmn.impl.BpmnParser;
+import org.camunda.bpm.model.bpmn.impl.BpmnSnapshotSerializer;
+import org.camunda.bpm.model.bpmn.impl.BpmnXmlWriter;
+import org.camunda.bpm.model.bpmn.impl.DirtyElementTracker;
+import org.camunda.bpm.model.bpmn.impl.ElementTypeRegistry;
+import org.camunda.bpm.model.bpmn.impl.SelectorCompiler;
 import org.camunda.bpm.model.bpmn.impl.instance.*;
 import org.camunda.bpm.model.bpmn.impl.instance.ProcessImpl;
 import org.camunda.bpm.model.bpmn.impl.instance.bpmndi.BpmnDiagramImpl;
@@ -82,6 +102,8 @@ import org.camunda.bpm.model.xml.ModelValidationException;
 import org.camunda.bpm.model.xml.impl.instance.ModelElementInstanceImpl;
 import org.camunda.bpm.model.xml.impl.util.IoUtil;
 import org.camunda.bpm.model.xml.impl.util.ModelUtil;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.w3c.dom.Document;
 
 /**
  * <p>Provides access to the camunda BPMN model api.</p>
@@ -97,12 +119,24 @@ public class Bpmn {
 
   /** the parser used by the Bpmn implementation. */
   private BpmnParser bpmnParser = new BpmnParser();
+  /** the scanner used to summarize definitions without parsing them. */
+  private BpmnDefinitionsScanner definitionsScanner = new BpmnDefinitionsScanner();
+  /** the writer used to serialize models. */
+  private BpmnXmlWriter bpmnWriter = new BpmnXmlWriter();
   private final ModelBuilder bpmnModelBuilder;
 
   /** The {@link Model}
    */
   private Model bpmnModel;
 
+  /** the stable ordinals of the element types of the {@link Model} */
+  private ElementTypeRegistry elementTypeRegistry;
+  private BpmnSnapshotSerializer snapshotSerializer;
+  private SelectorCompiler selectorCompiler;
+
+  /** the cache of parsed models, null if caching is disabled */
+  private volatile BpmnModelCache modelCache;
+
   /**
    * Allows reading a {@link BpmnModelInstance} from a File.
    *
@@ -125,6 +159,129 @@ public class Bpmn {
     return INSTANCE.doReadModelFromInputStream(stream);
   }
 
+  /**
+   * Allows reading a {@link BpmnModelInstance} from a File using the given {@link ParseOptions}.
+   *
+   * @param file the {@link File} to read the {@link BpmnModelInstance} from
+   * @param parseOptions the options used to parse the model
+   * @return the model read
+   * @throws BpmnModelException if the model cannot be read
+   */
+  public static BpmnModelInstance readModelFromFile(File file, ParseOptions parseOptions) {
+    return INSTANCE.doReadModelFromFile(file, parseOptions);
+  }
+
+  /**
+   * Allows reading a {@link BpmnModelInstance} from an {@link InputStream} using the
+   * given {@link ParseOptions}. Use {@link ParseOptions#trusted()} to skip the schema
+   * validation of models which are known to be valid.
+   *
+   * @param stream the {@link InputStream} to read the {@link BpmnModelInstance} from
+   * @param parseOptions the options used to parse the model
+   * @return the model read
+   * @throws ModelParseException if the model cannot be read
+   */
+  public static BpmnModelInstance readModelFromStream(InputStream stream, ParseOptions parseOptions) {
+    return INSTANCE.doReadModelFromInputStream(stream, parseOptions);
+  }
+
+  /**
+   * Reads a single process of a model from an {@link InputStream}. Other processes of
+   * the definitions, like the processes of the other participants of a collaboration,
+   * are not built. The returned model contains the process, the root elements it
+   * references, like messages, signals, errors and item definitions, and the shapes
+   * and edges of the process in the diagrams. The model is validated while parsing.
+   *
+   * @param stream the {@link InputStream} to read the process from
+   * @param processId the id of the process to read
+   * @return the model containing only the process
+   * @throws ModelParseException if the model cannot be read
+   * @throws BpmnModelException if the model does not contain the process
+   */
+  public static BpmnModelInstance readProcess(InputStream stream, String processId) {
+    return INSTANCE.doReadProcess(stream, processId, ParseOptions.defaults());
+  }
+
+  /**
+   * Reads a single process of a model from an {@link InputStream} using the given
+   * {@link ParseOptions}. Use {@link ParseOptions#skipDiagrams(boolean)} to read the
+   * process without its diagram.
+   *
+   * @param stream the {@link InputStream} to read the process from
+   * @param processId the id of the process to read
+   * @param parseOptions the options used to parse the model
+   * @return the model containing only the process
+   * @throws ModelParseException if the model cannot be read
+   * @throws BpmnModelException if the model does not contain the process
+   * @see #readProcess(InputStream, String)
+   */
+  public static BpmnModelInstance readProcess(InputStream stream, String processId, ParseOptions parseOptions) {
+    return INSTANCE.doReadProcess(stream, processId, parseOptions);
+  }
+
+  /**
+   * Reads multiple {@link BpmnModelInstance}s concurrently. Each file is parsed by a
+   * separate task submitted to the executor, the method returns after all tasks
+   * completed. A file which cannot be read does not affect the other files, its
+   * exception is returned as the result of the file. Runtime exceptions other than
+   * {@link ModelException}s are wrapped in a {@link BpmnModelException}, errors are
+   * rethrown.
+   *
+   * @param files the files to read
+   * @param executor the executor which runs the parse tasks
+   * @return the results keyed by file, in the iteration order of the files
+   * @throws BpmnModelException if the calling thread is interrupted while waiting for the results
+   */
+  public static Map<File, BpmnReadResult> readModels(Collection<File> files, Executor executor) {
+    return INSTANCE.doReadModels(files, executor, ParseOptions.defaults());
+  }
+
+  /**
+   * Reads multiple {@link BpmnModelInstance}s concurrently using the given {@link ParseOptions}.
+   *
+   * @see #readModels(Collection, Executor)
+   */
+  public static Map<File, BpmnReadResult> readModels(Collection<File> files, Executor executor, ParseOptions parseOptions) {
+    return INSTANCE.doReadModels(files, executor, parseOptions);
+  }
+
+  /**
+   * Reads all BPMN files of a zip archive concurrently. All entries with the
+   * extension <code>.bpmn</code> or <code>.bpmn20.xml</code> are read, other
+   * entries are ignored.
+   *
+   * @param zipFile the archive to read
+   * @param executor the executor which runs the parse tasks
+   * @return the results keyed by entry name, in the order of the entries in the archive
+   * @throws BpmnModelException if the archive cannot be opened or the calling thread is
+   * interrupted while waiting for the results
+   */
+  public static Map<String, BpmnReadResult> readModelsFromZip(File zipFile, Executor executor) {
+    return INSTANCE.doReadModelsFromZip(zipFile, executor, ParseOptions.defaults());
+  }
+
+  /**
+   * Reads all BPMN files of a zip archive concurrently using the given {@link ParseOptions}.
+   *
+   * @see #readModelsFromZip(File, Executor)
+   */
+  public static Map<String, BpmnReadResult> readModelsFromZip(File zipFile, Executor executor, ParseOptions parseOptions) {
+    return INSTANCE.doReadModelsFromZip(zipFile, executor, parseOptions);
+  }
+
+  /**
+   * Scans the headers of BPMN definitions from an {@link InputStream} without building
+   * a {@link BpmnModelInstance}. The definitions are neither validated nor completely
+   * read, the scan stops before the diagram interchange part of the file.
+   *
+   * @param stream the {@link InputStream} to scan the definitions from
+   * @return the summary of the definitions
+   * @throws ModelParseException if the definitions cannot be scanned
+   */
+  public static DefinitionsSummary scanDefinitions(InputStream stream) {
+    return INSTANCE.doScanDefinitions(stream);
+  }
+
   /**
    * Allows writing a {@link BpmnModelInstance} to a File. It will be
    * validated before writing.
@@ -162,6 +319,122 @@ public class Bpmn {
     return INSTANCE.doConvertToString(modelInstance);
   }
 
+  /**
+   * Allows writing a {@link BpmnModelInstance} to a File using the given {@link WriteOptions}.
+   * It will be validated as configured by
+   * {@link WriteOptions#validation(WriteOptions.ValidationMode)} before writing.
+   *
+   * @param file the {@link File} to write the {@link BpmnModelInstance} to
+   * @param modelInstance the {@link BpmnModelInstance} to write
+   * @param writeOptions the options used to write the model
+   * @throws BpmnModelException if the model cannot be written
+   * @throws ModelValidationException if the model is not valid
+   */
+  public static void writeModelToFile(File file, BpmnModelInstance modelInstance, WriteOptions writeOptions) {
+    INSTANCE.doWriteModelToFile(file, modelInstance, writeOptions);
+  }
+
+  /**
+   * Allows writing a {@link BpmnModelInstance} to an {@link OutputStream} using the given
+   * {@link WriteOptions}. It will be validated as configured by
+   * {@link WriteOptions#validation(WriteOptions.ValidationMode)} before writing.
+   *
+   * @param stream the {@link OutputStream} to write the {@link BpmnModelInstance} to
+   * @param modelInstance the {@link BpmnModelInstance} to write
+   * @param writeOptions the options used to write the model
+   * @throws ModelException if the model cannot be written
+   * @throws ModelValidationException if the model is not valid
+   */
+  public static void writeModelToStream(OutputStream stream, BpmnModelInstance modelInstance, WriteOptions writeOptions) {
+    INSTANCE.doWriteModelToOutputStream(stream, modelInstance, writeOptions);
+  }
+
+  /**
+   * Allows the conversion of a {@link BpmnModelInstance} to an {@link String} using the
+   * given {@link WriteOptions}. It will be validated as configured by
+   * {@link WriteOptions#validation(WriteOptions.ValidationMode)} before conversion.
+   *
+   * @param modelInstance  the model instance to convert
+   * @param writeOptions the options used to convert the model
+   * @return the XML string representation of the model instance
+   */
+  public static String convertToString(BpmnModelInstance modelInstance, WriteOptions writeOptions) {
+    return INSTANCE.doConvertToString(modelInstance, writeOptions);
+  }
+
+  /**
+   * Writes a compact binary snapshot of a {@link BpmnModelInstance}. A snapshot can be read
+   * much faster than the XML representation of the model, but it is only readable by a
+   * version of this library with the same set of element types. Use it as a cache, not as
+   * a persistent format. The model is not validated before writing.
+   *
+   * @param modelInstance the {@link BpmnModelInstance} to write
+   * @param stream the {@link OutputStream} to write the snapshot to
+   * @throws BpmnModelException if the snapshot cannot be written
+   */
+  public static void writeSnapshot(BpmnModelInstance modelInstance, OutputStream stream) {
+    INSTANCE.doWriteSnapshot(modelInstance, stream);
+  }
+
+  /**
+   * Reads a {@link BpmnModelInstance} from a snapshot written by
+   * {@link #writeSnapshot(BpmnModelInstance, OutputStream)}. Only the bytes of the
+   * snapshot are read and the stream is not closed, so further data can follow the
+   * snapshot. The stream is not buffered, pass a buffered stream to read from a file.
+   *
+   * @param stream the {@link InputStream} to read the snapshot from
+   * @return the model read
+   * @throws BpmnModelException if the snapshot cannot be read or was written by an
+   * incompatible version
+   */
+  public static BpmnModelInstance readSnapshot(InputStream stream) {
+    return INSTANCE.doReadSnapshot(stream);
+  }
+
+  /**
+   * Enables caching of parsed models. Reading a resource with the same content and
+   * {@link ParseOptions} again returns a copy on write of the cached frozen model.
+   * The copy supports indexes, cached query results and incremental validation like
+   * the parsed model, its deferred diagrams are built on first access.
+   *
+   * @param modelCache the cache to use or null to disable caching
+   */
+  public static void setModelCache(BpmnModelCache modelCache) {
+    INSTANCE.doSetModelCache(modelCache);
+  }
+
+  /**
+   * @return the cache of parsed models or null if caching is disabled
+   */
+  public static BpmnModelCache getModelCache() {
+    return INSTANCE.doGetModelCache();
+  }
+
+  /**
+   * Compiles a selector expression into an executable {@link Selector}. Compiled
+   * selectors are cached, so compiling the same expression again is cheap.
+   *
+   * @param expression the selector expression, like <code>subProcess serviceTask[camunda:asyncBefore=true]</code>
+   * @return the compiled selector
+   * @throws BpmnModelException if the expression is invalid
+   */
+  public static Selector compileSelector(String expression) {
+    return INSTANCE.doCompileSelector(expression);
+  }
+
+  /**
+   * Selects the elements of a model which match a selector expression.
+   *
+   * @param modelInstance the model to select the elements from
+   * @param expression the selector expression
+   * @return a query of the selected elements
+   * @throws BpmnModelException if the expression is invalid
+   * @see #compileSelector(String)
+   */
+  public static <T extends ModelElementInstance> Query<T> select(BpmnModelInstance modelInstance, String expression) {
+    return INSTANCE.doCompileSelector(expression).select(modelInstance);
+  }
+
   /**
    * Validate model DOM document
    *
@@ -214,13 +487,20 @@ public class Bpmn {
     bpmnModelBuilder = ModelBuilder.createInstance("BPMN Model");
     doRegisterTypes(bpmnModelBuilder);
     bpmnModel = bpmnModelBuilder.build();
+    elementTypeRegistry = new ElementTypeRegistry(bpmnModel);
+    snapshotSerializer = new BpmnSnapshotSerializer(elementTypeRegistry);
+    selectorCompiler = new SelectorCompiler(bpmnModel);
   }
 
   protected BpmnModelInstance doReadModelFromFile(File file) {
+    return doReadModelFromFile(file, ParseOptions.defaults());
+  }
+
+  protected BpmnModelInstance doReadModelFromFile(File file, ParseOptions parseOptions) {
     InputStream is = null;
     try {
       is = new FileInputStream(file);
-      return doReadModelFromInputStream(is);
+      return doReadModelFromInputStream(is, parseOptions);
 
     } catch (FileNotFoundException e) {
       throw new BpmnModelException("Cannot read model from file "+file+": file does not exist.");
@@ -232,14 +512,173 @@ public class Bpmn {
   }
 
   protected BpmnModelInstance doReadModelFromInputStream(InputStream is) {
-    return bpmnParser.parseModelFromStream(is);
+    return doReadModelFromInputStream(is, ParseOptions.defaults());
+  }
+
+  protected BpmnModelInstance doReadModelFromInputStream(InputStream is, ParseOptions parseOptions) {
+    BpmnModelCache cache = modelCache;
+    if (cache == null) {
+      return bpmnParser.parseModelFromStream(is, parseOptions);
+    }
+
+    byte[] content = readContent(is);
+    String key = BpmnModelCache.createKey(content, parseOptions);
+    BpmnModelInstance modelInstance = cache.get(key);
+    if (modelInstance == null) {
+      // the cache keeps a frozen copy, the parsed model is handed out
+      modelInstance = bpmnParser.parseModelFromStream(new ByteArrayInputStream(content), parseOptions);
+      cache.put(key, modelInstance, content.length);
+    }
+    return modelInstance;
+  }
+
+  protected byte[] readContent(InputStream is) {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try {
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        content.write(buffer, 0, read);
+      }
+    }
+    catch (IOException e) {
+      throw new BpmnModelException("Cannot read model from stream", e);
+    }
+    return content.toByteArray();
+  }
+
+  protected void doSetModelCache(BpmnModelCache modelCache) {
+    this.modelCache = modelCache;
+  }
+
+  protected BpmnModelCache doGetModelCache() {
+    return modelCache;
+  }
+
+  protected Map<File, BpmnReadResult> doReadModels(Collection<File> files, Executor executor, final ParseOptions parseOptions) {
+    Map<File, FutureTask<BpmnReadResult>> tasks = new LinkedHashMap<File, FutureTask<BpmnReadResult>>();
+    for (final File file : files) {
+      FutureTask<BpmnReadResult> task = new FutureTask<BpmnReadResult>(new Callable<BpmnReadResult>() {
+        public BpmnReadResult call() {
+          try {
+            return BpmnReadResult.success(doReadModelFromFile(file, parseOptions));
+          }
+          catch (ModelException e) {
+            return BpmnReadResult.failure(e);
+          }
+          catch (RuntimeException e) {
+            return BpmnReadResult.failure(new BpmnModelException("Cannot read model from file "+file, e));
+          }
+        }
+      });
+      tasks.put(file, task);
+      executor.execute(task);
+    }
+    return awaitResults(tasks);
+  }
+
+  protected Map<String, BpmnReadResult> doReadModelsFromZip(File file, Executor executor, final ParseOptions parseOptions) {
+    final ZipFile zipFile;
+    try {
+      zipFile = new ZipFile(file);
+    }
+    catch (IOException e) {
+      throw new BpmnModelException("Cannot read models from zip file "+file, e);
+    }
+
+    try {
+      Map<String, FutureTask<BpmnReadResult>> tasks = new LinkedHashMap<String, FutureTask<BpmnReadResult>>();
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        final ZipEntry entry = entries.nextElement();
+        if (entry.isDirectory() || !isBpmnResource(entry.getName())) {
+          continue;
+        }
+        FutureTask<BpmnReadResult> task = new FutureTask<BpmnReadResult>(new Callable<BpmnReadResult>() {
+          public BpmnReadResult call() {
+            InputStream is = null;
+            try {
+              is = zipFile.getInputStream(entry);
+              return BpmnReadResult.success(doReadModelFromInputStream(is, parseOptions));
+            }
+            catch (IOException e) {
+              return BpmnReadResult.failure(new BpmnModelException("Cannot read model from zip entry "+entry.getName(), e));
+            }
+            catch (ModelException e) {
+              return BpmnReadResult.failure(e);
+            }
+            catch (RuntimeException e) {
+              return BpmnReadResult.failure(new BpmnModelException("Cannot read model from zip entry "+entry.getName(), e));
+            }
+            finally {
+              IoUtil.closeSilently(is);
+            }
+          }
+        });
+        tasks.put(entry.getName(), task);
+        executor.execute(task);
+      }
+      return awaitResults(tasks);
+    }
+    finally {
+      try {
+        zipFile.close();
+      }
+      catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  protected boolean isBpmnResource(String name) {
+    return name.endsWith(".bpmn") || name.endsWith(".bpmn20.xml");
+  }
+
+  protected <K> Map<K, BpmnReadResult> awaitResults(Map<K, FutureTask<BpmnReadResult>> tasks) {
+    Map<K, BpmnReadResult> results = new LinkedHashMap<K, BpmnReadResult>();
+    try {
+      for (Map.Entry<K, FutureTask<BpmnReadResult>> task : tasks.entrySet()) {
+        results.put(task.getKey(), task.getValue().get());
+      }
+      return results;
+    }
+    catch (InterruptedException e) {
+      for (FutureTask<BpmnReadResult> task : tasks.values()) {
+        task.cancel(false);
+      }
+      Thread.currentThread().interrupt();
+      throw new BpmnModelException("Interrupted while reading models", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new BpmnModelException("Unable to read models", cause);
+    }
+  }
+
+  protected BpmnModelInstance doReadProcess(InputStream is, String processId, ParseOptions parseOptions) {
+    return bpmnParser.parseProcessFromStream(is, processId, parseOptions);
+  }
+
+  protected Selector doCompileSelector(String expression) {
+    return selectorCompiler.compile(expression);
+  }
+
+  protected DefinitionsSummary doScanDefinitions(InputStream is) {
+    return definitionsScanner.scan(is);
   }
 
   protected void doWriteModelToFile(File file, BpmnModelInstance modelInstance) {
+    doWriteModelToFile(file, modelInstance, WriteOptions.defaults());
+  }
+
+  protected void doWriteModelToFile(File file, BpmnModelInstance modelInstance, WriteOptions writeOptions) {
     OutputStream os = null;
     try {
       os = new FileOutputStream(file);
-      doWriteModelToOutputStream(os, modelInstance);
+      doWriteModelToOutputStream(os, modelInstance, writeOptions);
     }
     catch (FileNotFoundException e) {
       throw new BpmnModelException("Cannot write model to file "+file+": file does not exist.");
@@ -249,23 +688,92 @@ public class Bpmn {
   }
 
   protected void doWriteModelToOutputStream(OutputStream os, BpmnModelInstance modelInstance) {
+    doWriteModelToOutputStream(os, modelInstance, WriteOptions.defaults());
+  }
+
+  protected void doWriteModelToOutputStream(OutputStream os, BpmnModelInstance modelInstance, WriteOptions writeOptions) {
     // validate DOM document
-    doValidateModel(modelInstance);
+    doValidateModel(modelInstance, writeOptions);
     // write XML
-    IoUtil.writeDocumentToOutputStream(modelInstance.getDocument(), os);
+    bpmnWriter.write(getDomDocument(modelInstance), os, writeOptions);
   }
 
   protected String doConvertToString(BpmnModelInstance modelInstance) {
+    return doConvertToString(modelInstance, WriteOptions.defaults());
+  }
+
+  protected String doConvertToString(BpmnModelInstance modelInstance, WriteOptions writeOptions) {
     // validate DOM document
-    doValidateModel(modelInstance);
+    doValidateModel(modelInstance, writeOptions);
     // convert to XML string
-    return IoUtil.convertXmlDocumentToString(modelInstance.getDocument());
+    return bpmnWriter.toString(getDomDocument(modelInstance), writeOptions);
+  }
+
+  protected Document getDomDocument(BpmnModelInstance modelInstance) {
+    materializeDiagrams(modelInstance);
+    return (Document) modelInstance.getDocument().getDomSource().getNode();
+  }
+
+  protected void doWriteSnapshot(BpmnModelInstance modelInstance, OutputStream os) {
+    snapshotSerializer.write(getDomDocument(modelInstance), os);
+  }
+
+  protected BpmnModelInstance doReadSnapshot(InputStream is) {
+    BpmnModelInstance modelInstance = doCreateEmptyModel();
+    snapshotSerializer.read(is, getDomDocument(modelInstance));
+    return modelInstance;
   }
 
   protected void doValidateModel(BpmnModelInstance modelInstance) {
+    materializeDiagrams(modelInstance);
     bpmnParser.validateModel(modelInstance.getDocument());
   }
 
+  protected void doValidateModel(BpmnModelInstance modelInstance, WriteOptions writeOptions) {
+    materializeDiagrams(modelInstance);
+    switch (writeOptions.getValidationMode()) {
+      case NONE:
+        break;
+      case DIRTY_ONLY:
+        doValidateDirtyElements(modelInstance);
+        break;
+      default:
+        doValidateModel(modelInstance);
+    }
+  }
+
+  /**
+   * Builds the diagrams of a model parsed with {@link ParseOptions#lazyDiagrams(boolean)}
+   * before the whole document is accessed.
+   */
+  protected void materializeDiagrams(BpmnModelInstance modelInstance) {
+    if (modelInstance instanceof BpmnModelInstanceImpl) {
+      ((BpmnModelInstanceImpl) modelInstance).materializeDiagrams();
+    }
+  }
+
+  protected void doValidateDirtyElements(BpmnModelInstance modelInstance) {
+    DirtyElementTracker tracker = null;
+    if (modelInstance instanceof BpmnModelInstanceImpl) {
+      tracker = ((BpmnModelInstanceImpl) modelInstance).getDirtyElementTracker();
+    }
+    if (tracker == null) {
+      // changes cannot be tracked, fall back to a full validation
+      doValidateModel(modelInstance);
+    }
+    else {
+      synchronized (tracker) {
+        if (tracker.isDocumentDirty()) {
+          doValidateModel(modelInstance);
+        }
+        else {
+          bpmnParser.validateElements(modelInstance.getDocument(), tracker.getDirtyElements());
+        }
+        tracker.clear();
+      }
+    }
+  }
+
   protected BpmnModelInstance doCreateEmptyModel() {
     return bpmnParser.getEmptyModel();
   }
@@ -502,6 +1010,10 @@ public class Bpmn {
     return bpmnModelBuilder;
   }
 
+  public ElementTypeRegistry getElementTypeRegistry() {
+    return elementTypeRegistry;
+  }
+
   /**
    * @param bpmnModel the bpmnModel to set
    */
@@ -0,0 +1,220 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
+
+/**
+ * <p>A cache of parsed models keyed by a digest of their content. If enabled with
+ * {@link Bpmn#setModelCache(BpmnModelCache)}, reading the same resource again returns
+ * a copy of the cached model instead of parsing and validating it again.</p>
+ *
+ * <p>The cache is bounded by the number of entries and by their total weight, the
+ * size of the model resources in bytes. The least recently used entries are evicted
+ * first. The cached models are only softly referenced, so they can be reclaimed by
+ * the garbage collector if memory is low.</p>
+ *
+ * <p>The cache keeps a {@link BpmnModelInstance#freeze() frozen} version of each model,
+ * which any number of threads can read without locking. Every hit returns a
+ * {@link BpmnModelInstance#copyOnWrite() copy on write} of the frozen model, so a hit
+ * does not copy the document and changes of the copy do not affect the cache. The
+ * copies track their changes like parsed models, so they support indexes, cached query
+ * results and incremental validation. This class is thread safe.</p>
+ *
+ * <p>Diagrams which were deferred with {@link ParseOptions#lazyDiagrams(boolean)} stay
+ * deferred in the cache. Each copy builds them on its first access to a diagram.</p>
+ */
+public class BpmnModelCache {
+
+  protected static final String DIGEST_ALGORITHM = "SHA-256";
+  protected static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  protected final int maxEntries;
+  protected final long maxWeight;
+
+  protected final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+  protected long weight = 0;
+
+  protected long hitCount = 0;
+  protected long missCount = 0;
+  protected long evictionCount = 0;
+
+  /**
+   * @param maxEntries the maximum number of cached models
+   * @param maxWeight the maximum total size of the cached model resources in bytes
+   */
+  public BpmnModelCache(int maxEntries, long maxWeight) {
+    if (maxEntries <= 0 || maxWeight <= 0) {
+      throw new IllegalArgumentException("The maximum number of entries and the maximum weight of a model cache must be positive");
+    }
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Creates the cache key of a model resource. Models parsed with different
+   * {@link ParseOptions} are cached separately.
+   *
+   * @param content the content of the model resource
+   * @param parseOptions the options used to parse the model
+   * @return the cache key
+   */
+  public static String createKey(byte[] content, ParseOptions parseOptions) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new BpmnModelException("Unable to create digest of model", e);
+    }
+    byte[] hash = digest.digest(content);
+
+    StringBuilder key = new StringBuilder(hash.length * 2 + 3);
+    for (byte b : hash) {
+      key.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+    }
+    key.append(parseOptions.isSchemaValidation() ? ":v" : ":t");
+    if (parseOptions.isSkipDiagrams()) {
+      key.append('s');
+    }
+    else if (parseOptions.isLazyDiagrams()) {
+      key.append('l');
+    }
+    return key.toString();
+  }
+
+  /**
+   * @param key the cache key of the model
+   * @return a copy on write of the cached model or null if the model is not cached
+   */
+  public BpmnModelInstance get(String key) {
+    BpmnModelInstance modelInstance;
+    synchronized (this) {
+      CacheEntry entry = entries.get(key);
+      modelInstance = entry != null ? entry.modelInstance.get() : null;
+      if (modelInstance == null) {
+        if (entry != null) {
+          // the model was reclaimed by the garbage collector
+          remove(key, entry);
+        }
+        missCount++;
+        return null;
+      }
+      hitCount++;
+    }
+    // the frozen model can be read concurrently, the copy shares its document
+    return modelInstance.copyOnWrite();
+  }
+
+  /**
+   * Caches a frozen version of a model. Later changes of the model do not affect the
+   * cache. Deferred diagrams of the model are not built.
+   *
+   * @param key the cache key of the model
+   * @param modelInstance the model to cache
+   * @param weight the weight of the model, usually the size of its resource in bytes
+   */
+  public void put(String key, BpmnModelInstance modelInstance, long weight) {
+    if (weight > maxWeight) {
+      return;
+    }
+    BpmnModelInstance frozenInstance = modelInstance instanceof BpmnModelInstanceImpl
+      ? ((BpmnModelInstanceImpl) modelInstance).freezeDeferringDiagrams()
+      : modelInstance.freeze();
+    synchronized (this) {
+      CacheEntry previousEntry = entries.put(key, new CacheEntry(frozenInstance, weight));
+      if (previousEntry != null) {
+        this.weight -= previousEntry.weight;
+      }
+      this.weight += weight;
+      evict();
+    }
+  }
+
+  /**
+   * Removes all models from the cache. The statistics are not reset.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /**
+   * @return the number of cached models, including models which were already reclaimed
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the total weight of the cached models
+   */
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return the number of models evicted because the cache was full or reclaimed by the garbage collector
+   */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public synchronized String toString() {
+    return "BpmnModelCache[size=" + entries.size() + ", weight=" + weight + ", hits=" + hitCount
+      + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+  }
+
+  protected void evict() {
+    Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext() && (entries.size() > maxEntries || weight > maxWeight)) {
+      CacheEntry entry = iterator.next().getValue();
+      iterator.remove();
+      weight -= entry.weight;
+      evictionCount++;
+    }
+  }
+
+  protected void remove(String key, CacheEntry entry) {
+    entries.remove(key);
+    weight -= entry.weight;
+    evictionCount++;
+  }
+
+  protected static class CacheEntry {
+
+    protected final SoftReference<BpmnModelInstance> modelInstance;
+    protected final long weight;
+
+    public CacheEntry(BpmnModelInstance modelInstance, long weight) {
+      this.modelInstance = new SoftReference<BpmnModelInstance>(modelInstance);
+      this.weight = weight;
+    }
+  }
+
+}
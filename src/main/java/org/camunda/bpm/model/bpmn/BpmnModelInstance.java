@@ -34,4 +34,71 @@ public interface BpmnModelInstance extends ModelInstance {
    * */
   void setDefinitions(Definitions definitions);
 
+  /**
+   * Copies the Bpmn Model. The copy has its own DOM document, changes of the
+   * copy do not affect this model and vice versa.
+   *
+   * @return the copy of the model
+   */
+  BpmnModelInstance clone();
+
+  /**
+   * <p>Returns a frozen, read-only copy of the Bpmn Model which can be shared between
+   * threads. Any number of threads can read a frozen model concurrently without
+   * synchronization, the model element instances of all elements and the elements
+   * referenced by id are resolved when the model is frozen.</p>
+   *
+   * <p>Lookups by id and type and cached query results of a frozen model take no lock.
+   * Reading the attributes and child elements of its elements still locks the document
+   * for each access, so these reads are serialized between threads.</p>
+   *
+   * <p>All methods which would change a frozen model throw a
+   * {@link org.w3c.dom.DOMException} with the code
+   * {@link org.w3c.dom.DOMException#NO_MODIFICATION_ALLOWED_ERR}. Use {@link #clone()}
+   * to get a modifiable copy of a frozen model.</p>
+   *
+   * @return the frozen copy of the model or this model if it is already frozen
+   */
+  BpmnModelInstance freeze();
+
+  /**
+   * <p>Returns a modifiable copy of the Bpmn Model which shares all unchanged elements
+   * with this model. Creating the copy is cheap, elements are only copied when they are
+   * visited and their attributes only when they are changed. So the cost of a variant
+   * of a large model depends on the changes, not on the size of the model.</p>
+   *
+   * <p>The copy shares a frozen version of this model. Call this method on a
+   * {@link #freeze() frozen} model to share one frozen version between all copies,
+   * otherwise this model is frozen again for each copy.</p>
+   *
+   * <p>Changes of the copy are tracked like the changes of a parsed model, so the copy
+   * supports indexes, cached query results and incremental validation. Building an
+   * index visits, and so copies, all elements of the model.</p>
+   *
+   * @return the copy of the model
+   */
+  BpmnModelInstance copyOnWrite();
+
+  /**
+   * @return true if this model is frozen and cannot be changed
+   * @see #freeze()
+   */
+  boolean isFrozen();
+
+  /**
+   * <p>Indexes the elements of this model by the value of an attribute. Afterwards
+   * {@link Query#filterByAttribute(String, String, String)} looks up the elements of
+   * the model in the index instead of reading the attribute of each element. The index
+   * is kept up to date when the model is changed.</p>
+   *
+   * <p>Indexes are not copied with the model, {@link #clone()}, {@link #freeze()} and
+   * {@link #copyOnWrite()} return models without indexes.</p>
+   *
+   * @param namespaceUri the namespace of the attribute or null if it has no namespace
+   * @param attributeName the local name of the attribute
+   * @return true if the attribute is indexed, false if the changes of this model
+   * cannot be tracked, queries still work without an index then
+   */
+  boolean indexAttribute(String namespaceUri, String attributeName);
+
 }
@@ -0,0 +1,61 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import org.camunda.bpm.model.xml.ModelException;
+
+/**
+ * <p>The result of reading a single model of a batch, see
+ * {@link Bpmn#readModels(java.util.Collection, java.util.concurrent.Executor)}.
+ * Either the model instance or the exception which prevented reading it.</p>
+ */
+public class BpmnReadResult {
+
+  protected final BpmnModelInstance modelInstance;
+  protected final ModelException exception;
+
+  protected BpmnReadResult(BpmnModelInstance modelInstance, ModelException exception) {
+    this.modelInstance = modelInstance;
+    this.exception = exception;
+  }
+
+  public static BpmnReadResult success(BpmnModelInstance modelInstance) {
+    return new BpmnReadResult(modelInstance, null);
+  }
+
+  public static BpmnReadResult failure(ModelException exception) {
+    return new BpmnReadResult(null, exception);
+  }
+
+  /**
+   * @return true if the model was read successfully
+   */
+  public boolean isSuccessful() {
+    return exception == null;
+  }
+
+  /**
+   * @return the model read or null if reading the model failed
+   */
+  public BpmnModelInstance getModelInstance() {
+    return modelInstance;
+  }
+
+  /**
+   * @return the exception which prevented reading the model or null if it was read successfully
+   */
+  public ModelException getException() {
+    return exception;
+  }
+
+}
@@ -0,0 +1,79 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>An immutable summary of the headers of a BPMN definitions file, as returned by
+ * {@link Bpmn#scanDefinitions(java.io.InputStream)}. It contains only the information
+ * needed to index a deployment, no {@link BpmnModelInstance} is built for it.</p>
+ */
+public class DefinitionsSummary {
+
+  protected final String id;
+  protected final String targetNamespace;
+  protected final List<ProcessSummary> processes;
+
+  public DefinitionsSummary(String id, String targetNamespace, List<ProcessSummary> processes) {
+    this.id = id;
+    this.targetNamespace = targetNamespace;
+    this.processes = Collections.unmodifiableList(processes);
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getTargetNamespace() {
+    return targetNamespace;
+  }
+
+  /**
+   * @return the summaries of all processes in document order
+   */
+  public List<ProcessSummary> getProcesses() {
+    return processes;
+  }
+
+  /**
+   * @param processId the id of the process
+   * @return the summary of the process or null if no process with this id exists
+   */
+  public ProcessSummary getProcess(String processId) {
+    for (ProcessSummary process : processes) {
+      if (processId.equals(process.getId())) {
+        return process;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the <code>calledElement</code> values of the call activities of all processes
+   */
+  public List<String> getCalledElements() {
+    List<String> calledElements = new ArrayList<String>();
+    for (ProcessSummary process : processes) {
+      calledElements.addAll(process.getCalledElements());
+    }
+    return calledElements;
+  }
+
+  public String toString() {
+    return "DefinitionsSummary[id=" + id + ", targetNamespace=" + targetNamespace + ", processes=" + processes + "]";
+  }
+
+}
@@ -0,0 +1,97 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+/**
+ * <p>Options which control how a {@link BpmnModelInstance} is read.</p>
+ *
+ * <pre>
+ * Bpmn.readModelFromStream(stream, ParseOptions.trusted());
+ * </pre>
+ */
+public class ParseOptions {
+
+  protected boolean schemaValidation = true;
+  protected boolean lazyDiagrams = false;
+  protected boolean skipDiagrams = false;
+
+  /**
+   * @return the default options, the model is validated against the BPMN schema while parsing
+   */
+  public static ParseOptions defaults() {
+    return new ParseOptions();
+  }
+
+  /**
+   * Options for models which are known to be valid, for example because they were
+   * produced and validated at build time. The model is not validated against the
+   * BPMN schema, only a namespace aware DOM is built.
+   *
+   * @return the options for trusted models
+   */
+  public static ParseOptions trusted() {
+    return new ParseOptions().schemaValidation(false);
+  }
+
+  /**
+   * @param schemaValidation true if the model should be validated against the BPMN schema
+   * @return these options
+   */
+  public ParseOptions schemaValidation(boolean schemaValidation) {
+    this.schemaValidation = schemaValidation;
+    return this;
+  }
+
+  public boolean isSchemaValidation() {
+    return schemaValidation;
+  }
+
+  /**
+   * Defers building the <code>BPMNDiagram</code> elements of the model. Their markup
+   * is kept as bytes and parsed only when the diagrams are accessed, for example by
+   * {@link org.camunda.bpm.model.bpmn.instance.Definitions#getBpmDiagrams()} or
+   * {@link org.camunda.bpm.model.bpmn.instance.BaseElement#getDiagramElement()}.
+   * If schema validation is enabled the diagrams are still validated while parsing.
+   * Writing the model materializes the diagrams first, so it is written unchanged.
+   *
+   * @param lazyDiagrams true if the diagrams should be built on first access
+   * @return these options
+   */
+  public ParseOptions lazyDiagrams(boolean lazyDiagrams) {
+    this.lazyDiagrams = lazyDiagrams;
+    return this;
+  }
+
+  public boolean isLazyDiagrams() {
+    return lazyDiagrams;
+  }
+
+  /**
+   * Skips the <code>BPMNDiagram</code> elements of the model, they are neither built nor
+   * kept. If schema validation is enabled they are still validated while parsing. A model
+   * read without diagrams is written without them. Takes precedence over
+   * {@link #lazyDiagrams(boolean)}.
+   *
+   * @param skipDiagrams true if the diagrams should not be read
+   * @return these options
+   */
+  public ParseOptions skipDiagrams(boolean skipDiagrams) {
+    this.skipDiagrams = skipDiagrams;
+    return this;
+  }
+
+  public boolean isSkipDiagrams() {
+    return skipDiagrams;
+  }
+
+}
@@ -0,0 +1,77 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>An immutable summary of a BPMN process header, see {@link DefinitionsSummary}.</p>
+ */
+public class ProcessSummary {
+
+  protected final String id;
+  protected final String name;
+  protected final boolean executable;
+  protected final Map<String, String> camundaAttributes;
+  protected final List<String> calledElements;
+
+  public ProcessSummary(String id, String name, boolean executable, Map<String, String> camundaAttributes, List<String> calledElements) {
+    this.id = id;
+    this.name = name;
+    this.executable = executable;
+    this.camundaAttributes = Collections.unmodifiableMap(camundaAttributes);
+    this.calledElements = Collections.unmodifiableList(calledElements);
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isExecutable() {
+    return executable;
+  }
+
+  /**
+   * @return the attributes of the process in the camunda namespace, keyed by their local name
+   */
+  public Map<String, String> getCamundaAttributes() {
+    return camundaAttributes;
+  }
+
+  /**
+   * @param localName the local name of the attribute
+   * @return the value of the camunda attribute or null if the process has no such attribute
+   */
+  public String getCamundaAttribute(String localName) {
+    return camundaAttributes.get(localName);
+  }
+
+  /**
+   * @return the <code>calledElement</code> values of all call activities of the process,
+   * including call activities in sub processes, in document order
+   */
+  public List<String> getCalledElements() {
+    return calledElements;
+  }
+
+  public String toString() {
+    return "ProcessSummary[id=" + id + ", name=" + name + ", executable=" + executable + "]";
+  }
+
+}
@@ -16,12 +16,19 @@ package org.camunda.bpm.model.bpmn;
 import org.camunda.bpm.model.xml.instance.ModelElementInstance;
 import org.camunda.bpm.model.xml.type.ModelElementType;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
+ * <p>A query on a collection of model elements. Queries are evaluated lazily: filters
+ * and limits only describe the result, which is computed by a terminal operation like
+ * {@link #list()} or {@link #count()} in a single pass over the collection. Every
+ * terminal operation evaluates the query again, so it reflects the current content
+ * of the collection.</p>
+ *
  * @author Sebastian Menski
  */
-public interface Query<T extends ModelElementInstance> {
+public interface Query<T extends ModelElementInstance> extends Iterable<T> {
 
   List<T> list();
 
@@ -31,6 +38,45 @@ public interface Query<T extends ModelElementInstance> {
 
   <V extends ModelElementInstance> Query<V> filterByType(Class<V> elementClass);
 
+  /**
+   * Filters the elements by the value of an attribute. If the attribute is indexed by the
+   * model of the elements, the elements are looked up in the index.
+   *
+   * @param namespaceUri the namespace of the attribute or null if it has no namespace
+   * @param attributeName the local name of the attribute
+   * @param value the value of the attribute or null for elements without the attribute
+   * @return a query of the elements with this attribute value
+   * @see BpmnModelInstance#indexAttribute(String, String)
+   */
+  Query<T> filterByAttribute(String namespaceUri, String attributeName, String value);
+
+  /**
+   * @param predicate the condition the elements have to match
+   * @return a query of the elements which match the condition
+   */
+  Query<T> filter(Predicate<? super T> predicate);
+
+  /**
+   * @param maxResults the maximum number of elements
+   * @return a query of the first elements of this query
+   */
+  Query<T> limit(int maxResults);
+
   T singleResult();
 
+  /**
+   * @return the first element or null if the query has no result
+   */
+  T first();
+
+  /**
+   * @return true if the query has at least one result
+   */
+  boolean any();
+
+  /**
+   * @return an iterator which evaluates the query while it is advanced
+   */
+  Iterator<T> iterator();
+
 }
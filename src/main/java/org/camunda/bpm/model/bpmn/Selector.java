@@ -0,0 +1,58 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+
+/**
+ * <p>A compiled structural query on the elements of a {@link BpmnModelInstance}, created
+ * by {@link Bpmn#compileSelector(String)}. The expression is a sequence of element
+ * selectors separated by combinators:</p>
+ *
+ * <ul>
+ *   <li><code>serviceTask</code> selects all elements of a type or its subtypes,
+ *   <code>*</code> all elements. Types of other namespaces than BPMN are prefixed,
+ *   like <code>camunda:inputOutput</code> or <code>bpmndi:BPMNShape</code>.</li>
+ *   <li><code>[camunda:asyncBefore=true]</code> selects elements with an attribute
+ *   value, <code>[name]</code> elements which have the attribute. Values can be quoted
+ *   with single or double quotes.</li>
+ *   <li><code>subProcess serviceTask</code> selects the service tasks which are
+ *   descendants of a sub process, <code>process &gt; serviceTask</code> the service
+ *   tasks which are children of a process.</li>
+ * </ul>
+ *
+ * <p>A selector is immutable and can be used concurrently for any number of models.
+ * It uses the element type index and the attribute indexes of a model, if they exist.</p>
+ *
+ * @see BpmnModelInstance#indexAttribute(String, String)
+ */
+public interface Selector {
+
+  /**
+   * @return the expression of this selector
+   */
+  String getExpression();
+
+  /**
+   * @param modelInstance the model to select the elements from
+   * @return a query of the selected elements
+   */
+  <T extends ModelElementInstance> Query<T> select(BpmnModelInstance modelInstance);
+
+  /**
+   * @param scope the element to select the descendants from
+   * @return a query of the selected descendants of the scope
+   */
+  <T extends ModelElementInstance> Query<T> select(ModelElementInstance scope);
+
+}
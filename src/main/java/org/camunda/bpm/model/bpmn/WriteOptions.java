@@ -0,0 +1,84 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+/**
+ * <p>Options which control how a {@link BpmnModelInstance} is written.</p>
+ *
+ * <pre>
+ * Bpmn.writeModelToStream(stream, modelInstance, WriteOptions.defaults().prettyPrint(false));
+ * Bpmn.convertToString(modelInstance, WriteOptions.defaults().validation(ValidationMode.DIRTY_ONLY));
+ * </pre>
+ */
+public class WriteOptions {
+
+  /**
+   * Controls how a model is validated before it is written.
+   */
+  public enum ValidationMode {
+
+    /** the model is written without validation */
+    NONE,
+
+    /** the whole model is validated against the BPMN schema */
+    FULL,
+
+    /**
+     * Only the elements changed since the last validation are validated, each one
+     * with the subtree of its nearest ancestor which is a global element of the
+     * BPMN schema. The first validation of a model validates the whole model and
+     * starts tracking its changes. References to elements outside of the validated
+     * subtrees are not checked, so this mode is meant for models which are written
+     * repeatedly while being edited.
+     */
+    DIRTY_ONLY
+  }
+
+  protected boolean prettyPrint = true;
+  protected ValidationMode validationMode = ValidationMode.FULL;
+
+  /**
+   * @return the default options, the model is validated completely and pretty printed
+   */
+  public static WriteOptions defaults() {
+    return new WriteOptions();
+  }
+
+  /**
+   * @param prettyPrint true if elements should be indented, false if the
+   *   document should be written exactly as it is, including whitespace
+   * @return these options
+   */
+  public WriteOptions prettyPrint(boolean prettyPrint) {
+    this.prettyPrint = prettyPrint;
+    return this;
+  }
+
+  public boolean isPrettyPrint() {
+    return prettyPrint;
+  }
+
+  /**
+   * @param validationMode the validation of the model before it is written
+   * @return these options
+   */
+  public WriteOptions validation(ValidationMode validationMode) {
+    this.validationMode = validationMode;
+    return this;
+  }
+
+  public ValidationMode getValidationMode() {
+    return validationMode;
+  }
+
+}
@@ -15,6 +15,7 @@ package org.camunda.bpm.model.bpmn.builder;
 
 import org.camunda.bpm.model.bpmn.BpmnModelException;
 import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.graph.GatewayPairing;
 import org.camunda.bpm.model.bpmn.instance.BusinessRuleTask;
 import org.camunda.bpm.model.bpmn.instance.CallActivity;
 import org.camunda.bpm.model.bpmn.instance.ConditionExpression;
@@ -25,6 +26,7 @@ import org.camunda.bpm.model.bpmn.instance.Gateway;
 import org.camunda.bpm.model.bpmn.instance.IntermediateCatchEvent;
 import org.camunda.bpm.model.bpmn.instance.ManualTask;
 import org.camunda.bpm.model.bpmn.instance.ParallelGateway;
+import org.camunda.bpm.model.bpmn.instance.Process;
 import org.camunda.bpm.model.bpmn.instance.ReceiveTask;
 import org.camunda.bpm.model.bpmn.instance.ScriptTask;
 import org.camunda.bpm.model.bpmn.instance.SendTask;
@@ -35,6 +37,8 @@ import org.camunda.bpm.model.bpmn.instance.UserTask;
 import org.camunda.bpm.model.bpmn.instance.EventBasedGateway;
 import org.camunda.bpm.model.xml.instance.ModelElementInstance;
 
+import java.util.List;
+
 /**
  * @author Sebastian Menski
  */
@@ -198,18 +202,37 @@ public abstract class AbstractFlowNodeBuilder<B extends AbstractFlowNodeBuilder<
   public Gateway findLastGateway() {
     FlowNode lastGateway = element;
     while (true) {
-      try {
-        lastGateway = lastGateway.getPreviousNodes().singleResult();
+      List<FlowNode> previousNodes = lastGateway.getPreviousNodes().list();
+      if (previousNodes.size() == 1) {
+        lastGateway = previousNodes.get(0);
         if (lastGateway instanceof Gateway) {
           return (Gateway) lastGateway;
         }
       }
-      catch(BpmnModelException e) {
-        throw new BpmnModelException("Unable to determine an unique previous gateway of " + lastGateway.getId(), e);
+      else {
+        // skip joins and loops with the gateway pairing of the scope
+        Gateway gateway = findLastGatewayOfScope(lastGateway);
+        if (gateway == null) {
+          throw new BpmnModelException("Unable to determine an unique previous gateway of " + lastGateway.getId());
+        }
+        return gateway;
       }
     }
   }
 
+  protected Gateway findLastGatewayOfScope(FlowNode flowNode) {
+    ModelElementInstance scope = flowNode.getParentElement();
+    if (scope instanceof SubProcess) {
+      return GatewayPairing.of((SubProcess) scope).getLastGateway(flowNode);
+    }
+    else if (scope instanceof Process) {
+      return GatewayPairing.of((Process) scope).getLastGateway(flowNode);
+    }
+    else {
+      return null;
+    }
+  }
+
   @SuppressWarnings("rawtypes")
   public AbstractGatewayBuilder moveToLastGateway() {
     return findLastGateway().builder();
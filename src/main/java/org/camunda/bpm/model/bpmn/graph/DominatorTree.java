@@ -0,0 +1,267 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+
+import java.util.Arrays;
+
+/**
+ * <p>The dominator or post-dominator tree of the sequence flow graph of a process or
+ * sub process. A node dominates another node if every path from a node without
+ * incoming sequence flows to the other node passes it. A node post-dominates another
+ * node if every path from the other node to a node without outgoing sequence flows
+ * passes it. Every node dominates itself.</p>
+ *
+ * <p>The tree is stored in int arrays indexed by the node indexes of the
+ * {@link FlowGraph}. The nodes of the tree are numbered by a depth first search, so
+ * {@link #dominates(int, int)} takes constant time.</p>
+ *
+ * <p>Nodes which are not dominated by another node are the roots of the tree. These are
+ * the nodes without incoming sequence flows, or without outgoing sequence flows for
+ * post-dominators, and nodes which are reached from several of them.</p>
+ */
+public class DominatorTree {
+
+  protected final FlowGraph graph;
+  protected final boolean postDominators;
+  protected final int[] immediateDominators;
+  protected final int[] depths;
+
+  protected final int[] childOffsets;
+  protected final int[] children;
+  protected final int[] roots;
+
+  /** the position of each node in the depth first search of the tree */
+  protected final int[] preorder;
+  /** the number of nodes in the subtree of each node */
+  protected final int[] subtreeSizes;
+
+  /**
+   * @param process the process
+   * @return the dominator tree of the process, without sub processes
+   */
+  public static DominatorTree of(Process process) {
+    return FlowGraph.of(process).getDominatorTree();
+  }
+
+  /**
+   * @param subProcess the sub process
+   * @return the dominator tree of the sub process, without nested sub processes
+   */
+  public static DominatorTree of(SubProcess subProcess) {
+    return FlowGraph.of(subProcess).getDominatorTree();
+  }
+
+  /**
+   * @param process the process
+   * @return the post-dominator tree of the process, without sub processes
+   */
+  public static DominatorTree postDominatorsOf(Process process) {
+    return FlowGraph.of(process).getPostDominatorTree();
+  }
+
+  /**
+   * @param subProcess the sub process
+   * @return the post-dominator tree of the sub process, without nested sub processes
+   */
+  public static DominatorTree postDominatorsOf(SubProcess subProcess) {
+    return FlowGraph.of(subProcess).getPostDominatorTree();
+  }
+
+  /**
+   * @param graph the graph
+   * @param postDominators true to build the post-dominator tree
+   */
+  public DominatorTree(FlowGraph graph, boolean postDominators) {
+    this.graph = graph;
+    this.postDominators = postDominators;
+    int nodeCount = graph.getNodeCount();
+    immediateDominators = Dominators.immediateDominators(graph, null, postDominators);
+
+    // the children of each node as compressed sparse rows, the roots separately
+    childOffsets = new int[nodeCount + 1];
+    int rootCount = 0;
+    for (int node = 0; node < nodeCount; node++) {
+      int dominator = immediateDominators[node];
+      if (dominator >= 0) {
+        childOffsets[dominator + 1]++;
+      }
+      else {
+        rootCount++;
+      }
+    }
+    for (int node = 1; node <= nodeCount; node++) {
+      childOffsets[node] += childOffsets[node - 1];
+    }
+    children = new int[nodeCount - rootCount];
+    roots = new int[rootCount];
+    int[] positions = Arrays.copyOf(childOffsets, nodeCount);
+    rootCount = 0;
+    for (int node = 0; node < nodeCount; node++) {
+      int dominator = immediateDominators[node];
+      if (dominator >= 0) {
+        children[positions[dominator]++] = node;
+      }
+      else {
+        roots[rootCount++] = node;
+      }
+    }
+
+    // number the nodes in preorder without recursion
+    preorder = new int[nodeCount];
+    subtreeSizes = new int[nodeCount];
+    depths = new int[nodeCount];
+    int[] stack = new int[nodeCount];
+    int[] stackPositions = new int[nodeCount];
+    int nextNumber = 0;
+    for (int root : roots) {
+      int stackSize = 0;
+      stack[stackSize] = root;
+      stackPositions[stackSize++] = childOffsets[root];
+      preorder[root] = nextNumber++;
+      while (stackSize > 0) {
+        int node = stack[stackSize - 1];
+        int position = stackPositions[stackSize - 1];
+        if (position < childOffsets[node + 1]) {
+          stackPositions[stackSize - 1]++;
+          int child = children[position];
+          preorder[child] = nextNumber++;
+          depths[child] = stackSize;
+          stack[stackSize] = child;
+          stackPositions[stackSize++] = childOffsets[child];
+        }
+        else {
+          stackSize--;
+          subtreeSizes[node] = nextNumber - preorder[node];
+        }
+      }
+    }
+  }
+
+  public FlowGraph getGraph() {
+    return graph;
+  }
+
+  /**
+   * @return true if this is a post-dominator tree
+   */
+  public boolean isPostDominatorTree() {
+    return postDominators;
+  }
+
+  /**
+   * @param node the index of the node
+   * @return the index of the immediate dominator or -1 if the node is a root of the tree
+   */
+  public int getImmediateDominator(int node) {
+    return immediateDominators[node];
+  }
+
+  /**
+   * @param flowNode the flow node
+   * @return the immediate dominator or null if the flow node is a root of the tree or
+   * no node of this scope
+   */
+  public FlowNode getImmediateDominator(FlowNode flowNode) {
+    int node = graph.indexOf(flowNode);
+    return node >= 0 && immediateDominators[node] >= 0 ? graph.getNode(immediateDominators[node]) : null;
+  }
+
+  /**
+   * @param dominator the index of the dominating node
+   * @param node the index of the dominated node
+   * @return true if the first node dominates the second one, every node dominates itself
+   */
+  public boolean dominates(int dominator, int node) {
+    int distance = preorder[node] - preorder[dominator];
+    return distance >= 0 && distance < subtreeSizes[dominator];
+  }
+
+  /**
+   * @param dominator the index of the dominating node
+   * @param node the index of the dominated node
+   * @return true if the first node dominates the second one and both are different
+   */
+  public boolean strictlyDominates(int dominator, int node) {
+    return dominator != node && dominates(dominator, node);
+  }
+
+  /**
+   * @param dominator the dominating flow node
+   * @param flowNode the dominated flow node
+   * @return true if the first flow node dominates the second one, false if they do not
+   * belong to this scope
+   */
+  public boolean dominates(FlowNode dominator, FlowNode flowNode) {
+    int dominatorNode = graph.indexOf(dominator);
+    int node = graph.indexOf(flowNode);
+    return dominatorNode >= 0 && node >= 0 && dominates(dominatorNode, node);
+  }
+
+  /**
+   * @param node the index of the node
+   * @param otherNode the index of the other node
+   * @return the index of the closest node which dominates both nodes or -1 if there is none
+   */
+  public int getNearestCommonDominator(int node, int otherNode) {
+    while (node >= 0 && otherNode >= 0 && node != otherNode) {
+      if (depths[node] >= depths[otherNode]) {
+        node = immediateDominators[node];
+      }
+      else {
+        otherNode = immediateDominators[otherNode];
+      }
+    }
+    return node == otherNode ? node : -1;
+  }
+
+  /**
+   * @param node the index of the node
+   * @return the number of dominators of the node, without the node itself
+   */
+  public int getDepth(int node) {
+    return depths[node];
+  }
+
+  public int getChildCount(int node) {
+    return childOffsets[node + 1] - childOffsets[node];
+  }
+
+  /**
+   * @param node the index of the node
+   * @param i the position of the child, from <code>0</code> to <code>getChildCount(node) - 1</code>
+   * @return the index of the child, a node which is immediately dominated by the node
+   */
+  public int getChild(int node, int i) {
+    return children[childOffsets[node] + graph.checkPosition(i, getChildCount(node))];
+  }
+
+  /**
+   * @param node the index of the node
+   * @return a copy of the indexes of the nodes which are immediately dominated by the node
+   */
+  public int[] getChildren(int node) {
+    return Arrays.copyOfRange(children, childOffsets[node], childOffsets[node + 1]);
+  }
+
+  /**
+   * @return a copy of the indexes of the nodes which are not dominated by another node
+   */
+  public int[] getRoots() {
+    return roots.clone();
+  }
+
+}
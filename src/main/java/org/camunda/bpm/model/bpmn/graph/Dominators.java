@@ -0,0 +1,204 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import java.util.Arrays;
+
+/**
+ * <p>Computes the immediate dominators or post-dominators of the nodes of a
+ * {@link FlowGraph} with the iterative algorithm of Cooper, Harvey and Kennedy. The
+ * nodes are visited in reverse postorder until no immediate dominator changes, which
+ * takes a single pass plus a check for acyclic graphs and a few passes for loops.</p>
+ *
+ * <p>A virtual root precedes all nodes without predecessors, or follows all nodes
+ * without successors for post-dominators. Nodes which cannot be reached from these
+ * nodes, like the nodes of a loop without entry, are connected to the virtual root as
+ * well. The immediate dominator of a node which is only dominated by the virtual root
+ * is <code>-1</code>.</p>
+ */
+class Dominators {
+
+  static final int ROOT = -1;
+  protected static final int UNDEFINED = -2;
+
+  /**
+   * @param graph the graph
+   * @param backEdges the edges to ignore by successor position or null to use all edges
+   * @param reverse true to compute the immediate post-dominators
+   * @return the immediate dominator of each node
+   */
+  static int[] immediateDominators(FlowGraph graph, boolean[] backEdges, boolean reverse) {
+    int nodeCount = graph.getNodeCount();
+    int[] offsets = reverse ? graph.successorOffsets : graph.predecessorOffsets;
+    int[] neighbors = reverse ? graph.successors : graph.predecessors;
+
+    boolean[] rootChildren = new boolean[nodeCount];
+    int[] order = reversePostorder(graph, backEdges, reverse, rootChildren);
+    // the position of each node in the order, the virtual root has position 0
+    int[] positions = new int[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      positions[order[i]] = i + 1;
+    }
+
+    int[] dominators = new int[nodeCount];
+    Arrays.fill(dominators, UNDEFINED);
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int node : order) {
+        int dominator = rootChildren[node] ? ROOT : UNDEFINED;
+        for (int position = offsets[node]; position < offsets[node + 1]; position++) {
+          int edge = reverse ? position : graph.predecessorEdges[position];
+          int neighbor = neighbors[position];
+          if ((backEdges == null || !backEdges[edge]) && dominators[neighbor] != UNDEFINED) {
+            dominator = dominator == UNDEFINED ? neighbor : intersect(dominators, positions, neighbor, dominator);
+          }
+        }
+        if (dominators[node] != dominator) {
+          dominators[node] = dominator;
+          changed = true;
+        }
+      }
+    }
+    return dominators;
+  }
+
+  /**
+   * @return the common dominator of both nodes which is closest to them
+   */
+  protected static int intersect(int[] dominators, int[] positions, int node, int otherNode) {
+    while (node != otherNode) {
+      while (position(positions, node) > position(positions, otherNode)) {
+        node = dominators[node];
+      }
+      while (position(positions, otherNode) > position(positions, node)) {
+        otherNode = dominators[otherNode];
+      }
+    }
+    return node;
+  }
+
+  protected static int position(int[] positions, int node) {
+    return node == ROOT ? 0 : positions[node];
+  }
+
+  /**
+   * Orders the nodes by an iterative depth first search from the virtual root.
+   *
+   * @param rootChildren receives the nodes which are connected to the virtual root
+   * @return the nodes in reverse postorder
+   */
+  protected static int[] reversePostorder(FlowGraph graph, boolean[] backEdges, boolean reverse, boolean[] rootChildren) {
+    int nodeCount = graph.getNodeCount();
+    int[] offsets = reverse ? graph.successorOffsets : graph.predecessorOffsets;
+    int[] forwardOffsets = reverse ? graph.predecessorOffsets : graph.successorOffsets;
+    int[] forwardNeighbors = reverse ? graph.predecessors : graph.successors;
+
+    for (int node = 0; node < nodeCount; node++) {
+      rootChildren[node] = true;
+      for (int position = offsets[node]; position < offsets[node + 1]; position++) {
+        if (backEdges == null || !backEdges[reverse ? position : graph.predecessorEdges[position]]) {
+          rootChildren[node] = false;
+          break;
+        }
+      }
+    }
+
+    int[] order = new int[nodeCount];
+    int orderSize = nodeCount;
+    boolean[] visited = new boolean[nodeCount];
+    int[] stack = new int[nodeCount];
+    int[] stackPositions = new int[nodeCount];
+    // first the nodes without predecessors, then nodes which are still not visited
+    for (int pass = 0; pass < 2; pass++) {
+      for (int root = 0; root < nodeCount; root++) {
+        if (visited[root] || (pass == 0 && !rootChildren[root])) {
+          continue;
+        }
+        rootChildren[root] = true;
+        visited[root] = true;
+        int stackSize = 0;
+        stack[stackSize] = root;
+        stackPositions[stackSize++] = forwardOffsets[root];
+        while (stackSize > 0) {
+          int node = stack[stackSize - 1];
+          int position = stackPositions[stackSize - 1];
+          if (position < forwardOffsets[node + 1]) {
+            stackPositions[stackSize - 1]++;
+            int edge = reverse ? graph.predecessorEdges[position] : position;
+            int next = forwardNeighbors[position];
+            if ((backEdges == null || !backEdges[edge]) && !visited[next]) {
+              visited[next] = true;
+              stack[stackSize] = next;
+              stackPositions[stackSize++] = forwardOffsets[next];
+            }
+          }
+          else {
+            stackSize--;
+            order[--orderSize] = node;
+          }
+        }
+      }
+    }
+    return order;
+  }
+
+  /**
+   * @param graph the graph
+   * @param backEdges the back edges by successor position or null if the graph is acyclic
+   * @param reverse true to order the nodes against the direction of the edges
+   * @return the nodes in topological order, ignoring the back edges
+   */
+  static int[] topologicalOrder(FlowGraph graph, boolean[] backEdges, boolean reverse) {
+    int nodeCount = graph.getNodeCount();
+    int[] degrees = new int[nodeCount];
+    for (int node = 0; node < nodeCount; node++) {
+      for (int edge = graph.successorOffsets[node]; edge < graph.successorOffsets[node + 1]; edge++) {
+        if (backEdges == null || !backEdges[edge]) {
+          degrees[reverse ? node : graph.successors[edge]]++;
+        }
+      }
+    }
+
+    int[] order = new int[nodeCount];
+    int head = 0;
+    int tail = 0;
+    for (int node = 0; node < nodeCount; node++) {
+      if (degrees[node] == 0) {
+        order[tail++] = node;
+      }
+    }
+    while (head < tail) {
+      int node = order[head++];
+      if (reverse) {
+        for (int position = graph.predecessorOffsets[node]; position < graph.predecessorOffsets[node + 1]; position++) {
+          if ((backEdges == null || !backEdges[graph.predecessorEdges[position]]) && --degrees[graph.predecessors[position]] == 0) {
+            order[tail++] = graph.predecessors[position];
+          }
+        }
+      }
+      else {
+        for (int edge = graph.successorOffsets[node]; edge < graph.successorOffsets[node + 1]; edge++) {
+          if ((backEdges == null || !backEdges[edge]) && --degrees[graph.successors[edge]] == 0) {
+            order[tail++] = graph.successors[edge];
+          }
+        }
+      }
+    }
+    if (tail < nodeCount) {
+      throw new IllegalArgumentException("The graph " + graph + " is cyclic without the back edges");
+    }
+    return order;
+  }
+
+}
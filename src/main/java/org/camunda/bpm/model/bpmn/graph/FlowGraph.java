@@ -0,0 +1,395 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
+import org.camunda.bpm.model.bpmn.instance.BaseElement;
+import org.camunda.bpm.model.bpmn.instance.FlowElement;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+import org.camunda.bpm.model.xml.ModelInstance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The sequence flow graph of a process or sub process. The flow nodes which are
+ * direct children of the container are numbered from <code>0</code> to
+ * <code>getNodeCount() - 1</code> in document order, the successors and predecessors
+ * of each node are stored in compressed sparse row arrays.</p>
+ *
+ * <p>Neighbors are iterated without allocation:</p>
+ *
+ * <pre>
+ * for (int i = 0; i &lt; graph.getSuccessorCount(node); i++) {
+ *   int successor = graph.getSuccessor(node, i);
+ * }
+ * </pre>
+ *
+ * <p>The edges are the sequence flows of the container, resolved by their source and
+ * target references. Sequence flows whose source or target is not a flow node of the
+ * container are ignored. A graph does not change after it was built, it is a snapshot
+ * of the model and can be shared between threads. The graph of a container is cached
+ * by its model until the model is changed.</p>
+ */
+public class FlowGraph {
+
+  protected static final String FLOW_GRAPH = "flowGraph";
+
+  protected final BaseElement container;
+  protected final FlowNode[] nodes;
+  protected final Map<FlowNode, Integer> nodeIndexes;
+  protected final Map<String, Integer> nodeIndexesById;
+
+  protected final int[] successorOffsets;
+  protected final int[] successors;
+  protected final SequenceFlow[] successorFlows;
+
+  protected final int[] predecessorOffsets;
+  protected final int[] predecessors;
+  protected final SequenceFlow[] predecessorFlows;
+  /** the successor position of the edge at each predecessor position */
+  protected final int[] predecessorEdges;
+
+  protected StronglyConnectedComponents components;
+  protected Reachability reachability;
+  protected LoopAnalysis loopAnalysis;
+  protected GatewayPairing gatewayPairing;
+  protected DominatorTree dominatorTree;
+  protected DominatorTree postDominatorTree;
+
+  /**
+   * @param process the process
+   * @return the sequence flow graph of the process
+   */
+  public static FlowGraph of(Process process) {
+    return of(process, process.getFlowElements());
+  }
+
+  /**
+   * @param subProcess the sub process
+   * @return the sequence flow graph of the sub process
+   */
+  public static FlowGraph of(SubProcess subProcess) {
+    return of(subProcess, subProcess.getFlowElements());
+  }
+
+  /**
+   * @param process the process
+   * @return the graphs of the process and of all its embedded and event sub processes,
+   * a scope before the sub processes it contains
+   */
+  public static List<FlowGraph> ofAllScopes(Process process) {
+    List<FlowGraph> graphs = new ArrayList<FlowGraph>();
+    graphs.add(of(process));
+    Deque<SubProcess> subProcesses = new ArrayDeque<SubProcess>();
+    addSubProcesses(process.getFlowElements(), subProcesses);
+    while (!subProcesses.isEmpty()) {
+      SubProcess subProcess = subProcesses.poll();
+      graphs.add(of(subProcess));
+      addSubProcesses(subProcess.getFlowElements(), subProcesses);
+    }
+    return graphs;
+  }
+
+  protected static void addSubProcesses(Collection<FlowElement> flowElements, Deque<SubProcess> subProcesses) {
+    for (FlowElement flowElement : flowElements) {
+      if (flowElement instanceof SubProcess) {
+        subProcesses.add((SubProcess) flowElement);
+      }
+    }
+  }
+
+  protected static FlowGraph of(BaseElement container, Collection<FlowElement> flowElements) {
+    ModelInstance modelInstance = container.getModelInstance();
+    BpmnModelInstanceImpl bpmnModelInstance = modelInstance instanceof BpmnModelInstanceImpl
+      ? (BpmnModelInstanceImpl) modelInstance : null;
+    long stamp = BpmnModelInstanceImpl.UNTRACKED;
+    if (bpmnModelInstance != null) {
+      stamp = bpmnModelInstance.getModificationStamp();
+      FlowGraph cachedGraph = (FlowGraph) bpmnModelInstance.getCachedResult(container, FLOW_GRAPH);
+      if (cachedGraph != null) {
+        return cachedGraph;
+      }
+    }
+
+    FlowGraph graph = new FlowGraph(container, flowElements);
+
+    if (bpmnModelInstance != null) {
+      bpmnModelInstance.cacheResult(container, FLOW_GRAPH, graph, stamp);
+    }
+    return graph;
+  }
+
+  protected FlowGraph(BaseElement container, Collection<FlowElement> flowElements) {
+    this.container = container;
+
+    List<FlowNode> nodeList = new ArrayList<FlowNode>();
+    List<SequenceFlow> flowList = new ArrayList<SequenceFlow>();
+    for (FlowElement flowElement : flowElements) {
+      if (flowElement instanceof FlowNode) {
+        nodeList.add((FlowNode) flowElement);
+      }
+      else if (flowElement instanceof SequenceFlow) {
+        flowList.add((SequenceFlow) flowElement);
+      }
+    }
+
+    int nodeCount = nodeList.size();
+    nodes = nodeList.toArray(new FlowNode[nodeCount]);
+    nodeIndexes = new HashMap<FlowNode, Integer>(nodeCount * 2);
+    nodeIndexesById = new HashMap<String, Integer>(nodeCount * 2);
+    for (int i = 0; i < nodeCount; i++) {
+      nodeIndexes.put(nodes[i], i);
+      String id = nodes[i].getId();
+      if (id != null) {
+        nodeIndexesById.put(id, i);
+      }
+    }
+
+    // resolve the edges, ignoring flows which leave the container
+    int[] sources = new int[flowList.size()];
+    int[] targets = new int[flowList.size()];
+    SequenceFlow[] flows = new SequenceFlow[flowList.size()];
+    int edgeCount = 0;
+    for (SequenceFlow flow : flowList) {
+      int source = indexOf(flow.getSource());
+      int target = indexOf(flow.getTarget());
+      if (source >= 0 && target >= 0) {
+        sources[edgeCount] = source;
+        targets[edgeCount] = target;
+        flows[edgeCount] = flow;
+        edgeCount++;
+      }
+    }
+
+    successorOffsets = new int[nodeCount + 1];
+    successors = new int[edgeCount];
+    successorFlows = new SequenceFlow[edgeCount];
+    int[] successorPositions = new int[edgeCount];
+    fillRows(sources, targets, flows, edgeCount, successorOffsets, successors, successorFlows, successorPositions);
+
+    predecessorOffsets = new int[nodeCount + 1];
+    predecessors = new int[edgeCount];
+    predecessorFlows = new SequenceFlow[edgeCount];
+    int[] predecessorPositions = new int[edgeCount];
+    fillRows(targets, sources, flows, edgeCount, predecessorOffsets, predecessors, predecessorFlows, predecessorPositions);
+
+    predecessorEdges = new int[edgeCount];
+    for (int i = 0; i < edgeCount; i++) {
+      predecessorEdges[predecessorPositions[i]] = successorPositions[i];
+    }
+  }
+
+  /**
+   * Sorts the edges by their row node, keeping the document order of the edges of a row,
+   * and records the position of each edge in its row.
+   */
+  protected static void fillRows(int[] rowNodes, int[] columnNodes, SequenceFlow[] flows, int edgeCount,
+                                 int[] offsets, int[] columns, SequenceFlow[] rowFlows, int[] edgePositions) {
+    for (int i = 0; i < edgeCount; i++) {
+      offsets[rowNodes[i] + 1]++;
+    }
+    for (int i = 1; i < offsets.length; i++) {
+      offsets[i] += offsets[i - 1];
+    }
+    int[] positions = Arrays.copyOf(offsets, offsets.length - 1);
+    for (int i = 0; i < edgeCount; i++) {
+      int position = positions[rowNodes[i]]++;
+      columns[position] = columnNodes[i];
+      rowFlows[position] = flows[i];
+      edgePositions[i] = position;
+    }
+  }
+
+  /**
+   * @return the process or sub process of this graph
+   */
+  public BaseElement getContainer() {
+    return container;
+  }
+
+  public int getNodeCount() {
+    return nodes.length;
+  }
+
+  public int getEdgeCount() {
+    return successors.length;
+  }
+
+  /**
+   * @param node the index of the node
+   * @return the flow node
+   */
+  public FlowNode getNode(int node) {
+    return nodes[node];
+  }
+
+  /**
+   * @param flowNode the flow node
+   * @return the index of the flow node or -1 if it is not a node of this graph
+   */
+  public int indexOf(FlowNode flowNode) {
+    Integer index = flowNode != null ? nodeIndexes.get(flowNode) : null;
+    return index != null ? index : -1;
+  }
+
+  /**
+   * @param id the id of the flow node
+   * @return the index of the flow node or -1 if it is not a node of this graph
+   */
+  public int indexOf(String id) {
+    Integer index = id != null ? nodeIndexesById.get(id) : null;
+    return index != null ? index : -1;
+  }
+
+  public int getSuccessorCount(int node) {
+    return successorOffsets[node + 1] - successorOffsets[node];
+  }
+
+  /**
+   * @param node the index of the node
+   * @param i the position of the successor, from <code>0</code> to <code>getSuccessorCount(node) - 1</code>
+   * @return the index of the successor
+   */
+  public int getSuccessor(int node, int i) {
+    return successors[successorOffsets[node] + checkPosition(i, getSuccessorCount(node))];
+  }
+
+  /**
+   * @param node the index of the node
+   * @param i the position of the successor
+   * @return the sequence flow to the successor
+   */
+  public SequenceFlow getSuccessorFlow(int node, int i) {
+    return successorFlows[successorOffsets[node] + checkPosition(i, getSuccessorCount(node))];
+  }
+
+  /**
+   * @param node the index of the node
+   * @return a copy of the indexes of the successors
+   */
+  public int[] getSuccessors(int node) {
+    return Arrays.copyOfRange(successors, successorOffsets[node], successorOffsets[node + 1]);
+  }
+
+  public int getPredecessorCount(int node) {
+    return predecessorOffsets[node + 1] - predecessorOffsets[node];
+  }
+
+  /**
+   * @param node the index of the node
+   * @param i the position of the predecessor, from <code>0</code> to <code>getPredecessorCount(node) - 1</code>
+   * @return the index of the predecessor
+   */
+  public int getPredecessor(int node, int i) {
+    return predecessors[predecessorOffsets[node] + checkPosition(i, getPredecessorCount(node))];
+  }
+
+  /**
+   * @param node the index of the node
+   * @param i the position of the predecessor
+   * @return the sequence flow from the predecessor
+   */
+  public SequenceFlow getPredecessorFlow(int node, int i) {
+    return predecessorFlows[predecessorOffsets[node] + checkPosition(i, getPredecessorCount(node))];
+  }
+
+  /**
+   * @param node the index of the node
+   * @return a copy of the indexes of the predecessors
+   */
+  public int[] getPredecessors(int node) {
+    return Arrays.copyOfRange(predecessors, predecessorOffsets[node], predecessorOffsets[node + 1]);
+  }
+
+  /**
+   * @return the strongly connected components of this graph, computed on first use
+   */
+  public synchronized StronglyConnectedComponents getComponents() {
+    if (components == null) {
+      components = new StronglyConnectedComponents(this);
+    }
+    return components;
+  }
+
+  /**
+   * @return the reachability of the nodes of this graph, computed on first use
+   */
+  public synchronized Reachability getReachability() {
+    if (reachability == null) {
+      reachability = new Reachability(this, getComponents());
+    }
+    return reachability;
+  }
+
+  /**
+   * @return the loops of this graph, computed on first use
+   */
+  public synchronized LoopAnalysis getLoopAnalysis() {
+    if (loopAnalysis == null) {
+      loopAnalysis = new LoopAnalysis(this);
+    }
+    return loopAnalysis;
+  }
+
+  /**
+   * @return the pairs of splitting and joining nodes of this graph, computed on first use
+   */
+  public synchronized GatewayPairing getGatewayPairing() {
+    if (gatewayPairing == null) {
+      gatewayPairing = new GatewayPairing(this, getLoopAnalysis());
+    }
+    return gatewayPairing;
+  }
+
+  /**
+   * @return the dominator tree of this graph, computed on first use
+   */
+  public synchronized DominatorTree getDominatorTree() {
+    if (dominatorTree == null) {
+      dominatorTree = new DominatorTree(this, false);
+    }
+    return dominatorTree;
+  }
+
+  /**
+   * @return the post-dominator tree of this graph, computed on first use
+   */
+  public synchronized DominatorTree getPostDominatorTree() {
+    if (postDominatorTree == null) {
+      postDominatorTree = new DominatorTree(this, true);
+    }
+    return postDominatorTree;
+  }
+
+  protected int checkPosition(int i, int count) {
+    if (i < 0 || i >= count) {
+      throw new IndexOutOfBoundsException("Position " + i + " of " + count + " neighbors");
+    }
+    return i;
+  }
+
+  public String toString() {
+    return "FlowGraph[container=" + container.getId() + ", nodes=" + nodes.length + ", edges=" + successors.length + "]";
+  }
+
+}
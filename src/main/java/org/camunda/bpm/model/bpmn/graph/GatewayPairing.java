@@ -0,0 +1,180 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Gateway;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+
+import java.util.Arrays;
+
+/**
+ * <p>Matches the splitting nodes of a process or sub process to their joining nodes.
+ * A split is a node with more than one outgoing sequence flow, a join a node with more
+ * than one incoming sequence flow, usually both are gateways. A split and a join are a
+ * pair if the join is the immediate post-dominator of the split and the split the
+ * immediate dominator of the join, so every path from the split leads to the join and
+ * every path to the join comes from the split. The back edges of loops are ignored, a
+ * loop is no split/join block.</p>
+ *
+ * <p>The pairs are computed in almost linear time when the analysis is created, all
+ * lookups afterwards take constant time.</p>
+ */
+public class GatewayPairing {
+
+  protected final FlowGraph graph;
+  protected final int[] joins;
+  protected final int[] splits;
+  protected final int[] lastGateways;
+  protected int pairCount = 0;
+
+  /**
+   * @param process the process
+   * @return the pairs of splits and joins of the process, without sub processes
+   */
+  public static GatewayPairing of(Process process) {
+    return FlowGraph.of(process).getGatewayPairing();
+  }
+
+  /**
+   * @param subProcess the sub process
+   * @return the pairs of splits and joins of the sub process, without nested sub processes
+   */
+  public static GatewayPairing of(SubProcess subProcess) {
+    return FlowGraph.of(subProcess).getGatewayPairing();
+  }
+
+  public GatewayPairing(FlowGraph graph, LoopAnalysis loopAnalysis) {
+    this.graph = graph;
+    int nodeCount = graph.getNodeCount();
+    boolean[] backEdges = loopAnalysis.backEdgeFlags;
+
+    int[] outDegrees = new int[nodeCount];
+    int[] inDegrees = new int[nodeCount];
+    int[] lastPredecessors = new int[nodeCount];
+    for (int node = 0; node < nodeCount; node++) {
+      for (int edge = graph.successorOffsets[node]; edge < graph.successorOffsets[node + 1]; edge++) {
+        if (!backEdges[edge]) {
+          outDegrees[node]++;
+          inDegrees[graph.successors[edge]]++;
+          lastPredecessors[graph.successors[edge]] = node;
+        }
+      }
+    }
+
+    int[] dominators = Dominators.immediateDominators(graph, backEdges, false);
+    int[] postDominators = Dominators.immediateDominators(graph, backEdges, true);
+    joins = new int[nodeCount];
+    splits = new int[nodeCount];
+    Arrays.fill(joins, -1);
+    Arrays.fill(splits, -1);
+    for (int node = 0; node < nodeCount; node++) {
+      int join = postDominators[node];
+      if (outDegrees[node] > 1 && join >= 0 && inDegrees[join] > 1 && dominators[join] == node) {
+        joins[node] = join;
+        splits[join] = node;
+        pairCount++;
+      }
+    }
+
+    // the last gateway before a join is the last gateway before its split or the split itself
+    lastGateways = new int[nodeCount];
+    for (int node : Dominators.topologicalOrder(graph, backEdges, false)) {
+      int previousNode = -1;
+      if (inDegrees[node] == 1) {
+        previousNode = lastPredecessors[node];
+      }
+      else if (inDegrees[node] > 1) {
+        previousNode = splits[node];
+      }
+      if (previousNode < 0) {
+        lastGateways[node] = -1;
+      }
+      else if (graph.getNode(previousNode) instanceof Gateway) {
+        lastGateways[node] = previousNode;
+      }
+      else {
+        lastGateways[node] = lastGateways[previousNode];
+      }
+    }
+  }
+
+  public FlowGraph getGraph() {
+    return graph;
+  }
+
+  /**
+   * @return the number of pairs of splits and joins
+   */
+  public int getPairCount() {
+    return pairCount;
+  }
+
+  /**
+   * @param split the index of the split
+   * @return the index of the matching join or -1 if the node is no split or has no matching join
+   */
+  public int getJoin(int split) {
+    return joins[split];
+  }
+
+  /**
+   * @param join the index of the join
+   * @return the index of the matching split or -1 if the node is no join or has no matching split
+   */
+  public int getSplit(int join) {
+    return splits[join];
+  }
+
+  /**
+   * @param split the split
+   * @return the matching join or null if the node is no split of this scope or has no matching join
+   */
+  public FlowNode getJoin(FlowNode split) {
+    int node = graph.indexOf(split);
+    return node >= 0 && joins[node] >= 0 ? graph.getNode(joins[node]) : null;
+  }
+
+  /**
+   * @param join the join
+   * @return the matching split or null if the node is no join of this scope or has no matching split
+   */
+  public FlowNode getSplit(FlowNode join) {
+    int node = graph.indexOf(join);
+    return node >= 0 && splits[node] >= 0 ? graph.getNode(splits[node]) : null;
+  }
+
+  /**
+   * @param node the index of the node
+   * @return the index of the last gateway before the node or -1 if there is none
+   */
+  public int getLastGateway(int node) {
+    return lastGateways[node];
+  }
+
+  /**
+   * <p>Returns the last gateway before a flow node. Starting at the node, the sequence
+   * flows are followed backwards as long as a node has a single incoming flow. A join
+   * is skipped by continuing at its matching split.</p>
+   *
+   * @param flowNode the flow node
+   * @return the last gateway before the flow node or null if there is none or it is
+   * ambiguous
+   */
+  public Gateway getLastGateway(FlowNode flowNode) {
+    int node = graph.indexOf(flowNode);
+    return node >= 0 && lastGateways[node] >= 0 ? (Gateway) graph.getNode(lastGateways[node]) : null;
+  }
+
+}
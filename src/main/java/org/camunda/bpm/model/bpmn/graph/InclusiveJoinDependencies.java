@@ -0,0 +1,271 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.InclusiveGateway;
+import org.camunda.bpm.model.bpmn.instance.Process;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>The upstream dependencies of the converging inclusive gateways of a model. An
+ * inclusive join waits as long as a token can still arrive at one of its incoming
+ * sequence flows. For each join, this analysis computes once the flow nodes and
+ * sequence flows of its scope which can reach the join without passing it again, so
+ * an engine does not have to search the graph on every arriving token.</p>
+ *
+ * <p>The dependencies are stored as bit sets over the flow nodes and sequence flows of
+ * the scope of each join, identified by their ids. The structure does not refer to the
+ * model and can be serialized and stored next to it. All lookups take constant time.</p>
+ */
+public class InclusiveJoinDependencies implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  protected final String[] nodeIds;
+  protected final String[] flowIds;
+
+  protected final String[] joinIds;
+  /** the index of the first node and flow of the scope of each join */
+  protected final int[] nodeOffsets;
+  protected final int[] flowOffsets;
+  /** the number of nodes and flows of the scope of each join */
+  protected final int[] nodeCounts;
+  protected final int[] flowCounts;
+  /** the upstream nodes and flows of each join, relative to the offsets of its scope */
+  protected final long[][] nodeSets;
+  protected final long[][] flowSets;
+
+  protected transient Map<String, Integer> nodeIndexes;
+  protected transient Map<String, Integer> flowIndexes;
+  protected transient Map<String, Integer> joinIndexes;
+
+  /**
+   * @param modelInstance the model
+   * @return the dependencies of all inclusive joins of all processes and sub processes of the model
+   */
+  public static InclusiveJoinDependencies of(BpmnModelInstance modelInstance) {
+    List<FlowGraph> graphs = new ArrayList<FlowGraph>();
+    for (Process process : modelInstance.getModelElementsByType(Process.class)) {
+      graphs.addAll(FlowGraph.ofAllScopes(process));
+    }
+    return new InclusiveJoinDependencies(graphs);
+  }
+
+  /**
+   * @param process the process
+   * @return the dependencies of the inclusive joins of the process and its sub processes
+   */
+  public static InclusiveJoinDependencies of(Process process) {
+    return new InclusiveJoinDependencies(FlowGraph.ofAllScopes(process));
+  }
+
+  public InclusiveJoinDependencies(List<FlowGraph> graphs) {
+    int nodeCount = 0;
+    int flowCount = 0;
+    int joinCount = 0;
+    for (FlowGraph graph : graphs) {
+      nodeCount += graph.getNodeCount();
+      flowCount += graph.getEdgeCount();
+      for (int node = 0; node < graph.getNodeCount(); node++) {
+        if (isJoin(graph, node)) {
+          joinCount++;
+        }
+      }
+    }
+
+    nodeIds = new String[nodeCount];
+    flowIds = new String[flowCount];
+    joinIds = new String[joinCount];
+    nodeOffsets = new int[joinCount];
+    flowOffsets = new int[joinCount];
+    nodeCounts = new int[joinCount];
+    flowCounts = new int[joinCount];
+    nodeSets = new long[joinCount][];
+    flowSets = new long[joinCount][];
+
+    int nodeOffset = 0;
+    int flowOffset = 0;
+    int join = 0;
+    for (FlowGraph graph : graphs) {
+      for (int node = 0; node < graph.getNodeCount(); node++) {
+        nodeIds[nodeOffset + node] = graph.getNode(node).getId();
+      }
+      for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+        flowIds[flowOffset + edge] = graph.successorFlows[edge].getId();
+      }
+
+      int[] stack = new int[graph.getNodeCount()];
+      for (int node = 0; node < graph.getNodeCount(); node++) {
+        if (isJoin(graph, node)) {
+          joinIds[join] = graph.getNode(node).getId();
+          nodeOffsets[join] = nodeOffset;
+          flowOffsets[join] = flowOffset;
+          nodeCounts[join] = graph.getNodeCount();
+          flowCounts[join] = graph.getEdgeCount();
+          nodeSets[join] = new long[words(graph.getNodeCount())];
+          flowSets[join] = new long[words(graph.getEdgeCount())];
+          collectUpstream(graph, node, nodeSets[join], flowSets[join], stack);
+          join++;
+        }
+      }
+      nodeOffset += graph.getNodeCount();
+      flowOffset += graph.getEdgeCount();
+    }
+    createIndexes();
+  }
+
+  protected static boolean isJoin(FlowGraph graph, int node) {
+    return graph.getNode(node) instanceof InclusiveGateway && graph.getPredecessorCount(node) > 1;
+  }
+
+  /**
+   * Searches the predecessors of the join backwards without passing the join, every
+   * incoming sequence flow of a found node or of the join is a dependency.
+   */
+  protected static void collectUpstream(FlowGraph graph, int join, long[] nodeSet, long[] flowSet, int[] stack) {
+    int stackSize = 0;
+    stack[stackSize++] = join;
+    while (stackSize > 0) {
+      int node = stack[--stackSize];
+      for (int position = graph.predecessorOffsets[node]; position < graph.predecessorOffsets[node + 1]; position++) {
+        int edge = graph.predecessorEdges[position];
+        flowSet[edge >>> 6] |= 1L << edge;
+        int predecessor = graph.predecessors[position];
+        if (predecessor != join && (nodeSet[predecessor >>> 6] & 1L << predecessor) == 0) {
+          nodeSet[predecessor >>> 6] |= 1L << predecessor;
+          stack[stackSize++] = predecessor;
+        }
+      }
+    }
+  }
+
+  protected static int words(int bits) {
+    return (bits + 63) >>> 6;
+  }
+
+  protected void createIndexes() {
+    nodeIndexes = createIndex(nodeIds);
+    flowIndexes = createIndex(flowIds);
+    joinIndexes = createIndex(joinIds);
+  }
+
+  protected static Map<String, Integer> createIndex(String[] ids) {
+    Map<String, Integer> indexes = new HashMap<String, Integer>(ids.length * 2);
+    for (int i = 0; i < ids.length; i++) {
+      if (ids[i] != null) {
+        indexes.put(ids[i], i);
+      }
+    }
+    return indexes;
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    createIndexes();
+  }
+
+  /**
+   * @return the ids of the inclusive joins
+   */
+  public List<String> getJoinIds() {
+    return Collections.unmodifiableList(Arrays.asList(joinIds));
+  }
+
+  /**
+   * @param id the id of a flow node
+   * @return true if the flow node is an inclusive gateway with more than one incoming sequence flow
+   */
+  public boolean isJoin(String id) {
+    return joinIndexes.containsKey(id);
+  }
+
+  /**
+   * @param joinId the id of the inclusive join
+   * @param nodeId the id of a flow node
+   * @return true if a token at the flow node can reach the join without passing it
+   */
+  public boolean hasUpstreamNode(String joinId, String nodeId) {
+    int join = getJoinIndex(joinId);
+    Integer node = nodeIndexes.get(nodeId);
+    return node != null && contains(nodeSets[join], node - nodeOffsets[join], nodeCounts[join]);
+  }
+
+  /**
+   * @param joinId the id of the inclusive join
+   * @param flowId the id of a sequence flow
+   * @return true if a token on the sequence flow can reach the join without passing it
+   */
+  public boolean hasUpstreamFlow(String joinId, String flowId) {
+    int join = getJoinIndex(joinId);
+    Integer flow = flowIndexes.get(flowId);
+    return flow != null && contains(flowSets[join], flow - flowOffsets[join], flowCounts[join]);
+  }
+
+  /**
+   * @param joinId the id of the inclusive join
+   * @return the ids of the flow nodes which can reach the join without passing it
+   */
+  public Set<String> getUpstreamNodeIds(String joinId) {
+    int join = getJoinIndex(joinId);
+    return getIds(nodeSets[join], nodeIds, nodeOffsets[join]);
+  }
+
+  /**
+   * @param joinId the id of the inclusive join
+   * @return the ids of the sequence flows which can reach the join without passing it
+   */
+  public Set<String> getUpstreamFlowIds(String joinId) {
+    int join = getJoinIndex(joinId);
+    return getIds(flowSets[join], flowIds, flowOffsets[join]);
+  }
+
+  protected int getJoinIndex(String joinId) {
+    Integer join = joinIndexes.get(joinId);
+    if (join == null) {
+      throw new IllegalArgumentException("No inclusive join with id " + joinId);
+    }
+    return join;
+  }
+
+  protected static boolean contains(long[] set, int bit, int size) {
+    return bit >= 0 && bit < size && (set[bit >>> 6] & 1L << bit) != 0;
+  }
+
+  protected static Set<String> getIds(long[] set, String[] ids, int offset) {
+    Set<String> result = new LinkedHashSet<String>();
+    for (int word = 0; word < set.length; word++) {
+      long bits = set[word];
+      while (bits != 0) {
+        int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+        if (ids[offset + bit] != null) {
+          result.add(ids[offset + bit]);
+        }
+        bits &= bits - 1;
+      }
+    }
+    return result;
+  }
+
+}
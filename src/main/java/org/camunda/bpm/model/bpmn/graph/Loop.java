@@ -0,0 +1,128 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A loop found by a {@link LoopAnalysis}: a set of flow nodes which can reach each
+ * other, the entry nodes of the loop and the back edges which lead from the loop to
+ * its entries. Loops nested in this loop are cycles which remain without the back
+ * edges of this loop.</p>
+ */
+public class Loop {
+
+  protected final FlowGraph graph;
+  protected final Loop parent;
+  protected final int depth;
+  protected final int[] nodes;
+  protected int[] entries;
+  protected final List<SequenceFlow> backEdges = new ArrayList<SequenceFlow>();
+  protected final List<Loop> children = new ArrayList<Loop>();
+
+  public Loop(FlowGraph graph, Loop parent, int[] nodes) {
+    this.graph = graph;
+    this.parent = parent;
+    this.depth = parent != null ? parent.depth + 1 : 1;
+    this.nodes = nodes;
+    if (parent != null) {
+      parent.children.add(this);
+    }
+  }
+
+  public FlowGraph getGraph() {
+    return graph;
+  }
+
+  /**
+   * @return the loop which contains this loop or null if this is an outermost loop
+   */
+  public Loop getParent() {
+    return parent;
+  }
+
+  /**
+   * @return the loops nested directly in this loop
+   */
+  public List<Loop> getChildren() {
+    return Collections.unmodifiableList(children);
+  }
+
+  /**
+   * @return the nesting depth of this loop, starting with 1 for an outermost loop
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @return a copy of the indexes of the nodes of this loop, including the nodes of
+   * nested loops, in ascending order
+   */
+  public int[] getNodes() {
+    return nodes.clone();
+  }
+
+  /**
+   * @param node the index of the node
+   * @return true if the node is part of this loop
+   */
+  public boolean contains(int node) {
+    return Arrays.binarySearch(nodes, node) >= 0;
+  }
+
+  /**
+   * @return a copy of the indexes of the entry nodes of this loop in ascending order
+   */
+  public int[] getEntries() {
+    return entries.clone();
+  }
+
+  /**
+   * @return the nodes of this loop which can be entered from outside of the loop. If the
+   * loop cannot be entered, the node with the lowest index is its entry.
+   */
+  public List<FlowNode> getEntryNodes() {
+    List<FlowNode> entryNodes = new ArrayList<FlowNode>(entries.length);
+    for (int entry : entries) {
+      entryNodes.add(graph.getNode(entry));
+    }
+    return entryNodes;
+  }
+
+  public List<FlowNode> getFlowNodes() {
+    List<FlowNode> flowNodes = new ArrayList<FlowNode>(nodes.length);
+    for (int node : nodes) {
+      flowNodes.add(graph.getNode(node));
+    }
+    return flowNodes;
+  }
+
+  /**
+   * @return the sequence flows from the nodes of this loop to its entries
+   */
+  public List<SequenceFlow> getBackEdges() {
+    return Collections.unmodifiableList(backEdges);
+  }
+
+  public String toString() {
+    return "Loop[entries=" + getEntryNodes() + ", nodes=" + nodes.length + ", depth=" + depth + "]";
+  }
+
+}
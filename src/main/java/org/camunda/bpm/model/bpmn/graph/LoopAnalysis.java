@@ -0,0 +1,276 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * <p>Finds the loops of the sequence flows of a process or sub process and how they
+ * are nested.</p>
+ *
+ * <p>Each cyclic {@link StronglyConnectedComponents strongly connected component} is a
+ * loop. Its entries are the nodes with a predecessor outside of the component, its
+ * back edges the edges from the component to an entry. Without the back edges, the
+ * cycles which remain in the component are the nested loops, which are found the same
+ * way. Each nesting level takes linear time in the size of the loops of the level.</p>
+ *
+ * <p>The components are searched with an iterative version of Tarjan's algorithm whose
+ * work stacks are primitive arrays, so neither deep chains nor deep nesting can overflow
+ * the call stack.</p>
+ *
+ * <p>Sub processes, including event sub processes, are separate scopes with their own
+ * graph. Use {@link #ofAllScopes(Process)} to analyze a process and all its sub
+ * processes.</p>
+ */
+public class LoopAnalysis {
+
+  protected final FlowGraph graph;
+  protected final List<Loop> loops = new ArrayList<Loop>();
+  protected final Loop[] innermostLoops;
+  protected final List<SequenceFlow> backEdges = new ArrayList<SequenceFlow>();
+  protected final boolean[] backEdgeFlags;
+
+  /**
+   * @param process the process
+   * @return the loops of the sequence flows of the process, without sub processes
+   */
+  public static LoopAnalysis of(Process process) {
+    return FlowGraph.of(process).getLoopAnalysis();
+  }
+
+  /**
+   * @param subProcess the sub process
+   * @return the loops of the sequence flows of the sub process, without nested sub processes
+   */
+  public static LoopAnalysis of(SubProcess subProcess) {
+    return FlowGraph.of(subProcess).getLoopAnalysis();
+  }
+
+  /**
+   * @param process the process
+   * @return the loop analyses of the process and of all its embedded and event sub
+   * processes, a scope before the sub processes it contains
+   */
+  public static List<LoopAnalysis> ofAllScopes(Process process) {
+    List<LoopAnalysis> analyses = new ArrayList<LoopAnalysis>();
+    for (FlowGraph graph : FlowGraph.ofAllScopes(process)) {
+      analyses.add(graph.getLoopAnalysis());
+    }
+    return analyses;
+  }
+
+  public LoopAnalysis(FlowGraph graph) {
+    this.graph = graph;
+    int nodeCount = graph.getNodeCount();
+    innermostLoops = new Loop[nodeCount];
+    backEdgeFlags = new boolean[graph.getEdgeCount()];
+
+    TarjanSearch search = new TarjanSearch(graph);
+    int[] regions = new int[nodeCount];
+    int[] components = new int[nodeCount];
+    boolean[] entryFlags = new boolean[nodeCount];
+    int nextRegion = 1;
+
+    int[] allNodes = new int[nodeCount];
+    for (int node = 0; node < nodeCount; node++) {
+      allNodes[node] = node;
+    }
+    Deque<Region> work = new ArrayDeque<Region>();
+    work.push(new Region(allNodes, null));
+
+    while (!work.isEmpty()) {
+      Region current = work.pop();
+      int region = nextRegion++;
+      for (int node : current.nodes) {
+        regions[node] = region;
+      }
+      int componentCount = search.search(current.nodes, regions, region, backEdgeFlags, components);
+
+      // group the nodes of the region by component, in ascending order
+      int[] offsets = new int[componentCount + 1];
+      for (int node : current.nodes) {
+        offsets[components[node] + 1]++;
+      }
+      for (int i = 1; i <= componentCount; i++) {
+        offsets[i] += offsets[i - 1];
+      }
+      int[] grouped = new int[current.nodes.length];
+      int[] positions = new int[componentCount];
+      System.arraycopy(offsets, 0, positions, 0, componentCount);
+      for (int node : current.nodes) {
+        grouped[positions[components[node]]++] = node;
+      }
+
+      for (int component = 0; component < componentCount; component++) {
+        int size = offsets[component + 1] - offsets[component];
+        int[] loopNodes = new int[size];
+        System.arraycopy(grouped, offsets[component], loopNodes, 0, size);
+        if (isCyclic(loopNodes)) {
+          Loop loop = createLoop(current.parent, loopNodes, regions, region, components, component, entryFlags);
+          work.push(new Region(loopNodes, loop));
+        }
+      }
+    }
+  }
+
+  protected boolean isCyclic(int[] nodes) {
+    if (nodes.length > 1) {
+      return true;
+    }
+    int node = nodes[0];
+    for (int edge = graph.successorOffsets[node]; edge < graph.successorOffsets[node + 1]; edge++) {
+      if (!backEdgeFlags[edge] && graph.successors[edge] == node) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected Loop createLoop(Loop parent, int[] nodes, int[] regions, int region, int[] components, int component, boolean[] entryFlags) {
+    Loop loop = new Loop(graph, parent, nodes);
+    loops.add(loop);
+
+    int entryCount = 0;
+    for (int node : nodes) {
+      innermostLoops[node] = loop;
+      for (int i = 0; i < graph.getPredecessorCount(node); i++) {
+        int predecessor = graph.getPredecessor(node, i);
+        if (regions[predecessor] != region || components[predecessor] != component) {
+          entryFlags[node] = true;
+        }
+      }
+      if (entryFlags[node]) {
+        entryCount++;
+      }
+    }
+    if (entryCount == 0) {
+      // the loop cannot be entered, the sequence flows alone define no entry
+      entryFlags[nodes[0]] = true;
+      entryCount = 1;
+    }
+
+    int[] entries = new int[entryCount];
+    entryCount = 0;
+    for (int node : nodes) {
+      if (entryFlags[node]) {
+        entries[entryCount++] = node;
+      }
+    }
+    loop.entries = entries;
+
+    for (int node : nodes) {
+      for (int edge = graph.successorOffsets[node]; edge < graph.successorOffsets[node + 1]; edge++) {
+        int successor = graph.successors[edge];
+        if (!backEdgeFlags[edge] && entryFlags[successor] && regions[successor] == region && components[successor] == component) {
+          backEdgeFlags[edge] = true;
+          loop.backEdges.add(graph.successorFlows[edge]);
+          backEdges.add(graph.successorFlows[edge]);
+        }
+      }
+    }
+
+    for (int entry : entries) {
+      entryFlags[entry] = false;
+    }
+    return loop;
+  }
+
+  public FlowGraph getGraph() {
+    return graph;
+  }
+
+  /**
+   * @return true if the sequence flows of the scope contain a cycle
+   */
+  public boolean hasLoops() {
+    return !loops.isEmpty();
+  }
+
+  /**
+   * @return all loops, each loop before the loops nested in it
+   */
+  public List<Loop> getLoops() {
+    return Collections.unmodifiableList(loops);
+  }
+
+  /**
+   * @return the loops which are not nested in another loop
+   */
+  public List<Loop> getOutermostLoops() {
+    List<Loop> outermostLoops = new ArrayList<Loop>();
+    for (Loop loop : loops) {
+      if (loop.getParent() == null) {
+        outermostLoops.add(loop);
+      }
+    }
+    return outermostLoops;
+  }
+
+  /**
+   * @param node the index of the node
+   * @return the innermost loop which contains the node or null if the node is not part of a loop
+   */
+  public Loop getInnermostLoop(int node) {
+    return innermostLoops[node];
+  }
+
+  /**
+   * @param flowNode the flow node
+   * @return the innermost loop which contains the flow node or null if it is not part of
+   * a loop of this scope
+   */
+  public Loop getInnermostLoop(FlowNode flowNode) {
+    int node = graph.indexOf(flowNode);
+    return node >= 0 ? innermostLoops[node] : null;
+  }
+
+  /**
+   * @return the back edges of all loops
+   */
+  public List<SequenceFlow> getBackEdges() {
+    return Collections.unmodifiableList(backEdges);
+  }
+
+  /**
+   * @param node the index of the source node
+   * @param i the position of the successor
+   * @return true if the edge to the successor is a back edge of a loop
+   */
+  public boolean isBackEdge(int node, int i) {
+    if (i < 0 || i >= graph.getSuccessorCount(node)) {
+      throw new IndexOutOfBoundsException("Position " + i + " of " + graph.getSuccessorCount(node) + " neighbors");
+    }
+    return backEdgeFlags[graph.successorOffsets[node] + i];
+  }
+
+  protected static class Region {
+
+    protected final int[] nodes;
+    protected final Loop parent;
+
+    public Region(int[] nodes, Loop parent) {
+      this.nodes = nodes;
+      this.parent = parent;
+    }
+  }
+
+}
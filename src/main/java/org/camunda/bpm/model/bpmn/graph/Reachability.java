@@ -0,0 +1,166 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * <p>The transitive closure of a {@link FlowGraph}. A node reaches another node if there
+ * is a path of at least one sequence flow between them, so a node only reaches itself
+ * if it is part of a cycle.</p>
+ *
+ * <p>The reachable nodes are computed once per {@link StronglyConnectedComponents strongly
+ * connected component} as a bitset, since all nodes of a component reach the same
+ * nodes. The components are visited in reverse topological order and the bitsets of
+ * the successor components are combined word by word. Point queries are a single bit
+ * test.</p>
+ */
+public class Reachability {
+
+  protected final FlowGraph graph;
+  protected final StronglyConnectedComponents components;
+  protected final int words;
+
+  /** the nodes of each component and of all components reachable from it */
+  protected final long[] closures;
+
+  /**
+   * @param process the process
+   * @return the reachability of the flow nodes of the process
+   */
+  public static Reachability of(Process process) {
+    return FlowGraph.of(process).getReachability();
+  }
+
+  /**
+   * @param subProcess the sub process
+   * @return the reachability of the flow nodes of the sub process
+   */
+  public static Reachability of(SubProcess subProcess) {
+    return FlowGraph.of(subProcess).getReachability();
+  }
+
+  public Reachability(FlowGraph graph) {
+    this(graph, new StronglyConnectedComponents(graph));
+  }
+
+  public Reachability(FlowGraph graph, StronglyConnectedComponents components) {
+    this.graph = graph;
+    this.components = components;
+    this.words = (graph.getNodeCount() + 63) >>> 6;
+
+    int componentCount = components.getComponentCount();
+    closures = new long[componentCount * words];
+    int[] lastCombined = new int[componentCount];
+    Arrays.fill(lastCombined, -1);
+
+    // successor components have lower numbers, so their closures are already complete
+    for (int component = 0; component < componentCount; component++) {
+      int offset = component * words;
+      for (int i = 0; i < components.getComponentSize(component); i++) {
+        int node = components.getComponentNode(component, i);
+        closures[offset + (node >>> 6)] |= 1L << node;
+
+        for (int j = 0; j < graph.getSuccessorCount(node); j++) {
+          int successorComponent = components.getComponent(graph.getSuccessor(node, j));
+          if (successorComponent != component && lastCombined[successorComponent] != component) {
+            lastCombined[successorComponent] = component;
+            int successorOffset = successorComponent * words;
+            for (int w = 0; w < words; w++) {
+              closures[offset + w] |= closures[successorOffset + w];
+            }
+          }
+        }
+      }
+    }
+  }
+
+  public FlowGraph getGraph() {
+    return graph;
+  }
+
+  public StronglyConnectedComponents getComponents() {
+    return components;
+  }
+
+  /**
+   * @param source the index of the source node
+   * @param target the index of the target node
+   * @return true if a path leads from the source to the target node
+   */
+  public boolean isReachable(int source, int target) {
+    int component = components.getComponent(source);
+    if (component == components.getComponent(target)) {
+      return components.isCyclic(component);
+    }
+    return (closures[component * words + (target >>> 6)] & (1L << target)) != 0;
+  }
+
+  /**
+   * @param source the source node
+   * @param target the target node
+   * @return true if a path leads from the source to the target node, false if there is
+   * no such path or one of the nodes is not part of the graph
+   */
+  public boolean isReachable(FlowNode source, FlowNode target) {
+    int sourceIndex = graph.indexOf(source);
+    int targetIndex = graph.indexOf(target);
+    return sourceIndex >= 0 && targetIndex >= 0 && isReachable(sourceIndex, targetIndex);
+  }
+
+  /**
+   * @param source the index of the source node
+   * @return the indexes of the nodes reachable from the source node
+   */
+  public BitSet getReachableSet(int source) {
+    int component = components.getComponent(source);
+    int offset = component * words;
+    BitSet reachable = new BitSet(graph.getNodeCount());
+    for (int w = 0; w < words; w++) {
+      long word = closures[offset + w];
+      while (word != 0) {
+        int bit = Long.numberOfTrailingZeros(word);
+        reachable.set((w << 6) + bit);
+        word &= word - 1;
+      }
+    }
+    if (!components.isCyclic(component)) {
+      reachable.clear(source);
+    }
+    return reachable;
+  }
+
+  /**
+   * @param source the source node
+   * @return the nodes reachable from the source node in the order of the graph
+   */
+  public List<FlowNode> getReachableNodes(FlowNode source) {
+    List<FlowNode> reachableNodes = new ArrayList<FlowNode>();
+    int sourceIndex = graph.indexOf(source);
+    if (sourceIndex >= 0) {
+      BitSet reachable = getReachableSet(sourceIndex);
+      for (int node = reachable.nextSetBit(0); node >= 0; node = reachable.nextSetBit(node + 1)) {
+        reachableNodes.add(graph.getNode(node));
+      }
+    }
+    return reachableNodes;
+  }
+
+}
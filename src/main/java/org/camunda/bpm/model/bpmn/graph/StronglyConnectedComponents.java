@@ -0,0 +1,125 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import java.util.Arrays;
+
+/**
+ * <p>The strongly connected components of a {@link FlowGraph}. Each node belongs to
+ * exactly one component, the nodes of a component can reach each other. The components
+ * are numbered in reverse topological order: every edge between two components leads
+ * from a component to one with a lower number, so component <code>0</code> has no
+ * successors.</p>
+ *
+ * <p>The components are computed with an iterative version of Tarjan's algorithm in
+ * linear time, without recursion.</p>
+ */
+public class StronglyConnectedComponents {
+
+  protected final FlowGraph graph;
+  protected final int[] components;
+  protected final int[] componentOffsets;
+  protected final int[] componentNodes;
+  protected final boolean[] cyclic;
+
+  public StronglyConnectedComponents(FlowGraph graph) {
+    this.graph = graph;
+    int nodeCount = graph.getNodeCount();
+    components = new int[nodeCount];
+
+    int[] nodes = new int[nodeCount];
+    for (int node = 0; node < nodeCount; node++) {
+      nodes[node] = node;
+    }
+    int componentCount = new TarjanSearch(graph).search(nodes, null, 0, null, components);
+
+    // group the nodes by component
+    componentOffsets = new int[componentCount + 1];
+    componentNodes = new int[nodeCount];
+    for (int node = 0; node < nodeCount; node++) {
+      componentOffsets[components[node] + 1]++;
+    }
+    for (int i = 1; i <= componentCount; i++) {
+      componentOffsets[i] += componentOffsets[i - 1];
+    }
+    int[] positions = Arrays.copyOf(componentOffsets, componentCount);
+    for (int node = 0; node < nodeCount; node++) {
+      componentNodes[positions[components[node]]++] = node;
+    }
+
+    cyclic = new boolean[componentCount];
+    for (int node = 0; node < nodeCount; node++) {
+      int component = components[node];
+      if (componentOffsets[component + 1] - componentOffsets[component] > 1) {
+        cyclic[component] = true;
+      }
+      else {
+        for (int i = 0; i < graph.getSuccessorCount(node); i++) {
+          if (graph.getSuccessor(node, i) == node) {
+            cyclic[component] = true;
+          }
+        }
+      }
+    }
+  }
+
+  public FlowGraph getGraph() {
+    return graph;
+  }
+
+  public int getComponentCount() {
+    return cyclic.length;
+  }
+
+  /**
+   * @param node the index of the node
+   * @return the component of the node
+   */
+  public int getComponent(int node) {
+    return components[node];
+  }
+
+  public int getComponentSize(int component) {
+    return componentOffsets[component + 1] - componentOffsets[component];
+  }
+
+  /**
+   * @param component the component
+   * @param i the position of the node, from <code>0</code> to <code>getComponentSize(component) - 1</code>
+   * @return the index of the node
+   */
+  public int getComponentNode(int component, int i) {
+    if (i < 0 || i >= getComponentSize(component)) {
+      throw new IndexOutOfBoundsException("Position " + i + " of " + getComponentSize(component) + " nodes");
+    }
+    return componentNodes[componentOffsets[component] + i];
+  }
+
+  /**
+   * @param component the component
+   * @return a copy of the indexes of the nodes of the component in ascending order
+   */
+  public int[] getComponentNodes(int component) {
+    return Arrays.copyOfRange(componentNodes, componentOffsets[component], componentOffsets[component + 1]);
+  }
+
+  /**
+   * @param component the component
+   * @return true if the component contains a cycle, i.e. it has more than one node or
+   * its node has an edge to itself
+   */
+  public boolean isCyclic(int component) {
+    return cyclic[component];
+  }
+
+}
@@ -0,0 +1,116 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+/**
+ * <p>An iterative version of Tarjan's algorithm for strongly connected components on
+ * a region of a {@link FlowGraph}. The work stacks are primitive arrays which are
+ * allocated once per graph and reused by every search, so deep chains cannot overflow
+ * the call stack.</p>
+ *
+ * <p>A search only follows edges between the nodes of the region which are not removed.
+ * The components are numbered in reverse topological order.</p>
+ */
+class TarjanSearch {
+
+  protected final FlowGraph graph;
+
+  protected final int[] indexes;
+  protected final int[] lowLinks;
+  protected final boolean[] onStack;
+  protected final int[] stack;
+  protected final int[] callStack;
+  protected final int[] edgePositions;
+
+  TarjanSearch(FlowGraph graph) {
+    this.graph = graph;
+    int nodeCount = graph.getNodeCount();
+    indexes = new int[nodeCount];
+    lowLinks = new int[nodeCount];
+    onStack = new boolean[nodeCount];
+    stack = new int[nodeCount];
+    callStack = new int[nodeCount];
+    edgePositions = new int[nodeCount];
+  }
+
+  /**
+   * @param nodes the nodes of the region
+   * @param regions the region of each node or null if the region contains all nodes
+   * @param region the region to search
+   * @param removedEdges the removed edges by successor position or null if no edge is removed
+   * @param components receives the component of each node of the region
+   * @return the number of components
+   */
+  int search(int[] nodes, int[] regions, int region, boolean[] removedEdges, int[] components) {
+    for (int node : nodes) {
+      indexes[node] = -1;
+    }
+
+    int nextIndex = 0;
+    int stackSize = 0;
+    int componentCount = 0;
+    for (int root : nodes) {
+      if (indexes[root] >= 0) {
+        continue;
+      }
+      indexes[root] = lowLinks[root] = nextIndex++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      callStack[0] = root;
+      edgePositions[0] = graph.successorOffsets[root];
+      int depth = 1;
+
+      while (depth > 0) {
+        int node = callStack[depth - 1];
+        int edge = edgePositions[depth - 1];
+        if (edge < graph.successorOffsets[node + 1]) {
+          edgePositions[depth - 1]++;
+          int successor = graph.successors[edge];
+          if ((removedEdges != null && removedEdges[edge]) || (regions != null && regions[successor] != region)) {
+            continue;
+          }
+          if (indexes[successor] < 0) {
+            indexes[successor] = lowLinks[successor] = nextIndex++;
+            stack[stackSize++] = successor;
+            onStack[successor] = true;
+            callStack[depth] = successor;
+            edgePositions[depth] = graph.successorOffsets[successor];
+            depth++;
+          }
+          else if (onStack[successor]) {
+            lowLinks[node] = Math.min(lowLinks[node], indexes[successor]);
+          }
+        }
+        else {
+          if (lowLinks[node] == indexes[node]) {
+            int member;
+            do {
+              member = stack[--stackSize];
+              onStack[member] = false;
+              components[member] = componentCount;
+            }
+            while (member != node);
+            componentCount++;
+          }
+          depth--;
+          if (depth > 0) {
+            int caller = callStack[depth - 1];
+            lowLinks[caller] = Math.min(lowLinks[caller], lowLinks[node]);
+          }
+        }
+      }
+    }
+    return componentCount;
+  }
+
+}
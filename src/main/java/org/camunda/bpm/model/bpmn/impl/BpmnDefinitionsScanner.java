@@ -0,0 +1,195 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN20_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_ELEMENT_BPMN_DIAGRAM;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ATTRIBUTE_CALLED_ELEMENT;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ATTRIBUTE_ID;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ATTRIBUTE_IS_EXECUTABLE;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ATTRIBUTE_NAME;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ATTRIBUTE_TARGET_NAMESPACE;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_CALL_ACTIVITY;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_DEFINITIONS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_PROCESS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_RELATIONSHIP;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.CAMUNDA_NS;
+
+import org.camunda.bpm.model.bpmn.DefinitionsSummary;
+import org.camunda.bpm.model.bpmn.ProcessSummary;
+import org.camunda.bpm.model.xml.ModelParseException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Scans the headers of a BPMN definitions file with a StAX stream reader
+ * without building a DOM or validating the file against the BPMN schema.</p>
+ *
+ * <p>The scanner only keeps the attributes of the <code>definitions</code>
+ * and <code>process</code> elements and the <code>calledElement</code> of call
+ * activities. Since the schema requires all root elements to precede the diagram
+ * interchange part, scanning stops at the first <code>BPMNDiagram</code> or
+ * <code>relationship</code> element.</p>
+ */
+public class BpmnDefinitionsScanner {
+
+  /** depth of the children of the definitions element */
+  protected static final int ROOT_ELEMENT_DEPTH = 2;
+
+  protected final XMLInputFactory inputFactory;
+
+  public BpmnDefinitionsScanner() {
+    inputFactory = XMLInputFactory.newInstance();
+    configureFactory(inputFactory);
+  }
+
+  protected void configureFactory(XMLInputFactory inputFactory) {
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+  }
+
+  /**
+   * Scans the definitions read from the input stream. The stream is not closed.
+   *
+   * @param inputStream the stream to scan
+   * @return the summary of the definitions
+   * @throws ModelParseException if the stream is not well formed or contains no BPMN definitions
+   */
+  public DefinitionsSummary scan(InputStream inputStream) {
+    XMLStreamReader reader = null;
+    try {
+      reader = createReader(inputStream);
+      return scanDefinitions(reader);
+    }
+    catch (XMLStreamException e) {
+      throw new ModelParseException("XMLStreamException while scanning input stream", e);
+    }
+    finally {
+      closeSilently(reader);
+    }
+  }
+
+  protected XMLStreamReader createReader(InputStream inputStream) throws XMLStreamException {
+    // the JAXP factories are not guaranteed to be thread safe
+    synchronized (inputFactory) {
+      return inputFactory.createXMLStreamReader(inputStream);
+    }
+  }
+
+  protected DefinitionsSummary scanDefinitions(XMLStreamReader reader) throws XMLStreamException {
+    String definitionsId = null;
+    String targetNamespace = null;
+    List<ProcessSummary> processes = new ArrayList<ProcessSummary>();
+
+    boolean definitionsFound = false;
+    int depth = 0;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        String namespaceUri = reader.getNamespaceURI();
+        String localName = reader.getLocalName();
+
+        if (depth == 1) {
+          if (!BPMN20_NS.equals(namespaceUri) || !BPMN_ELEMENT_DEFINITIONS.equals(localName)) {
+            throw new ModelParseException("Unable to scan definitions: unexpected root element " + reader.getName());
+          }
+          definitionsFound = true;
+          definitionsId = reader.getAttributeValue(null, BPMN_ATTRIBUTE_ID);
+          targetNamespace = reader.getAttributeValue(null, BPMN_ATTRIBUTE_TARGET_NAMESPACE);
+        }
+        else if (depth == ROOT_ELEMENT_DEPTH) {
+          if (isDiagramInterchange(namespaceUri, localName)) {
+            break;
+          }
+          else if (BPMN20_NS.equals(namespaceUri) && BPMN_ELEMENT_PROCESS.equals(localName)) {
+            processes.add(scanProcess(reader));
+            depth--;
+          }
+        }
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+
+    if (!definitionsFound) {
+      throw new ModelParseException("Unable to scan definitions: no BPMN definitions found");
+    }
+    return new DefinitionsSummary(definitionsId, targetNamespace, processes);
+  }
+
+  /**
+   * Scans a process element, the reader is positioned on its end element afterwards.
+   */
+  protected ProcessSummary scanProcess(XMLStreamReader reader) throws XMLStreamException {
+    String id = reader.getAttributeValue(null, BPMN_ATTRIBUTE_ID);
+    String name = reader.getAttributeValue(null, BPMN_ATTRIBUTE_NAME);
+    boolean executable = Boolean.parseBoolean(reader.getAttributeValue(null, BPMN_ATTRIBUTE_IS_EXECUTABLE));
+
+    Map<String, String> camundaAttributes = new LinkedHashMap<String, String>();
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      if (CAMUNDA_NS.equals(reader.getAttributeNamespace(i))) {
+        camundaAttributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+      }
+    }
+
+    List<String> calledElements = new ArrayList<String>();
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        if (BPMN20_NS.equals(reader.getNamespaceURI()) && BPMN_ELEMENT_CALL_ACTIVITY.equals(reader.getLocalName())) {
+          String calledElement = reader.getAttributeValue(null, BPMN_ATTRIBUTE_CALLED_ELEMENT);
+          if (calledElement != null) {
+            calledElements.add(calledElement);
+          }
+        }
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+
+    return new ProcessSummary(id, name, executable, camundaAttributes, calledElements);
+  }
+
+  protected boolean isDiagramInterchange(String namespaceUri, String localName) {
+    return (BPMNDI_NS.equals(namespaceUri) && BPMNDI_ELEMENT_BPMN_DIAGRAM.equals(localName))
+      || (BPMN20_NS.equals(namespaceUri) && BPMN_ELEMENT_RELATIONSHIP.equals(localName));
+  }
+
+  protected void closeSilently(XMLStreamReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      }
+      catch (XMLStreamException e) {
+        // ignore
+      }
+    }
+  }
+
+}
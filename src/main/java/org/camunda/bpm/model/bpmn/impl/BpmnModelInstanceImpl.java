@@ -12,23 +12,67 @@
  */
 package org.camunda.bpm.model.bpmn.impl;
 
+import org.camunda.bpm.model.bpmn.Bpmn;
 import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.impl.dom.CopyOnWriteDocument;
+import org.camunda.bpm.model.bpmn.impl.dom.DomNodes;
+import org.camunda.bpm.model.bpmn.impl.dom.ReadOnlyDocument;
 import org.camunda.bpm.model.bpmn.impl.instance.DefinitionsImpl;
 import org.camunda.bpm.model.bpmn.instance.Definitions;
 import org.camunda.bpm.model.xml.ModelBuilder;
 import org.camunda.bpm.model.xml.impl.ModelImpl;
 import org.camunda.bpm.model.xml.impl.ModelInstanceImpl;
+import org.camunda.bpm.model.xml.impl.instance.DomDocumentImpl;
+import org.camunda.bpm.model.xml.impl.instance.DomElementImpl;
+import org.camunda.bpm.model.xml.impl.util.ModelUtil;
 import org.camunda.bpm.model.xml.instance.DomDocument;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.camunda.bpm.model.xml.type.ModelElementType;
+import org.camunda.bpm.model.xml.type.attribute.Attribute;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>The Bpmn Model</p>
+ *
+ * <p>The lookups by id and type and the cached results of a frozen model are read
+ * without locking. Reading attributes and child elements still goes through the DOM
+ * element wrappers of the model API, which lock the document on every call.</p>
+ *
  * @author Daniel Meyer
  *
  */
 public class BpmnModelInstanceImpl extends ModelInstanceImpl implements BpmnModelInstance {
 
+  /** the modification stamp of a model whose changes cannot be tracked */
+  public static final long UNTRACKED = -1;
+
+  /** the user data key of the model element instance of a DOM element, see {@link DomElementImpl} */
+  protected static final String MODEL_ELEMENT_KEY = "camunda.modelElementRef";
+
+  protected final ModelBuilder modelBuilder;
+  protected DomMutationEvents mutationEvents;
+  protected DirtyElementTracker dirtyElementTracker;
+  protected DeferredDiagrams deferredDiagrams;
+  protected volatile ElementTypeIndex elementTypeIndex;
+  protected ElementIdIndex elementIdIndex;
+  protected final Map<String, ElementAttributeIndex> attributeIndexes = new HashMap<String, ElementAttributeIndex>();
+  protected ModificationCounter modificationCounter;
+  protected final Map<ResultKey, Object> cachedResults = new ConcurrentHashMap<ResultKey, Object>();
+  protected long cachedResultsStamp = UNTRACKED;
+
   public BpmnModelInstanceImpl(ModelImpl model, ModelBuilder modelBuilder, DomDocument document) {
     super(model, modelBuilder, document);
+    this.modelBuilder = modelBuilder;
   }
 
   public Definitions getDefinitions() {
@@ -39,4 +83,494 @@ public class BpmnModelInstanceImpl extends ModelInstanceImpl implements BpmnMode
     setDocumentElement(definitions);
   }
 
+  public BpmnModelInstanceImpl clone() {
+    BpmnModelInstanceImpl copy = new BpmnModelInstanceImpl((ModelImpl) getModel(), modelBuilder, getDocument().clone());
+    synchronized (this) {
+      if (deferredDiagrams != null) {
+        copy.setDeferredDiagrams(deferredDiagrams.copyFor(copy.getW3cDocument()));
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Looks up the element in the id index, if the document supports one. If the index
+   * does not know the id, the document is asked, since it may also know elements with
+   * id attributes of other names.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends ModelElementInstance> T getModelElementById(String id) {
+    if (isSealed()) {
+      Element element = id != null ? getW3cDocument().getElementById(id) : null;
+      return element != null ? (T) getModelElement(element) : null;
+    }
+
+    ElementIdIndex index = id != null ? getElementIdIndex() : null;
+    if (index != null) {
+      Element element = index.getElement(id);
+      if (element != null && isIdentifiedBy(element, id)) {
+        return (T) getModelElement(element);
+      }
+    }
+
+    T modelElement = super.getModelElementById(id);
+    if (modelElement == null && hasDeferredDiagrams()) {
+      materializeDiagrams();
+      modelElement = super.getModelElementById(id);
+    }
+    return modelElement;
+  }
+
+  /**
+   * Looks up the instances of the type and all its subtypes in the element type index,
+   * if the document supports one, instead of walking the whole document.
+   */
+  public Collection<ModelElementInstance> getModelElementsByType(ModelElementType type) {
+    if (type != null && !isSealed() && isDiagramNamespace(type.getTypeNamespace())) {
+      materializeDiagrams();
+    }
+    ElementTypeIndex index = type != null ? getElementTypeIndex() : null;
+    if (index == null) {
+      return super.getModelElementsByType(type);
+    }
+
+    List<ModelElementType> instantiableTypes = Bpmn.INSTANCE.getElementTypeRegistry().getInstantiableTypes(type);
+    if (instantiableTypes == null) {
+      instantiableTypes = new ArrayList<ModelElementType>();
+      for (ModelElementType extendingType : type.getAllExtendingTypes()) {
+        if (!extendingType.isAbstract()) {
+          instantiableTypes.add(extendingType);
+        }
+      }
+    }
+
+    List<ModelElementInstance> instances = new ArrayList<ModelElementInstance>();
+    for (ModelElementType instantiableType : instantiableTypes) {
+      for (Element element : index.getElements(instantiableType.getTypeNamespace(), instantiableType.getTypeName())) {
+        instances.add(getModelElement(element));
+      }
+    }
+    return instances;
+  }
+
+  /**
+   * Returns the model element instance of a DOM element. The instances of a frozen
+   * model are attached to their elements when it is frozen, so they are read without
+   * locking the document.
+   */
+  protected ModelElementInstance getModelElement(Element element) {
+    if (isSealed()) {
+      Object modelElement = element.getUserData(MODEL_ELEMENT_KEY);
+      if (modelElement instanceof ModelElementInstance) {
+        return (ModelElementInstance) modelElement;
+      }
+    }
+    return ModelUtil.getModelElement(new DomElementImpl(element), this);
+  }
+
+  public BpmnModelInstance freeze() {
+    if (isFrozen()) {
+      return this;
+    }
+    materializeDiagrams();
+    return freezeDocument();
+  }
+
+  /**
+   * <p>Freezes the model like {@link #freeze()}, but does not build its deferred diagrams.
+   * The frozen model keeps the diagrams deferred and passes them on to its
+   * {@link #copyOnWrite() copies}, which build them on first access.</p>
+   *
+   * <p>The document of a frozen model cannot be changed, so the deferred diagrams can
+   * never be built into the frozen model itself. Reading its diagrams fails, the frozen
+   * model must only be used to create copies, like the model cache does.</p>
+   *
+   * @return the frozen copy of the model without its deferred diagrams
+   */
+  public synchronized BpmnModelInstance freezeDeferringDiagrams() {
+    if (isFrozen()) {
+      return this;
+    }
+    BpmnModelInstanceImpl frozenInstance = freezeDocument();
+    if (deferredDiagrams != null) {
+      frozenInstance.setDeferredDiagrams(deferredDiagrams.copyFor(frozenInstance.getW3cDocument()));
+    }
+    return frozenInstance;
+  }
+
+  protected BpmnModelInstanceImpl freezeDocument() {
+    Document w3cDocument = getW3cDocument();
+    ReadOnlyDocument frozenDocument;
+    synchronized (w3cDocument) {
+      frozenDocument = ReadOnlyDocument.copyOf(w3cDocument);
+    }
+    BpmnModelInstanceImpl frozenInstance = new BpmnModelInstanceImpl((ModelImpl) getModel(), modelBuilder, new DomDocumentImpl(frozenDocument));
+
+    // readers must not declare namespaces or attach model element instances later
+    for (ModelElementType type : getModel().getTypes()) {
+      frozenDocument.bindNamespace(type.getTypeNamespace());
+      for (Attribute<?> attribute : type.getAttributes()) {
+        frozenDocument.bindNamespace(attribute.getNamespaceUri());
+      }
+    }
+    Element documentElement = frozenDocument.getDocumentElement();
+    Node node = documentElement;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        ModelUtil.getModelElement(new DomElementImpl((Element) node), frozenInstance);
+      }
+      node = DomNodes.nextNode(node, documentElement);
+    }
+    frozenDocument.seal();
+
+    return frozenInstance;
+  }
+
+  /**
+   * The deferred diagrams of a frozen model are passed on to the copy, which builds
+   * them on first access. Other models build their diagrams before they are copied.
+   */
+  public BpmnModelInstance copyOnWrite() {
+    Document w3cDocument = getW3cDocument();
+    if (w3cDocument instanceof ReadOnlyDocument) {
+      BpmnModelInstanceImpl copy = createCopyOnWrite((ReadOnlyDocument) w3cDocument);
+      synchronized (this) {
+        if (deferredDiagrams != null) {
+          copy.setDeferredDiagrams(deferredDiagrams.copyFor(copy.getW3cDocument()));
+        }
+      }
+      return copy;
+    }
+
+    materializeDiagrams();
+    ReadOnlyDocument sharedDocument;
+    synchronized (w3cDocument) {
+      sharedDocument = ReadOnlyDocument.copyOf(w3cDocument);
+    }
+    sharedDocument.seal();
+    return createCopyOnWrite(sharedDocument);
+  }
+
+  protected BpmnModelInstanceImpl createCopyOnWrite(ReadOnlyDocument sharedDocument) {
+    return new BpmnModelInstanceImpl((ModelImpl) getModel(), modelBuilder, new DomDocumentImpl(new CopyOnWriteDocument(sharedDocument)));
+  }
+
+  public boolean isFrozen() {
+    return getW3cDocument() instanceof ReadOnlyDocument;
+  }
+
+  /**
+   * @return true if the document of the model is frozen and complete, so neither the
+   * document nor its indexes ever change
+   */
+  protected boolean isSealed() {
+    Document w3cDocument = getW3cDocument();
+    return w3cDocument instanceof ReadOnlyDocument && ((ReadOnlyDocument) w3cDocument).isSealed();
+  }
+
+  protected Document getW3cDocument() {
+    return (Document) getDocument().getDomSource().getNode();
+  }
+
+  /**
+   * @param deferredDiagrams the diagrams which were not built while parsing
+   */
+  public synchronized void setDeferredDiagrams(DeferredDiagrams deferredDiagrams) {
+    this.deferredDiagrams = deferredDiagrams;
+  }
+
+  /**
+   * @return true if the model has diagrams which are not built yet
+   */
+  public synchronized boolean hasDeferredDiagrams() {
+    return deferredDiagrams != null;
+  }
+
+  /**
+   * Builds the deferred diagrams of the model, if any, and inserts them into the document.
+   */
+  public synchronized void materializeDiagrams() {
+    if (deferredDiagrams != null) {
+      DeferredDiagrams diagrams = deferredDiagrams;
+      deferredDiagrams = null;
+      diagrams.materialize(getW3cDocument());
+    }
+  }
+
+  protected boolean isDiagramNamespace(String namespaceUri) {
+    return BpmnModelConstants.BPMNDI_NS.equals(namespaceUri)
+      || BpmnModelConstants.DI_NS.equals(namespaceUri)
+      || BpmnModelConstants.DC_NS.equals(namespaceUri);
+  }
+
+  /**
+   * @return the mutation events of the DOM document or null if the DOM
+   * implementation does not support mutation events
+   */
+  public synchronized DomMutationEvents getMutationEvents() {
+    if (mutationEvents == null) {
+      Document w3cDocument = getW3cDocument();
+      if (DomMutationEvents.isSupported(w3cDocument)) {
+        mutationEvents = new DomMutationEvents(w3cDocument);
+      }
+    }
+    return mutationEvents;
+  }
+
+  /**
+   * Returns the index of the elements by type. The index is built on first use and
+   * updated by the mutation events of the document afterwards. A frozen document
+   * cannot change, so its index is never updated.
+   *
+   * @return the index or null if changes of the document cannot be tracked
+   */
+  public ElementTypeIndex getElementTypeIndex() {
+    ElementTypeIndex index = elementTypeIndex;
+    if (index != null) {
+      return index;
+    }
+    if (isSealed()) {
+      // concurrent readers may build equal indexes, the last one wins
+      index = new ElementTypeIndex(getW3cDocument());
+      elementTypeIndex = index;
+      return index;
+    }
+    synchronized (this) {
+      if (elementTypeIndex == null) {
+        DomMutationEvents events = getMutationEvents();
+        if (events != null) {
+          ElementTypeIndex newIndex = new ElementTypeIndex(getW3cDocument());
+          events.addListener(newIndex);
+          elementTypeIndex = newIndex;
+        }
+      }
+      return elementTypeIndex;
+    }
+  }
+
+  /**
+   * Returns the index of the elements by id. The index is built on first use and
+   * updated by the mutation events of the document afterwards. Frozen documents
+   * already look up their elements by id in a map, so they have no index.
+   *
+   * @return the index or null if changes of the document cannot be tracked
+   */
+  public synchronized ElementIdIndex getElementIdIndex() {
+    if (elementIdIndex == null) {
+      DomMutationEvents events = getMutationEvents();
+      if (events != null) {
+        elementIdIndex = new ElementIdIndex(getW3cDocument());
+        events.addListener(elementIdIndex);
+      }
+    }
+    return elementIdIndex;
+  }
+
+  /**
+   * Builds an index of the elements by the value of the attribute, which is updated
+   * by the mutation events of the document afterwards. A frozen document cannot
+   * change, so its index is never updated.
+   */
+  public synchronized boolean indexAttribute(String namespaceUri, String attributeName) {
+    if (attributeName == null) {
+      throw new IllegalArgumentException("The name of an indexed attribute must not be null");
+    }
+    String key = getAttributeIndexKey(namespaceUri, attributeName);
+    if (attributeIndexes.containsKey(key)) {
+      return true;
+    }
+    Document w3cDocument = getW3cDocument();
+    ElementAttributeIndex attributeIndex;
+    if (isSealed()) {
+      attributeIndex = new ElementAttributeIndex(w3cDocument, namespaceUri, attributeName);
+    }
+    else {
+      DomMutationEvents events = getMutationEvents();
+      if (events == null) {
+        return false;
+      }
+      attributeIndex = new ElementAttributeIndex(w3cDocument, namespaceUri, attributeName);
+      events.addListener(attributeIndex);
+    }
+    attributeIndexes.put(key, attributeIndex);
+    return true;
+  }
+
+  /**
+   * @param namespaceUri the namespace of the attribute or null if it has no namespace
+   * @param attributeName the local name of the attribute
+   * @return the index of the attribute or null if the attribute is not indexed
+   * @see #indexAttribute(String, String)
+   */
+  public synchronized ElementAttributeIndex getAttributeIndex(String namespaceUri, String attributeName) {
+    if (attributeIndexes.isEmpty()) {
+      return null;
+    }
+    return attributeIndexes.get(getAttributeIndexKey(namespaceUri, attributeName));
+  }
+
+  protected String getAttributeIndexKey(String namespaceUri, String attributeName) {
+    if (namespaceUri == null || namespaceUri.length() == 0) {
+      return attributeName;
+    }
+    return "{" + namespaceUri + "}" + attributeName;
+  }
+
+  /**
+   * Checks if an element of the model may refer to the identifier. Changing an
+   * identifier which is not referenced does not have to update any references.
+   *
+   * @param identifier the identifier to check
+   * @return false if no element of the model can refer to the identifier
+   */
+  public boolean isReferencedIdentifier(String identifier) {
+    if (identifier == null) {
+      return false;
+    }
+    if (hasDeferredDiagrams()) {
+      // the deferred diagrams are not indexed
+      return true;
+    }
+    ElementIdIndex index = getElementIdIndex();
+    return index == null || index.isReferenced(identifier);
+  }
+
+  protected boolean isIdentifiedBy(Element element, String id) {
+    Attr attribute = element.getAttributeNode(ElementIdIndex.ID_ATTRIBUTE);
+    return attribute != null && attribute.isId() && id.equals(attribute.getValue());
+  }
+
+  /**
+   * Returns a stamp which changes whenever the document of the model is changed. Changes
+   * are counted from the first call on, so the first call makes every later change of
+   * the document fire mutation events. A frozen document cannot change, so its stamp
+   * is constant.
+   *
+   * @return the modification stamp or {@link #UNTRACKED} if changes of the document
+   * cannot be tracked
+   */
+  public long getModificationStamp() {
+    if (isSealed()) {
+      return 0;
+    }
+    synchronized (this) {
+      if (modificationCounter == null) {
+        DomMutationEvents events = getMutationEvents();
+        if (events == null) {
+          return UNTRACKED;
+        }
+        modificationCounter = new ModificationCounter();
+        events.addListener(modificationCounter);
+      }
+      return modificationCounter.getCount();
+    }
+  }
+
+  /**
+   * Returns the modification stamp like {@link #getModificationStamp()}, but does not
+   * start counting changes. Results which are cheap to compute use this stamp, so they
+   * are only cached if the changes of the model are tracked anyway.
+   *
+   * @return the modification stamp or {@link #UNTRACKED} if changes of the document
+   * are not tracked yet
+   */
+  public long getTrackedModificationStamp() {
+    if (isSealed()) {
+      return 0;
+    }
+    synchronized (this) {
+      return modificationCounter != null ? modificationCounter.getCount() : UNTRACKED;
+    }
+  }
+
+  /**
+   * @param owner the object the result was computed for
+   * @param name the name of the result
+   * @return the result cached for the current modification stamp or null if none is cached
+   */
+  public Object getCachedResult(Object owner, String name) {
+    if (isSealed()) {
+      // a frozen model never changes, so its results are never cleared
+      return cachedResults.get(new ResultKey(owner, name));
+    }
+    synchronized (this) {
+      long stamp = getModificationStamp();
+      if (stamp != cachedResultsStamp) {
+        cachedResults.clear();
+        cachedResultsStamp = stamp;
+        return null;
+      }
+      return cachedResults.get(new ResultKey(owner, name));
+    }
+  }
+
+  /**
+   * Caches a result computed from the model until the model is changed. The result must
+   * not be changed afterwards.
+   *
+   * @param owner the object the result was computed for
+   * @param name the name of the result
+   * @param result the result to cache
+   * @param stamp the modification stamp before the result was computed, the result
+   * is not cached if the model was changed since then
+   */
+  public void cacheResult(Object owner, String name, Object result, long stamp) {
+    if (isSealed()) {
+      cachedResults.put(new ResultKey(owner, name), result);
+      return;
+    }
+    synchronized (this) {
+      if (stamp != UNTRACKED && stamp == getModificationStamp()) {
+        if (stamp != cachedResultsStamp) {
+          cachedResults.clear();
+          cachedResultsStamp = stamp;
+        }
+        cachedResults.put(new ResultKey(owner, name), result);
+      }
+    }
+  }
+
+  /**
+   * Returns the tracker of the elements changed since the last validation. Tracking
+   * starts with the first call, until then the whole document is considered dirty.
+   *
+   * @return the tracker or null if changes of the document cannot be tracked
+   */
+  public synchronized DirtyElementTracker getDirtyElementTracker() {
+    if (dirtyElementTracker == null) {
+      DomMutationEvents events = getMutationEvents();
+      if (events != null) {
+        dirtyElementTracker = new DirtyElementTracker();
+        events.addListener(dirtyElementTracker);
+      }
+    }
+    return dirtyElementTracker;
+  }
+
+  protected static class ResultKey {
+
+    protected final Object owner;
+    protected final String name;
+
+    public ResultKey(Object owner, String name) {
+      this.owner = owner;
+      this.name = name;
+    }
+
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ResultKey other = (ResultKey) o;
+      return owner.equals(other.owner) && name.equals(other.name);
+    }
+
+    public int hashCode() {
+      return 31 * owner.hashCode() + name.hashCode();
+    }
+  }
+
 }
@@ -13,46 +13,187 @@
 package org.camunda.bpm.model.bpmn.impl;
 
 import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelException;
+import org.camunda.bpm.model.bpmn.ParseOptions;
+import org.camunda.bpm.model.bpmn.impl.dom.DomNodes;
+import org.camunda.bpm.model.xml.ModelParseException;
 import org.camunda.bpm.model.xml.ModelValidationException;
 import org.camunda.bpm.model.xml.impl.ModelImpl;
+import org.camunda.bpm.model.xml.impl.instance.DomDocumentImpl;
 import org.camunda.bpm.model.xml.impl.parser.AbstractModelParser;
+import org.camunda.bpm.model.xml.impl.util.DomUtil;
 import org.camunda.bpm.model.xml.impl.util.ReflectUtil;
 import org.camunda.bpm.model.xml.instance.DomDocument;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * <p>The parser used when parsing BPMN Files</p>
  *
+ * <p>The BPMN schema is compiled only once and shared by all parser instances.
+ * Document builders and validators are not thread safe, so each parser keeps
+ * a pool of them which are reused across parse and validation calls.</p>
+ *
+ * <p>Trusted models can be parsed without schema validation, see
+ * {@link ParseOptions#trusted()}. The diagrams of a model can be deferred until
+ * they are accessed, see {@link ParseOptions#lazyDiagrams(boolean)}, and a single
+ * process can be read without building the others, see
+ * {@link #parseProcessFromStream(InputStream, String, ParseOptions)}.</p>
+ *
  * @author Daniel Meyer
  *
  */
 public class BpmnParser extends AbstractModelParser {
 
- private static final String JAXP_SCHEMA_SOURCE = "http://java.sun.com/xml/jaxp/properties/schemaSource";
- private static final String JAXP_SCHEMA_LANGUAGE = "http://java.sun.com/xml/jaxp/properties/schemaLanguage";
-
   private static final String W3C_XML_SCHEMA = "http://www.w3.org/2001/XMLSchema";
+  private static final String ID_IDREF_CHECKING_FEATURE = "http://apache.org/xml/features/validation/id-idref-checking";
+  private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+
+  /** the maximum number of idle document builders and validators kept by a parser */
+  protected static final int MAX_IDLE_POOL_SIZE = 16;
+
+  private static Schema bpmnSchema;
+  private static Set<String> globalElementNames;
+
+  protected final DocumentBuilderFactory documentBuilderFactory;
+  protected final DocumentBuilderFactory nonValidatingDocumentBuilderFactory;
+  protected final ObjectPool<DocumentBuilder> documentBuilderPool;
+  protected final ObjectPool<DocumentBuilder> nonValidatingDocumentBuilderPool;
+  protected final ObjectPool<Validator> validatorPool;
+  protected final ObjectPool<Validator> subtreeValidatorPool;
+  protected final ObjectPool<SAXParser> saxParserPool;
+  protected final ObjectPool<ValidatorHandler> validatorHandlerPool;
 
   public BpmnParser() {
-    this.schemaFactory = SchemaFactory.newInstance(W3C_XML_SCHEMA);
-    URL bpmnSchema = ReflectUtil.getResource(BpmnModelConstants.BPMN_20_SCHEMA_LOCATION, BpmnParser.class.getClassLoader());
+    this.schema = getBpmnSchema();
+
+    documentBuilderFactory = DocumentBuilderFactory.newInstance();
+    configureFactory(documentBuilderFactory);
+
+    nonValidatingDocumentBuilderFactory = DocumentBuilderFactory.newInstance();
+    configureNonValidatingFactory(nonValidatingDocumentBuilderFactory);
+
+    documentBuilderPool = new DocumentBuilderPool(documentBuilderFactory);
+    nonValidatingDocumentBuilderPool = new DocumentBuilderPool(nonValidatingDocumentBuilderFactory);
+    validatorPool = new ValidatorPool(schema);
+    subtreeValidatorPool = new SubtreeValidatorPool(schema);
+    saxParserPool = new SaxParserPool();
+    validatorHandlerPool = new ValidatorHandlerPool(schema);
+  }
+
+  /**
+   * Returns the compiled BPMN 2.0 schema including the DI, DC and semantic imports.
+   * A {@link Schema} is immutable and thread safe, so it is compiled on first use
+   * and shared afterwards.
+   *
+   * @return the compiled BPMN schema
+   * @throws ModelValidationException if the schema cannot be compiled
+   */
+  public static synchronized Schema getBpmnSchema() {
+    if (bpmnSchema == null) {
+      URL bpmnSchemaUrl = ReflectUtil.getResource(BpmnModelConstants.BPMN_20_SCHEMA_LOCATION, BpmnParser.class.getClassLoader());
+      try {
+        bpmnSchema = SchemaFactory.newInstance(W3C_XML_SCHEMA).newSchema(bpmnSchemaUrl);
+      } catch (SAXException e) {
+        throw new ModelValidationException("Unable to parse schema:" + bpmnSchemaUrl);
+      }
+    }
+    return bpmnSchema;
+  }
+
+  /**
+   * Returns the names of the elements declared globally in the BPMN schema and its
+   * imports, as <code>{namespaceUri}localName</code>. Only global elements can be
+   * the root of a validation.
+   *
+   * @return the names of the global elements
+   * @throws ModelValidationException if the schema cannot be read
+   */
+  public static synchronized Set<String> getGlobalElementNames() {
+    if (globalElementNames == null) {
+      URL bpmnSchemaUrl = ReflectUtil.getResource(BpmnModelConstants.BPMN_20_SCHEMA_LOCATION, BpmnParser.class.getClassLoader());
+      Set<String> names = new HashSet<String>();
+      collectGlobalElementNames(bpmnSchemaUrl, names, new HashSet<String>());
+      globalElementNames = names;
+    }
+    return globalElementNames;
+  }
+
+  protected static void collectGlobalElementNames(URL schemaUrl, Set<String> names, Set<String> visitedUrls) {
+    if (!visitedUrls.add(schemaUrl.toString())) {
+      return;
+    }
+    Element schemaElement;
     try {
-      this.schema = schemaFactory.newSchema(bpmnSchema);
-    } catch (SAXException e) {
-      throw new ModelValidationException("Unable to parse schema:" + bpmnSchema);
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      schemaElement = factory.newDocumentBuilder().parse(schemaUrl.toString()).getDocumentElement();
+    } catch (Exception e) {
+      throw new ModelValidationException("Unable to parse schema:" + schemaUrl);
+    }
+
+    String targetNamespace = schemaElement.getAttribute("targetNamespace");
+    for (Node child = schemaElement.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() != Node.ELEMENT_NODE || !W3C_XML_SCHEMA.equals(child.getNamespaceURI())) {
+        continue;
+      }
+      Element declaration = (Element) child;
+      String localName = declaration.getLocalName();
+      if ("element".equals(localName)) {
+        names.add(getQualifiedName(targetNamespace, declaration.getAttribute("name")));
+      }
+      else if ("include".equals(localName) || "import".equals(localName)) {
+        String schemaLocation = declaration.getAttribute("schemaLocation");
+        if (schemaLocation.length() > 0) {
+          try {
+            collectGlobalElementNames(new URL(schemaUrl, schemaLocation), names, visitedUrls);
+          } catch (IOException e) {
+            throw new ModelValidationException("Unable to parse schema:" + schemaLocation);
+          }
+        }
+      }
     }
   }
 
+  protected static String getQualifiedName(String namespaceUri, String localName) {
+    return "{" + (namespaceUri != null ? namespaceUri : XMLConstants.NULL_NS_URI) + "}" + localName;
+  }
+
   @Override
   protected void configureFactory(DocumentBuilderFactory dbf) {
-    dbf.setAttribute(JAXP_SCHEMA_LANGUAGE, W3C_XML_SCHEMA);
-    dbf.setAttribute(JAXP_SCHEMA_SOURCE, ReflectUtil.getResource(BpmnModelConstants.BPMN_20_SCHEMA_LOCATION, BpmnParser.class.getClassLoader()).toString());
     super.configureFactory(dbf);
+    // validate against the precompiled schema while parsing instead of
+    // resolving and loading the schema source for every document builder
+    dbf.setValidating(false);
+    dbf.setSchema(getBpmnSchema());
+  }
+
+  protected void configureNonValidatingFactory(DocumentBuilderFactory dbf) {
+    super.configureFactory(dbf);
+    dbf.setValidating(false);
   }
 
   @Override
@@ -60,14 +201,395 @@ public class BpmnParser extends AbstractModelParser {
     return new BpmnModelInstanceImpl((ModelImpl) Bpmn.INSTANCE.getBpmnModel(), Bpmn.INSTANCE.getBpmnModelBuilder(), document);
   }
 
+  /**
+   * Parses and validates a BPMN model. The document is validated against the
+   * BPMN schema while it is parsed, so no second validation pass is necessary.
+   *
+   * @param inputStream the stream to read the model from
+   * @return the parsed model instance
+   * @throws ModelParseException if the model cannot be parsed or is not valid
+   */
   @Override
   public BpmnModelInstanceImpl parseModelFromStream(InputStream inputStream) {
-    return (BpmnModelInstanceImpl) super.parseModelFromStream(inputStream);
+    DomDocument document = parseDocument(documentBuilderPool, inputStream);
+    return createModelInstance(document);
+  }
+
+  /**
+   * Parses a BPMN model using the given options.
+   *
+   * @param inputStream the stream to read the model from
+   * @param parseOptions the options to use
+   * @return the parsed model instance
+   * @throws ModelParseException if the model cannot be parsed or, if validated, is not valid
+   */
+  public BpmnModelInstanceImpl parseModelFromStream(InputStream inputStream, ParseOptions parseOptions) {
+    if (parseOptions.isSkipDiagrams() || parseOptions.isLazyDiagrams()) {
+      DocumentBuildingHandler handler = new DocumentBuildingHandler(newDocument());
+      if (parseOptions.isSkipDiagrams()) {
+        handler.setSkipDiagrams(true);
+      }
+      else {
+        handler.setDeferredDiagrams(new DeferredDiagrams(nonValidatingDocumentBuilderPool));
+      }
+      return parseModel(inputStream, parseOptions.isSchemaValidation(), handler);
+    }
+    else if (parseOptions.isSchemaValidation()) {
+      return parseModelFromStream(inputStream);
+    }
+    else {
+      DomDocument document = parseDocument(nonValidatingDocumentBuilderPool, inputStream);
+      registerIdAttributes(document);
+      return createModelInstance(document);
+    }
+  }
+
+  /**
+   * Parses a single process of a BPMN model together with the root elements it
+   * references and, unless skipped, the diagram of the process. Other processes
+   * are never built, see {@link ProcessSelectingHandler}. The diagrams of the
+   * process are not deferred even if lazy diagrams are requested.
+   *
+   * @param inputStream the stream to read the model from
+   * @param processId the id of the process to read
+   * @param parseOptions the options to use
+   * @return the model instance which contains only the process
+   * @throws ModelParseException if the model cannot be parsed or, if validated, is not valid
+   * @throws BpmnModelException if the model does not contain the process
+   */
+  public BpmnModelInstanceImpl parseProcessFromStream(InputStream inputStream, String processId, ParseOptions parseOptions) {
+    ProcessSelectingHandler handler = new ProcessSelectingHandler(newDocument(), processId);
+    handler.setSkipDiagrams(parseOptions.isSkipDiagrams());
+    BpmnModelInstanceImpl modelInstance = parseModel(inputStream, parseOptions.isSchemaValidation(), handler);
+    if (!handler.isProcessFound()) {
+      throw new BpmnModelException("Unable to find process with id '" + processId + "'");
+    }
+    return modelInstance;
+  }
+
+  /**
+   * Parses a BPMN model by streaming it through a handler which builds the document.
+   * If the model is validated, the document is streamed through the schema validator
+   * first, so skipped and deferred elements are validated nevertheless.
+   *
+   * @param inputStream the stream to read the model from
+   * @param schemaValidation true if the model should be validated against the BPMN schema
+   * @param handler the handler which builds the document
+   * @return the parsed model instance
+   * @throws ModelParseException if the model cannot be parsed or, if validated, is not valid
+   */
+  protected BpmnModelInstanceImpl parseModel(InputStream inputStream, boolean schemaValidation, DocumentBuildingHandler handler) {
+    SAXParser saxParser = saxParserPool.acquire();
+    ValidatorHandler validatorHandler = schemaValidation ? validatorHandlerPool.acquire() : null;
+    try {
+      DomUtil.DomErrorHandler errorHandler = new DomUtil.DomErrorHandler();
+      XMLReader reader = saxParser.getXMLReader();
+      reader.setErrorHandler(errorHandler);
+      reader.setProperty(LEXICAL_HANDLER_PROPERTY, handler);
+      if (validatorHandler != null) {
+        validatorHandler.setErrorHandler(errorHandler);
+        validatorHandler.setContentHandler(handler);
+        reader.setContentHandler(validatorHandler);
+      }
+      else {
+        reader.setContentHandler(handler);
+      }
+      reader.parse(new InputSource(inputStream));
+    } catch (SAXException e) {
+      throw new ModelParseException("SAXException while parsing input stream", e);
+    } catch (IOException e) {
+      throw new ModelParseException("IOException while parsing input stream", e);
+    } finally {
+      validatorHandlerPool.release(validatorHandler);
+      saxParserPool.release(saxParser);
+    }
+
+    BpmnModelInstanceImpl modelInstance = createModelInstance(new DomDocumentImpl(handler.getDocument()));
+    DeferredDiagrams deferredDiagrams = handler.getDeferredDiagrams();
+    if (deferredDiagrams != null && !deferredDiagrams.isEmpty()) {
+      modelInstance.setDeferredDiagrams(deferredDiagrams);
+    }
+    return modelInstance;
+  }
+
+  protected Document newDocument() {
+    DocumentBuilder documentBuilder = nonValidatingDocumentBuilderPool.acquire();
+    try {
+      return documentBuilder.newDocument();
+    }
+    finally {
+      nonValidatingDocumentBuilderPool.release(documentBuilder);
+    }
   }
 
   @Override
   public BpmnModelInstanceImpl getEmptyModel() {
-    return (BpmnModelInstanceImpl) super.getEmptyModel();
+    DocumentBuilder documentBuilder = documentBuilderPool.acquire();
+    try {
+      return createModelInstance(new DomDocumentImpl(documentBuilder.newDocument()));
+    }
+    finally {
+      documentBuilderPool.release(documentBuilder);
+    }
+  }
+
+  @Override
+  public void validateModel(DomDocument document) {
+    Validator validator = validatorPool.acquire();
+    try {
+      synchronized(document) {
+        validator.validate(document.getDomSource());
+      }
+    } catch (IOException e) {
+      throw new ModelValidationException("Error during DOM document validation", e);
+    } catch (SAXException e) {
+      throw new ModelValidationException("DOM document is not valid", e);
+    } finally {
+      validatorPool.release(validator);
+    }
+  }
+
+  /**
+   * Validates only the subtrees of the given elements instead of the whole document.
+   * The schema can only validate subtrees which start with a global element, so each
+   * element is validated together with its nearest global ancestor. Elements which
+   * are no longer part of the document are ignored.
+   *
+   * <p>References to elements outside of the validated subtrees, like a
+   * <code>sourceRef</code> of a sequence flow, are not checked. If the document
+   * element itself changed, the whole document is validated.</p>
+   *
+   * @param document the document of the elements
+   * @param elements the elements to validate
+   * @throws ModelValidationException if one of the subtrees is not valid
+   */
+  public void validateElements(DomDocument document, Collection<Element> elements) {
+    Document w3cDocument = (Document) document.getDomSource().getNode();
+    Element documentElement = w3cDocument.getDocumentElement();
+
+    Set<Element> validationRoots = new LinkedHashSet<Element>();
+    for (Element element : elements) {
+      if (!isAttached(element, w3cDocument)) {
+        continue;
+      }
+      Element validationRoot = getValidationRoot(element);
+      if (validationRoot == null || validationRoot == documentElement) {
+        validateModel(document);
+        return;
+      }
+      validationRoots.add(validationRoot);
+    }
+
+    Validator validator = subtreeValidatorPool.acquire();
+    try {
+      synchronized(document) {
+        for (Element validationRoot : validationRoots) {
+          if (!hasAncestorIn(validationRoot, validationRoots)) {
+            validator.validate(new DOMSource(validationRoot));
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new ModelValidationException("Error during DOM document validation", e);
+    } catch (SAXException e) {
+      throw new ModelValidationException("DOM document is not valid", e);
+    } finally {
+      subtreeValidatorPool.release(validator);
+    }
+  }
+
+  /**
+   * @return the element or its nearest ancestor which is declared globally in the schema
+   */
+  protected Element getValidationRoot(Element element) {
+    Set<String> globalElements = getGlobalElementNames();
+    Node node = element;
+    while (node != null && node.getNodeType() == Node.ELEMENT_NODE) {
+      if (globalElements.contains(getQualifiedName(node.getNamespaceURI(), node.getLocalName()))) {
+        return (Element) node;
+      }
+      node = node.getParentNode();
+    }
+    return null;
+  }
+
+  protected boolean isAttached(Node node, Document document) {
+    while (node.getParentNode() != null) {
+      node = node.getParentNode();
+    }
+    return node == document;
+  }
+
+  protected boolean hasAncestorIn(Node node, Set<Element> elements) {
+    for (Node parent = node.getParentNode(); parent != null; parent = parent.getParentNode()) {
+      if (elements.contains(parent)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected DomDocument parseDocument(ObjectPool<DocumentBuilder> pool, InputStream inputStream) {
+    DocumentBuilder documentBuilder = pool.acquire();
+    try {
+      documentBuilder.setErrorHandler(new DomUtil.DomErrorHandler());
+      return new DomDocumentImpl(documentBuilder.parse(inputStream));
+    } catch (SAXException e) {
+      throw new ModelParseException("SAXException while parsing input stream", e);
+    } catch (IOException e) {
+      throw new ModelParseException("IOException while parsing input stream", e);
+    } finally {
+      pool.release(documentBuilder);
+    }
+  }
+
+  /**
+   * Without schema validation the parser does not know which attributes are of type
+   * <code>xsd:ID</code>. All BPMN, DI and DC id attributes are unqualified and named
+   * <code>id</code>, so they are registered explicitly to be able to resolve elements by id.
+   *
+   * @param document the document to register the id attributes of
+   */
+  protected void registerIdAttributes(DomDocument document) {
+    Document w3cDocument = (Document) document.getDomSource().getNode();
+    Element documentElement = w3cDocument.getDocumentElement();
+    Node node = documentElement;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        Element element = (Element) node;
+        if (element.hasAttributeNS(null, BpmnModelConstants.BPMN_ATTRIBUTE_ID)) {
+          element.setIdAttributeNS(null, BpmnModelConstants.BPMN_ATTRIBUTE_ID, true);
+        }
+      }
+      node = DomNodes.nextNode(node, documentElement);
+    }
+  }
+
+  protected static class DocumentBuilderPool extends ObjectPool<DocumentBuilder> {
+
+    protected final DocumentBuilderFactory documentBuilderFactory;
+
+    public DocumentBuilderPool(DocumentBuilderFactory documentBuilderFactory) {
+      super(MAX_IDLE_POOL_SIZE);
+      this.documentBuilderFactory = documentBuilderFactory;
+    }
+
+    protected DocumentBuilder create() {
+      // document builder factories are not guaranteed to be thread safe
+      synchronized (documentBuilderFactory) {
+        try {
+          return documentBuilderFactory.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+          throw new ModelParseException("ParserConfigurationException while creating document builder", e);
+        }
+      }
+    }
+
+    protected boolean reset(DocumentBuilder documentBuilder) {
+      documentBuilder.reset();
+      return true;
+    }
+  }
+
+  protected static class SaxParserPool extends ObjectPool<SAXParser> {
+
+    protected final SAXParserFactory saxParserFactory;
+
+    public SaxParserPool() {
+      super(MAX_IDLE_POOL_SIZE);
+      saxParserFactory = SAXParserFactory.newInstance();
+      saxParserFactory.setNamespaceAware(true);
+      saxParserFactory.setValidating(false);
+    }
+
+    protected SAXParser create() {
+      // parser factories are not guaranteed to be thread safe
+      synchronized (saxParserFactory) {
+        try {
+          return saxParserFactory.newSAXParser();
+        } catch (ParserConfigurationException e) {
+          throw new ModelParseException("ParserConfigurationException while creating SAX parser", e);
+        } catch (SAXException e) {
+          throw new ModelParseException("SAXException while creating SAX parser", e);
+        }
+      }
+    }
+
+    protected boolean reset(SAXParser saxParser) {
+      saxParser.reset();
+      return true;
+    }
+  }
+
+  protected static class ValidatorHandlerPool extends ObjectPool<ValidatorHandler> {
+
+    protected final Schema schema;
+
+    public ValidatorHandlerPool(Schema schema) {
+      super(MAX_IDLE_POOL_SIZE);
+      this.schema = schema;
+    }
+
+    protected ValidatorHandler create() {
+      return schema.newValidatorHandler();
+    }
+
+    protected boolean reset(ValidatorHandler validatorHandler) {
+      // do not keep the handlers of the last document reachable
+      validatorHandler.setContentHandler(null);
+      validatorHandler.setErrorHandler(null);
+      return true;
+    }
+  }
+
+  protected static class ValidatorPool extends ObjectPool<Validator> {
+
+    protected final Schema schema;
+
+    public ValidatorPool(Schema schema) {
+      super(MAX_IDLE_POOL_SIZE);
+      this.schema = schema;
+    }
+
+    protected Validator create() {
+      return schema.newValidator();
+    }
+
+    protected boolean reset(Validator validator) {
+      validator.reset();
+      return true;
+    }
+  }
+
+  /**
+   * Validators for subtrees, they do not check whether referenced ids exist since
+   * the referenced elements are usually outside of the validated subtree.
+   */
+  protected static class SubtreeValidatorPool extends ValidatorPool {
+
+    public SubtreeValidatorPool(Schema schema) {
+      super(schema);
+    }
+
+    protected Validator create() {
+      Validator validator = super.create();
+      disableIdReferenceChecking(validator);
+      return validator;
+    }
+
+    protected boolean reset(Validator validator) {
+      // the handlers of the validators are never changed, and resetting would restore
+      // the initial features while the JDK validator cannot be reconfigured after a reset
+      return true;
+    }
+
+    protected void disableIdReferenceChecking(Validator validator) {
+      try {
+        validator.setFeature(ID_IDREF_CHECKING_FEATURE, false);
+      } catch (SAXException e) {
+        throw new ModelValidationException("Unable to disable id reference checking of validator", e);
+      }
+    }
   }
 
 }
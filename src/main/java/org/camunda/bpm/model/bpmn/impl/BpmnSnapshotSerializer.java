@@ -0,0 +1,401 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.camunda.bpm.model.bpmn.BpmnModelException;
+import org.camunda.bpm.model.xml.type.ModelElementType;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Writes and reads a compact binary snapshot of the DOM document of a model.</p>
+ *
+ * <p>A snapshot starts with a header which contains the magic number, the format
+ * version and the fingerprint of the {@link ElementTypeRegistry}. It is followed
+ * by the nodes of the document in document order. Elements of a known type are
+ * stored by the ordinal of their type, all other names and values are stored as
+ * references into a string table which is built while writing, so every distinct
+ * string is only stored once. Integers are stored as variable length quantities.</p>
+ *
+ * <p>Reading a snapshot builds the DOM document directly, the document is not
+ * parsed or validated. Attributes which are ids are registered as such.</p>
+ */
+public class BpmnSnapshotSerializer {
+
+  /** the magic number of a snapshot, "BPMS" */
+  public static final int MAGIC = 0x42504d53;
+  public static final int VERSION = 1;
+
+  protected static final String ENCODING = "UTF-8";
+
+  protected static final int END = 0;
+  protected static final int TYPED_ELEMENT = 1;
+  protected static final int ELEMENT = 2;
+  protected static final int TEXT = 3;
+  protected static final int CDATA_SECTION = 4;
+  protected static final int COMMENT = 5;
+  protected static final int PROCESSING_INSTRUCTION = 6;
+
+  protected static final int ATTRIBUTE_IS_ID = 1;
+
+  /** string reference of null, a new string is written as <code>NEW_STRING</code> followed by its value */
+  protected static final int NULL_STRING = 0;
+  protected static final int NEW_STRING = 1;
+  protected static final int FIRST_STRING_INDEX = 2;
+
+  protected final ElementTypeRegistry typeRegistry;
+
+  public BpmnSnapshotSerializer(ElementTypeRegistry typeRegistry) {
+    this.typeRegistry = typeRegistry;
+  }
+
+  /**
+   * Writes a snapshot of the document. The stream is flushed but not closed.
+   *
+   * @param document the document to write
+   * @param outputStream the stream to write to
+   * @throws BpmnModelException if the snapshot cannot be written
+   */
+  public void write(Document document, OutputStream outputStream) {
+    try {
+      SnapshotOutput output = new SnapshotOutput(outputStream);
+      output.writeInt(MAGIC);
+      output.writeVarInt(VERSION);
+      output.writeLong(typeRegistry.getFingerprint());
+      for (Node child = document.getFirstChild(); child != null; child = child.getNextSibling()) {
+        writeNode(output, child);
+      }
+      output.writeVarInt(END);
+      output.flush();
+    }
+    catch (IOException e) {
+      throw new BpmnModelException("Unable to write model snapshot", e);
+    }
+  }
+
+  /**
+   * Reads a snapshot into the given empty document. Only the bytes of the snapshot are
+   * read, so the stream can be read on after it. The stream is not closed and not
+   * buffered, pass a buffered stream to read from a file.
+   *
+   * @param inputStream the stream to read from
+   * @param document the empty document to add the nodes to
+   * @throws BpmnModelException if the snapshot cannot be read or was written for other element types
+   */
+  public void read(InputStream inputStream, Document document) {
+    try {
+      SnapshotInput input = new SnapshotInput(inputStream);
+      if (input.readInt() != MAGIC) {
+        throw new BpmnModelException("Unable to read model snapshot: the stream is not a model snapshot");
+      }
+      int version = input.readVarInt();
+      if (version != VERSION) {
+        throw new BpmnModelException("Unable to read model snapshot: unsupported version " + version);
+      }
+      if (input.readLong() != typeRegistry.getFingerprint()) {
+        throw new BpmnModelException("Unable to read model snapshot: the snapshot was written for different element types");
+      }
+      readChildren(input, document, document);
+    }
+    catch (IOException e) {
+      throw new BpmnModelException("Unable to read model snapshot", e);
+    }
+  }
+
+  protected void writeNode(SnapshotOutput output, Node node) throws IOException {
+    switch (node.getNodeType()) {
+      case Node.ELEMENT_NODE:
+        writeElement(output, (Element) node);
+        break;
+      case Node.TEXT_NODE:
+        output.writeVarInt(TEXT);
+        output.writeString(node.getNodeValue());
+        break;
+      case Node.CDATA_SECTION_NODE:
+        output.writeVarInt(CDATA_SECTION);
+        output.writeString(node.getNodeValue());
+        break;
+      case Node.COMMENT_NODE:
+        output.writeVarInt(COMMENT);
+        output.writeString(node.getNodeValue());
+        break;
+      case Node.PROCESSING_INSTRUCTION_NODE:
+        ProcessingInstruction instruction = (ProcessingInstruction) node;
+        output.writeVarInt(PROCESSING_INSTRUCTION);
+        output.writeString(instruction.getTarget());
+        output.writeString(instruction.getData());
+        break;
+      case Node.ENTITY_REFERENCE_NODE:
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+          writeNode(output, child);
+        }
+        break;
+      default:
+        // document types, entities and notations are not part of a snapshot
+    }
+  }
+
+  protected void writeElement(SnapshotOutput output, Element element) throws IOException {
+    String localName = element.getLocalName();
+    int ordinal = localName != null ? typeRegistry.getOrdinal(element.getNamespaceURI(), localName) : -1;
+    if (ordinal >= 0) {
+      output.writeVarInt(TYPED_ELEMENT);
+      output.writeVarInt(ordinal);
+    }
+    else {
+      output.writeVarInt(ELEMENT);
+      output.writeString(element.getNamespaceURI());
+      output.writeString(localName != null ? localName : element.getNodeName());
+    }
+    output.writeString(element.getPrefix());
+
+    NamedNodeMap attributes = element.getAttributes();
+    int attributeCount = attributes.getLength();
+    output.writeVarInt(attributeCount);
+    for (int i = 0; i < attributeCount; i++) {
+      Attr attribute = (Attr) attributes.item(i);
+      String attributeLocalName = attribute.getLocalName();
+      output.writeString(attribute.getNamespaceURI());
+      output.writeString(attribute.getPrefix());
+      output.writeString(attributeLocalName != null ? attributeLocalName : attribute.getName());
+      output.writeString(attribute.getValue());
+      output.writeVarInt(attribute.isId() ? ATTRIBUTE_IS_ID : 0);
+    }
+
+    for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+      writeNode(output, child);
+    }
+    output.writeVarInt(END);
+  }
+
+  protected void readChildren(SnapshotInput input, Document document, Node parent) throws IOException {
+    int nodeType;
+    while ((nodeType = input.readVarInt()) != END) {
+      switch (nodeType) {
+        case TYPED_ELEMENT:
+        case ELEMENT:
+          readElement(input, document, parent, nodeType);
+          break;
+        case TEXT:
+          parent.appendChild(document.createTextNode(input.readString()));
+          break;
+        case CDATA_SECTION:
+          parent.appendChild(document.createCDATASection(input.readString()));
+          break;
+        case COMMENT:
+          parent.appendChild(document.createComment(input.readString()));
+          break;
+        case PROCESSING_INSTRUCTION:
+          String target = input.readString();
+          parent.appendChild(document.createProcessingInstruction(target, input.readString()));
+          break;
+        default:
+          throw new BpmnModelException("Unable to read model snapshot: unknown node type " + nodeType);
+      }
+    }
+  }
+
+  protected void readElement(SnapshotInput input, Document document, Node parent, int nodeType) throws IOException {
+    String namespaceUri;
+    String localName;
+    if (nodeType == TYPED_ELEMENT) {
+      ModelElementType type = getType(input.readVarInt());
+      namespaceUri = type.getTypeNamespace();
+      localName = type.getTypeName();
+    }
+    else {
+      namespaceUri = input.readString();
+      localName = input.readString();
+    }
+    String prefix = input.readString();
+    Element element = document.createElementNS(namespaceUri, qualify(prefix, localName));
+
+    int attributeCount = input.readVarInt();
+    for (int i = 0; i < attributeCount; i++) {
+      String attributeNamespaceUri = input.readString();
+      String attributePrefix = input.readString();
+      String attributeLocalName = input.readString();
+      String value = input.readString();
+      int flags = input.readVarInt();
+      element.setAttributeNS(attributeNamespaceUri, qualify(attributePrefix, attributeLocalName), value);
+      if ((flags & ATTRIBUTE_IS_ID) != 0) {
+        element.setIdAttributeNS(attributeNamespaceUri, attributeLocalName, true);
+      }
+    }
+
+    parent.appendChild(element);
+    readChildren(input, document, element);
+  }
+
+  protected ModelElementType getType(int ordinal) {
+    if (ordinal < 0 || ordinal >= typeRegistry.size()) {
+      throw new BpmnModelException("Unable to read model snapshot: unknown element type " + ordinal);
+    }
+    return typeRegistry.getType(ordinal);
+  }
+
+  protected String qualify(String prefix, String localName) {
+    return prefix != null ? prefix + ":" + localName : localName;
+  }
+
+  /**
+   * Buffered output of a single snapshot, holds the string table.
+   */
+  protected static class SnapshotOutput {
+
+    protected final OutputStream outputStream;
+    protected final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    public SnapshotOutput(OutputStream outputStream) {
+      this.outputStream = new BufferedOutputStream(outputStream);
+    }
+
+    public void writeInt(int value) throws IOException {
+      outputStream.write(value >>> 24);
+      outputStream.write(value >>> 16);
+      outputStream.write(value >>> 8);
+      outputStream.write(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+      writeInt((int) (value >>> 32));
+      writeInt((int) value);
+    }
+
+    public void writeVarInt(int value) throws IOException {
+      while ((value & ~0x7f) != 0) {
+        outputStream.write((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      outputStream.write(value);
+    }
+
+    public void writeString(String value) throws IOException {
+      if (value == null) {
+        writeVarInt(NULL_STRING);
+        return;
+      }
+      Integer index = strings.get(value);
+      if (index != null) {
+        writeVarInt(FIRST_STRING_INDEX + index);
+      }
+      else {
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(ENCODING);
+        writeVarInt(NEW_STRING);
+        writeVarInt(bytes.length);
+        outputStream.write(bytes);
+      }
+    }
+
+    public void flush() throws IOException {
+      outputStream.flush();
+    }
+  }
+
+  /**
+   * Input of a single snapshot, holds the string table. It reads no further than the
+   * end of the snapshot.
+   */
+  protected static class SnapshotInput {
+
+    protected final InputStream inputStream;
+    protected final List<String> strings = new ArrayList<String>();
+    protected byte[] stringBuffer = new byte[256];
+
+    public SnapshotInput(InputStream inputStream) {
+      this.inputStream = inputStream;
+    }
+
+    public int readByte() throws IOException {
+      int value = inputStream.read();
+      if (value < 0) {
+        throw new EOFException("Unexpected end of model snapshot");
+      }
+      return value;
+    }
+
+    public int readInt() throws IOException {
+      return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    public long readLong() throws IOException {
+      return ((long) readInt() << 32) | (readInt() & 0xffffffffL);
+    }
+
+    public int readVarInt() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = readByte();
+        value |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed variable length integer in model snapshot");
+    }
+
+    public String readString() throws IOException {
+      int reference = readVarInt();
+      if (reference == NULL_STRING) {
+        return null;
+      }
+      else if (reference == NEW_STRING) {
+        String value = readNewString();
+        strings.add(value);
+        return value;
+      }
+      else {
+        int index = reference - FIRST_STRING_INDEX;
+        if (index < 0 || index >= strings.size()) {
+          throw new IOException("Invalid string reference in model snapshot");
+        }
+        return strings.get(index);
+      }
+    }
+
+    protected String readNewString() throws IOException {
+      int length = readVarInt();
+      if (length < 0) {
+        throw new IOException("Invalid string length in model snapshot");
+      }
+      if (length > stringBuffer.length) {
+        stringBuffer = new byte[Math.max(length, stringBuffer.length * 2)];
+      }
+      int offset = 0;
+      while (offset < length) {
+        int read = inputStream.read(stringBuffer, offset, length - offset);
+        if (read < 0) {
+          throw new EOFException("Unexpected end of model snapshot");
+        }
+        offset += read;
+      }
+      return new String(stringBuffer, 0, length, ENCODING);
+    }
+  }
+
+}
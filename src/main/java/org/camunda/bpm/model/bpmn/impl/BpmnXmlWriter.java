@@ -0,0 +1,485 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.camunda.bpm.model.bpmn.BpmnModelException;
+import org.camunda.bpm.model.bpmn.WriteOptions;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+import javax.xml.XMLConstants;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Serializes a DOM document by walking it directly and writing UTF-8 through a
+ * pooled character buffer, instead of running it through a JAXP transformer.</p>
+ *
+ * <p>The output matches the format of the transformer used before: an XML
+ * declaration with <code>standalone="no"</code>, attributes in DOM order and
+ * missing namespace declarations added after the attributes of the element
+ * which needs them. If pretty printing is enabled, elements with element-only
+ * content are indented by two spaces and whitespace-only text between them is
+ * dropped. Elements with text content are written as they are.</p>
+ *
+ * <p>This class is thread safe.</p>
+ */
+public class BpmnXmlWriter {
+
+  public static final String ENCODING = "UTF-8";
+
+  protected static final int BUFFER_SIZE = 8192;
+  protected static final int MAX_IDLE_BUFFERS = 16;
+  protected static final String INDENT = "  ";
+
+  protected final ObjectPool<char[]> bufferPool = new ObjectPool<char[]>(MAX_IDLE_BUFFERS) {
+    protected char[] create() {
+      return new char[BUFFER_SIZE];
+    }
+  };
+
+  /**
+   * Writes the document UTF-8 encoded to the output stream. The stream is flushed but not closed.
+   *
+   * @param document the document to write
+   * @param outputStream the stream to write to
+   * @param writeOptions the options which control the output format
+   * @throws BpmnModelException if the document cannot be written
+   */
+  public void write(Document document, OutputStream outputStream, WriteOptions writeOptions) {
+    try {
+      write(document, new OutputStreamWriter(outputStream, ENCODING), writeOptions);
+    }
+    catch (IOException e) {
+      throw new BpmnModelException("Unable to write document", e);
+    }
+  }
+
+  /**
+   * @param document the document to convert
+   * @param writeOptions the options which control the output format
+   * @return the XML string representation of the document
+   */
+  public String toString(Document document, WriteOptions writeOptions) {
+    StringWriter writer = new StringWriter();
+    write(document, writer, writeOptions);
+    return writer.toString();
+  }
+
+  /**
+   * Writes the document to the writer. The writer is flushed but not closed.
+   *
+   * @param document the document to write
+   * @param writer the writer to write to
+   * @param writeOptions the options which control the output format
+   * @throws BpmnModelException if the document cannot be written
+   */
+  public void write(Document document, Writer writer, WriteOptions writeOptions) {
+    char[] buffer = bufferPool.acquire();
+    try {
+      DocumentSerializer serializer = new DocumentSerializer(writer, buffer, writeOptions.isPrettyPrint());
+      serializer.writeDocument(document);
+      serializer.flush();
+    }
+    catch (IOException e) {
+      throw new BpmnModelException("Unable to write document", e);
+    }
+    finally {
+      bufferPool.release(buffer);
+    }
+  }
+
+  /**
+   * Writes a single document, holds the namespace bindings in scope and the buffer.
+   */
+  protected static class DocumentSerializer {
+
+    protected final Writer writer;
+    protected final char[] buffer;
+    protected final boolean prettyPrint;
+    protected int position = 0;
+
+    /** prefix and namespace URI pairs of the declarations in scope, innermost last */
+    protected final List<String> bindings = new ArrayList<String>();
+    protected int generatedPrefixCount = 0;
+
+    public DocumentSerializer(Writer writer, char[] buffer, boolean prettyPrint) {
+      this.writer = writer;
+      this.buffer = buffer;
+      this.prettyPrint = prettyPrint;
+      bind(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI);
+    }
+
+    public void writeDocument(Document document) throws IOException {
+      write("<?xml version=\"1.0\" encoding=\"" + ENCODING + "\" standalone=\"no\"?>");
+      if (prettyPrint) {
+        write('\n');
+      }
+      for (Node child = document.getFirstChild(); child != null; child = child.getNextSibling()) {
+        short nodeType = child.getNodeType();
+        if (nodeType == Node.ELEMENT_NODE || nodeType == Node.COMMENT_NODE || nodeType == Node.PROCESSING_INSTRUCTION_NODE) {
+          writeNode(child, 0, false);
+          if (prettyPrint) {
+            write('\n');
+          }
+        }
+      }
+    }
+
+    protected void writeNode(Node node, int depth, boolean indent) throws IOException {
+      switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+          writeElement((Element) node, depth);
+          break;
+        case Node.TEXT_NODE:
+          if (!indent || !isWhitespace(node.getNodeValue())) {
+            writeText(node.getNodeValue(), false);
+          }
+          break;
+        case Node.CDATA_SECTION_NODE:
+          writeCData(node.getNodeValue());
+          break;
+        case Node.COMMENT_NODE:
+          write("<!--");
+          write(node.getNodeValue());
+          write("-->");
+          break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+          ProcessingInstruction instruction = (ProcessingInstruction) node;
+          write("<?");
+          write(instruction.getTarget());
+          String data = instruction.getData();
+          if (data != null && data.length() > 0) {
+            write(' ');
+            write(data);
+          }
+          write("?>");
+          break;
+        case Node.ENTITY_REFERENCE_NODE:
+          writeChildren(node, depth, indent);
+          break;
+        default:
+          // document types, entities and notations are not written
+      }
+    }
+
+    protected void writeElement(Element element, int depth) throws IOException {
+      int scope = bindings.size();
+      String qualifiedName = element.getNodeName();
+      NamedNodeMap attributes = element.getAttributes();
+      int attributeCount = attributes.getLength();
+
+      // declarations of the element have to be in scope before resolving any prefix
+      for (int i = 0; i < attributeCount; i++) {
+        Attr attribute = (Attr) attributes.item(i);
+        if (isNamespaceDeclaration(attribute)) {
+          String prefix = XMLConstants.XMLNS_ATTRIBUTE.equals(attribute.getName()) ? "" : attribute.getLocalName();
+          bind(prefix, attribute.getValue());
+        }
+      }
+
+      List<String> declarations = null;
+      String namespaceUri = element.getNamespaceURI();
+      if (element.getLocalName() != null) {
+        String prefix = element.getPrefix();
+        String uri = namespaceUri != null ? namespaceUri : "";
+        if (prefix == null) {
+          prefix = "";
+        }
+        if (!uri.equals(lookupNamespaceUri(prefix))) {
+          if (isDeclaredInScope(prefix, scope)) {
+            // the prefix is bound to another namespace on this element
+            prefix = lookupPrefix(uri);
+            if (prefix == null) {
+              prefix = generatePrefix();
+              declarations = addDeclaration(declarations, prefix, uri);
+            }
+            qualifiedName = prefix + ":" + element.getLocalName();
+          }
+          else {
+            declarations = addDeclaration(declarations, prefix, uri);
+          }
+        }
+      }
+
+      write('<');
+      write(qualifiedName);
+
+      // existing declarations are written before all other attributes
+      for (int i = 0; i < attributeCount; i++) {
+        Attr attribute = (Attr) attributes.item(i);
+        if (isNamespaceDeclaration(attribute)) {
+          writeAttribute(attribute.getName(), attribute.getValue());
+        }
+      }
+
+      for (int i = 0; i < attributeCount; i++) {
+        Attr attribute = (Attr) attributes.item(i);
+        if (isNamespaceDeclaration(attribute)) {
+          continue;
+        }
+        String attributeName = attribute.getName();
+        String attributeNamespaceUri = attribute.getNamespaceURI();
+        if (attributeNamespaceUri != null && attribute.getLocalName() != null) {
+          String prefix = attribute.getPrefix();
+          if (prefix == null || !attributeNamespaceUri.equals(lookupNamespaceUri(prefix))) {
+            prefix = lookupPrefix(attributeNamespaceUri);
+            if (prefix == null) {
+              prefix = attribute.getPrefix();
+              if (prefix == null || isDeclaredInScope(prefix, scope)) {
+                prefix = generatePrefix();
+              }
+              declarations = addDeclaration(declarations, prefix, attributeNamespaceUri);
+            }
+            attributeName = prefix + ":" + attribute.getLocalName();
+          }
+        }
+        writeAttribute(attributeName, attribute.getValue());
+      }
+
+      if (declarations != null) {
+        for (int i = 0; i < declarations.size(); i += 2) {
+          String prefix = declarations.get(i);
+          String name = prefix.length() == 0 ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+          writeAttribute(name, declarations.get(i + 1));
+        }
+      }
+
+      Node firstChild = element.getFirstChild();
+      if (firstChild == null) {
+        write("/>");
+      }
+      else {
+        write('>');
+        boolean indent = prettyPrint && hasElementOnlyContent(element);
+        writeChildren(element, depth + 1, indent);
+        if (indent) {
+          writeIndent(depth);
+        }
+        write("</");
+        write(qualifiedName);
+        write('>');
+      }
+
+      unbind(scope);
+    }
+
+    protected void writeChildren(Node node, int depth, boolean indent) throws IOException {
+      for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (indent && child.getNodeType() != Node.TEXT_NODE) {
+          writeIndent(depth);
+        }
+        writeNode(child, depth, indent);
+      }
+    }
+
+    protected boolean isNamespaceDeclaration(Attr attribute) {
+      return XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI());
+    }
+
+    protected List<String> addDeclaration(List<String> declarations, String prefix, String namespaceUri) {
+      if (declarations == null) {
+        declarations = new ArrayList<String>(4);
+      }
+      declarations.add(prefix);
+      declarations.add(namespaceUri);
+      bind(prefix, namespaceUri);
+      return declarations;
+    }
+
+    protected String generatePrefix() {
+      String prefix;
+      do {
+        prefix = "ns" + (++generatedPrefixCount);
+      }
+      while (lookupNamespaceUri(prefix) != null);
+      return prefix;
+    }
+
+    protected void bind(String prefix, String namespaceUri) {
+      bindings.add(prefix);
+      bindings.add(namespaceUri);
+    }
+
+    protected void unbind(int scope) {
+      for (int i = bindings.size() - 1; i >= scope; i--) {
+        bindings.remove(i);
+      }
+    }
+
+    protected String lookupNamespaceUri(String prefix) {
+      for (int i = bindings.size() - 2; i >= 0; i -= 2) {
+        if (bindings.get(i).equals(prefix)) {
+          return bindings.get(i + 1);
+        }
+      }
+      return prefix.length() == 0 ? "" : null;
+    }
+
+    /**
+     * @return a non empty prefix bound to the namespace URI or null if no such prefix is in scope
+     */
+    protected String lookupPrefix(String namespaceUri) {
+      for (int i = bindings.size() - 2; i >= 0; i -= 2) {
+        String prefix = bindings.get(i);
+        if (prefix.length() > 0 && bindings.get(i + 1).equals(namespaceUri) && namespaceUri.equals(lookupNamespaceUri(prefix))) {
+          return prefix;
+        }
+      }
+      return null;
+    }
+
+    protected boolean isDeclaredInScope(String prefix, int scope) {
+      for (int i = scope; i < bindings.size(); i += 2) {
+        if (bindings.get(i).equals(prefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    protected boolean hasElementOnlyContent(Element element) {
+      boolean hasElements = false;
+      for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+        short nodeType = child.getNodeType();
+        if (nodeType == Node.ELEMENT_NODE) {
+          hasElements = true;
+        }
+        else if (nodeType == Node.CDATA_SECTION_NODE || nodeType == Node.ENTITY_REFERENCE_NODE
+          || (nodeType == Node.TEXT_NODE && !isWhitespace(child.getNodeValue()))) {
+          return false;
+        }
+      }
+      return hasElements;
+    }
+
+    protected boolean isWhitespace(String text) {
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    protected void writeIndent(int depth) throws IOException {
+      write('\n');
+      for (int i = 0; i < depth; i++) {
+        write(INDENT);
+      }
+    }
+
+    protected void writeAttribute(String name, String value) throws IOException {
+      write(' ');
+      write(name);
+      write("=\"");
+      writeText(value, true);
+      write('"');
+    }
+
+    protected void writeText(String text, boolean attribute) throws IOException {
+      int length = text.length();
+      int start = 0;
+      for (int i = 0; i < length; i++) {
+        String replacement = escape(text.charAt(i), attribute);
+        if (replacement != null) {
+          write(text, start, i);
+          write(replacement);
+          start = i + 1;
+        }
+      }
+      write(text, start, length);
+    }
+
+    protected String escape(char c, boolean attribute) {
+      switch (c) {
+        case '&':
+          return "&amp;";
+        case '<':
+          return "&lt;";
+        case '>':
+          return "&gt;";
+        case '\r':
+          return "&#13;";
+        case '"':
+          return attribute ? "&quot;" : null;
+        case '\n':
+          // attribute values are normalized by parsers, so line breaks must be escaped
+          return attribute ? "&#10;" : null;
+        case '\t':
+          return attribute ? "&#9;" : null;
+        default:
+          return null;
+      }
+    }
+
+    protected void writeCData(String data) throws IOException {
+      write("<![CDATA[");
+      int start = 0;
+      int end;
+      while ((end = data.indexOf("]]>", start)) != -1) {
+        // split the section, it must not contain its own end marker
+        write(data, start, end + 2);
+        write("]]><![CDATA[");
+        start = end + 2;
+      }
+      write(data, start, data.length());
+      write("]]>");
+    }
+
+    protected void write(char c) throws IOException {
+      if (position == buffer.length) {
+        flushBuffer();
+      }
+      buffer[position++] = c;
+    }
+
+    protected void write(String text) throws IOException {
+      write(text, 0, text.length());
+    }
+
+    protected void write(String text, int start, int end) throws IOException {
+      while (start < end) {
+        if (position == buffer.length) {
+          flushBuffer();
+        }
+        int count = Math.min(end - start, buffer.length - position);
+        text.getChars(start, start + count, buffer, position);
+        position += count;
+        start += count;
+      }
+    }
+
+    protected void flushBuffer() throws IOException {
+      writer.write(buffer, 0, position);
+      position = 0;
+    }
+
+    public void flush() throws IOException {
+      flushBuffer();
+      writer.flush();
+    }
+
+  }
+
+}
@@ -0,0 +1,262 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN20_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_ELEMENT_BPMN_DIAGRAM;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ATTRIBUTE_ID;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_RELATIONSHIP;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+
+import org.camunda.bpm.model.bpmn.impl.dom.DomNodes;
+import org.camunda.bpm.model.xml.ModelParseException;
+import org.camunda.bpm.model.xml.impl.util.DomUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * <p>The <code>BPMNDiagram</code> elements of a model which were not built while
+ * parsing, see {@link org.camunda.bpm.model.bpmn.ParseOptions#lazyDiagrams(boolean)}.</p>
+ *
+ * <p>Each diagram is kept as its UTF-8 encoded markup together with the namespace
+ * declarations in scope of it. An empty text node marks the position of the diagram
+ * in the document, so it is inserted exactly where it was read from once the
+ * diagrams are materialized.</p>
+ */
+public class DeferredDiagrams {
+
+  protected static final String ENCODING = "UTF-8";
+  protected static final String FRAGMENT_ROOT = "fragment";
+
+  protected final ObjectPool<DocumentBuilder> documentBuilderPool;
+  protected final List<Fragment> fragments = new ArrayList<Fragment>();
+
+  /**
+   * @param documentBuilderPool the pool of namespace aware, non validating document
+   *                            builders used to parse the diagrams
+   */
+  public DeferredDiagrams(ObjectPool<DocumentBuilder> documentBuilderPool) {
+    this.documentBuilderPool = documentBuilderPool;
+  }
+
+  /**
+   * @param content the UTF-8 encoded markup of the diagram
+   * @param namespaces the namespace declarations in scope of the diagram by prefix,
+   *                   the default namespace has the empty prefix
+   * @param placeholder the node which marks the position of the diagram
+   */
+  public void add(byte[] content, Map<String, String> namespaces, Node placeholder) {
+    fragments.add(new Fragment(content, namespaces, placeholder));
+  }
+
+  public boolean isEmpty() {
+    return fragments.isEmpty();
+  }
+
+  public int size() {
+    return fragments.size();
+  }
+
+  /**
+   * @return the total size of the deferred markup in bytes
+   */
+  public long getContentLength() {
+    long length = 0;
+    for (Fragment fragment : fragments) {
+      length += fragment.content.length;
+    }
+    return length;
+  }
+
+  /**
+   * Returns the deferred diagrams of a copy of the document. The placeholders are
+   * resolved by their position in the copied document element. The diagrams of this
+   * instance are only read, so copies can be created concurrently as long as this
+   * instance is not materialized.
+   *
+   * @param document the copy of the document the diagrams were deferred from
+   * @return the deferred diagrams of the copy
+   */
+  public DeferredDiagrams copyFor(Document document) {
+    DeferredDiagrams copy = new DeferredDiagrams(documentBuilderPool);
+    Element documentElement = document.getDocumentElement();
+    for (Fragment fragment : fragments) {
+      Node placeholder = null;
+      int index = fragment.getPlaceholderIndex();
+      if (index >= 0 && documentElement != null) {
+        placeholder = documentElement.getChildNodes().item(index);
+        if (!isPlaceholder(placeholder)) {
+          // the copy has a different structure, the diagram is inserted at the default position
+          placeholder = null;
+        }
+      }
+      copy.add(fragment.content, fragment.namespaces, placeholder);
+    }
+    return copy;
+  }
+
+  /**
+   * Parses the deferred diagrams and inserts them into the document. A diagram whose
+   * placeholder was removed is inserted before the first diagram or relationship of
+   * the document element, or appended to it.
+   *
+   * @param document the document to insert the diagrams into
+   * @throws ModelParseException if a diagram cannot be parsed
+   */
+  public void materialize(Document document) {
+    Element documentElement = document.getDocumentElement();
+    if (documentElement == null) {
+      return;
+    }
+    DocumentBuilder documentBuilder = documentBuilderPool.acquire();
+    try {
+      documentBuilder.setErrorHandler(new DomUtil.DomErrorHandler());
+      for (Fragment fragment : fragments) {
+        Element diagram = (Element) document.importNode(fragment.parse(documentBuilder), true);
+        registerIdAttributes(diagram);
+
+        Node placeholder = fragment.placeholder;
+        if (placeholder != null && placeholder.getParentNode() == documentElement) {
+          documentElement.replaceChild(diagram, placeholder);
+        }
+        else {
+          documentElement.insertBefore(diagram, getInsertionPoint(documentElement));
+        }
+      }
+      fragments.clear();
+    } finally {
+      documentBuilderPool.release(documentBuilder);
+    }
+  }
+
+  protected boolean isPlaceholder(Node node) {
+    return node != null && node.getNodeType() == Node.TEXT_NODE && node.getNodeValue().length() == 0;
+  }
+
+  protected Node getInsertionPoint(Element documentElement) {
+    for (Node child = documentElement.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() != Node.ELEMENT_NODE) {
+        continue;
+      }
+      String namespaceUri = child.getNamespaceURI();
+      String localName = child.getLocalName();
+      if ((BPMNDI_NS.equals(namespaceUri) && BPMNDI_ELEMENT_BPMN_DIAGRAM.equals(localName))
+        || (BPMN20_NS.equals(namespaceUri) && BPMN_ELEMENT_RELATIONSHIP.equals(localName))) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  protected void registerIdAttributes(Element diagram) {
+    Node node = diagram;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        Element element = (Element) node;
+        if (element.hasAttributeNS(null, BPMN_ATTRIBUTE_ID)) {
+          element.setIdAttributeNS(null, BPMN_ATTRIBUTE_ID, true);
+        }
+      }
+      node = DomNodes.nextNode(node, diagram);
+    }
+  }
+
+  protected static class Fragment {
+
+    protected final byte[] content;
+    protected final Map<String, String> namespaces;
+    protected final Node placeholder;
+
+    public Fragment(byte[] content, Map<String, String> namespaces, Node placeholder) {
+      this.content = content;
+      this.namespaces = namespaces;
+      this.placeholder = placeholder;
+    }
+
+    /**
+     * @return the index of the placeholder in its parent or -1 if it was removed
+     */
+    public int getPlaceholderIndex() {
+      if (placeholder == null || placeholder.getParentNode() == null) {
+        return -1;
+      }
+      int index = 0;
+      for (Node sibling = placeholder.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+        index++;
+      }
+      return index;
+    }
+
+    /**
+     * Parses the diagram inside of a synthetic root element which declares the
+     * namespaces in scope, so the diagram itself is not changed.
+     *
+     * @return the parsed diagram element
+     */
+    public Element parse(DocumentBuilder documentBuilder) {
+      InputStream stream = new SequenceInputStream(
+        new ByteArrayInputStream(encode(createStartTag())),
+        new SequenceInputStream(new ByteArrayInputStream(content), new ByteArrayInputStream(encode("</" + FRAGMENT_ROOT + ">"))));
+      try {
+        Document fragmentDocument = documentBuilder.parse(stream);
+        for (Node child = fragmentDocument.getDocumentElement().getFirstChild(); child != null; child = child.getNextSibling()) {
+          if (child.getNodeType() == Node.ELEMENT_NODE) {
+            return (Element) child;
+          }
+        }
+        throw new ModelParseException("Deferred diagram is empty");
+      } catch (SAXException e) {
+        throw new ModelParseException("SAXException while parsing deferred diagram", e);
+      } catch (IOException e) {
+        throw new ModelParseException("IOException while parsing deferred diagram", e);
+      }
+    }
+
+    protected String createStartTag() {
+      StringBuilder startTag = new StringBuilder("<?xml version=\"1.0\" encoding=\"" + ENCODING + "\"?><" + FRAGMENT_ROOT);
+      for (Map.Entry<String, String> namespace : namespaces.entrySet()) {
+        startTag.append(' ').append(XMLConstants.XMLNS_ATTRIBUTE);
+        if (namespace.getKey().length() > 0) {
+          startTag.append(':').append(namespace.getKey());
+        }
+        startTag.append("=\"");
+        DocumentBuildingHandler.appendEscaped(startTag, namespace.getValue(), true);
+        startTag.append('"');
+      }
+      return startTag.append('>').toString();
+    }
+
+    protected static byte[] encode(String markup) {
+      try {
+        return markup.getBytes(ENCODING);
+      } catch (UnsupportedEncodingException e) {
+        throw new ModelParseException("Unsupported encoding " + ENCODING, e);
+      }
+    }
+  }
+
+}
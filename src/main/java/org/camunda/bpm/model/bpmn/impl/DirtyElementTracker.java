@@ -0,0 +1,93 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Collects the elements of a model which were changed since the last validation,
+ * see {@link org.camunda.bpm.model.bpmn.WriteOptions.ValidationMode#DIRTY_ONLY}.</p>
+ *
+ * <p>An element is dirty if one of its attributes, its text or its list of child
+ * nodes changed. If a child is inserted or removed, the parent is dirty since the
+ * change affects its content model, the inserted subtree is validated with it.</p>
+ */
+public class DirtyElementTracker implements DomMutationListener {
+
+  protected final Set<Element> dirtyElements = new LinkedHashSet<Element>();
+  protected boolean documentDirty = true;
+
+  /**
+   * @return true if the whole document has to be validated, either because it was
+   * never validated since tracking started or because the document element changed
+   */
+  public synchronized boolean isDocumentDirty() {
+    return documentDirty;
+  }
+
+  /**
+   * @return the elements changed since the last call of {@link #clear()}
+   */
+  public synchronized List<Element> getDirtyElements() {
+    return new ArrayList<Element>(dirtyElements);
+  }
+
+  /**
+   * Marks the document as validated.
+   */
+  public synchronized void clear() {
+    dirtyElements.clear();
+    documentDirty = false;
+  }
+
+  public void nodeInserted(Node node, Node parent) {
+    markDirty(parent);
+  }
+
+  public void nodeRemoved(Node node, Node parent) {
+    markDirty(parent);
+  }
+
+  public void attributeModified(Element element, Attr attribute, String previousValue, String newValue) {
+    markDirty(element);
+  }
+
+  public void characterDataModified(Node node, String previousValue, String newValue) {
+    Node parent = node.getParentNode();
+    if (parent != null && parent.getNodeType() == Node.ATTRIBUTE_NODE) {
+      parent = ((Attr) parent).getOwnerElement();
+    }
+    markDirty(parent);
+  }
+
+  protected synchronized void markDirty(Node node) {
+    if (node == null) {
+      return;
+    }
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      dirtyElements.add((Element) node);
+    }
+    else {
+      // the document element or a top level node changed
+      documentDirty = true;
+    }
+  }
+
+}
@@ -0,0 +1,376 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_ELEMENT_BPMN_DIAGRAM;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ATTRIBUTE_ID;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+
+import org.camunda.bpm.model.xml.ModelParseException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.NamespaceSupport;
+
+/**
+ * <p>Builds a DOM document from SAX events. Children of the document element can be
+ * skipped entirely, see {@link #isSkipped(String, String, Attributes)}.</p>
+ *
+ * <p>If deferred diagrams are set, the <code>BPMNDiagram</code> children of the document
+ * element are not built. Their markup is written to a buffer instead and collected as
+ * {@link DeferredDiagrams}, which are materialized on first access.</p>
+ *
+ * <p>The document matches the one of a namespace aware document builder which keeps
+ * comments and whitespace. Like for trusted models, unqualified <code>id</code>
+ * attributes are registered as id attributes.</p>
+ */
+public class DocumentBuildingHandler extends DefaultHandler implements LexicalHandler {
+
+  protected final Document document;
+  protected DeferredDiagrams deferredDiagrams;
+  protected boolean skipDiagrams = false;
+
+  protected final NamespaceSupport namespaces = new NamespaceSupport();
+  protected final List<String> prefixMappings = new ArrayList<String>();
+  protected final StringBuilder text = new StringBuilder();
+
+  protected Node currentNode;
+  protected int depth = 0;
+  protected boolean inCdata = false;
+  protected boolean inDtd = false;
+
+  /** the depth inside of a skipped subtree, or 0 */
+  protected int skippedDepth = 0;
+
+  /** the markup of the diagram which is currently deferred, or null */
+  protected StringBuilder diagram;
+  protected Map<String, String> diagramNamespaces;
+  protected int diagramDepth = 0;
+
+  public DocumentBuildingHandler(Document document) {
+    this.document = document;
+    this.currentNode = document;
+  }
+
+  public Document getDocument() {
+    return document;
+  }
+
+  public DeferredDiagrams getDeferredDiagrams() {
+    return deferredDiagrams;
+  }
+
+  /**
+   * @param deferredDiagrams the deferred diagrams to collect the diagrams in, or null to build them
+   */
+  public void setDeferredDiagrams(DeferredDiagrams deferredDiagrams) {
+    this.deferredDiagrams = deferredDiagrams;
+  }
+
+  public boolean isSkipDiagrams() {
+    return skipDiagrams;
+  }
+
+  /**
+   * @param skipDiagrams true if the diagrams should neither be built nor deferred
+   */
+  public void setSkipDiagrams(boolean skipDiagrams) {
+    this.skipDiagrams = skipDiagrams;
+  }
+
+  public void startPrefixMapping(String prefix, String uri) {
+    prefixMappings.add(prefix);
+    prefixMappings.add(uri);
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes attributes) {
+    if (skippedDepth > 0 || (diagram == null && depth == 1 && isSkipped(uri, localName, attributes))) {
+      skippedDepth++;
+      prefixMappings.clear();
+      return;
+    }
+    flushText();
+
+    if (diagram == null && depth == 1 && deferredDiagrams != null && isDiagram(uri, localName)) {
+      diagram = new StringBuilder();
+      diagramNamespaces = getNamespacesInScope();
+      diagramDepth = 0;
+    }
+
+    namespaces.pushContext();
+    for (int i = 0; i < prefixMappings.size(); i += 2) {
+      namespaces.declarePrefix(prefixMappings.get(i), prefixMappings.get(i + 1));
+    }
+
+    if (diagram != null) {
+      appendStartTag(qName, attributes);
+      diagramDepth++;
+    }
+    else {
+      currentNode = currentNode.appendChild(createElement(uri, qName, attributes));
+      depth++;
+    }
+    prefixMappings.clear();
+  }
+
+  public void endElement(String uri, String localName, String qName) {
+    if (skippedDepth > 0) {
+      skippedDepth--;
+      return;
+    }
+    flushText();
+    namespaces.popContext();
+
+    if (diagram != null) {
+      diagram.append("</").append(qName).append('>');
+      if (--diagramDepth == 0) {
+        Node placeholder = currentNode.appendChild(document.createTextNode(""));
+        deferredDiagrams.add(encode(diagram), diagramNamespaces, placeholder);
+        diagram = null;
+        diagramNamespaces = null;
+      }
+    }
+    else {
+      currentNode = currentNode.getParentNode();
+      depth--;
+    }
+  }
+
+  public void characters(char[] ch, int start, int length) {
+    if (skippedDepth > 0) {
+      return;
+    }
+    if (diagram != null) {
+      if (inCdata) {
+        diagram.append(ch, start, length);
+      }
+      else {
+        appendEscaped(diagram, new String(ch, start, length), false);
+      }
+    }
+    else {
+      text.append(ch, start, length);
+    }
+  }
+
+  public void ignorableWhitespace(char[] ch, int start, int length) {
+    characters(ch, start, length);
+  }
+
+  public void processingInstruction(String target, String data) {
+    if (skippedDepth > 0) {
+      return;
+    }
+    flushText();
+    if (diagram != null) {
+      diagram.append("<?").append(target);
+      if (data != null && data.length() > 0) {
+        diagram.append(' ').append(data);
+      }
+      diagram.append("?>");
+    }
+    else {
+      currentNode.appendChild(document.createProcessingInstruction(target, data));
+    }
+  }
+
+  public void comment(char[] ch, int start, int length) {
+    if (inDtd || skippedDepth > 0) {
+      return;
+    }
+    flushText();
+    String data = new String(ch, start, length);
+    if (diagram != null) {
+      diagram.append("<!--").append(data).append("-->");
+    }
+    else {
+      currentNode.appendChild(document.createComment(data));
+    }
+  }
+
+  public void startCDATA() {
+    if (skippedDepth > 0) {
+      return;
+    }
+    flushText();
+    inCdata = true;
+    if (diagram != null) {
+      diagram.append("<![CDATA[");
+    }
+  }
+
+  public void endCDATA() {
+    if (skippedDepth > 0) {
+      return;
+    }
+    inCdata = false;
+    if (diagram != null) {
+      diagram.append("]]>");
+    }
+    else {
+      currentNode.appendChild(document.createCDATASection(text.toString()));
+      text.setLength(0);
+    }
+  }
+
+  public void startDTD(String name, String publicId, String systemId) {
+    inDtd = true;
+  }
+
+  public void endDTD() {
+    inDtd = false;
+  }
+
+  public void startEntity(String name) {
+    // entities are expanded
+  }
+
+  public void endEntity(String name) {
+    // entities are expanded
+  }
+
+  /**
+   * Decides whether a child of the document element and its subtree are skipped.
+   *
+   * @return true if the element should not be part of the document
+   */
+  protected boolean isSkipped(String uri, String localName, Attributes attributes) {
+    return skipDiagrams && isDiagram(uri, localName);
+  }
+
+  protected boolean isDiagram(String uri, String localName) {
+    return BPMNDI_NS.equals(uri) && BPMNDI_ELEMENT_BPMN_DIAGRAM.equals(localName);
+  }
+
+  protected Element createElement(String uri, String qName, Attributes attributes) {
+    Element element = document.createElementNS(emptyToNull(uri), qName);
+    for (int i = 0; i < prefixMappings.size(); i += 2) {
+      String prefix = prefixMappings.get(i);
+      String name = prefix.length() == 0 ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+      element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, prefixMappings.get(i + 1));
+    }
+    for (int i = 0; i < attributes.getLength(); i++) {
+      element.setAttributeNS(emptyToNull(attributes.getURI(i)), attributes.getQName(i), attributes.getValue(i));
+    }
+    if (element.hasAttributeNS(null, BPMN_ATTRIBUTE_ID)) {
+      element.setIdAttributeNS(null, BPMN_ATTRIBUTE_ID, true);
+    }
+    return element;
+  }
+
+  protected void appendStartTag(String qName, Attributes attributes) {
+    diagram.append('<').append(qName);
+    for (int i = 0; i < prefixMappings.size(); i += 2) {
+      String prefix = prefixMappings.get(i);
+      diagram.append(' ').append(XMLConstants.XMLNS_ATTRIBUTE);
+      if (prefix.length() > 0) {
+        diagram.append(':').append(prefix);
+      }
+      diagram.append("=\"");
+      appendEscaped(diagram, prefixMappings.get(i + 1), true);
+      diagram.append('"');
+    }
+    for (int i = 0; i < attributes.getLength(); i++) {
+      diagram.append(' ').append(attributes.getQName(i)).append("=\"");
+      appendEscaped(diagram, attributes.getValue(i), true);
+      diagram.append('"');
+    }
+    diagram.append('>');
+  }
+
+  protected void flushText() {
+    if (text.length() > 0 && !inCdata) {
+      currentNode.appendChild(document.createTextNode(text.toString()));
+      text.setLength(0);
+    }
+  }
+
+  /**
+   * @return the namespace declarations in scope by prefix, the default namespace has the empty prefix
+   */
+  protected Map<String, String> getNamespacesInScope() {
+    Map<String, String> namespacesInScope = new LinkedHashMap<String, String>();
+    String defaultNamespace = namespaces.getURI("");
+    if (defaultNamespace != null && defaultNamespace.length() > 0) {
+      namespacesInScope.put("", defaultNamespace);
+    }
+    Enumeration<?> prefixes = namespaces.getPrefixes();
+    while (prefixes.hasMoreElements()) {
+      String prefix = (String) prefixes.nextElement();
+      if (!XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+        namespacesInScope.put(prefix, namespaces.getURI(prefix));
+      }
+    }
+    return namespacesInScope;
+  }
+
+  /**
+   * Appends the text escaped as XML character data or, if an attribute value is
+   * escaped, as attribute value which preserves all whitespace characters.
+   */
+  protected static void appendEscaped(StringBuilder builder, String text, boolean attribute) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '&':
+          builder.append("&amp;");
+          break;
+        case '<':
+          builder.append("&lt;");
+          break;
+        case '>':
+          builder.append("&gt;");
+          break;
+        case '"':
+          builder.append(attribute ? "&quot;" : "\"");
+          break;
+        case '\r':
+          builder.append("&#13;");
+          break;
+        case '\n':
+          builder.append(attribute ? "&#10;" : "\n");
+          break;
+        case '\t':
+          builder.append(attribute ? "&#9;" : "\t");
+          break;
+        default:
+          builder.append(c);
+      }
+    }
+  }
+
+  protected static String emptyToNull(String uri) {
+    return uri == null || uri.length() == 0 ? null : uri;
+  }
+
+  protected static byte[] encode(StringBuilder markup) {
+    try {
+      return markup.toString().getBytes(DeferredDiagrams.ENCODING);
+    } catch (UnsupportedEncodingException e) {
+      throw new ModelParseException("Unsupported encoding " + DeferredDiagrams.ENCODING, e);
+    }
+  }
+
+}
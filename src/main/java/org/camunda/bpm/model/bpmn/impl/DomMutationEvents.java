@@ -0,0 +1,110 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+import org.w3c.dom.events.MutationEvent;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>Dispatches the DOM level 2 mutation events of a document to {@link DomMutationListener}s.</p>
+ *
+ * <p>DOM implementations like Xerces only pay the cost of creating and dispatching mutation
+ * events while at least one listener is registered on the document. The W3C listeners are
+ * therefore only registered as long as this dispatcher has listeners itself.</p>
+ */
+public class DomMutationEvents implements EventListener {
+
+  public static final String NODE_INSERTED = "DOMNodeInserted";
+  public static final String NODE_REMOVED = "DOMNodeRemoved";
+  public static final String ATTRIBUTE_MODIFIED = "DOMAttrModified";
+  public static final String CHARACTER_DATA_MODIFIED = "DOMCharacterDataModified";
+
+  protected static final String[] EVENT_TYPES = { NODE_INSERTED, NODE_REMOVED, ATTRIBUTE_MODIFIED, CHARACTER_DATA_MODIFIED };
+
+  protected final Document document;
+  protected final List<DomMutationListener> listeners = new CopyOnWriteArrayList<DomMutationListener>();
+
+  public DomMutationEvents(Document document) {
+    this.document = document;
+  }
+
+  /**
+   * @param document the document to check
+   * @return true if the DOM implementation of the document supports mutation events
+   */
+  public static boolean isSupported(Document document) {
+    return document instanceof EventTarget && document.getImplementation().hasFeature("MutationEvents", "2.0");
+  }
+
+  public synchronized void addListener(DomMutationListener listener) {
+    if (listeners.isEmpty()) {
+      for (String eventType : EVENT_TYPES) {
+        ((EventTarget) document).addEventListener(eventType, this, true);
+      }
+    }
+    listeners.add(listener);
+  }
+
+  public synchronized void removeListener(DomMutationListener listener) {
+    if (listeners.remove(listener) && listeners.isEmpty()) {
+      for (String eventType : EVENT_TYPES) {
+        ((EventTarget) document).removeEventListener(eventType, this, true);
+      }
+    }
+  }
+
+  public List<DomMutationListener> getListeners() {
+    return listeners;
+  }
+
+  public void handleEvent(Event event) {
+    MutationEvent mutationEvent = (MutationEvent) event;
+    String type = mutationEvent.getType();
+    Node target = (Node) mutationEvent.getTarget();
+
+    if (NODE_INSERTED.equals(type)) {
+      for (DomMutationListener listener : listeners) {
+        listener.nodeInserted(target, mutationEvent.getRelatedNode());
+      }
+    }
+    else if (NODE_REMOVED.equals(type)) {
+      for (DomMutationListener listener : listeners) {
+        listener.nodeRemoved(target, mutationEvent.getRelatedNode());
+      }
+    }
+    else if (ATTRIBUTE_MODIFIED.equals(type)) {
+      Attr attribute = (Attr) mutationEvent.getRelatedNode();
+      short change = mutationEvent.getAttrChange();
+      String previousValue = change == MutationEvent.ADDITION ? null : mutationEvent.getPrevValue();
+      String newValue = change == MutationEvent.REMOVAL ? null : mutationEvent.getNewValue();
+      for (DomMutationListener listener : listeners) {
+        listener.attributeModified((Element) target, attribute, previousValue, newValue);
+      }
+    }
+    else if (CHARACTER_DATA_MODIFIED.equals(type)) {
+      for (DomMutationListener listener : listeners) {
+        listener.characterDataModified(target, mutationEvent.getPrevValue(), mutationEvent.getNewValue());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,63 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * <p>Is notified about changes of the DOM document of a {@link BpmnModelInstanceImpl}
+ * after it was registered with {@link DomMutationEvents#addListener(DomMutationListener)}.</p>
+ *
+ * <p>Only changes of nodes which are part of the document tree are reported. If a
+ * subtree is inserted or removed, only its root node is reported.</p>
+ */
+public interface DomMutationListener {
+
+  /**
+   * Called after a node was inserted into the document.
+   *
+   * @param node the inserted node
+   * @param parent the new parent of the node
+   */
+  void nodeInserted(Node node, Node parent);
+
+  /**
+   * Called before a node is removed from the document.
+   *
+   * @param node the node which is removed
+   * @param parent the current parent of the node
+   */
+  void nodeRemoved(Node node, Node parent);
+
+  /**
+   * Called after an attribute was added, changed or removed.
+   *
+   * @param element the owner element of the attribute
+   * @param attribute the attribute
+   * @param previousValue the previous value or null if the attribute was added
+   * @param newValue the new value or null if the attribute was removed
+   */
+  void attributeModified(Element element, Attr attribute, String previousValue, String newValue);
+
+  /**
+   * Called after the data of a text, comment or processing instruction node was changed.
+   *
+   * @param node the changed node
+   * @param previousValue the previous data of the node
+   * @param newValue the new data of the node
+   */
+  void characterDataModified(Node node, String previousValue, String newValue);
+
+}
@@ -0,0 +1,215 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.camunda.bpm.model.bpmn.impl.dom.DomNodes;
+import org.camunda.bpm.model.xml.impl.instance.DomElementImpl;
+import org.camunda.bpm.model.xml.instance.DomElement;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Indexes the elements of a document by the value of one attribute, so the elements
+ * with a value can be looked up without walking the whole document.</p>
+ *
+ * <p>The index is built once and then kept up to date by the mutation events of the
+ * document: inserted subtrees are added, removed subtrees are removed and changed
+ * attribute values move their element to the new value.</p>
+ *
+ * <p>Attributes are resolved like the model API reads them: an attribute in the
+ * namespace of its element is stored without namespace, and an empty value counts as
+ * no value, so elements with an empty attribute are not indexed.</p>
+ */
+public class ElementAttributeIndex implements DomMutationListener {
+
+  protected final String namespaceUri;
+  protected final String attributeName;
+
+  protected final Map<String, Set<DomElement>> elements = new HashMap<String, Set<DomElement>>();
+  protected int size = 0;
+
+  /**
+   * Builds the index of all elements of the document with the attribute.
+   *
+   * @param document the document to index
+   * @param namespaceUri the namespace of the attribute or null if it has no namespace
+   * @param attributeName the local name of the attribute
+   */
+  public ElementAttributeIndex(Document document, String namespaceUri, String attributeName) {
+    this.namespaceUri = namespaceUri != null && namespaceUri.length() > 0 ? namespaceUri : null;
+    this.attributeName = attributeName;
+    Element documentElement = document.getDocumentElement();
+    if (documentElement != null) {
+      addSubtree(documentElement);
+    }
+  }
+
+  public String getNamespaceUri() {
+    return namespaceUri;
+  }
+
+  public String getAttributeName() {
+    return attributeName;
+  }
+
+  /**
+   * @param value the value of the attribute
+   * @return the elements with this attribute value in no particular order
+   */
+  public synchronized List<DomElement> getElements(String value) {
+    Set<DomElement> valueElements = elements.get(value);
+    if (valueElements == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<DomElement>(valueElements);
+  }
+
+  /**
+   * @param value the value of the attribute
+   * @param element the element to check
+   * @return true if the element has the attribute with this value
+   */
+  public synchronized boolean contains(String value, DomElement element) {
+    Set<DomElement> valueElements = elements.get(value);
+    return valueElements != null && valueElements.contains(element);
+  }
+
+  /**
+   * @return the number of indexed elements
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  public void nodeInserted(Node node, Node parent) {
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      addSubtree((Element) node);
+    }
+  }
+
+  public void nodeRemoved(Node node, Node parent) {
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      removeSubtree((Element) node);
+    }
+  }
+
+  public synchronized void attributeModified(Element element, Attr attribute, String previousValue, String newValue) {
+    if (isIndexedAttribute(element, attribute)) {
+      DomElement domElement = new DomElementImpl(element);
+      if (previousValue != null) {
+        remove(previousValue, domElement);
+      }
+      add(newValue, domElement);
+    }
+  }
+
+  public void characterDataModified(Node node, String previousValue, String newValue) {
+    // text is not indexed
+  }
+
+  protected synchronized void addSubtree(Element root) {
+    Node node = root;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        Attr attribute = getIndexedAttribute((Element) node);
+        if (attribute != null) {
+          add(attribute.getValue(), new DomElementImpl((Element) node));
+        }
+      }
+      node = DomNodes.nextNode(node, root);
+    }
+  }
+
+  protected synchronized void removeSubtree(Element root) {
+    Node node = root;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        Attr attribute = getIndexedAttribute((Element) node);
+        if (attribute != null) {
+          remove(attribute.getValue(), new DomElementImpl((Element) node));
+        }
+      }
+      node = DomNodes.nextNode(node, root);
+    }
+  }
+
+  protected void add(String value, DomElement element) {
+    if (value == null || value.length() == 0) {
+      return;
+    }
+    Set<DomElement> valueElements = elements.get(value);
+    if (valueElements == null) {
+      valueElements = new LinkedHashSet<DomElement>();
+      elements.put(value, valueElements);
+    }
+    if (valueElements.add(element)) {
+      size++;
+    }
+  }
+
+  protected void remove(String value, DomElement element) {
+    Set<DomElement> valueElements = elements.get(value);
+    if (valueElements != null && valueElements.remove(element)) {
+      size--;
+      if (valueElements.isEmpty()) {
+        elements.remove(value);
+      }
+    }
+  }
+
+  protected Attr getIndexedAttribute(Element element) {
+    String attributeNamespaceUri = getAttributeNamespaceUri(element);
+    if (attributeNamespaceUri == null) {
+      Attr attribute = element.getAttributeNode(attributeName);
+      return attribute != null && isIndexedAttribute(element, attribute) ? attribute : null;
+    }
+    else {
+      return element.getAttributeNodeNS(attributeNamespaceUri, attributeName);
+    }
+  }
+
+  protected boolean isIndexedAttribute(Element element, Attr attribute) {
+    String expectedNamespaceUri = getAttributeNamespaceUri(element);
+    String attributeNamespaceUri = attribute.getNamespaceURI();
+    if (attributeNamespaceUri != null && attributeNamespaceUri.length() == 0) {
+      attributeNamespaceUri = null;
+    }
+    if (expectedNamespaceUri == null ? attributeNamespaceUri != null : !expectedNamespaceUri.equals(attributeNamespaceUri)) {
+      return false;
+    }
+    String localName = attribute.getLocalName();
+    return attributeName.equals(localName != null ? localName : attribute.getName());
+  }
+
+  /**
+   * The model API reads an attribute in the namespace of its element as attribute
+   * without namespace.
+   */
+  protected String getAttributeNamespaceUri(Element element) {
+    if (namespaceUri != null && namespaceUri.equals(element.getNamespaceURI())) {
+      return null;
+    }
+    return namespaceUri;
+  }
+
+}
@@ -0,0 +1,219 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.camunda.bpm.model.bpmn.impl.dom.DomNodes;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Indexes the elements of a document by their <code>id</code> attribute and counts
+ * the tokens of all other attribute values and texts, which are the candidates for
+ * references to these ids.</p>
+ *
+ * <p>The index is built once and then kept up to date by the mutation events of the
+ * document. If two elements have the same id, only one of them is indexed, so callers
+ * have to check the returned element and fall back to the document on a mismatch.</p>
+ *
+ * <p>A token is every whitespace separated part of a value, and for prefixed names also
+ * the part after the prefix. If an identifier is not a token of the document, no element
+ * of the document can refer to it.</p>
+ */
+public class ElementIdIndex implements DomMutationListener {
+
+  public static final String ID_ATTRIBUTE = "id";
+
+  protected final Map<String, Element> elements = new HashMap<String, Element>();
+  protected final Map<String, Integer> tokens = new HashMap<String, Integer>();
+
+  /**
+   * Builds the index of all elements of the document.
+   *
+   * @param document the document to index
+   */
+  public ElementIdIndex(Document document) {
+    Element documentElement = document.getDocumentElement();
+    if (documentElement != null) {
+      addSubtree(documentElement);
+    }
+  }
+
+  /**
+   * @param id the id of the element
+   * @return the element indexed with the id or null if no element is indexed with it
+   */
+  public synchronized Element getElement(String id) {
+    return elements.get(id);
+  }
+
+  /**
+   * @param identifier the identifier to check
+   * @return true if the identifier is a token of an attribute value or a text of the document
+   */
+  public synchronized boolean isReferenced(String identifier) {
+    return tokens.containsKey(identifier);
+  }
+
+  /**
+   * @return the number of indexed elements
+   */
+  public synchronized int size() {
+    return elements.size();
+  }
+
+  public synchronized void nodeInserted(Node node, Node parent) {
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      addSubtree((Element) node);
+    }
+    else if (isText(node)) {
+      countTokens(node.getNodeValue(), 1);
+    }
+  }
+
+  public synchronized void nodeRemoved(Node node, Node parent) {
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      removeSubtree((Element) node);
+    }
+    else if (isText(node)) {
+      countTokens(node.getNodeValue(), -1);
+    }
+  }
+
+  public synchronized void attributeModified(Element element, Attr attribute, String previousValue, String newValue) {
+    if (isIdAttribute(attribute)) {
+      if (previousValue != null && elements.get(previousValue) == element) {
+        elements.remove(previousValue);
+      }
+      if (newValue != null) {
+        elements.put(newValue, element);
+      }
+    }
+    else if (!isNamespaceDeclaration(attribute)) {
+      countTokens(previousValue, -1);
+      countTokens(newValue, 1);
+    }
+  }
+
+  public synchronized void characterDataModified(Node node, String previousValue, String newValue) {
+    if (isText(node)) {
+      countTokens(previousValue, -1);
+      countTokens(newValue, 1);
+    }
+  }
+
+  protected void addSubtree(Element root) {
+    updateSubtree(root, 1);
+  }
+
+  protected void removeSubtree(Element root) {
+    updateSubtree(root, -1);
+  }
+
+  protected void updateSubtree(Element root, int delta) {
+    Node node = root;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        NamedNodeMap attributes = node.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+          Attr attribute = (Attr) attributes.item(i);
+          if (isIdAttribute(attribute)) {
+            updateElement(attribute.getValue(), (Element) node, delta);
+          }
+          else if (!isNamespaceDeclaration(attribute)) {
+            countTokens(attribute.getValue(), delta);
+          }
+        }
+      }
+      else if (isText(node)) {
+        countTokens(node.getNodeValue(), delta);
+      }
+      node = DomNodes.nextNode(node, root);
+    }
+  }
+
+  protected void updateElement(String id, Element element, int delta) {
+    if (delta > 0) {
+      if (!elements.containsKey(id)) {
+        elements.put(id, element);
+      }
+    }
+    else if (elements.get(id) == element) {
+      elements.remove(id);
+    }
+  }
+
+  protected void countTokens(String value, int delta) {
+    if (value == null) {
+      return;
+    }
+    int length = value.length();
+    int start = -1;
+    int localNameStart = -1;
+    for (int i = 0; i <= length; i++) {
+      char c = i < length ? value.charAt(i) : ' ';
+      if (Character.isWhitespace(c)) {
+        if (start >= 0) {
+          countToken(value.substring(start, i), delta);
+          if (localNameStart > start && localNameStart < i) {
+            countToken(value.substring(localNameStart, i), delta);
+          }
+          start = -1;
+        }
+      }
+      else if (start < 0) {
+        start = i;
+        localNameStart = -1;
+      }
+      else if (c == ':') {
+        localNameStart = i + 1;
+      }
+    }
+  }
+
+  protected void countToken(String token, int delta) {
+    Integer count = tokens.get(token);
+    int newCount = (count != null ? count : 0) + delta;
+    if (newCount > 0) {
+      tokens.put(token, newCount);
+    }
+    else {
+      tokens.remove(token);
+    }
+  }
+
+  protected boolean isIdAttribute(Attr attribute) {
+    return attribute.getNamespaceURI() == null && ID_ATTRIBUTE.equals(attribute.getName());
+  }
+
+  protected boolean isNamespaceDeclaration(Attr attribute) {
+    return XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI());
+  }
+
+  protected boolean isText(Node node) {
+    short nodeType = node.getNodeType();
+    if (nodeType != Node.TEXT_NODE && nodeType != Node.CDATA_SECTION_NODE) {
+      return false;
+    }
+    Node parent = node.getParentNode();
+    return parent != null && parent.getNodeType() == Node.ELEMENT_NODE;
+  }
+
+}
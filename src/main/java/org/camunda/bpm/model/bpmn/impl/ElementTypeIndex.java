@@ -0,0 +1,206 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.camunda.bpm.model.bpmn.impl.dom.DomNodes;
+import org.camunda.bpm.model.bpmn.impl.dom.ReadOnlyDocument;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Indexes the elements of a document by namespace and local name, so the elements
+ * of a type can be looked up without walking the whole document.</p>
+ *
+ * <p>The index is built once and then kept up to date by the mutation events of the
+ * document: inserted subtrees are added, removed subtrees are removed. The elements
+ * of a name are returned in document order. Elements inserted before already indexed
+ * elements are sorted on the next lookup.</p>
+ *
+ * <p>The index of a sealed read-only document never changes, so it is read without
+ * locking.</p>
+ */
+public class ElementTypeIndex implements DomMutationListener {
+
+  protected static final Comparator<Node> DOCUMENT_ORDER = new Comparator<Node>() {
+    public int compare(Node node, Node otherNode) {
+      if (node == otherNode) {
+        return 0;
+      }
+      return (node.compareDocumentPosition(otherNode) & Node.DOCUMENT_POSITION_FOLLOWING) != 0 ? -1 : 1;
+    }
+  };
+
+  protected final Map<String, Map<String, Bucket>> buckets = new HashMap<String, Map<String, Bucket>>();
+  protected int size = 0;
+  protected final boolean sealed;
+
+  /**
+   * Builds the index of all elements of the document.
+   *
+   * @param document the document to index
+   */
+  public ElementTypeIndex(Document document) {
+    sealed = document instanceof ReadOnlyDocument && ((ReadOnlyDocument) document).isSealed();
+    Element documentElement = document.getDocumentElement();
+    if (documentElement != null) {
+      addSubtree(documentElement, true);
+    }
+  }
+
+  /**
+   * @param namespaceUri the namespace of the elements
+   * @param localName the local name of the elements
+   * @return the elements with this name in document order
+   */
+  public List<Element> getElements(String namespaceUri, String localName) {
+    if (sealed) {
+      return getElementsOf(namespaceUri, localName);
+    }
+    synchronized (this) {
+      return getElementsOf(namespaceUri, localName);
+    }
+  }
+
+  /**
+   * @return the number of indexed elements
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  protected List<Element> getElementsOf(String namespaceUri, String localName) {
+    Bucket bucket = getBucket(namespaceUri, localName, false);
+    if (bucket == null) {
+      return Collections.emptyList();
+    }
+    return bucket.getElements();
+  }
+
+  public void nodeInserted(Node node, Node parent) {
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      addSubtree((Element) node, false);
+    }
+  }
+
+  public void nodeRemoved(Node node, Node parent) {
+    if (node.getNodeType() == Node.ELEMENT_NODE) {
+      removeSubtree((Element) node);
+    }
+  }
+
+  public void attributeModified(Element element, Attr attribute, String previousValue, String newValue) {
+    // the name of an element never changes
+  }
+
+  public void characterDataModified(Node node, String previousValue, String newValue) {
+    // text is not indexed
+  }
+
+  /**
+   * @param root the root of the subtree to add
+   * @param appended true if the subtree follows all indexed elements in document order
+   */
+  protected synchronized void addSubtree(Element root, boolean appended) {
+    Node node = root;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE && getBucket(node.getNamespaceURI(), node.getLocalName(), true).add((Element) node, appended)) {
+        size++;
+      }
+      node = DomNodes.nextNode(node, root);
+    }
+  }
+
+  protected synchronized void removeSubtree(Element root) {
+    Node node = root;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        Bucket bucket = getBucket(node.getNamespaceURI(), node.getLocalName(), false);
+        if (bucket != null && bucket.remove((Element) node)) {
+          size--;
+        }
+      }
+      node = DomNodes.nextNode(node, root);
+    }
+  }
+
+  protected Bucket getBucket(String namespaceUri, String localName, boolean create) {
+    String namespaceKey = namespaceUri != null ? namespaceUri : "";
+    Map<String, Bucket> namespaceBuckets = buckets.get(namespaceKey);
+    if (namespaceBuckets == null) {
+      if (!create) {
+        return null;
+      }
+      namespaceBuckets = new HashMap<String, Bucket>();
+      buckets.put(namespaceKey, namespaceBuckets);
+    }
+    Bucket bucket = namespaceBuckets.get(localName);
+    if (bucket == null && create) {
+      bucket = new Bucket();
+      namespaceBuckets.put(localName, bucket);
+    }
+    return bucket;
+  }
+
+  protected static class Bucket {
+
+    protected Set<Element> elements = new LinkedHashSet<Element>();
+    protected Element lastElement;
+    protected boolean ordered = true;
+
+    public boolean add(Element element, boolean appended) {
+      if (!elements.add(element)) {
+        return false;
+      }
+      if (ordered && !appended && lastElement != null && DOCUMENT_ORDER.compare(lastElement, element) > 0) {
+        ordered = false;
+      }
+      lastElement = element;
+      return true;
+    }
+
+    public boolean remove(Element element) {
+      if (!elements.remove(element)) {
+        return false;
+      }
+      if (element == lastElement) {
+        // the new last element is unknown, so the order is checked on the next lookup
+        lastElement = null;
+        ordered = elements.isEmpty();
+      }
+      return true;
+    }
+
+    public List<Element> getElements() {
+      List<Element> result = new ArrayList<Element>(elements);
+      if (!ordered) {
+        Collections.sort(result, DOCUMENT_ORDER);
+        elements = new LinkedHashSet<Element>(result);
+        lastElement = result.isEmpty() ? null : result.get(result.size() - 1);
+        ordered = true;
+      }
+      return result;
+    }
+  }
+
+}
@@ -0,0 +1,185 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.camunda.bpm.model.xml.Model;
+import org.camunda.bpm.model.xml.type.ModelElementType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Assigns stable ordinals to the element types of a {@link Model}. The types are
+ * ordered by namespace and name, so the ordinals do not depend on the order in which
+ * the types were registered.</p>
+ *
+ * <p>The fingerprint identifies the set of types. Data which stores ordinals, like
+ * a model snapshot, is only valid for a registry with the same fingerprint.</p>
+ *
+ * <p>For every type the registry precomputes a bitset of the ordinals of all types its
+ * instances are assignable to, so a type test of an element is a bit check instead of a
+ * {@link Class#isInstance(Object)} call. It also caches the instantiable types of each
+ * type hierarchy, which {@link ModelElementType#getAllExtendingTypes()} computes again
+ * on every call.</p>
+ */
+public class ElementTypeRegistry {
+
+  protected final List<ModelElementType> types;
+  protected final Map<String, Map<String, Integer>> ordinals = new HashMap<String, Map<String, Integer>>();
+  protected final Map<ModelElementType, Integer> typeOrdinals = new IdentityHashMap<ModelElementType, Integer>();
+  protected final Map<Class<?>, Integer> instanceTypeOrdinals = new HashMap<Class<?>, Integer>();
+  protected final long[][] assignableTypes;
+  protected final List<List<ModelElementType>> instantiableTypes;
+  protected final long fingerprint;
+
+  public ElementTypeRegistry(Model model) {
+    types = new ArrayList<ModelElementType>();
+    for (ModelElementType type : model.getTypes()) {
+      if (type.getTypeName() != null && type.getTypeNamespace() != null) {
+        types.add(type);
+      }
+    }
+    Collections.sort(types, new Comparator<ModelElementType>() {
+      public int compare(ModelElementType type, ModelElementType otherType) {
+        int result = type.getTypeNamespace().compareTo(otherType.getTypeNamespace());
+        return result != 0 ? result : type.getTypeName().compareTo(otherType.getTypeName());
+      }
+    });
+
+    // 64 bit FNV-1a hash of the qualified type names in ordinal order
+    long hash = 0xcbf29ce484222325L;
+    for (int ordinal = 0; ordinal < types.size(); ordinal++) {
+      ModelElementType type = types.get(ordinal);
+      Map<String, Integer> namespaceOrdinals = ordinals.get(type.getTypeNamespace());
+      if (namespaceOrdinals == null) {
+        namespaceOrdinals = new HashMap<String, Integer>();
+        ordinals.put(type.getTypeNamespace(), namespaceOrdinals);
+      }
+      namespaceOrdinals.put(type.getTypeName(), ordinal);
+      typeOrdinals.put(type, ordinal);
+      if (!instanceTypeOrdinals.containsKey(type.getInstanceType())) {
+        instanceTypeOrdinals.put(type.getInstanceType(), ordinal);
+      }
+
+      String qualifiedName = type.getTypeNamespace() + "}" + type.getTypeName() + "\n";
+      for (int i = 0; i < qualifiedName.length(); i++) {
+        hash ^= qualifiedName.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+    }
+    fingerprint = hash;
+
+    int words = (types.size() + 63) >>> 6;
+    assignableTypes = new long[types.size()][];
+    instantiableTypes = new ArrayList<List<ModelElementType>>(types.size());
+    for (int ordinal = 0; ordinal < types.size(); ordinal++) {
+      ModelElementType type = types.get(ordinal);
+      // instances are assignable to the types of all implemented interfaces, which may
+      // include types outside of the base type chain of the model
+      long[] bits = new long[words];
+      for (int otherOrdinal = 0; otherOrdinal < types.size(); otherOrdinal++) {
+        if (types.get(otherOrdinal).getInstanceType().isAssignableFrom(type.getInstanceType())) {
+          bits[otherOrdinal >>> 6] |= 1L << otherOrdinal;
+        }
+      }
+      assignableTypes[ordinal] = bits;
+
+      List<ModelElementType> hierarchyTypes = new ArrayList<ModelElementType>();
+      for (ModelElementType extendingType : type.getAllExtendingTypes()) {
+        if (!extendingType.isAbstract()) {
+          hierarchyTypes.add(extendingType);
+        }
+      }
+      instantiableTypes.add(Collections.unmodifiableList(hierarchyTypes));
+    }
+  }
+
+  /**
+   * @param namespaceUri the namespace of the element
+   * @param localName the local name of the element
+   * @return the ordinal of the type or -1 if the model has no type with this name
+   */
+  public int getOrdinal(String namespaceUri, String localName) {
+    Map<String, Integer> namespaceOrdinals = ordinals.get(namespaceUri);
+    if (namespaceOrdinals != null) {
+      Integer ordinal = namespaceOrdinals.get(localName);
+      if (ordinal != null) {
+        return ordinal;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param type the type
+   * @return the ordinal of the type or -1 if it is not a type of the model of this registry
+   */
+  public int getOrdinal(ModelElementType type) {
+    Integer ordinal = typeOrdinals.get(type);
+    return ordinal != null ? ordinal : -1;
+  }
+
+  /**
+   * @param instanceType the instance type of a model element type, like <code>Task.class</code>
+   * @return the ordinal of the type or -1 if the model has no type with this instance type
+   */
+  public int getOrdinal(Class<?> instanceType) {
+    Integer ordinal = instanceTypeOrdinals.get(instanceType);
+    return ordinal != null ? ordinal : -1;
+  }
+
+  /**
+   * @param ordinal the ordinal of the type of an element
+   * @param otherOrdinal the ordinal of another type
+   * @return true if the elements of the first type are instances of the other type
+   */
+  public boolean isAssignable(int ordinal, int otherOrdinal) {
+    return (assignableTypes[ordinal][otherOrdinal >>> 6] & (1L << otherOrdinal)) != 0;
+  }
+
+  /**
+   * @param type the type
+   * @return the type and all types which extend it and are not abstract, or null
+   * if the type is not a type of the model of this registry
+   */
+  public List<ModelElementType> getInstantiableTypes(ModelElementType type) {
+    int ordinal = getOrdinal(type);
+    return ordinal >= 0 ? instantiableTypes.get(ordinal) : null;
+  }
+
+  /**
+   * @param ordinal the ordinal of the type
+   * @return the type
+   * @throws IndexOutOfBoundsException if there is no type with this ordinal
+   */
+  public ModelElementType getType(int ordinal) {
+    return types.get(ordinal);
+  }
+
+  /**
+   * @return the number of types
+   */
+  public int size() {
+    return types.size();
+  }
+
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
+}
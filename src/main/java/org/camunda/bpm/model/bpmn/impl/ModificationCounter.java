@@ -0,0 +1,52 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the changes of a document. Results computed from the document stay valid
+ * as long as the count does not change.
+ */
+public class ModificationCounter implements DomMutationListener {
+
+  protected final AtomicLong count = new AtomicLong();
+
+  /**
+   * @return the number of changes since this counter was registered
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  public void nodeInserted(Node node, Node parent) {
+    count.incrementAndGet();
+  }
+
+  public void nodeRemoved(Node node, Node parent) {
+    count.incrementAndGet();
+  }
+
+  public void attributeModified(Element element, Attr attribute, String previousValue, String newValue) {
+    count.incrementAndGet();
+  }
+
+  public void characterDataModified(Node node, String previousValue, String newValue) {
+    count.incrementAndGet();
+  }
+
+}
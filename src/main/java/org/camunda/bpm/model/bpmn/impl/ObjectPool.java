@@ -0,0 +1,94 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A small, thread safe pool of objects which are expensive to create but
+ * not thread safe themselves, like JAXP document builders and validators.</p>
+ *
+ * <p>An acquired object is confined to the calling thread until it is
+ * released again. If the pool is empty a new object is created, if more
+ * than <code>maxIdle</code> objects are released the surplus is discarded.</p>
+ *
+ * @param <T> the type of the pooled objects
+ */
+public abstract class ObjectPool<T> {
+
+  private final Queue<T> idleObjects = new ConcurrentLinkedQueue<T>();
+  private final AtomicInteger idleCount = new AtomicInteger();
+  private final int maxIdle;
+
+  public ObjectPool(int maxIdle) {
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * @return an idle object of the pool or a new one if no idle object is available
+   */
+  public T acquire() {
+    T object = idleObjects.poll();
+    if (object != null) {
+      idleCount.decrementAndGet();
+      return object;
+    }
+    else {
+      return create();
+    }
+  }
+
+  /**
+   * Returns an object to the pool. The object must not be used by the caller afterwards.
+   *
+   * @param object the object to return
+   */
+  public void release(T object) {
+    if (object == null || !reset(object)) {
+      return;
+    }
+    if (idleCount.incrementAndGet() <= maxIdle) {
+      idleObjects.offer(object);
+    }
+    else {
+      idleCount.decrementAndGet();
+    }
+  }
+
+  /**
+   * @return the number of idle objects in the pool
+   */
+  public int getIdleCount() {
+    return idleCount.get();
+  }
+
+  /**
+   * Creates a new object if the pool is empty.
+   *
+   * @return the new object
+   */
+  protected abstract T create();
+
+  /**
+   * Resets the state of an object before it is returned to the pool.
+   *
+   * @param object the object to reset
+   * @return true if the object can be reused, false if it should be discarded
+   */
+  protected boolean reset(T object) {
+    return true;
+  }
+
+}
@@ -0,0 +1,261 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN20_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_ATTRIBUTE_BPMN_ELEMENT;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_ATTRIBUTE_SOURCE_ELEMENT;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_ATTRIBUTE_TARGET_ELEMENT;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_ELEMENT_BPMN_EDGE;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_ELEMENT_BPMN_PLANE;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ATTRIBUTE_ID;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_COLLABORATION;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_EXTENSION;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_GLOBAL_CONVERSATION;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_IMPORT;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_PROCESS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN_ELEMENT_RELATIONSHIP;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+
+import org.camunda.bpm.model.bpmn.impl.dom.DomNodes;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+
+/**
+ * <p>Builds the document of a single process of a definitions file. Other processes,
+ * collaborations and relationships are skipped while parsing. After parsing, root
+ * elements which are not referenced by the process, directly or through other kept
+ * root elements, are removed.</p>
+ *
+ * <p>References are detected without knowing the schema: every attribute value and
+ * the text of every leaf element is considered a possible reference, with an optional
+ * namespace prefix. This may keep an unreferenced root element but never drops a
+ * referenced one.</p>
+ *
+ * <p>Shapes and edges of diagrams which do not belong to a kept element are removed.
+ * A plane which shows a removed element, like the collaboration, shows the process
+ * instead.</p>
+ */
+public class ProcessSelectingHandler extends DocumentBuildingHandler {
+
+  protected final String processId;
+  protected Element process;
+
+  public ProcessSelectingHandler(Document document, String processId) {
+    super(document);
+    this.processId = processId;
+  }
+
+  /**
+   * @return true if the process was found in the parsed document
+   */
+  public boolean isProcessFound() {
+    return process != null;
+  }
+
+  public void endElement(String uri, String localName, String qName) {
+    boolean processEnds = skippedDepth == 0 && depth == 2 && process == null && BPMN20_NS.equals(uri) && BPMN_ELEMENT_PROCESS.equals(localName);
+    if (processEnds) {
+      process = (Element) currentNode;
+    }
+    super.endElement(uri, localName, qName);
+  }
+
+  public void endDocument() {
+    Element definitions = document.getDocumentElement();
+    if (process == null || definitions == null) {
+      return;
+    }
+    Set<String> keptIds = removeUnreferencedRootElements(definitions);
+    for (Element child : getChildElements(definitions)) {
+      if (BPMNDI_NS.equals(child.getNamespaceURI())) {
+        pruneDiagram(child, keptIds);
+      }
+    }
+  }
+
+  protected boolean isSkipped(String uri, String localName, Attributes attributes) {
+    if (super.isSkipped(uri, localName, attributes)) {
+      return true;
+    }
+    if (!BPMN20_NS.equals(uri)) {
+      return false;
+    }
+    if (BPMN_ELEMENT_PROCESS.equals(localName)) {
+      return process != null || !processId.equals(attributes.getValue("", BPMN_ATTRIBUTE_ID));
+    }
+    return BPMN_ELEMENT_COLLABORATION.equals(localName)
+      || BPMN_ELEMENT_GLOBAL_CONVERSATION.equals(localName)
+      || BPMN_ELEMENT_RELATIONSHIP.equals(localName);
+  }
+
+  /**
+   * @return the ids of all elements of the kept root elements
+   */
+  protected Set<String> removeUnreferencedRootElements(Element definitions) {
+    List<Element> candidates = new ArrayList<Element>();
+    for (Element child : getChildElements(definitions)) {
+      String localName = child.getLocalName();
+      if (BPMN20_NS.equals(child.getNamespaceURI()) && child != process
+        && !BPMN_ELEMENT_IMPORT.equals(localName) && !BPMN_ELEMENT_EXTENSION.equals(localName)) {
+        candidates.add(child);
+      }
+    }
+
+    // walk each root element once, then follow the references from the process
+    List<Set<String>> candidateReferences = new ArrayList<Set<String>>(candidates.size());
+    List<Set<String>> candidateIds = new ArrayList<Set<String>>(candidates.size());
+    Map<String, Integer> candidatesById = new HashMap<String, Integer>();
+    for (int i = 0; i < candidates.size(); i++) {
+      Set<String> ids = new HashSet<String>();
+      Set<String> references = new HashSet<String>();
+      collectReferencesAndIds(candidates.get(i), references, ids);
+      candidateIds.add(ids);
+      candidateReferences.add(references);
+      for (String id : ids) {
+        candidatesById.put(id, i);
+      }
+    }
+
+    Set<String> references = new HashSet<String>();
+    Set<String> keptIds = new HashSet<String>();
+    collectReferencesAndIds(process, references, keptIds);
+
+    boolean[] kept = new boolean[candidates.size()];
+    Deque<String> pendingReferences = new ArrayDeque<String>(references);
+    while (!pendingReferences.isEmpty()) {
+      Integer candidate = candidatesById.get(pendingReferences.poll());
+      if (candidate != null && !kept[candidate]) {
+        kept[candidate] = true;
+        keptIds.addAll(candidateIds.get(candidate));
+        pendingReferences.addAll(candidateReferences.get(candidate));
+      }
+    }
+
+    for (int i = 0; i < candidates.size(); i++) {
+      if (!kept[i]) {
+        definitions.removeChild(candidates.get(i));
+      }
+    }
+    return keptIds;
+  }
+
+  protected void pruneDiagram(Element diagram, Set<String> keptIds) {
+    Set<String> keptDiagramIds = new HashSet<String>();
+    List<Element> edges = new ArrayList<Element>();
+    for (Element plane : getChildElements(diagram)) {
+      if (!BPMNDI_ELEMENT_BPMN_PLANE.equals(plane.getLocalName())) {
+        continue;
+      }
+      String planeElement = plane.getAttribute(BPMNDI_ATTRIBUTE_BPMN_ELEMENT);
+      if (!keptIds.contains(stripPrefix(planeElement))) {
+        plane.setAttribute(BPMNDI_ATTRIBUTE_BPMN_ELEMENT, processId);
+      }
+      for (Element diagramElement : getChildElements(plane)) {
+        String bpmnElement = diagramElement.getAttribute(BPMNDI_ATTRIBUTE_BPMN_ELEMENT);
+        if (bpmnElement.length() > 0 && !keptIds.contains(stripPrefix(bpmnElement))) {
+          plane.removeChild(diagramElement);
+          continue;
+        }
+        keptDiagramIds.add(diagramElement.getAttribute(BPMN_ATTRIBUTE_ID));
+        if (BPMNDI_ELEMENT_BPMN_EDGE.equals(diagramElement.getLocalName())) {
+          edges.add(diagramElement);
+        }
+      }
+    }
+    for (Element edge : edges) {
+      removeDanglingReference(edge, BPMNDI_ATTRIBUTE_SOURCE_ELEMENT, keptDiagramIds);
+      removeDanglingReference(edge, BPMNDI_ATTRIBUTE_TARGET_ELEMENT, keptDiagramIds);
+    }
+  }
+
+  protected void removeDanglingReference(Element element, String attributeName, Set<String> ids) {
+    if (element.hasAttribute(attributeName) && !ids.contains(stripPrefix(element.getAttribute(attributeName)))) {
+      element.removeAttribute(attributeName);
+    }
+  }
+
+  protected void collectReferencesAndIds(Element root, Set<String> references, Set<String> ids) {
+    Node node = root;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        Element element = (Element) node;
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+          Attr attribute = (Attr) attributes.item(i);
+          if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+            continue;
+          }
+          if (attribute.getNamespaceURI() == null && BPMN_ATTRIBUTE_ID.equals(attribute.getLocalName())) {
+            ids.add(attribute.getValue());
+          }
+          else {
+            addTokens(attribute.getValue(), references);
+          }
+        }
+        if (!hasChildElements(element)) {
+          addTokens(element.getTextContent(), references);
+        }
+      }
+      node = DomNodes.nextNode(node, root);
+    }
+  }
+
+  protected void addTokens(String value, Set<String> tokens) {
+    for (String token : value.trim().split("\\s+")) {
+      if (token.length() > 0) {
+        tokens.add(stripPrefix(token));
+      }
+    }
+  }
+
+  protected static String stripPrefix(String reference) {
+    int colon = reference.indexOf(':');
+    return colon >= 0 ? reference.substring(colon + 1) : reference;
+  }
+
+  protected static boolean hasChildElements(Element element) {
+    for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected static List<Element> getChildElements(Element element) {
+    List<Element> childElements = new ArrayList<Element>();
+    for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        childElements.add((Element) child);
+      }
+    }
+    return childElements;
+  }
+
+}
@@ -2,7 +2,7 @@
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
  *
- *     http://www.apache.org/licenses/LICENSE-2.0
+ *      http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
@@ -10,35 +10,72 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.camunda.bpm.model.bpmn.impl;
 
+import org.camunda.bpm.model.bpmn.Bpmn;
 import org.camunda.bpm.model.bpmn.BpmnModelException;
+import org.camunda.bpm.model.bpmn.Predicate;
 import org.camunda.bpm.model.bpmn.Query;
+import org.camunda.bpm.model.xml.ModelInstance;
+import org.camunda.bpm.model.xml.impl.instance.ModelElementInstanceImpl;
+import org.camunda.bpm.model.xml.instance.DomElement;
 import org.camunda.bpm.model.xml.instance.ModelElementInstance;
 import org.camunda.bpm.model.xml.type.ModelElementType;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
+ * A lazily evaluated query. Filters are collected and evaluated together in a single
+ * pass over the source, terminal operations stop as soon as their result is known.
+ *
  * @author Sebastian Menski
  */
 public class QueryImpl<T extends ModelElementInstance> implements Query<T> {
 
-  private final Collection<T> collection;
+  protected static final int UNLIMITED = -1;
+
+  protected final Iterable<? extends ModelElementInstance> source;
+  protected final List<Predicate<Object>> predicates;
+  protected final int maxResults;
 
   public QueryImpl(Collection<T> collection) {
-    this.collection = collection;
+    this(collection, Collections.<Predicate<Object>>emptyList(), UNLIMITED);
+  }
+
+  protected QueryImpl(Iterable<? extends ModelElementInstance> source, List<Predicate<Object>> predicates, int maxResults) {
+    this.source = source;
+    this.predicates = predicates;
+    this.maxResults = maxResults;
   }
 
   public List<T> list() {
-    return new ArrayList<T>(collection);
+    if (isSourceCollection() && maxResults == UNLIMITED) {
+      return new ArrayList<T>(getSourceCollection());
+    }
+    List<T> result = new ArrayList<T>();
+    for (T element : this) {
+      result.add(element);
+    }
+    return result;
   }
 
   public int count() {
-    return collection.size();
+    if (isSourceCollection()) {
+      int size = getSourceCollection().size();
+      return maxResults == UNLIMITED ? size : Math.min(size, maxResults);
+    }
+    int count = 0;
+    for (Iterator<T> iterator = iterator(); iterator.hasNext(); iterator.next()) {
+      count++;
+    }
+    return count;
   }
 
   @SuppressWarnings("unchecked")
@@ -49,21 +86,240 @@ public class QueryImpl<T extends ModelElementInstance> implements Query<T> {
 
   @SuppressWarnings("unchecked")
   public <V extends ModelElementInstance> Query<V> filterByType(Class<V> elementClass) {
-    List<V> filtered = new ArrayList<V>();
-    for (T instance : collection) {
-      if (elementClass.isAssignableFrom(instance.getClass())) {
-        filtered.add((V) instance);
-      }
+    return (Query<V>) filter(new TypePredicate(elementClass));
+  }
+
+  @SuppressWarnings("unchecked")
+  public Query<T> filterByAttribute(String namespaceUri, String attributeName, String value) {
+    if (attributeName == null) {
+      throw new IllegalArgumentException("The attribute name of a query filter must not be null");
+    }
+    AttributePredicate predicate = new AttributePredicate(namespaceUri, attributeName, value);
+    if (value != null && maxResults == UNLIMITED && source instanceof Collection) {
+      // the other filters do not depend on the order, so they apply to the indexed source
+      return new QueryImpl<T>(new IndexedSource((Collection<? extends ModelElementInstance>) source, predicate), predicates, UNLIMITED);
+    }
+    return filter(predicate);
+  }
+
+  @SuppressWarnings("unchecked")
+  public Query<T> filter(Predicate<? super T> predicate) {
+    if (predicate == null) {
+      throw new IllegalArgumentException("The predicate of a query must not be null");
+    }
+    if (maxResults != UNLIMITED) {
+      // the filter applies to the limited result
+      return new QueryImpl<T>(this, Collections.singletonList((Predicate<Object>) predicate), UNLIMITED);
     }
-    return new QueryImpl<V>(filtered);
+    List<Predicate<Object>> combinedPredicates = new ArrayList<Predicate<Object>>(predicates.size() + 1);
+    combinedPredicates.addAll(predicates);
+    combinedPredicates.add((Predicate<Object>) predicate);
+    return new QueryImpl<T>(source, combinedPredicates, UNLIMITED);
+  }
+
+  public Query<T> limit(int maxResults) {
+    if (maxResults < 0) {
+      throw new IllegalArgumentException("The maximum number of results of a query must not be negative");
+    }
+    int limit = this.maxResults == UNLIMITED ? maxResults : Math.min(this.maxResults, maxResults);
+    return new QueryImpl<T>(source, predicates, limit);
   }
 
   public T singleResult() {
-    if (collection.size() == 1) {
-      return collection.iterator().next();
+    Iterator<T> iterator = iterator();
+    if (iterator.hasNext()) {
+      T result = iterator.next();
+      if (!iterator.hasNext()) {
+        return result;
+      }
+    }
+    throw new BpmnModelException("Collection expected to have <1> entry but has <" + count() + ">");
+  }
+
+  public T first() {
+    Iterator<T> iterator = iterator();
+    return iterator.hasNext() ? iterator.next() : null;
+  }
+
+  public boolean any() {
+    return iterator().hasNext();
+  }
+
+  public Iterator<T> iterator() {
+    return new QueryIterator();
+  }
+
+  protected boolean isSourceCollection() {
+    return predicates.isEmpty() && source instanceof Collection;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected Collection<T> getSourceCollection() {
+    return (Collection<T>) source;
+  }
+
+  protected boolean matches(Object element) {
+    for (Predicate<Object> predicate : predicates) {
+      if (!predicate.matches(element)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Tests the types of elements with the precomputed type hierarchy of the BPMN model,
+   * elements of other models are tested with their class.
+   */
+  protected static class TypePredicate implements Predicate<Object> {
+
+    protected final Class<?> elementClass;
+    protected final ElementTypeRegistry typeRegistry;
+    protected final int typeOrdinal;
+
+    public TypePredicate(Class<?> elementClass) {
+      this.elementClass = elementClass;
+      this.typeRegistry = Bpmn.INSTANCE.getElementTypeRegistry();
+      this.typeOrdinal = typeRegistry.getOrdinal(elementClass);
     }
-    else {
-      throw new BpmnModelException("Collection expected to have <1> entry but has <" + collection.size() + ">");
+
+    public boolean matches(Object element) {
+      if (typeOrdinal >= 0 && element instanceof ModelElementInstance) {
+        int ordinal = typeRegistry.getOrdinal(((ModelElementInstance) element).getElementType());
+        if (ordinal >= 0) {
+          return typeRegistry.isAssignable(ordinal, typeOrdinal);
+        }
+      }
+      return elementClass.isInstance(element);
     }
   }
+
+  /**
+   * Tests the attribute values of elements with the attribute index of their model,
+   * if it has one, elements of other models read the attribute.
+   */
+  protected static class AttributePredicate implements Predicate<Object> {
+
+    protected final String namespaceUri;
+    protected final String attributeName;
+    protected final String value;
+
+    public AttributePredicate(String namespaceUri, String attributeName, String value) {
+      this.namespaceUri = namespaceUri != null && namespaceUri.length() > 0 ? namespaceUri : null;
+      this.attributeName = attributeName;
+      this.value = value;
+    }
+
+    public boolean matches(Object element) {
+      if (!(element instanceof ModelElementInstance)) {
+        return false;
+      }
+      ModelElementInstance modelElement = (ModelElementInstance) element;
+      ElementAttributeIndex index = value != null ? getIndex(modelElement) : null;
+      if (index != null) {
+        return index.contains(value, modelElement.getDomElement());
+      }
+      String attributeValue = namespaceUri == null ? modelElement.getAttributeValue(attributeName)
+        : modelElement.getAttributeValueNs(namespaceUri, attributeName);
+      return value == null ? attributeValue == null : value.equals(attributeValue);
+    }
+
+    /**
+     * @return the attribute index of the model of the element or null if it has none
+     */
+    protected ElementAttributeIndex getIndex(ModelElementInstance modelElement) {
+      if (modelElement instanceof ModelElementInstanceImpl) {
+        ModelInstance modelInstance = ((ModelElementInstanceImpl) modelElement).getModelInstance();
+        if (modelInstance instanceof BpmnModelInstanceImpl) {
+          return ((BpmnModelInstanceImpl) modelInstance).getAttributeIndex(namespaceUri, attributeName);
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Filters a collection by an attribute value with the attribute index of the model of
+   * its first element. The elements with the value are looked up in the index once per
+   * evaluation, the source is only iterated to keep its order and tests its elements
+   * with a hash lookup instead of reading the attribute. Elements of other models are
+   * tested by reading the attribute.
+   */
+  protected static class IndexedSource implements Iterable<ModelElementInstance> {
+
+    protected final Collection<? extends ModelElementInstance> source;
+    protected final AttributePredicate predicate;
+
+    public IndexedSource(Collection<? extends ModelElementInstance> source, AttributePredicate predicate) {
+      this.source = source;
+      this.predicate = predicate;
+    }
+
+    public Iterator<ModelElementInstance> iterator() {
+      Iterator<? extends ModelElementInstance> sourceIterator = source.iterator();
+      if (!sourceIterator.hasNext()) {
+        return Collections.<ModelElementInstance>emptyList().iterator();
+      }
+      ModelElementInstance firstElement = sourceIterator.next();
+      ElementAttributeIndex index = predicate.getIndex(firstElement);
+      if (index == null) {
+        return new QueryImpl<ModelElementInstance>(source, Collections.singletonList((Predicate<Object>) predicate), UNLIMITED).iterator();
+      }
+
+      Set<DomElement> candidates = new HashSet<DomElement>(index.getElements(predicate.value));
+      ModelInstance modelInstance = ((ModelElementInstanceImpl) firstElement).getModelInstance();
+      List<ModelElementInstance> elements = new ArrayList<ModelElementInstance>();
+      for (ModelElementInstance element : source) {
+        boolean matches = element instanceof ModelElementInstanceImpl && ((ModelElementInstanceImpl) element).getModelInstance() == modelInstance
+          ? candidates.contains(element.getDomElement()) : predicate.matches(element);
+        if (matches) {
+          elements.add(element);
+        }
+      }
+      return elements.iterator();
+    }
+  }
+
+  protected class QueryIterator implements Iterator<T> {
+
+    protected final Iterator<? extends ModelElementInstance> sourceIterator = source.iterator();
+    protected T nextElement;
+    protected boolean hasNextElement = false;
+    protected int returnedCount = 0;
+
+    @SuppressWarnings("unchecked")
+    public boolean hasNext() {
+      if (hasNextElement) {
+        return true;
+      }
+      if (maxResults != UNLIMITED && returnedCount >= maxResults) {
+        return false;
+      }
+      while (sourceIterator.hasNext()) {
+        ModelElementInstance element = sourceIterator.next();
+        if (matches(element)) {
+          nextElement = (T) element;
+          hasNextElement = true;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      T element = nextElement;
+      nextElement = null;
+      hasNextElement = false;
+      returnedCount++;
+      return element;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("Query results cannot be removed");
+    }
+  }
+
 }
@@ -0,0 +1,281 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN20_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMNDI_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.CAMUNDA_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.DC_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.DI_NS;
+
+import org.camunda.bpm.model.bpmn.BpmnModelException;
+import org.camunda.bpm.model.bpmn.Selector;
+import org.camunda.bpm.model.xml.Model;
+import org.camunda.bpm.model.xml.type.ModelElementType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Compiles the expressions of {@link Selector}s into executable plans. The plans of
+ * the most recently used expressions are cached, so compiling an expression again
+ * returns the same selector.</p>
+ *
+ * <p>This class is thread safe.</p>
+ */
+public class SelectorCompiler {
+
+  public static final int DEFAULT_CACHE_SIZE = 256;
+
+  protected static final Map<String, String> NAMESPACE_PREFIXES = new HashMap<String, String>();
+
+  static {
+    NAMESPACE_PREFIXES.put("bpmn", BPMN20_NS);
+    NAMESPACE_PREFIXES.put("camunda", CAMUNDA_NS);
+    NAMESPACE_PREFIXES.put("bpmndi", BPMNDI_NS);
+    NAMESPACE_PREFIXES.put("dc", DC_NS);
+    NAMESPACE_PREFIXES.put("di", DI_NS);
+  }
+
+  protected final Model model;
+  protected final Map<String, Selector> cache;
+
+  public SelectorCompiler(Model model) {
+    this(model, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * @param model the model of the element types
+   * @param cacheSize the maximum number of cached selectors
+   */
+  public SelectorCompiler(Model model, final int cacheSize) {
+    this.model = model;
+    this.cache = new LinkedHashMap<String, Selector>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      protected boolean removeEldestEntry(Map.Entry<String, Selector> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * @param expression the expression to compile
+   * @return the cached or newly compiled selector
+   * @throws BpmnModelException if the expression is invalid
+   */
+  public Selector compile(String expression) {
+    if (expression == null) {
+      throw new IllegalArgumentException("The expression of a selector must not be null");
+    }
+    synchronized (cache) {
+      Selector selector = cache.get(expression);
+      if (selector != null) {
+        return selector;
+      }
+    }
+    Selector selector = new Parser(expression).parse();
+    synchronized (cache) {
+      cache.put(expression, selector);
+    }
+    return selector;
+  }
+
+  /**
+   * @return the number of cached selectors
+   */
+  public int getCacheSize() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  protected class Parser {
+
+    protected final String expression;
+    protected int position = 0;
+
+    public Parser(String expression) {
+      this.expression = expression;
+    }
+
+    public Selector parse() {
+      List<SelectorImpl.Step> steps = new ArrayList<SelectorImpl.Step>();
+      boolean child = false;
+      skipWhitespace();
+      while (true) {
+        steps.add(parseStep(child));
+        boolean whitespace = skipWhitespace();
+        if (isEnd()) {
+          break;
+        }
+        if (peek() == '>') {
+          position++;
+          skipWhitespace();
+          child = true;
+        }
+        else if (whitespace) {
+          child = false;
+        }
+        else {
+          throw error("unexpected character '" + peek() + "'");
+        }
+      }
+      return new SelectorImpl(expression, steps);
+    }
+
+    protected SelectorImpl.Step parseStep(boolean child) {
+      ModelElementType type = null;
+      boolean universal = false;
+      if (isEnd()) {
+        throw error("element selector expected");
+      }
+      if (peek() == '*') {
+        position++;
+        universal = true;
+      }
+      else if (peek() != '[') {
+        int start = position;
+        String[] name = parseQualifiedName();
+        String namespaceUri = name[0] != null ? getNamespaceUri(name[0], start) : BPMN20_NS;
+        type = model.getTypeForName(namespaceUri, name[1]);
+        if (type == null) {
+          position = start;
+          throw error("unknown element type '" + expression.substring(start, start + length(name)) + "'");
+        }
+      }
+
+      List<SelectorImpl.AttributeTest> attributeTests = new ArrayList<SelectorImpl.AttributeTest>();
+      while (!isEnd() && peek() == '[') {
+        position++;
+        skipWhitespace();
+        int start = position;
+        String[] name = parseQualifiedName();
+        String namespaceUri = name[0] != null ? getNamespaceUri(name[0], start) : null;
+        skipWhitespace();
+        String value = null;
+        if (!isEnd() && peek() == '=') {
+          position++;
+          skipWhitespace();
+          value = parseValue();
+          skipWhitespace();
+        }
+        expect(']');
+        attributeTests.add(new SelectorImpl.AttributeTest(namespaceUri, name[1], value));
+      }
+
+      if (type == null && !universal && attributeTests.isEmpty()) {
+        throw error("element selector expected");
+      }
+      return new SelectorImpl.Step(type, attributeTests, child);
+    }
+
+    /**
+     * @return the prefix or null and the local name
+     */
+    protected String[] parseQualifiedName() {
+      String name = parseIdentifier();
+      if (!isEnd() && peek() == ':') {
+        position++;
+        return new String[] {name, parseIdentifier()};
+      }
+      return new String[] {null, name};
+    }
+
+    protected String parseIdentifier() {
+      int start = position;
+      while (!isEnd() && isIdentifierPart(peek(), position == start)) {
+        position++;
+      }
+      if (position == start) {
+        throw error(isEnd() ? "name expected" : "name expected but found '" + peek() + "'");
+      }
+      return expression.substring(start, position);
+    }
+
+    protected String parseValue() {
+      if (isEnd()) {
+        throw error("attribute value expected");
+      }
+      char quote = peek();
+      if (quote == '\'' || quote == '"') {
+        int end = expression.indexOf(quote, position + 1);
+        if (end < 0) {
+          throw error("unterminated attribute value");
+        }
+        String value = expression.substring(position + 1, end);
+        position = end + 1;
+        return value;
+      }
+      int start = position;
+      while (!isEnd() && peek() != ']' && !Character.isWhitespace(peek())) {
+        position++;
+      }
+      if (position == start) {
+        throw error("attribute value expected");
+      }
+      return expression.substring(start, position);
+    }
+
+    protected String getNamespaceUri(String prefix, int start) {
+      String namespaceUri = NAMESPACE_PREFIXES.get(prefix);
+      if (namespaceUri == null) {
+        position = start;
+        throw error("unknown namespace prefix '" + prefix + "'");
+      }
+      return namespaceUri;
+    }
+
+    protected boolean isIdentifierPart(char c, boolean first) {
+      if (Character.isLetter(c) || c == '_') {
+        return true;
+      }
+      return !first && (Character.isDigit(c) || c == '-' || c == '.');
+    }
+
+    protected int length(String[] name) {
+      return name[0] != null ? name[0].length() + 1 + name[1].length() : name[1].length();
+    }
+
+    protected void expect(char c) {
+      if (isEnd() || peek() != c) {
+        throw error("'" + c + "' expected");
+      }
+      position++;
+    }
+
+    protected boolean skipWhitespace() {
+      int start = position;
+      while (!isEnd() && Character.isWhitespace(peek())) {
+        position++;
+      }
+      return position > start;
+    }
+
+    protected boolean isEnd() {
+      return position >= expression.length();
+    }
+
+    protected char peek() {
+      return expression.charAt(position);
+    }
+
+    protected BpmnModelException error(String message) {
+      return new BpmnModelException("Invalid selector '" + expression + "' at position " + position + ": " + message);
+    }
+  }
+
+}
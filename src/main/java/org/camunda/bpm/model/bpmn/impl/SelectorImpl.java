@@ -0,0 +1,248 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.Predicate;
+import org.camunda.bpm.model.bpmn.Query;
+import org.camunda.bpm.model.bpmn.Selector;
+import org.camunda.bpm.model.xml.ModelInstance;
+import org.camunda.bpm.model.xml.impl.ModelInstanceImpl;
+import org.camunda.bpm.model.xml.impl.util.ModelUtil;
+import org.camunda.bpm.model.xml.instance.DomElement;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.camunda.bpm.model.xml.type.ModelElementType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>The executable plan of a {@link Selector}. The plan is evaluated from right to
+ * left: the candidates of the last step are looked up in an attribute index or the
+ * element type index of the model and then matched against the steps before.</p>
+ *
+ * <p>The selected elements are ordered by the candidate lookup, elements of one type
+ * are in document order.</p>
+ */
+public class SelectorImpl implements Selector {
+
+  protected static final String SELECTED_ELEMENTS = "selectedElements";
+
+  protected final String expression;
+  protected final List<Step> steps;
+
+  public SelectorImpl(String expression, List<Step> steps) {
+    this.expression = expression;
+    this.steps = Collections.unmodifiableList(new ArrayList<Step>(steps));
+  }
+
+  public String getExpression() {
+    return expression;
+  }
+
+  public <T extends ModelElementInstance> Query<T> select(BpmnModelInstance modelInstance) {
+    return select(modelInstance, null);
+  }
+
+  public <T extends ModelElementInstance> Query<T> select(ModelElementInstance scope) {
+    if (scope == null) {
+      throw new IllegalArgumentException("The scope of a selector must not be null");
+    }
+    return select(scope.getModelInstance(), scope);
+  }
+
+  /**
+   * The selected elements of a whole model are cached by the model until it is changed.
+   */
+  @SuppressWarnings("unchecked")
+  protected <T extends ModelElementInstance> Query<T> select(ModelInstance modelInstance, final ModelElementInstance scope) {
+    BpmnModelInstanceImpl bpmnModelInstance = scope == null && modelInstance instanceof BpmnModelInstanceImpl
+      ? (BpmnModelInstanceImpl) modelInstance : null;
+    long stamp = bpmnModelInstance != null ? bpmnModelInstance.getModificationStamp() : BpmnModelInstanceImpl.UNTRACKED;
+    if (stamp != BpmnModelInstanceImpl.UNTRACKED) {
+      Query<T> cachedElements = (Query<T>) bpmnModelInstance.getCachedResult(this, SELECTED_ELEMENTS);
+      if (cachedElements != null) {
+        return cachedElements;
+      }
+    }
+
+    Collection<T> candidates = getCandidates(modelInstance, scope);
+    Query<T> elements = new QueryImpl<T>(candidates).filter(new Predicate<T>() {
+      public boolean matches(T element) {
+        return matchesSteps(element, steps.size() - 1) && (scope == null || isDescendant(element, scope));
+      }
+    });
+
+    if (stamp != BpmnModelInstanceImpl.UNTRACKED) {
+      elements = new QueryImpl<T>(Collections.unmodifiableList(elements.list()));
+      bpmnModelInstance.cacheResult(this, SELECTED_ELEMENTS, elements, stamp);
+    }
+    return elements;
+  }
+
+  /**
+   * Looks up the candidates of the last step, preferably in an attribute index, then in
+   * the element type index. If the last step has no type, the elements are collected
+   * from the document.
+   */
+  @SuppressWarnings("unchecked")
+  protected <T extends ModelElementInstance> Collection<T> getCandidates(ModelInstance modelInstance, ModelElementInstance scope) {
+    Step step = steps.get(steps.size() - 1);
+    if (modelInstance instanceof BpmnModelInstanceImpl) {
+      BpmnModelInstanceImpl bpmnModelInstance = (BpmnModelInstanceImpl) modelInstance;
+      for (AttributeTest attributeTest : step.attributeTests) {
+        ElementAttributeIndex index = attributeTest.value != null
+          ? bpmnModelInstance.getAttributeIndex(attributeTest.namespaceUri, attributeTest.attributeName) : null;
+        if (index != null) {
+          bpmnModelInstance.materializeDiagrams();
+          return (Collection<T>) getModelElements(bpmnModelInstance, index.getElements(attributeTest.value));
+        }
+      }
+    }
+
+    if (step.type != null) {
+      return (Collection<T>) modelInstance.getModelElementsByType(step.type);
+    }
+
+    if (modelInstance instanceof BpmnModelInstanceImpl) {
+      ((BpmnModelInstanceImpl) modelInstance).materializeDiagrams();
+    }
+    DomElement root = scope != null ? scope.getDomElement() : modelInstance.getDocument().getRootElement();
+    List<DomElement> elements = new ArrayList<DomElement>();
+    if (root != null) {
+      collectDescendants(root, elements);
+    }
+    return (Collection<T>) getModelElements((ModelInstanceImpl) modelInstance, elements);
+  }
+
+  protected List<ModelElementInstance> getModelElements(ModelInstanceImpl modelInstance, List<DomElement> elements) {
+    List<ModelElementInstance> modelElements = new ArrayList<ModelElementInstance>(elements.size());
+    for (DomElement element : elements) {
+      modelElements.add(ModelUtil.getModelElement(element, modelInstance));
+    }
+    return modelElements;
+  }
+
+  protected void collectDescendants(DomElement element, List<DomElement> descendants) {
+    for (DomElement childElement : element.getChildElements()) {
+      descendants.add(childElement);
+      collectDescendants(childElement, descendants);
+    }
+  }
+
+  /**
+   * @return true if the element matches the step and its ancestors match the steps before
+   */
+  protected boolean matchesSteps(ModelElementInstance element, int stepIndex) {
+    Step step = steps.get(stepIndex);
+    if (!step.matches(element)) {
+      return false;
+    }
+    if (stepIndex == 0) {
+      return true;
+    }
+    ModelElementInstance ancestor = element.getParentElement();
+    if (step.child) {
+      return ancestor != null && matchesSteps(ancestor, stepIndex - 1);
+    }
+    while (ancestor != null) {
+      if (matchesSteps(ancestor, stepIndex - 1)) {
+        return true;
+      }
+      ancestor = ancestor.getParentElement();
+    }
+    return false;
+  }
+
+  protected boolean isDescendant(ModelElementInstance element, ModelElementInstance scope) {
+    ModelElementInstance ancestor = element.getParentElement();
+    while (ancestor != null) {
+      if (ancestor.equals(scope)) {
+        return true;
+      }
+      ancestor = ancestor.getParentElement();
+    }
+    return false;
+  }
+
+  public String toString() {
+    return expression;
+  }
+
+  /**
+   * An element selector of the expression and the combinator which connects it to the
+   * step before.
+   */
+  public static class Step {
+
+    protected final ModelElementType type;
+    protected final Predicate<Object> typePredicate;
+    protected final List<AttributeTest> attributeTests;
+    protected final boolean child;
+
+    /**
+     * @param type the type of the elements or null for elements of all types
+     * @param attributeTests the attributes the elements have to match
+     * @param child true if the elements have to be children of the elements of the step
+     * before, false if they have to be descendants
+     */
+    public Step(ModelElementType type, List<AttributeTest> attributeTests, boolean child) {
+      this.type = type;
+      this.typePredicate = type != null ? new QueryImpl.TypePredicate(type.getInstanceType()) : null;
+      this.attributeTests = Collections.unmodifiableList(new ArrayList<AttributeTest>(attributeTests));
+      this.child = child;
+    }
+
+    public boolean matches(ModelElementInstance element) {
+      if (typePredicate != null && !typePredicate.matches(element)) {
+        return false;
+      }
+      for (AttributeTest attributeTest : attributeTests) {
+        if (!attributeTest.matches(element)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Tests the value of an attribute or, without a value, if the attribute exists.
+   */
+  public static class AttributeTest {
+
+    protected final String namespaceUri;
+    protected final String attributeName;
+    protected final String value;
+    protected final Predicate<Object> valuePredicate;
+
+    public AttributeTest(String namespaceUri, String attributeName, String value) {
+      this.namespaceUri = namespaceUri;
+      this.attributeName = attributeName;
+      this.value = value;
+      this.valuePredicate = value != null ? new QueryImpl.AttributePredicate(namespaceUri, attributeName, value) : null;
+    }
+
+    public boolean matches(ModelElementInstance element) {
+      if (valuePredicate != null) {
+        return valuePredicate.matches(element);
+      }
+      String attributeValue = namespaceUri == null ? element.getAttributeValue(attributeName)
+        : element.getAttributeValueNs(namespaceUri, attributeName);
+      return attributeValue != null;
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * A copy-on-write attribute.
+ */
+public class CopyOnWriteAttr extends CopyOnWriteNode implements Attr {
+
+  protected final String name;
+  protected final String namespaceURI;
+  protected final String prefix;
+  protected final String localName;
+  protected String value;
+  protected boolean id;
+  protected CopyOnWriteElement ownerElement;
+
+  public CopyOnWriteAttr(CopyOnWriteDocument ownerDocument, String namespaceURI, String name, String prefix, String localName) {
+    super(ownerDocument);
+    this.name = name;
+    this.namespaceURI = namespaceURI;
+    this.prefix = prefix;
+    this.localName = localName;
+    this.value = "";
+  }
+
+  public CopyOnWriteAttr(CopyOnWriteDocument ownerDocument, ReadOnlyAttr source) {
+    super(ownerDocument);
+    this.name = source.name;
+    this.namespaceURI = source.namespaceURI;
+    this.prefix = source.prefix;
+    this.localName = source.localName;
+    this.value = source.value;
+    this.id = source.id;
+  }
+
+  public short getNodeType() {
+    return ATTRIBUTE_NODE;
+  }
+
+  public String getNodeName() {
+    return name;
+  }
+
+  public String getNodeValue() {
+    return value;
+  }
+
+  public void setNodeValue(String nodeValue) {
+    setValue(nodeValue);
+  }
+
+  public String getNamespaceURI() {
+    return namespaceURI;
+  }
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+  public String getLocalName() {
+    return localName;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean getSpecified() {
+    return true;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public void setValue(String value) {
+    String previousValue = this.value;
+    this.value = value != null ? value : "";
+    if (ownerElement != null) {
+      if (id) {
+        ownerDocument.putIdentifier(this.value, ownerElement);
+      }
+      ownerDocument.fireAttributeModified(ownerElement, this, previousValue, this.value);
+    }
+  }
+
+  public Element getOwnerElement() {
+    return ownerElement;
+  }
+
+  public TypeInfo getSchemaTypeInfo() {
+    return null;
+  }
+
+  public boolean isId() {
+    return id;
+  }
+
+  public String lookupPrefix(String namespaceURI) {
+    return ownerElement != null ? ownerElement.lookupPrefix(namespaceURI) : null;
+  }
+
+  public boolean isDefaultNamespace(String namespaceURI) {
+    return ownerElement != null && ownerElement.isDefaultNamespace(namespaceURI);
+  }
+
+  public String lookupNamespaceURI(String prefix) {
+    return ownerElement != null ? ownerElement.lookupNamespaceURI(prefix) : null;
+  }
+
+  protected boolean matches(String namespaceURI, String localName) {
+    return this.localName != null && this.localName.equals(localName)
+      && DomNodes.equal(this.namespaceURI, DomNodes.normalizeNamespaceURI(namespaceURI));
+  }
+
+}
@@ -0,0 +1,84 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.DOMException;
+
+/**
+ * Base class of copy-on-write text, CDATA section and comment nodes.
+ */
+public abstract class CopyOnWriteCharacterData extends CopyOnWriteNode implements CharacterData {
+
+  protected String data;
+
+  protected CopyOnWriteCharacterData(CopyOnWriteDocument ownerDocument, String data) {
+    super(ownerDocument);
+    this.data = data;
+  }
+
+  public String getNodeValue() {
+    return data;
+  }
+
+  public void setNodeValue(String nodeValue) {
+    setData(nodeValue);
+  }
+
+  public String getData() {
+    return data;
+  }
+
+  public void setData(String data) {
+    changeData(data != null ? data : "");
+  }
+
+  public int getLength() {
+    return data.length();
+  }
+
+  public String substringData(int offset, int count) {
+    checkRange(offset, count);
+    return data.substring(offset, Math.min(data.length(), offset + count));
+  }
+
+  public void appendData(String arg) {
+    changeData(data + arg);
+  }
+
+  public void insertData(int offset, String arg) {
+    replaceData(offset, 0, arg);
+  }
+
+  public void deleteData(int offset, int count) {
+    replaceData(offset, count, "");
+  }
+
+  public void replaceData(int offset, int count, String arg) {
+    checkRange(offset, count);
+    changeData(data.substring(0, offset) + arg + data.substring(Math.min(data.length(), offset + count)));
+  }
+
+  protected void changeData(String newData) {
+    String previousData = data;
+    data = newData;
+    ownerDocument.fireCharacterDataModified(this, previousData, newData);
+  }
+
+  protected void checkRange(int offset, int count) {
+    if (offset < 0 || offset > data.length() || count < 0) {
+      throw new DOMException(DOMException.INDEX_SIZE_ERR, "Invalid offset or count");
+    }
+  }
+
+}
@@ -0,0 +1,465 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.MutationEvent;
+
+/**
+ * <p>A modifiable document which shares its nodes with a {@link ReadOnlyDocument}
+ * until they are changed.</p>
+ *
+ * <p>The nodes of the read-only document cannot be part of another document, so
+ * each node is represented by a copy-on-write node. These nodes are created lazily
+ * when their parent is accessed and share all names and values with the read-only
+ * nodes, the attributes of an element are only copied when they are changed. So a
+ * copy costs nothing up front and subtrees which are never visited, like the diagram
+ * of a process, are never copied.</p>
+ *
+ * <p>Like other DOM implementations a copy-on-write document is not thread safe. The
+ * shared read-only document is never changed, so any number of copies can be
+ * created from it and changed concurrently.</p>
+ *
+ * <p>Changes of the document tree fire the DOM level 2 mutation events
+ * <code>DOMNodeInserted</code>, <code>DOMNodeRemoved</code>, <code>DOMAttrModified</code>
+ * and <code>DOMCharacterDataModified</code>. Event listeners can only be registered on
+ * the document itself and receive the events of all nodes. The events are only created
+ * while a listener is registered.</p>
+ */
+public class CopyOnWriteDocument extends CopyOnWriteParentNode implements Document {
+
+  public static final String NODE_INSERTED = "DOMNodeInserted";
+  public static final String NODE_REMOVED = "DOMNodeRemoved";
+  public static final String ATTRIBUTE_MODIFIED = "DOMAttrModified";
+  public static final String CHARACTER_DATA_MODIFIED = "DOMCharacterDataModified";
+
+  protected final List<RegisteredListener> eventListeners = new CopyOnWriteArrayList<RegisteredListener>();
+  protected final Map<String, CopyOnWriteElement> identifiers = new HashMap<String, CopyOnWriteElement>();
+  protected String xmlVersion;
+  protected boolean xmlStandalone;
+  protected String documentURI;
+  protected boolean strictErrorChecking = true;
+
+  public CopyOnWriteDocument(ReadOnlyDocument source) {
+    super(null, source);
+    this.xmlVersion = source.getXmlVersion();
+    this.xmlStandalone = source.getXmlStandalone();
+    this.documentURI = source.getDocumentURI();
+  }
+
+  /**
+   * Creates the copy-on-write node of a node of the read-only document.
+   */
+  protected CopyOnWriteNode copyOf(ReadOnlyNode node) {
+    switch (node.getNodeType()) {
+      case ELEMENT_NODE:
+        CopyOnWriteElement element = new CopyOnWriteElement(this, (ReadOnlyElement) node);
+        for (ReadOnlyAttr attribute : element.sourceAttributes()) {
+          if (attribute.id && !identifiers.containsKey(attribute.value)) {
+            identifiers.put(attribute.value, element);
+          }
+        }
+        return element;
+      case TEXT_NODE:
+        return new CopyOnWriteText(this, node.getNodeValue());
+      case CDATA_SECTION_NODE:
+        return new CopyOnWriteCDATASection(this, node.getNodeValue());
+      case COMMENT_NODE:
+        return new CopyOnWriteComment(this, node.getNodeValue());
+      case PROCESSING_INSTRUCTION_NODE:
+        return new CopyOnWriteProcessingInstruction(this, node.getNodeName(), node.getNodeValue());
+      default:
+        throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Unexpected node type " + node.getNodeType());
+    }
+  }
+
+  /**
+   * Finds the copy-on-write node of a node of the read-only document.
+   *
+   * @return the copy-on-write node or null if it was removed from the document
+   */
+  protected CopyOnWriteParentNode find(ReadOnlyNode node) {
+    if (node == source) {
+      return this;
+    }
+    CopyOnWriteParentNode parent = node.parentNode != null ? find(node.parentNode) : null;
+    if (parent != null) {
+      for (CopyOnWriteNode child : parent.children()) {
+        if (child instanceof CopyOnWriteParentNode && ((CopyOnWriteParentNode) child).source == node) {
+          return (CopyOnWriteParentNode) child;
+        }
+      }
+    }
+    return null;
+  }
+
+  protected void putIdentifier(String id, CopyOnWriteElement element) {
+    identifiers.put(id, element);
+  }
+
+  public Element getElementById(String elementId) {
+    CopyOnWriteElement element = identifiers.get(elementId);
+    if (element != null && element.hasId(elementId) && element.isAttached()) {
+      return element;
+    }
+
+    // the element was not accessed yet, find it by the path to the read-only element
+    Element sourceElement = ((ReadOnlyDocument) source).getElementById(elementId);
+    if (sourceElement != null) {
+      element = (CopyOnWriteElement) find((ReadOnlyElement) sourceElement);
+      if (element != null && element.hasId(elementId)) {
+        identifiers.put(elementId, element);
+        return element;
+      }
+    }
+    return null;
+  }
+
+  public short getNodeType() {
+    return DOCUMENT_NODE;
+  }
+
+  public String getNodeName() {
+    return "#document";
+  }
+
+  public Document getOwnerDocument() {
+    return null;
+  }
+
+  protected CopyOnWriteDocument ownerDocument() {
+    return this;
+  }
+
+  public String getTextContent() {
+    return null;
+  }
+
+  public void setTextContent(String textContent) {
+    // setting the text content of a document has no effect
+  }
+
+  public DocumentType getDoctype() {
+    return null;
+  }
+
+  public DOMImplementation getImplementation() {
+    return DomNodes.getDomImplementation();
+  }
+
+  public Element getDocumentElement() {
+    for (CopyOnWriteNode child : children()) {
+      if (child.getNodeType() == ELEMENT_NODE) {
+        return (Element) child;
+      }
+    }
+    return null;
+  }
+
+  public Element createElement(String tagName) {
+    return new CopyOnWriteElement(this, null, tagName, null, null);
+  }
+
+  public Element createElementNS(String namespaceURI, String qualifiedName) {
+    return new CopyOnWriteElement(this, DomNodes.normalizeNamespaceURI(namespaceURI), qualifiedName, prefix(qualifiedName), localName(qualifiedName));
+  }
+
+  public Attr createAttribute(String name) {
+    return new CopyOnWriteAttr(this, null, name, null, null);
+  }
+
+  public Attr createAttributeNS(String namespaceURI, String qualifiedName) {
+    return new CopyOnWriteAttr(this, DomNodes.normalizeNamespaceURI(namespaceURI), qualifiedName, prefix(qualifiedName), localName(qualifiedName));
+  }
+
+  public Text createTextNode(String data) {
+    return new CopyOnWriteText(this, data);
+  }
+
+  public Comment createComment(String data) {
+    return new CopyOnWriteComment(this, data);
+  }
+
+  public CDATASection createCDATASection(String data) {
+    return new CopyOnWriteCDATASection(this, data);
+  }
+
+  public ProcessingInstruction createProcessingInstruction(String target, String data) {
+    return new CopyOnWriteProcessingInstruction(this, target, data);
+  }
+
+  public DocumentFragment createDocumentFragment() {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Document fragments are not supported by copy-on-write documents");
+  }
+
+  public EntityReference createEntityReference(String name) {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Entity references are not supported by copy-on-write documents");
+  }
+
+  public Node importNode(Node importedNode, boolean deep) {
+    Node node = DomNodes.copyNode(this, importedNode, deep);
+    if (node == null) {
+      throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Nodes of type " + importedNode.getNodeType() + " cannot be imported");
+    }
+    return node;
+  }
+
+  public Node adoptNode(Node source) {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Nodes cannot be adopted by copy-on-write documents");
+  }
+
+  public Node renameNode(Node n, String namespaceURI, String qualifiedName) {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Nodes of copy-on-write documents cannot be renamed");
+  }
+
+  public NodeList getElementsByTagName(String tagname) {
+    List<Node> elements = new ArrayList<Node>();
+    collectElements(null, tagname, false, elements);
+    return new ReadOnlyNodeList(elements.toArray(new Node[elements.size()]));
+  }
+
+  public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+    List<Node> elements = new ArrayList<Node>();
+    collectElements(namespaceURI, localName, true, elements);
+    return new ReadOnlyNodeList(elements.toArray(new Node[elements.size()]));
+  }
+
+  public String getInputEncoding() {
+    return null;
+  }
+
+  public String getXmlEncoding() {
+    return null;
+  }
+
+  public boolean getXmlStandalone() {
+    return xmlStandalone;
+  }
+
+  public void setXmlStandalone(boolean xmlStandalone) {
+    this.xmlStandalone = xmlStandalone;
+  }
+
+  public String getXmlVersion() {
+    return xmlVersion;
+  }
+
+  public void setXmlVersion(String xmlVersion) {
+    this.xmlVersion = xmlVersion;
+  }
+
+  public boolean getStrictErrorChecking() {
+    return strictErrorChecking;
+  }
+
+  public void setStrictErrorChecking(boolean strictErrorChecking) {
+    this.strictErrorChecking = strictErrorChecking;
+  }
+
+  public String getDocumentURI() {
+    return documentURI;
+  }
+
+  public void setDocumentURI(String documentURI) {
+    this.documentURI = documentURI;
+  }
+
+  public DOMConfiguration getDomConfig() {
+    return null;
+  }
+
+  public void normalizeDocument() {
+    // adjacent text nodes are not merged
+  }
+
+  public String lookupPrefix(String namespaceURI) {
+    Element documentElement = getDocumentElement();
+    return documentElement != null ? documentElement.lookupPrefix(namespaceURI) : null;
+  }
+
+  public boolean isDefaultNamespace(String namespaceURI) {
+    Element documentElement = getDocumentElement();
+    return documentElement != null && documentElement.isDefaultNamespace(namespaceURI);
+  }
+
+  public String lookupNamespaceURI(String prefix) {
+    Element documentElement = getDocumentElement();
+    return documentElement != null ? documentElement.lookupNamespaceURI(prefix) : null;
+  }
+
+  /**
+   * Copies this document into a new modifiable DOM document of the JDK DOM implementation.
+   * User data is not copied.
+   *
+   * @param deep ignored, the whole document is always copied
+   * @return the copy of this document
+   */
+  public Node cloneNode(boolean deep) {
+    return DomNodes.copyDocument(this);
+  }
+
+  public void addEventListener(String type, EventListener listener, boolean useCapture) {
+    if (type != null && listener != null && findListener(type, listener, useCapture) == null) {
+      eventListeners.add(new RegisteredListener(type, listener, useCapture));
+    }
+  }
+
+  public void removeEventListener(String type, EventListener listener, boolean useCapture) {
+    RegisteredListener registeredListener = findListener(type, listener, useCapture);
+    if (registeredListener != null) {
+      eventListeners.remove(registeredListener);
+    }
+  }
+
+  protected RegisteredListener findListener(String type, EventListener listener, boolean useCapture) {
+    for (RegisteredListener registeredListener : eventListeners) {
+      if (registeredListener.matches(type, listener, useCapture)) {
+        return registeredListener;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Dispatches a mutation event of a node to the listeners of the document. Capturing
+   * listeners are called before the other ones.
+   *
+   * @param target the node the event is dispatched to
+   * @param evt the event, which must have been created by this document
+   * @return always true, mutation events cannot be canceled
+   */
+  protected boolean dispatchEvent(CopyOnWriteNode target, Event evt) {
+    if (!(evt instanceof CopyOnWriteMutationEvent) || evt.getType() == null) {
+      throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Only mutation events of copy-on-write documents can be dispatched");
+    }
+    CopyOnWriteMutationEvent event = (CopyOnWriteMutationEvent) evt;
+    event.target = target;
+    event.currentTarget = this;
+    for (RegisteredListener registeredListener : eventListeners) {
+      if (registeredListener.useCapture && registeredListener.type.equals(event.type)) {
+        event.eventPhase = Event.CAPTURING_PHASE;
+        registeredListener.listener.handleEvent(event);
+      }
+    }
+    if (event.bubbles) {
+      for (RegisteredListener registeredListener : eventListeners) {
+        if (!registeredListener.useCapture && registeredListener.type.equals(event.type)) {
+          event.eventPhase = target == this ? Event.AT_TARGET : Event.BUBBLING_PHASE;
+          registeredListener.listener.handleEvent(event);
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if a change of the node has to be reported to event listeners
+   */
+  protected boolean isObserved(CopyOnWriteNode node) {
+    return !eventListeners.isEmpty() && node.isAttached();
+  }
+
+  /**
+   * Fires the event after the node was inserted.
+   */
+  protected void fireNodeInserted(CopyOnWriteNode node, CopyOnWriteParentNode parent) {
+    if (isObserved(node)) {
+      fireMutationEvent(node, NODE_INSERTED, parent, null, null, null, (short) 0);
+    }
+  }
+
+  /**
+   * Fires the event before the node is removed.
+   */
+  protected void fireNodeRemoved(CopyOnWriteNode node, CopyOnWriteParentNode parent) {
+    if (isObserved(node)) {
+      fireMutationEvent(node, NODE_REMOVED, parent, null, null, null, (short) 0);
+    }
+  }
+
+  /**
+   * Fires the event after the attribute was added, changed or removed.
+   */
+  protected void fireAttributeModified(CopyOnWriteElement element, CopyOnWriteAttr attribute, String previousValue, String newValue) {
+    if (isObserved(element)) {
+      short change = previousValue == null ? MutationEvent.ADDITION
+        : newValue == null ? MutationEvent.REMOVAL : MutationEvent.MODIFICATION;
+      fireMutationEvent(element, ATTRIBUTE_MODIFIED, attribute, previousValue, newValue, attribute.getName(), change);
+    }
+  }
+
+  /**
+   * Fires the event after the data of the node was changed.
+   */
+  protected void fireCharacterDataModified(CopyOnWriteNode node, String previousValue, String newValue) {
+    if (isObserved(node)) {
+      fireMutationEvent(node, CHARACTER_DATA_MODIFIED, null, previousValue, newValue, null, (short) 0);
+    }
+  }
+
+  protected void fireMutationEvent(CopyOnWriteNode target, String type, Node relatedNode, String previousValue,
+                                   String newValue, String attributeName, short attributeChange) {
+    CopyOnWriteMutationEvent event = new CopyOnWriteMutationEvent();
+    event.initMutationEvent(type, true, false, relatedNode, previousValue, newValue, attributeName, attributeChange);
+    dispatchEvent(target, event);
+  }
+
+  protected static String prefix(String qualifiedName) {
+    int index = qualifiedName.indexOf(':');
+    return index > 0 ? qualifiedName.substring(0, index) : null;
+  }
+
+  protected static String localName(String qualifiedName) {
+    return qualifiedName.substring(qualifiedName.indexOf(':') + 1);
+  }
+
+  protected static class RegisteredListener {
+
+    protected final String type;
+    protected final EventListener listener;
+    protected final boolean useCapture;
+
+    public RegisteredListener(String type, EventListener listener, boolean useCapture) {
+      this.type = type;
+      this.listener = listener;
+      this.useCapture = useCapture;
+    }
+
+    public boolean matches(String type, EventListener listener, boolean useCapture) {
+      return this.type.equals(type) && this.listener == listener && this.useCapture == useCapture;
+    }
+  }
+
+}
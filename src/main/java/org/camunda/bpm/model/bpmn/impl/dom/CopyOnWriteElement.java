@@ -0,0 +1,353 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * <p>A copy-on-write element.</p>
+ *
+ * <p>Attribute values are read from the read-only element this element was copied
+ * from until the attributes are changed or accessed as nodes, only then they are
+ * copied.</p>
+ */
+public class CopyOnWriteElement extends CopyOnWriteParentNode implements Element {
+
+  protected final String tagName;
+  protected final String namespaceURI;
+  protected final String prefix;
+  protected final String localName;
+  protected List<CopyOnWriteAttr> attributes;
+  protected NamedNodeMap attributeMap;
+
+  public CopyOnWriteElement(CopyOnWriteDocument ownerDocument, ReadOnlyElement source) {
+    super(ownerDocument, source);
+    this.tagName = source.tagName;
+    this.namespaceURI = source.namespaceURI;
+    this.prefix = source.prefix;
+    this.localName = source.localName;
+  }
+
+  public CopyOnWriteElement(CopyOnWriteDocument ownerDocument, String namespaceURI, String tagName, String prefix, String localName) {
+    super(ownerDocument, null);
+    this.tagName = tagName;
+    this.namespaceURI = namespaceURI;
+    this.prefix = prefix;
+    this.localName = localName;
+  }
+
+  /**
+   * @return the attributes, copied from the source element on first access
+   */
+  protected List<CopyOnWriteAttr> attributes() {
+    if (attributes == null) {
+      attributes = new ArrayList<CopyOnWriteAttr>();
+      if (source != null) {
+        for (ReadOnlyAttr sourceAttribute : sourceAttributes()) {
+          CopyOnWriteAttr attribute = new CopyOnWriteAttr(ownerDocument, sourceAttribute);
+          attribute.ownerElement = this;
+          attributes.add(attribute);
+        }
+      }
+    }
+    return attributes;
+  }
+
+  protected ReadOnlyAttr[] sourceAttributes() {
+    return ((ReadOnlyElement) source).attributes;
+  }
+
+  /**
+   * @return true if the attributes are still the ones of the source element
+   */
+  protected boolean hasSourceAttributes() {
+    return attributes == null && source != null;
+  }
+
+  public short getNodeType() {
+    return ELEMENT_NODE;
+  }
+
+  public String getNodeName() {
+    return tagName;
+  }
+
+  public String getTagName() {
+    return tagName;
+  }
+
+  public String getNamespaceURI() {
+    return namespaceURI;
+  }
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+  public String getLocalName() {
+    return localName;
+  }
+
+  public NamedNodeMap getAttributes() {
+    if (attributeMap == null) {
+      attributeMap = new CopyOnWriteNamedNodeMap(this);
+    }
+    return attributeMap;
+  }
+
+  public boolean hasAttributes() {
+    return hasSourceAttributes() ? sourceAttributes().length > 0 : !attributes().isEmpty();
+  }
+
+  public String getAttribute(String name) {
+    if (hasSourceAttributes()) {
+      for (ReadOnlyAttr attribute : sourceAttributes()) {
+        if (attribute.name.equals(name)) {
+          return attribute.value;
+        }
+      }
+      return "";
+    }
+    Attr attribute = getAttributeNode(name);
+    return attribute != null ? attribute.getValue() : "";
+  }
+
+  public boolean hasAttribute(String name) {
+    if (hasSourceAttributes()) {
+      for (ReadOnlyAttr attribute : sourceAttributes()) {
+        if (attribute.name.equals(name)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return getAttributeNode(name) != null;
+  }
+
+  public String getAttributeNS(String namespaceURI, String localName) {
+    if (hasSourceAttributes()) {
+      for (ReadOnlyAttr attribute : sourceAttributes()) {
+        if (attribute.matches(namespaceURI, localName)) {
+          return attribute.value;
+        }
+      }
+      return "";
+    }
+    Attr attribute = getAttributeNodeNS(namespaceURI, localName);
+    return attribute != null ? attribute.getValue() : "";
+  }
+
+  public boolean hasAttributeNS(String namespaceURI, String localName) {
+    if (hasSourceAttributes()) {
+      for (ReadOnlyAttr attribute : sourceAttributes()) {
+        if (attribute.matches(namespaceURI, localName)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return getAttributeNodeNS(namespaceURI, localName) != null;
+  }
+
+  public Attr getAttributeNode(String name) {
+    for (CopyOnWriteAttr attribute : attributes()) {
+      if (attribute.name.equals(name)) {
+        return attribute;
+      }
+    }
+    return null;
+  }
+
+  public Attr getAttributeNodeNS(String namespaceURI, String localName) {
+    for (CopyOnWriteAttr attribute : attributes()) {
+      if (attribute.matches(namespaceURI, localName)) {
+        return attribute;
+      }
+    }
+    return null;
+  }
+
+  public void setAttribute(String name, String value) {
+    Attr attribute = getAttributeNode(name);
+    if (attribute == null) {
+      attribute = new CopyOnWriteAttr(ownerDocument, null, name, null, null);
+      attribute.setValue(value);
+      setAttributeNode(attribute);
+    }
+    else {
+      attribute.setValue(value);
+    }
+  }
+
+  public void setAttributeNS(String namespaceURI, String qualifiedName, String value) {
+    String localName = CopyOnWriteDocument.localName(qualifiedName);
+    Attr attribute = getAttributeNodeNS(namespaceURI, localName);
+    if (attribute == null) {
+      attribute = ownerDocument.createAttributeNS(namespaceURI, qualifiedName);
+      attribute.setValue(value);
+      setAttributeNodeNS(attribute);
+    }
+    else {
+      attribute.setValue(value);
+    }
+  }
+
+  public void removeAttribute(String name) {
+    Attr attribute = getAttributeNode(name);
+    if (attribute != null) {
+      removeAttributeNode(attribute);
+    }
+  }
+
+  public void removeAttributeNS(String namespaceURI, String localName) {
+    Attr attribute = getAttributeNodeNS(namespaceURI, localName);
+    if (attribute != null) {
+      removeAttributeNode(attribute);
+    }
+  }
+
+  public Attr setAttributeNode(Attr newAttr) {
+    return setAttributeNode(newAttr, getAttributeNode(newAttr.getName()));
+  }
+
+  public Attr setAttributeNodeNS(Attr newAttr) {
+    Attr oldAttr = newAttr.getLocalName() != null
+      ? getAttributeNodeNS(newAttr.getNamespaceURI(), newAttr.getLocalName())
+      : getAttributeNode(newAttr.getName());
+    return setAttributeNode(newAttr, oldAttr);
+  }
+
+  protected Attr setAttributeNode(Attr newAttr, Attr oldAttr) {
+    if (!(newAttr instanceof CopyOnWriteAttr) || ((CopyOnWriteAttr) newAttr).ownerDocument != ownerDocument) {
+      throw new DOMException(DOMException.WRONG_DOCUMENT_ERR, "The attribute was created by a different document");
+    }
+    CopyOnWriteAttr attribute = (CopyOnWriteAttr) newAttr;
+    if (attribute == oldAttr) {
+      return attribute;
+    }
+    if (attribute.ownerElement != null) {
+      throw new DOMException(DOMException.INUSE_ATTRIBUTE_ERR, "The attribute is already used by another element");
+    }
+    List<CopyOnWriteAttr> attributes = attributes();
+    if (oldAttr != null) {
+      attributes.set(attributes.indexOf(oldAttr), attribute);
+      ((CopyOnWriteAttr) oldAttr).ownerElement = null;
+    }
+    else {
+      attributes.add(attribute);
+    }
+    attribute.ownerElement = this;
+    if (attribute.id) {
+      ownerDocument.putIdentifier(attribute.value, this);
+    }
+    ownerDocument.fireAttributeModified(this, attribute, oldAttr != null ? oldAttr.getValue() : null, attribute.value);
+    return oldAttr;
+  }
+
+  public Attr removeAttributeNode(Attr oldAttr) {
+    if (oldAttr == null || !attributes().remove(oldAttr)) {
+      throw new DOMException(DOMException.NOT_FOUND_ERR, "The attribute is not an attribute of this element");
+    }
+    ((CopyOnWriteAttr) oldAttr).ownerElement = null;
+    ownerDocument.fireAttributeModified(this, (CopyOnWriteAttr) oldAttr, oldAttr.getValue(), null);
+    return oldAttr;
+  }
+
+  public void setIdAttribute(String name, boolean isId) {
+    setIdAttributeNode(getAttributeNode(name), isId);
+  }
+
+  public void setIdAttributeNS(String namespaceURI, String localName, boolean isId) {
+    setIdAttributeNode(getAttributeNodeNS(namespaceURI, localName), isId);
+  }
+
+  public void setIdAttributeNode(Attr idAttr, boolean isId) {
+    if (idAttr == null || idAttr.getOwnerElement() != this) {
+      throw new DOMException(DOMException.NOT_FOUND_ERR, "The attribute is not an attribute of this element");
+    }
+    CopyOnWriteAttr attribute = (CopyOnWriteAttr) idAttr;
+    attribute.id = isId;
+    if (isId) {
+      ownerDocument.putIdentifier(attribute.value, this);
+    }
+  }
+
+  public NodeList getElementsByTagName(String name) {
+    List<Node> elements = new ArrayList<Node>();
+    collectElements(null, name, false, elements);
+    return new ReadOnlyNodeList(elements.toArray(new Node[elements.size()]));
+  }
+
+  public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+    List<Node> elements = new ArrayList<Node>();
+    collectElements(namespaceURI, localName, true, elements);
+    return new ReadOnlyNodeList(elements.toArray(new Node[elements.size()]));
+  }
+
+  public TypeInfo getSchemaTypeInfo() {
+    return null;
+  }
+
+  public String lookupNamespaceURI(String prefix) {
+    return DomNodes.lookupNamespaceURI(this, prefix);
+  }
+
+  public String lookupPrefix(String namespaceURI) {
+    return DomNodes.lookupPrefix(this, namespaceURI);
+  }
+
+  public boolean isDefaultNamespace(String namespaceURI) {
+    return DomNodes.equal(lookupNamespaceURI(null), namespaceURI);
+  }
+
+  /**
+   * @return true if the element has an id attribute with the given value
+   */
+  protected boolean hasId(String id) {
+    if (hasSourceAttributes()) {
+      for (ReadOnlyAttr attribute : sourceAttributes()) {
+        if (attribute.id && attribute.value.equals(id)) {
+          return true;
+        }
+      }
+    }
+    else {
+      for (CopyOnWriteAttr attribute : attributes) {
+        if (attribute.id && attribute.value.equals(id)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  protected boolean matches(String namespaceURI, String localName, boolean namespaceAware) {
+    if (!namespaceAware) {
+      return "*".equals(localName) || tagName.equals(localName);
+    }
+    if (!"*".equals(namespaceURI) && !DomNodes.equal(this.namespaceURI, DomNodes.normalizeNamespaceURI(namespaceURI))) {
+      return false;
+    }
+    return "*".equals(localName) || (this.localName != null && this.localName.equals(localName));
+  }
+
+}
@@ -0,0 +1,109 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.events.EventTarget;
+import org.w3c.dom.events.MutationEvent;
+
+/**
+ * A DOM level 2 mutation event of a {@link CopyOnWriteDocument}.
+ */
+public class CopyOnWriteMutationEvent implements MutationEvent {
+
+  protected String type;
+  protected EventTarget target;
+  protected EventTarget currentTarget;
+  protected short eventPhase;
+  protected boolean bubbles;
+  protected boolean cancelable;
+  protected final long timeStamp = System.currentTimeMillis();
+  protected Node relatedNode;
+  protected String prevValue;
+  protected String newValue;
+  protected String attrName;
+  protected short attrChange;
+
+  public String getType() {
+    return type;
+  }
+
+  public EventTarget getTarget() {
+    return target;
+  }
+
+  public EventTarget getCurrentTarget() {
+    return currentTarget;
+  }
+
+  public short getEventPhase() {
+    return eventPhase;
+  }
+
+  public boolean getBubbles() {
+    return bubbles;
+  }
+
+  public boolean getCancelable() {
+    return cancelable;
+  }
+
+  public long getTimeStamp() {
+    return timeStamp;
+  }
+
+  public void stopPropagation() {
+    // the event is only dispatched to the listeners of the document
+  }
+
+  public void preventDefault() {
+    // mutation events cannot be canceled
+  }
+
+  public void initEvent(String eventTypeArg, boolean canBubbleArg, boolean cancelableArg) {
+    this.type = eventTypeArg;
+    this.bubbles = canBubbleArg;
+    this.cancelable = cancelableArg;
+  }
+
+  public Node getRelatedNode() {
+    return relatedNode;
+  }
+
+  public String getPrevValue() {
+    return prevValue;
+  }
+
+  public String getNewValue() {
+    return newValue;
+  }
+
+  public String getAttrName() {
+    return attrName;
+  }
+
+  public short getAttrChange() {
+    return attrChange;
+  }
+
+  public void initMutationEvent(String typeArg, boolean canBubbleArg, boolean cancelableArg, Node relatedNodeArg,
+                                String prevValueArg, String newValueArg, String attrNameArg, short attrChangeArg) {
+    initEvent(typeArg, canBubbleArg, cancelableArg);
+    this.relatedNode = relatedNodeArg;
+    this.prevValue = prevValueArg;
+    this.newValue = newValueArg;
+    this.attrName = attrNameArg;
+    this.attrChange = attrChangeArg;
+  }
+
+}
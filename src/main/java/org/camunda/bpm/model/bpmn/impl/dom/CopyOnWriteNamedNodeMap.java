@@ -0,0 +1,65 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The live attributes of a {@link CopyOnWriteElement}.
+ */
+public class CopyOnWriteNamedNodeMap implements NamedNodeMap {
+
+  protected final CopyOnWriteElement element;
+
+  public CopyOnWriteNamedNodeMap(CopyOnWriteElement element) {
+    this.element = element;
+  }
+
+  public Node getNamedItem(String name) {
+    return element.getAttributeNode(name);
+  }
+
+  public Node setNamedItem(Node node) {
+    return element.setAttributeNode((Attr) node);
+  }
+
+  public Node removeNamedItem(String name) {
+    return element.removeAttributeNode(element.getAttributeNode(name));
+  }
+
+  public Node item(int index) {
+    List<CopyOnWriteAttr> attributes = element.attributes();
+    return index >= 0 && index < attributes.size() ? attributes.get(index) : null;
+  }
+
+  public int getLength() {
+    return element.attributes().size();
+  }
+
+  public Node getNamedItemNS(String namespaceURI, String localName) {
+    return element.getAttributeNodeNS(namespaceURI, localName);
+  }
+
+  public Node setNamedItemNS(Node node) {
+    return element.setAttributeNodeNS((Attr) node);
+  }
+
+  public Node removeNamedItemNS(String namespaceURI, String localName) {
+    return element.removeAttributeNode(element.getAttributeNodeNS(namespaceURI, localName));
+  }
+
+}
@@ -0,0 +1,274 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+
+/**
+ * <p>Base class of the nodes of a {@link CopyOnWriteDocument}.</p>
+ *
+ * <p>The nodes are modifiable. Nodes which are copied from the shared read-only
+ * document are created lazily when their parent is accessed, they share all strings
+ * with the read-only nodes.</p>
+ *
+ * <p>The nodes are event targets, but listeners can only be registered on the
+ * document, see {@link CopyOnWriteDocument#addEventListener(String, EventListener, boolean)}.</p>
+ */
+public abstract class CopyOnWriteNode implements Node, EventTarget {
+
+  protected final CopyOnWriteDocument ownerDocument;
+  protected CopyOnWriteParentNode parentNode;
+  /** the position of this node in the child nodes of its parent */
+  protected int index;
+  protected Map<String, Object> userData;
+
+  protected CopyOnWriteNode(CopyOnWriteDocument ownerDocument) {
+    this.ownerDocument = ownerDocument;
+  }
+
+  public String getNodeValue() {
+    return null;
+  }
+
+  public void setNodeValue(String nodeValue) {
+    // setting the value has no effect if the value is defined to be null
+  }
+
+  public Node getParentNode() {
+    return parentNode;
+  }
+
+  public NodeList getChildNodes() {
+    return ReadOnlyNode.EMPTY_NODE_LIST;
+  }
+
+  public Node getFirstChild() {
+    return null;
+  }
+
+  public Node getLastChild() {
+    return null;
+  }
+
+  public Node getPreviousSibling() {
+    return parentNode != null && index > 0 ? parentNode.children().get(index - 1) : null;
+  }
+
+  public Node getNextSibling() {
+    return parentNode != null && index < parentNode.children().size() - 1 ? parentNode.children().get(index + 1) : null;
+  }
+
+  public NamedNodeMap getAttributes() {
+    return null;
+  }
+
+  public Document getOwnerDocument() {
+    return ownerDocument;
+  }
+
+  public Node insertBefore(Node newChild, Node refChild) {
+    throw hierarchyRequest();
+  }
+
+  public Node replaceChild(Node newChild, Node oldChild) {
+    throw hierarchyRequest();
+  }
+
+  public Node removeChild(Node oldChild) {
+    throw new DOMException(DOMException.NOT_FOUND_ERR, "The node is not a child of this node");
+  }
+
+  public Node appendChild(Node newChild) {
+    throw hierarchyRequest();
+  }
+
+  public boolean hasChildNodes() {
+    return false;
+  }
+
+  public void normalize() {
+    // adjacent text nodes are not merged
+  }
+
+  public boolean isSupported(String feature, String version) {
+    return false;
+  }
+
+  public String getNamespaceURI() {
+    return null;
+  }
+
+  public String getPrefix() {
+    return null;
+  }
+
+  public void setPrefix(String prefix) {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Prefixes of copy-on-write nodes cannot be changed");
+  }
+
+  public String getLocalName() {
+    return null;
+  }
+
+  public boolean hasAttributes() {
+    return false;
+  }
+
+  public String getBaseURI() {
+    return null;
+  }
+
+  /**
+   * Compares the positions of two nodes of the same document. The positions of
+   * attributes are not supported.
+   */
+  public short compareDocumentPosition(Node other) {
+    if (other == this) {
+      return 0;
+    }
+    if (!(other instanceof CopyOnWriteNode) || ((CopyOnWriteNode) other).ownerDocument() != ownerDocument()
+      || getNodeType() == ATTRIBUTE_NODE || other.getNodeType() == ATTRIBUTE_NODE) {
+      throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Only the positions of nodes of the same copy-on-write document can be compared");
+    }
+    CopyOnWriteNode otherNode = (CopyOnWriteNode) other;
+    int depth = depth();
+    int otherDepth = otherNode.depth();
+    CopyOnWriteNode ancestor = this;
+    CopyOnWriteNode otherAncestor = otherNode;
+    for (int i = depth; i > otherDepth; i--) {
+      ancestor = ancestor.parentNode;
+    }
+    for (int i = otherDepth; i > depth; i--) {
+      otherAncestor = otherAncestor.parentNode;
+    }
+    if (ancestor == otherAncestor) {
+      return depth > otherDepth
+        ? (short) (DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING)
+        : (short) (DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING);
+    }
+    while (ancestor.parentNode != otherAncestor.parentNode) {
+      ancestor = ancestor.parentNode;
+      otherAncestor = otherAncestor.parentNode;
+    }
+    if (ancestor.parentNode == null) {
+      return (short) (DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+        | (System.identityHashCode(ancestor) < System.identityHashCode(otherAncestor) ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING));
+    }
+    return ancestor.index < otherAncestor.index ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING;
+  }
+
+  public String getTextContent() {
+    return getNodeValue();
+  }
+
+  public void setTextContent(String textContent) {
+    setNodeValue(textContent);
+  }
+
+  public boolean isSameNode(Node other) {
+    return this == other;
+  }
+
+  public String lookupPrefix(String namespaceURI) {
+    return parentNode != null ? parentNode.lookupPrefix(namespaceURI) : null;
+  }
+
+  public boolean isDefaultNamespace(String namespaceURI) {
+    return parentNode != null && parentNode.isDefaultNamespace(namespaceURI);
+  }
+
+  public String lookupNamespaceURI(String prefix) {
+    return parentNode != null ? parentNode.lookupNamespaceURI(prefix) : null;
+  }
+
+  public boolean isEqualNode(Node other) {
+    return DomNodes.isEqualNode(this, other);
+  }
+
+  public Object getFeature(String feature, String version) {
+    return null;
+  }
+
+  public Object setUserData(String key, Object data, UserDataHandler handler) {
+    if (userData == null) {
+      userData = new HashMap<String, Object>();
+    }
+    return data != null ? userData.put(key, data) : userData.remove(key);
+  }
+
+  public Object getUserData(String key) {
+    return userData != null ? userData.get(key) : null;
+  }
+
+  public Node cloneNode(boolean deep) {
+    return DomNodes.copyNode(ownerDocument(), this, deep);
+  }
+
+  public void addEventListener(String type, EventListener listener, boolean useCapture) {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Event listeners can only be registered on copy-on-write documents");
+  }
+
+  public void removeEventListener(String type, EventListener listener, boolean useCapture) {
+    // no listeners are registered on this node
+  }
+
+  public boolean dispatchEvent(Event evt) {
+    return ownerDocument().dispatchEvent(this, evt);
+  }
+
+  public String toString() {
+    return "[" + getNodeName() + ": " + getNodeValue() + "]";
+  }
+
+  protected CopyOnWriteDocument ownerDocument() {
+    return ownerDocument;
+  }
+
+  /**
+   * @return true if the node is part of the tree of its document
+   */
+  protected boolean isAttached() {
+    CopyOnWriteNode node = this;
+    while (node.parentNode != null) {
+      node = node.parentNode;
+    }
+    return node == ownerDocument();
+  }
+
+  /**
+   * @return the number of ancestors of the node
+   */
+  protected int depth() {
+    int depth = 0;
+    for (CopyOnWriteNode node = parentNode; node != null; node = node.parentNode) {
+      depth++;
+    }
+    return depth;
+  }
+
+  protected static DOMException hierarchyRequest() {
+    return new DOMException(DOMException.HIERARCHY_REQUEST_ERR, "The node cannot have child nodes of this type");
+  }
+
+}
@@ -0,0 +1,209 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * <p>A copy-on-write node which can have child nodes.</p>
+ *
+ * <p>The child nodes are created from the read-only node this node was copied from
+ * when they are accessed for the first time. The node is its own live list of
+ * child nodes.</p>
+ */
+public abstract class CopyOnWriteParentNode extends CopyOnWriteNode implements NodeList {
+
+  /** the read-only node this node was copied from or null if the node was created */
+  protected final ReadOnlyParentNode source;
+  protected List<CopyOnWriteNode> children;
+
+  protected CopyOnWriteParentNode(CopyOnWriteDocument ownerDocument, ReadOnlyParentNode source) {
+    super(ownerDocument);
+    this.source = source;
+  }
+
+  /**
+   * @return the child nodes, copied from the source node on first access
+   */
+  protected List<CopyOnWriteNode> children() {
+    if (children == null) {
+      if (source == null) {
+        children = new ArrayList<CopyOnWriteNode>();
+      }
+      else {
+        children = new ArrayList<CopyOnWriteNode>(source.children.length);
+        for (ReadOnlyNode sourceChild : source.children) {
+          CopyOnWriteNode child = ownerDocument().copyOf(sourceChild);
+          child.parentNode = this;
+          child.index = children.size();
+          children.add(child);
+        }
+      }
+    }
+    return children;
+  }
+
+  public NodeList getChildNodes() {
+    return this;
+  }
+
+  public Node item(int index) {
+    List<CopyOnWriteNode> children = children();
+    return index >= 0 && index < children.size() ? children.get(index) : null;
+  }
+
+  public int getLength() {
+    return children().size();
+  }
+
+  public Node getFirstChild() {
+    return item(0);
+  }
+
+  public Node getLastChild() {
+    return item(getLength() - 1);
+  }
+
+  public boolean hasChildNodes() {
+    if (children == null) {
+      return source != null && source.children.length > 0;
+    }
+    else {
+      return !children.isEmpty();
+    }
+  }
+
+  public Node insertBefore(Node newChild, Node refChild) {
+    CopyOnWriteNode node = checkNewChild(newChild);
+    if (refChild != null && refChild.getParentNode() != this) {
+      throw new DOMException(DOMException.NOT_FOUND_ERR, "The reference node is not a child of this node");
+    }
+    if (newChild == refChild) {
+      return newChild;
+    }
+    if (node.parentNode != null) {
+      node.parentNode.removeChild(node);
+    }
+    List<CopyOnWriteNode> children = children();
+    int index = refChild != null ? ((CopyOnWriteNode) refChild).index : children.size();
+    children.add(index, node);
+    node.parentNode = this;
+    updateIndexes(index);
+    ownerDocument().fireNodeInserted(node, this);
+    return newChild;
+  }
+
+  public Node appendChild(Node newChild) {
+    return insertBefore(newChild, null);
+  }
+
+  public Node removeChild(Node oldChild) {
+    if (oldChild == null || oldChild.getParentNode() != this) {
+      throw new DOMException(DOMException.NOT_FOUND_ERR, "The node is not a child of this node");
+    }
+    CopyOnWriteNode node = (CopyOnWriteNode) oldChild;
+    ownerDocument().fireNodeRemoved(node, this);
+    children().remove(node.index);
+    updateIndexes(node.index);
+    node.parentNode = null;
+    return oldChild;
+  }
+
+  public Node replaceChild(Node newChild, Node oldChild) {
+    if (oldChild == null || oldChild.getParentNode() != this) {
+      throw new DOMException(DOMException.NOT_FOUND_ERR, "The node is not a child of this node");
+    }
+    if (newChild != oldChild) {
+      insertBefore(newChild, oldChild);
+      removeChild(oldChild);
+    }
+    return oldChild;
+  }
+
+  public String getTextContent() {
+    StringBuilder textContent = new StringBuilder();
+    appendTextContent(textContent);
+    return textContent.toString();
+  }
+
+  public void setTextContent(String textContent) {
+    for (CopyOnWriteNode child : children()) {
+      ownerDocument().fireNodeRemoved(child, this);
+      child.parentNode = null;
+    }
+    children.clear();
+    if (textContent != null && textContent.length() > 0) {
+      appendChild(ownerDocument().createTextNode(textContent));
+    }
+  }
+
+  protected void appendTextContent(StringBuilder textContent) {
+    for (CopyOnWriteNode child : children()) {
+      switch (child.getNodeType()) {
+        case ELEMENT_NODE:
+          ((CopyOnWriteParentNode) child).appendTextContent(textContent);
+          break;
+        case TEXT_NODE:
+        case CDATA_SECTION_NODE:
+          textContent.append(child.getNodeValue());
+          break;
+        default:
+          // comments and processing instructions are not part of the text content
+      }
+    }
+  }
+
+  /**
+   * Collects the descendant elements matching the given names in document order.
+   * The names can be the wildcard <code>*</code>.
+   */
+  protected void collectElements(String namespaceURI, String localName, boolean namespaceAware, List<Node> elements) {
+    for (CopyOnWriteNode child : children()) {
+      if (child.getNodeType() == ELEMENT_NODE) {
+        CopyOnWriteElement element = (CopyOnWriteElement) child;
+        if (element.matches(namespaceURI, localName, namespaceAware)) {
+          elements.add(element);
+        }
+        element.collectElements(namespaceURI, localName, namespaceAware, elements);
+      }
+    }
+  }
+
+  protected CopyOnWriteNode checkNewChild(Node newChild) {
+    if (!(newChild instanceof CopyOnWriteNode) || ((CopyOnWriteNode) newChild).ownerDocument() != ownerDocument()) {
+      throw new DOMException(DOMException.WRONG_DOCUMENT_ERR, "The node was created by a different document");
+    }
+    short nodeType = newChild.getNodeType();
+    if (nodeType == DOCUMENT_NODE || nodeType == ATTRIBUTE_NODE) {
+      throw hierarchyRequest();
+    }
+    for (CopyOnWriteNode ancestor = this; ancestor != null; ancestor = ancestor.parentNode) {
+      if (ancestor == newChild) {
+        throw new DOMException(DOMException.HIERARCHY_REQUEST_ERR, "A node cannot be inserted into itself");
+      }
+    }
+    return (CopyOnWriteNode) newChild;
+  }
+
+  protected void updateIndexes(int fromIndex) {
+    for (int i = fromIndex; i < children.size(); i++) {
+      children.get(i).index = i;
+    }
+  }
+
+}
@@ -0,0 +1,72 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * A copy-on-write text node.
+ */
+public class CopyOnWriteText extends CopyOnWriteCharacterData implements Text {
+
+  public CopyOnWriteText(CopyOnWriteDocument ownerDocument, String data) {
+    super(ownerDocument, data);
+  }
+
+  public short getNodeType() {
+    return TEXT_NODE;
+  }
+
+  public String getNodeName() {
+    return "#text";
+  }
+
+  public Text splitText(int offset) {
+    checkRange(offset, 0);
+    Text newText = getNodeType() == CDATA_SECTION_NODE
+      ? ownerDocument.createCDATASection(data.substring(offset))
+      : ownerDocument.createTextNode(data.substring(offset));
+    changeData(data.substring(0, offset));
+    if (parentNode != null) {
+      parentNode.insertBefore(newText, getNextSibling());
+    }
+    return newText;
+  }
+
+  public boolean isElementContentWhitespace() {
+    return false;
+  }
+
+  public String getWholeText() {
+    Node first = this;
+    while (isText(first.getPreviousSibling())) {
+      first = first.getPreviousSibling();
+    }
+    StringBuilder wholeText = new StringBuilder();
+    for (Node node = first; isText(node); node = node.getNextSibling()) {
+      wholeText.append(node.getNodeValue());
+    }
+    return wholeText.toString();
+  }
+
+  public Text replaceWholeText(String content) {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Replacing the whole text of copy-on-write nodes is not supported");
+  }
+
+  protected static boolean isText(Node node) {
+    return node != null && (node.getNodeType() == TEXT_NODE || node.getNodeType() == CDATA_SECTION_NODE);
+  }
+
+}
@@ -0,0 +1,277 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.camunda.bpm.model.xml.ModelException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Operations of the DOM which are shared by the read-only and the copy-on-write
+ * documents. They only use the public DOM API, so they work with any DOM implementation.
+ */
+public final class DomNodes {
+
+  private DomNodes() {
+  }
+
+  /**
+   * @return the DOM implementation of the JDK, used to create modifiable copies of documents
+   */
+  public static DOMImplementation getDomImplementation() {
+    return DomImplementationHolder.INSTANCE;
+  }
+
+  /**
+   * Copies a document into a new modifiable document of the JDK DOM implementation.
+   * Id attributes stay id attributes, user data is not copied.
+   *
+   * @param document the document to copy
+   * @return the copy of the document
+   */
+  public static Document copyDocument(Document document) {
+    Document copy = getDomImplementation().createDocument(null, null, null);
+    copy.setXmlStandalone(document.getXmlStandalone());
+    if (document.getXmlVersion() != null) {
+      copy.setXmlVersion(document.getXmlVersion());
+    }
+    copy.setDocumentURI(document.getDocumentURI());
+    for (Node child = document.getFirstChild(); child != null; child = child.getNextSibling()) {
+      Node childCopy = copyNode(copy, child, true);
+      if (childCopy != null) {
+        copy.appendChild(childCopy);
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Copies a node of any document into the target document.
+   *
+   * @param document the document which owns the copy
+   * @param node the node to copy
+   * @param deep true if the descendants of the node should be copied too
+   * @return the copy or null if nodes of this type are not copied, like document types
+   */
+  public static Node copyNode(Document document, Node node, boolean deep) {
+    switch (node.getNodeType()) {
+      case Node.ELEMENT_NODE:
+        Element element = (Element) node;
+        Element elementCopy = element.getLocalName() != null
+          ? document.createElementNS(element.getNamespaceURI(), element.getTagName())
+          : document.createElement(element.getTagName());
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+          Attr attribute = (Attr) attributes.item(i);
+          Attr attributeCopy = (Attr) copyNode(document, attribute, false);
+          elementCopy.setAttributeNodeNS(attributeCopy);
+          if (attribute.isId()) {
+            elementCopy.setIdAttributeNode(attributeCopy, true);
+          }
+        }
+        if (deep) {
+          for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            Node childCopy = copyNode(document, child, true);
+            if (childCopy != null) {
+              elementCopy.appendChild(childCopy);
+            }
+          }
+        }
+        return elementCopy;
+      case Node.ATTRIBUTE_NODE:
+        Attr attribute = (Attr) node;
+        Attr attributeCopy = attribute.getLocalName() != null
+          ? document.createAttributeNS(attribute.getNamespaceURI(), attribute.getName())
+          : document.createAttribute(attribute.getName());
+        attributeCopy.setValue(attribute.getValue());
+        return attributeCopy;
+      case Node.TEXT_NODE:
+        return document.createTextNode(node.getNodeValue());
+      case Node.CDATA_SECTION_NODE:
+        return document.createCDATASection(node.getNodeValue());
+      case Node.COMMENT_NODE:
+        return document.createComment(node.getNodeValue());
+      case Node.PROCESSING_INSTRUCTION_NODE:
+        return document.createProcessingInstruction(node.getNodeName(), node.getNodeValue());
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Looks up the namespace URI bound to a prefix in the scope of an element.
+   *
+   * @param element the element to start the lookup at
+   * @param prefix the prefix or null for the default namespace
+   * @return the namespace URI or null if the prefix is not bound
+   */
+  public static String lookupNamespaceURI(Element element, String prefix) {
+    for (Node node = element; node != null && node.getNodeType() == Node.ELEMENT_NODE; node = node.getParentNode()) {
+      if (node.getNamespaceURI() != null && equal(node.getPrefix(), prefix)) {
+        return node.getNamespaceURI();
+      }
+      NamedNodeMap attributes = node.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        Node attribute = attributes.item(i);
+        if (declaresPrefix(attribute, prefix)) {
+          String value = attribute.getNodeValue();
+          return value.length() > 0 ? value : null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Looks up a prefix bound to a namespace URI in the scope of an element.
+   *
+   * @param element the element to start the lookup at
+   * @param namespaceURI the namespace URI
+   * @return the prefix or null if no prefix is bound to the namespace URI
+   */
+  public static String lookupPrefix(Element element, String namespaceURI) {
+    if (namespaceURI == null || namespaceURI.length() == 0) {
+      return null;
+    }
+    for (Node node = element; node != null && node.getNodeType() == Node.ELEMENT_NODE; node = node.getParentNode()) {
+      if (namespaceURI.equals(node.getNamespaceURI()) && node.getPrefix() != null
+          && namespaceURI.equals(lookupNamespaceURI(element, node.getPrefix()))) {
+        return node.getPrefix();
+      }
+      NamedNodeMap attributes = node.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        Node attribute = attributes.item(i);
+        if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())
+            && XMLConstants.XMLNS_ATTRIBUTE.equals(attribute.getPrefix())
+            && namespaceURI.equals(attribute.getNodeValue())
+            && namespaceURI.equals(lookupNamespaceURI(element, attribute.getLocalName()))) {
+          return attribute.getLocalName();
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compares two nodes as defined by {@link Node#isEqualNode(Node)}.
+   */
+  public static boolean isEqualNode(Node node, Node other) {
+    if (node == other) {
+      return true;
+    }
+    if (other == null || node.getNodeType() != other.getNodeType()
+        || !equal(node.getNodeName(), other.getNodeName())
+        || !equal(node.getLocalName(), other.getLocalName())
+        || !equal(node.getNamespaceURI(), other.getNamespaceURI())
+        || !equal(node.getPrefix(), other.getPrefix())
+        || !equal(node.getNodeValue(), other.getNodeValue())) {
+      return false;
+    }
+    NamedNodeMap attributes = node.getAttributes();
+    NamedNodeMap otherAttributes = other.getAttributes();
+    if (attributes != null && otherAttributes != null) {
+      if (attributes.getLength() != otherAttributes.getLength()) {
+        return false;
+      }
+      for (int i = 0; i < attributes.getLength(); i++) {
+        Node attribute = attributes.item(i);
+        Node otherAttribute = attribute.getLocalName() != null
+          ? otherAttributes.getNamedItemNS(attribute.getNamespaceURI(), attribute.getLocalName())
+          : otherAttributes.getNamedItem(attribute.getNodeName());
+        if (!isEqualNode(attribute, otherAttribute)) {
+          return false;
+        }
+      }
+    }
+    NodeList children = node.getChildNodes();
+    NodeList otherChildren = other.getChildNodes();
+    if (children.getLength() != otherChildren.getLength()) {
+      return false;
+    }
+    for (int i = 0; i < children.getLength(); i++) {
+      if (!isEqualNode(children.item(i), otherChildren.item(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Treats the empty namespace URI like no namespace, as the DOM does.
+   */
+  public static String normalizeNamespaceURI(String namespaceURI) {
+    return namespaceURI != null && namespaceURI.length() > 0 ? namespaceURI : null;
+  }
+
+  public static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  /**
+   * @param node the current node of a depth first traversal
+   * @param root the root of the traversed subtree
+   * @return the next node of the traversal or null if the subtree was traversed completely
+   */
+  public static Node nextNode(Node node, Node root) {
+    Node next = node.getFirstChild();
+    if (next != null) {
+      return next;
+    }
+    while (node != null && node != root) {
+      next = node.getNextSibling();
+      if (next != null) {
+        return next;
+      }
+      node = node.getParentNode();
+    }
+    return null;
+  }
+
+  protected static boolean declaresPrefix(Node attribute, String prefix) {
+    if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+      return false;
+    }
+    if (prefix == null) {
+      return attribute.getPrefix() == null && XMLConstants.XMLNS_ATTRIBUTE.equals(attribute.getLocalName());
+    }
+    else {
+      return XMLConstants.XMLNS_ATTRIBUTE.equals(attribute.getPrefix()) && prefix.equals(attribute.getLocalName());
+    }
+  }
+
+  protected static class DomImplementationHolder {
+
+    protected static final DOMImplementation INSTANCE = createDomImplementation();
+
+    protected static DOMImplementation createDomImplementation() {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      try {
+        return factory.newDocumentBuilder().getDOMImplementation();
+      }
+      catch (ParserConfigurationException e) {
+        throw new ModelException("Unable to create DOM implementation", e);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,115 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * A read-only attribute.
+ */
+public class ReadOnlyAttr extends ReadOnlyNode implements Attr {
+
+  protected final String name;
+  protected final String namespaceURI;
+  protected final String prefix;
+  protected final String localName;
+  protected final String value;
+  protected final boolean specified;
+  protected final boolean id;
+  protected ReadOnlyElement ownerElement;
+
+  public ReadOnlyAttr(ReadOnlyDocument ownerDocument, Attr attribute) {
+    super(ownerDocument);
+    this.name = attribute.getName();
+    this.namespaceURI = attribute.getNamespaceURI();
+    this.prefix = attribute.getPrefix();
+    this.localName = attribute.getLocalName();
+    this.value = attribute.getValue();
+    this.specified = attribute.getSpecified();
+    this.id = attribute.isId();
+  }
+
+  public short getNodeType() {
+    return ATTRIBUTE_NODE;
+  }
+
+  public String getNodeName() {
+    return name;
+  }
+
+  public String getNodeValue() {
+    return value;
+  }
+
+  public String getNamespaceURI() {
+    return namespaceURI;
+  }
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+  public String getLocalName() {
+    return localName;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean getSpecified() {
+    return specified;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public Element getOwnerElement() {
+    return ownerElement;
+  }
+
+  public TypeInfo getSchemaTypeInfo() {
+    return null;
+  }
+
+  public boolean isId() {
+    return id;
+  }
+
+  public void setValue(String value) {
+    throw readOnly();
+  }
+
+  public String lookupPrefix(String namespaceURI) {
+    return ownerElement != null ? ownerElement.lookupPrefix(namespaceURI) : null;
+  }
+
+  public boolean isDefaultNamespace(String namespaceURI) {
+    return ownerElement != null && ownerElement.isDefaultNamespace(namespaceURI);
+  }
+
+  public String lookupNamespaceURI(String prefix) {
+    return ownerElement != null ? ownerElement.lookupNamespaceURI(prefix) : null;
+  }
+
+  protected boolean matches(String namespaceURI, String localName) {
+    if (this.localName == null) {
+      return false;
+    }
+    return DomNodes.equal(this.namespaceURI, DomNodes.normalizeNamespaceURI(namespaceURI)) && this.localName.equals(localName);
+  }
+
+}
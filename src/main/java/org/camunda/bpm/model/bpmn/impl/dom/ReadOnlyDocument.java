@@ -0,0 +1,348 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+
+/**
+ * <p>An immutable copy of a DOM document which can be read concurrently.</p>
+ *
+ * <p>The DOM implementation of the JDK modifies internal state on reads, for example
+ * it caches the position of the last child node accessed by index and expands
+ * deferred nodes lazily, so it is not safe for concurrent readers even if nobody
+ * changes the document. The nodes of a read-only document are plain immutable
+ * objects: child node lists are arrays and elements are found by id through a map
+ * built when the document is copied.</p>
+ *
+ * <p>User data can be attached to the nodes until the document is {@link #seal() sealed}.
+ * A sealed document can be shared between threads once it was safely published.
+ * Use {@link #cloneNode(boolean)} to get a modifiable copy.</p>
+ */
+public class ReadOnlyDocument extends ReadOnlyParentNode implements Document {
+
+  protected ReadOnlyElement documentElement;
+  protected final Map<String, ReadOnlyElement> elementsById = new HashMap<String, ReadOnlyElement>();
+  protected final Map<String, String> implicitPrefixes = new HashMap<String, String>();
+  protected final Map<String, String> implicitNamespaces = new HashMap<String, String>();
+  protected final String inputEncoding;
+  protected final String xmlEncoding;
+  protected final boolean xmlStandalone;
+  protected final String xmlVersion;
+  protected final String documentURI;
+  protected boolean sealed = false;
+
+  protected ReadOnlyDocument(Document document) {
+    super(null);
+    this.inputEncoding = document.getInputEncoding();
+    this.xmlEncoding = document.getXmlEncoding();
+    this.xmlStandalone = document.getXmlStandalone();
+    this.xmlVersion = document.getXmlVersion();
+    this.documentURI = document.getDocumentURI();
+  }
+
+  /**
+   * Copies a DOM document. The caller has to ensure that the source document is not
+   * changed or read concurrently while it is copied.
+   *
+   * @param document the document to copy
+   * @return the read-only copy of the document
+   */
+  public static ReadOnlyDocument copyOf(Document document) {
+    ReadOnlyDocument readOnlyDocument = new ReadOnlyDocument(document);
+    readOnlyDocument.setChildren(readOnlyDocument.copyChildNodes(document));
+    return readOnlyDocument;
+  }
+
+  protected List<ReadOnlyNode> copyChildNodes(Node parent) {
+    List<ReadOnlyNode> copies = new ArrayList<ReadOnlyNode>();
+    for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+      switch (child.getNodeType()) {
+        case ELEMENT_NODE:
+          ReadOnlyElement element = copyElement((Element) child);
+          if (parent.getNodeType() == DOCUMENT_NODE) {
+            documentElement = element;
+          }
+          copies.add(element);
+          break;
+        case TEXT_NODE:
+          copies.add(new ReadOnlyText(this, child.getNodeValue()));
+          break;
+        case CDATA_SECTION_NODE:
+          copies.add(new ReadOnlyCDATASection(this, child.getNodeValue()));
+          break;
+        case COMMENT_NODE:
+          copies.add(new ReadOnlyComment(this, child.getNodeValue()));
+          break;
+        case PROCESSING_INSTRUCTION_NODE:
+          ProcessingInstruction processingInstruction = (ProcessingInstruction) child;
+          copies.add(new ReadOnlyProcessingInstruction(this, processingInstruction.getTarget(), processingInstruction.getData()));
+          break;
+        case ENTITY_REFERENCE_NODE:
+          // inline the replacement text of entities which were not expanded by the parser
+          copies.addAll(copyChildNodes(child));
+          break;
+        default:
+          // document types are not copied
+      }
+    }
+    return copies;
+  }
+
+  protected ReadOnlyElement copyElement(Element element) {
+    ReadOnlyElement copy = new ReadOnlyElement(this, element);
+
+    NamedNodeMap attributeMap = element.getAttributes();
+    List<ReadOnlyAttr> attributes = new ArrayList<ReadOnlyAttr>(attributeMap.getLength());
+    for (int i = 0; i < attributeMap.getLength(); i++) {
+      ReadOnlyAttr attribute = new ReadOnlyAttr(this, (Attr) attributeMap.item(i));
+      if (attribute.isId() && !elementsById.containsKey(attribute.getValue())) {
+        elementsById.put(attribute.getValue(), copy);
+      }
+      attributes.add(attribute);
+    }
+    copy.setAttributes(attributes);
+
+    copy.setChildren(copyChildNodes(element));
+    return copy;
+  }
+
+  /**
+   * <p>Binds a namespace to a prefix without declaring it in the document, if it is not
+   * bound by the document element yet. The prefix is only visible to lookups.</p>
+   *
+   * <p>Readers like the model API look up the prefix of a namespace before they read an
+   * attribute of the namespace and declare the namespace at the document element if it
+   * has no prefix, which is not possible in a read-only document.</p>
+   *
+   * @param namespaceURI the namespace to bind
+   */
+  public void bindNamespace(String namespaceURI) {
+    if (sealed) {
+      throw readOnly();
+    }
+    if (documentElement == null || namespaceURI == null || implicitPrefixes.containsKey(namespaceURI)
+        || DomNodes.lookupPrefix(documentElement, namespaceURI) != null) {
+      return;
+    }
+    String prefix;
+    int i = implicitPrefixes.size();
+    do {
+      prefix = "ns" + i++;
+    }
+    while (DomNodes.lookupNamespaceURI(documentElement, prefix) != null || implicitNamespaces.containsKey(prefix));
+    implicitPrefixes.put(namespaceURI, prefix);
+    implicitNamespaces.put(prefix, namespaceURI);
+  }
+
+  /**
+   * Seals the document, afterwards no user data can be attached to its nodes anymore.
+   */
+  public void seal() {
+    sealed = true;
+  }
+
+  public boolean isSealed() {
+    return sealed;
+  }
+
+  public short getNodeType() {
+    return DOCUMENT_NODE;
+  }
+
+  public String getNodeName() {
+    return "#document";
+  }
+
+  public Document getOwnerDocument() {
+    return null;
+  }
+
+  protected ReadOnlyDocument ownerDocument() {
+    return this;
+  }
+
+  public String getTextContent() {
+    return null;
+  }
+
+  public DocumentType getDoctype() {
+    return null;
+  }
+
+  public DOMImplementation getImplementation() {
+    return DomNodes.getDomImplementation();
+  }
+
+  public Element getDocumentElement() {
+    return documentElement;
+  }
+
+  public Element getElementById(String elementId) {
+    return elementsById.get(elementId);
+  }
+
+  public NodeList getElementsByTagName(String tagname) {
+    List<Node> elements = new ArrayList<Node>();
+    collectElements(null, tagname, false, elements);
+    return new ReadOnlyNodeList(elements.toArray(new Node[elements.size()]));
+  }
+
+  public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+    List<Node> elements = new ArrayList<Node>();
+    collectElements(namespaceURI, localName, true, elements);
+    return new ReadOnlyNodeList(elements.toArray(new Node[elements.size()]));
+  }
+
+  public String getInputEncoding() {
+    return inputEncoding;
+  }
+
+  public String getXmlEncoding() {
+    return xmlEncoding;
+  }
+
+  public boolean getXmlStandalone() {
+    return xmlStandalone;
+  }
+
+  public String getXmlVersion() {
+    return xmlVersion;
+  }
+
+  public boolean getStrictErrorChecking() {
+    return true;
+  }
+
+  public String getDocumentURI() {
+    return documentURI;
+  }
+
+  public DOMConfiguration getDomConfig() {
+    return null;
+  }
+
+  public String lookupPrefix(String namespaceURI) {
+    return documentElement != null ? documentElement.lookupPrefix(namespaceURI) : null;
+  }
+
+  public boolean isDefaultNamespace(String namespaceURI) {
+    return documentElement != null && documentElement.isDefaultNamespace(namespaceURI);
+  }
+
+  public String lookupNamespaceURI(String prefix) {
+    return documentElement != null ? documentElement.lookupNamespaceURI(prefix) : null;
+  }
+
+  /**
+   * Copies this document into a new modifiable DOM document of the JDK DOM implementation.
+   * User data is not copied.
+   *
+   * @param deep ignored, the whole document is always copied
+   * @return the modifiable copy of this document
+   */
+  public Node cloneNode(boolean deep) {
+    return DomNodes.copyDocument(this);
+  }
+
+  public Element createElement(String tagName) {
+    throw readOnly();
+  }
+
+  public DocumentFragment createDocumentFragment() {
+    throw readOnly();
+  }
+
+  public Text createTextNode(String data) {
+    throw readOnly();
+  }
+
+  public Comment createComment(String data) {
+    throw readOnly();
+  }
+
+  public CDATASection createCDATASection(String data) {
+    throw readOnly();
+  }
+
+  public ProcessingInstruction createProcessingInstruction(String target, String data) {
+    throw readOnly();
+  }
+
+  public Attr createAttribute(String name) {
+    throw readOnly();
+  }
+
+  public EntityReference createEntityReference(String name) {
+    throw readOnly();
+  }
+
+  public Node importNode(Node importedNode, boolean deep) {
+    throw readOnly();
+  }
+
+  public Element createElementNS(String namespaceURI, String qualifiedName) {
+    throw readOnly();
+  }
+
+  public Attr createAttributeNS(String namespaceURI, String qualifiedName) {
+    throw readOnly();
+  }
+
+  public void setXmlStandalone(boolean xmlStandalone) {
+    throw readOnly();
+  }
+
+  public void setXmlVersion(String xmlVersion) {
+    throw readOnly();
+  }
+
+  public void setStrictErrorChecking(boolean strictErrorChecking) {
+    throw readOnly();
+  }
+
+  public void setDocumentURI(String documentURI) {
+    throw readOnly();
+  }
+
+  public Node adoptNode(Node source) {
+    throw readOnly();
+  }
+
+  public void normalizeDocument() {
+    // read-only documents are never changed, so there is nothing to normalize
+  }
+
+  public Node renameNode(Node n, String namespaceURI, String qualifiedName) {
+    throw readOnly();
+  }
+
+}
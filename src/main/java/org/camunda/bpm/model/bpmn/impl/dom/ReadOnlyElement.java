@@ -0,0 +1,199 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * A read-only element.
+ */
+public class ReadOnlyElement extends ReadOnlyParentNode implements Element {
+
+  protected static final ReadOnlyAttr[] NO_ATTRIBUTES = new ReadOnlyAttr[0];
+
+  protected final String tagName;
+  protected final String namespaceURI;
+  protected final String prefix;
+  protected final String localName;
+  protected ReadOnlyAttr[] attributes = NO_ATTRIBUTES;
+  protected NamedNodeMap attributeMap = new ReadOnlyNamedNodeMap(NO_ATTRIBUTES);
+
+  public ReadOnlyElement(ReadOnlyDocument ownerDocument, Element element) {
+    super(ownerDocument);
+    this.tagName = element.getTagName();
+    this.namespaceURI = element.getNamespaceURI();
+    this.prefix = element.getPrefix();
+    this.localName = element.getLocalName();
+  }
+
+  protected void setAttributes(List<ReadOnlyAttr> attributeList) {
+    attributes = attributeList.toArray(new ReadOnlyAttr[attributeList.size()]);
+    attributeMap = new ReadOnlyNamedNodeMap(attributes);
+    for (ReadOnlyAttr attribute : attributes) {
+      attribute.ownerElement = this;
+    }
+  }
+
+  public short getNodeType() {
+    return ELEMENT_NODE;
+  }
+
+  public String getNodeName() {
+    return tagName;
+  }
+
+  public String getTagName() {
+    return tagName;
+  }
+
+  public String getNamespaceURI() {
+    return namespaceURI;
+  }
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+  public String getLocalName() {
+    return localName;
+  }
+
+  public NamedNodeMap getAttributes() {
+    return attributeMap;
+  }
+
+  public boolean hasAttributes() {
+    return attributes.length > 0;
+  }
+
+  public String getAttribute(String name) {
+    Attr attribute = getAttributeNode(name);
+    return attribute != null ? attribute.getValue() : "";
+  }
+
+  public Attr getAttributeNode(String name) {
+    return (Attr) attributeMap.getNamedItem(name);
+  }
+
+  public boolean hasAttribute(String name) {
+    return getAttributeNode(name) != null;
+  }
+
+  public String getAttributeNS(String namespaceURI, String localName) {
+    Attr attribute = getAttributeNodeNS(namespaceURI, localName);
+    return attribute != null ? attribute.getValue() : "";
+  }
+
+  public Attr getAttributeNodeNS(String namespaceURI, String localName) {
+    return (Attr) attributeMap.getNamedItemNS(namespaceURI, localName);
+  }
+
+  public boolean hasAttributeNS(String namespaceURI, String localName) {
+    return getAttributeNodeNS(namespaceURI, localName) != null;
+  }
+
+  public NodeList getElementsByTagName(String name) {
+    List<Node> elements = new ArrayList<Node>();
+    collectElements(null, name, false, elements);
+    return new ReadOnlyNodeList(elements.toArray(new Node[elements.size()]));
+  }
+
+  public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+    List<Node> elements = new ArrayList<Node>();
+    collectElements(namespaceURI, localName, true, elements);
+    return new ReadOnlyNodeList(elements.toArray(new Node[elements.size()]));
+  }
+
+  public TypeInfo getSchemaTypeInfo() {
+    return null;
+  }
+
+  public String lookupNamespaceURI(String prefix) {
+    String namespaceURI = DomNodes.lookupNamespaceURI(this, prefix);
+    if (namespaceURI == null && prefix != null) {
+      namespaceURI = ownerDocument.implicitNamespaces.get(prefix);
+    }
+    return namespaceURI;
+  }
+
+  public String lookupPrefix(String namespaceURI) {
+    String prefix = DomNodes.lookupPrefix(this, namespaceURI);
+    if (prefix == null && namespaceURI != null) {
+      prefix = ownerDocument.implicitPrefixes.get(namespaceURI);
+    }
+    return prefix;
+  }
+
+  public boolean isDefaultNamespace(String namespaceURI) {
+    return DomNodes.equal(lookupNamespaceURI(null), namespaceURI);
+  }
+
+  public void setAttribute(String name, String value) {
+    throw readOnly();
+  }
+
+  public void removeAttribute(String name) {
+    throw readOnly();
+  }
+
+  public Attr setAttributeNode(Attr newAttr) {
+    throw readOnly();
+  }
+
+  public Attr removeAttributeNode(Attr oldAttr) {
+    throw readOnly();
+  }
+
+  public void setAttributeNS(String namespaceURI, String qualifiedName, String value) {
+    throw readOnly();
+  }
+
+  public void removeAttributeNS(String namespaceURI, String localName) {
+    throw readOnly();
+  }
+
+  public Attr setAttributeNodeNS(Attr newAttr) {
+    throw readOnly();
+  }
+
+  public void setIdAttribute(String name, boolean isId) {
+    throw readOnly();
+  }
+
+  public void setIdAttributeNS(String namespaceURI, String localName, boolean isId) {
+    throw readOnly();
+  }
+
+  public void setIdAttributeNode(Attr idAttr, boolean isId) {
+    throw readOnly();
+  }
+
+  protected boolean matches(String namespaceURI, String localName, boolean namespaceAware) {
+    if (!namespaceAware) {
+      return "*".equals(localName) || tagName.equals(localName);
+    }
+    if (!"*".equals(namespaceURI) && !DomNodes.equal(this.namespaceURI, DomNodes.normalizeNamespaceURI(namespaceURI))) {
+      return false;
+    }
+    return "*".equals(localName) || (this.localName != null && this.localName.equals(localName));
+  }
+
+}
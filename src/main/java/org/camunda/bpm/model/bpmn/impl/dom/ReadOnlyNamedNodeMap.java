@@ -0,0 +1,71 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The immutable attributes of a {@link ReadOnlyElement}.
+ */
+public class ReadOnlyNamedNodeMap implements NamedNodeMap {
+
+  protected final ReadOnlyAttr[] attributes;
+
+  public ReadOnlyNamedNodeMap(ReadOnlyAttr[] attributes) {
+    this.attributes = attributes;
+  }
+
+  public Node getNamedItem(String name) {
+    for (ReadOnlyAttr attribute : attributes) {
+      if (attribute.getName().equals(name)) {
+        return attribute;
+      }
+    }
+    return null;
+  }
+
+  public Node getNamedItemNS(String namespaceURI, String localName) {
+    for (ReadOnlyAttr attribute : attributes) {
+      if (attribute.matches(namespaceURI, localName)) {
+        return attribute;
+      }
+    }
+    return null;
+  }
+
+  public Node item(int index) {
+    return index >= 0 && index < attributes.length ? attributes[index] : null;
+  }
+
+  public int getLength() {
+    return attributes.length;
+  }
+
+  public Node setNamedItem(Node node) {
+    throw ReadOnlyNode.readOnly();
+  }
+
+  public Node removeNamedItem(String name) {
+    throw ReadOnlyNode.readOnly();
+  }
+
+  public Node setNamedItemNS(Node node) {
+    throw ReadOnlyNode.readOnly();
+  }
+
+  public Node removeNamedItemNS(String namespaceURI, String localName) {
+    throw ReadOnlyNode.readOnly();
+  }
+
+}
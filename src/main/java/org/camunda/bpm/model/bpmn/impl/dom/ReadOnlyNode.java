@@ -0,0 +1,210 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * <p>Base class of the nodes of a {@link ReadOnlyDocument}.</p>
+ *
+ * <p>The nodes are linked by {@link ReadOnlyDocument#copyOf(Document)} and never change
+ * afterwards. Reading a node does not modify any state, so a sealed document can be
+ * traversed by any number of threads without synchronization. All methods which
+ * would modify the document throw a {@link DOMException} with the code
+ * {@link DOMException#NO_MODIFICATION_ALLOWED_ERR}.</p>
+ */
+public abstract class ReadOnlyNode implements Node {
+
+  protected static final NodeList EMPTY_NODE_LIST = new ReadOnlyNodeList(new Node[0]);
+
+  protected final ReadOnlyDocument ownerDocument;
+  protected ReadOnlyNode parentNode;
+  protected ReadOnlyNode previousSibling;
+  protected ReadOnlyNode nextSibling;
+  protected Map<String, Object> userData;
+
+  protected ReadOnlyNode(ReadOnlyDocument ownerDocument) {
+    this.ownerDocument = ownerDocument;
+  }
+
+  public String getNodeValue() {
+    return null;
+  }
+
+  public Node getParentNode() {
+    return parentNode;
+  }
+
+  public NodeList getChildNodes() {
+    return EMPTY_NODE_LIST;
+  }
+
+  public Node getFirstChild() {
+    return null;
+  }
+
+  public Node getLastChild() {
+    return null;
+  }
+
+  public Node getPreviousSibling() {
+    return previousSibling;
+  }
+
+  public Node getNextSibling() {
+    return nextSibling;
+  }
+
+  public NamedNodeMap getAttributes() {
+    return null;
+  }
+
+  public Document getOwnerDocument() {
+    return ownerDocument;
+  }
+
+  public boolean hasChildNodes() {
+    return false;
+  }
+
+  public boolean hasAttributes() {
+    return false;
+  }
+
+  public String getNamespaceURI() {
+    return null;
+  }
+
+  public String getPrefix() {
+    return null;
+  }
+
+  public String getLocalName() {
+    return null;
+  }
+
+  public String getBaseURI() {
+    return null;
+  }
+
+  public String getTextContent() {
+    return getNodeValue();
+  }
+
+  public boolean isSameNode(Node other) {
+    return this == other;
+  }
+
+  public boolean isEqualNode(Node other) {
+    return DomNodes.isEqualNode(this, other);
+  }
+
+  public String lookupPrefix(String namespaceURI) {
+    return parentNode != null ? parentNode.lookupPrefix(namespaceURI) : null;
+  }
+
+  public boolean isDefaultNamespace(String namespaceURI) {
+    return parentNode != null && parentNode.isDefaultNamespace(namespaceURI);
+  }
+
+  public String lookupNamespaceURI(String prefix) {
+    return parentNode != null ? parentNode.lookupNamespaceURI(prefix) : null;
+  }
+
+  public boolean isSupported(String feature, String version) {
+    return false;
+  }
+
+  public Object getFeature(String feature, String version) {
+    return null;
+  }
+
+  public short compareDocumentPosition(Node other) {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Document position of read-only nodes is not supported");
+  }
+
+  public Node cloneNode(boolean deep) {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Read-only nodes cannot be cloned, clone the document instead");
+  }
+
+  public void normalize() {
+    // read-only nodes are never changed, so there is nothing to normalize
+  }
+
+  public Object getUserData(String key) {
+    return userData != null ? userData.get(key) : null;
+  }
+
+  /**
+   * User data can only be set until the document is sealed, it is used to attach
+   * the model element instances to the elements while a model is frozen.
+   */
+  public Object setUserData(String key, Object data, UserDataHandler handler) {
+    if (ownerDocument().isSealed()) {
+      throw readOnly();
+    }
+    if (userData == null) {
+      userData = new HashMap<String, Object>();
+    }
+    return data != null ? userData.put(key, data) : userData.remove(key);
+  }
+
+  public void setNodeValue(String nodeValue) {
+    throw readOnly();
+  }
+
+  public Node insertBefore(Node newChild, Node refChild) {
+    throw readOnly();
+  }
+
+  public Node replaceChild(Node newChild, Node oldChild) {
+    throw readOnly();
+  }
+
+  public Node removeChild(Node oldChild) {
+    throw readOnly();
+  }
+
+  public Node appendChild(Node newChild) {
+    throw readOnly();
+  }
+
+  public void setPrefix(String prefix) {
+    throw readOnly();
+  }
+
+  public void setTextContent(String textContent) {
+    throw readOnly();
+  }
+
+  public String toString() {
+    return "[" + getNodeName() + ": " + getNodeValue() + "]";
+  }
+
+  protected ReadOnlyDocument ownerDocument() {
+    return ownerDocument;
+  }
+
+  protected static DOMException readOnly() {
+    return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, "The document is read-only");
+  }
+
+}
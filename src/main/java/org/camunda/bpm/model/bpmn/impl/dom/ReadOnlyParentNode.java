@@ -0,0 +1,97 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import java.util.List;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A read-only node which can have child nodes.
+ */
+public abstract class ReadOnlyParentNode extends ReadOnlyNode {
+
+  protected ReadOnlyNode[] children = new ReadOnlyNode[0];
+  protected NodeList childNodes = EMPTY_NODE_LIST;
+
+  protected ReadOnlyParentNode(ReadOnlyDocument ownerDocument) {
+    super(ownerDocument);
+  }
+
+  protected void setChildren(List<ReadOnlyNode> childList) {
+    children = childList.toArray(new ReadOnlyNode[childList.size()]);
+    childNodes = new ReadOnlyNodeList(children);
+    for (int i = 0; i < children.length; i++) {
+      ReadOnlyNode child = children[i];
+      child.parentNode = this;
+      child.previousSibling = i > 0 ? children[i - 1] : null;
+      child.nextSibling = i < children.length - 1 ? children[i + 1] : null;
+    }
+  }
+
+  public NodeList getChildNodes() {
+    return childNodes;
+  }
+
+  public Node getFirstChild() {
+    return children.length > 0 ? children[0] : null;
+  }
+
+  public Node getLastChild() {
+    return children.length > 0 ? children[children.length - 1] : null;
+  }
+
+  public boolean hasChildNodes() {
+    return children.length > 0;
+  }
+
+  public String getTextContent() {
+    StringBuilder textContent = new StringBuilder();
+    appendTextContent(textContent);
+    return textContent.toString();
+  }
+
+  protected void appendTextContent(StringBuilder textContent) {
+    for (ReadOnlyNode child : children) {
+      switch (child.getNodeType()) {
+        case ELEMENT_NODE:
+          ((ReadOnlyParentNode) child).appendTextContent(textContent);
+          break;
+        case TEXT_NODE:
+        case CDATA_SECTION_NODE:
+          textContent.append(child.getNodeValue());
+          break;
+        default:
+          // comments and processing instructions are not part of the text content
+      }
+    }
+  }
+
+  /**
+   * Collects the descendant elements matching the given names in document order.
+   * The names can be the wildcard <code>*</code>.
+   */
+  protected void collectElements(String namespaceURI, String localName, boolean namespaceAware, List<Node> elements) {
+    for (ReadOnlyNode child : children) {
+      if (child.getNodeType() == ELEMENT_NODE) {
+        ReadOnlyElement element = (ReadOnlyElement) child;
+        if (element.matches(namespaceURI, localName, namespaceAware)) {
+          elements.add(element);
+        }
+        element.collectElements(namespaceURI, localName, namespaceAware, elements);
+      }
+    }
+  }
+
+}
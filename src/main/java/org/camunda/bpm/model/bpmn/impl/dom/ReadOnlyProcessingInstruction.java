@@ -0,0 +1,55 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import org.w3c.dom.ProcessingInstruction;
+
+/**
+ * A read-only processing instruction.
+ */
+public class ReadOnlyProcessingInstruction extends ReadOnlyNode implements ProcessingInstruction {
+
+  protected final String target;
+  protected final String data;
+
+  public ReadOnlyProcessingInstruction(ReadOnlyDocument ownerDocument, String target, String data) {
+    super(ownerDocument);
+    this.target = target;
+    this.data = data;
+  }
+
+  public short getNodeType() {
+    return PROCESSING_INSTRUCTION_NODE;
+  }
+
+  public String getNodeName() {
+    return target;
+  }
+
+  public String getNodeValue() {
+    return data;
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  public String getData() {
+    return data;
+  }
+
+  public void setData(String data) {
+    throw readOnly();
+  }
+
+}
@@ -0,0 +1,62 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import org.w3c.dom.Text;
+
+/**
+ * A read-only text node.
+ */
+public class ReadOnlyText extends ReadOnlyCharacterData implements Text {
+
+  public ReadOnlyText(ReadOnlyDocument ownerDocument, String data) {
+    super(ownerDocument, data);
+  }
+
+  public short getNodeType() {
+    return TEXT_NODE;
+  }
+
+  public String getNodeName() {
+    return "#text";
+  }
+
+  public boolean isElementContentWhitespace() {
+    return false;
+  }
+
+  public String getWholeText() {
+    ReadOnlyNode first = this;
+    while (isText(first.previousSibling)) {
+      first = first.previousSibling;
+    }
+    StringBuilder wholeText = new StringBuilder();
+    for (ReadOnlyNode node = first; isText(node); node = node.nextSibling) {
+      wholeText.append(node.getNodeValue());
+    }
+    return wholeText.toString();
+  }
+
+  public Text splitText(int offset) {
+    throw readOnly();
+  }
+
+  public Text replaceWholeText(String content) {
+    throw readOnly();
+  }
+
+  protected static boolean isText(ReadOnlyNode node) {
+    return node != null && (node.getNodeType() == TEXT_NODE || node.getNodeType() == CDATA_SECTION_NODE);
+  }
+
+}
@@ -12,11 +12,13 @@
  */
 package org.camunda.bpm.model.bpmn.impl.instance;
 
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
 import org.camunda.bpm.model.bpmn.instance.BaseElement;
 import org.camunda.bpm.model.bpmn.instance.Documentation;
 import org.camunda.bpm.model.bpmn.instance.ExtensionElements;
 import org.camunda.bpm.model.bpmn.instance.di.DiagramElement;
 import org.camunda.bpm.model.xml.ModelBuilder;
+import org.camunda.bpm.model.xml.ModelInstance;
 import org.camunda.bpm.model.xml.impl.instance.ModelTypeInstanceContext;
 import org.camunda.bpm.model.xml.impl.util.ModelUtil;
 import org.camunda.bpm.model.xml.instance.ModelElementInstance;
@@ -94,6 +96,10 @@ public abstract class BaseElementImpl extends BpmnModelElementInstanceImpl imple
 
   @SuppressWarnings("rawtypes")
   public DiagramElement getDiagramElement() {
+    ModelInstance modelInstance = getModelInstance();
+    if (modelInstance instanceof BpmnModelInstanceImpl) {
+      ((BpmnModelInstanceImpl) modelInstance).materializeDiagrams();
+    }
     Collection<Reference> incomingReferences = getIncomingReferencesByType(DiagramElement.class);
     for (Reference<?> reference : incomingReferences) {
       for (ModelElementInstance sourceElement : reference.findReferenceSourceElements(this)) {
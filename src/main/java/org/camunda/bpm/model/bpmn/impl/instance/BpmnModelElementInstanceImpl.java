@@ -14,6 +14,7 @@ package org.camunda.bpm.model.bpmn.impl.instance;
 
 import org.camunda.bpm.model.bpmn.BpmnModelException;
 import org.camunda.bpm.model.bpmn.builder.AbstractBaseElementBuilder;
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
 import org.camunda.bpm.model.bpmn.instance.BpmnModelElementInstance;
 import org.camunda.bpm.model.bpmn.instance.SubProcess;
 import org.camunda.bpm.model.xml.impl.instance.ModelElementInstanceImpl;
@@ -31,6 +32,21 @@ public abstract class BpmnModelElementInstanceImpl extends ModelElementInstanceI
     super(instanceContext);
   }
 
+  /**
+   * Changing an id attribute updates all references to the previous id, which requires
+   * to look at all elements which may refer to this element. This is skipped if no
+   * element of the model can refer to the previous id, e.g. if it was just generated.
+   */
+  public void setAttributeValue(String attributeName, String xmlValue, boolean isIdAttribute) {
+    if (isIdAttribute && getModelInstance() instanceof BpmnModelInstanceImpl
+      && !((BpmnModelInstanceImpl) getModelInstance()).isReferencedIdentifier(getAttributeValue(attributeName))) {
+      getDomElement().setIdAttribute(attributeName, xmlValue);
+    }
+    else {
+      super.setAttributeValue(attributeName, xmlValue, isIdAttribute);
+    }
+  }
+
   @SuppressWarnings("rawtypes")
   public AbstractBaseElementBuilder builder() {
     throw new BpmnModelException("No builder implemented for " + this);
@@ -12,9 +12,11 @@
  */
 package org.camunda.bpm.model.bpmn.impl.instance;
 
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
 import org.camunda.bpm.model.bpmn.instance.*;
 import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnDiagram;
 import org.camunda.bpm.model.xml.ModelBuilder;
+import org.camunda.bpm.model.xml.ModelInstance;
 import org.camunda.bpm.model.xml.impl.instance.ModelTypeInstanceContext;
 import org.camunda.bpm.model.xml.type.ModelElementTypeBuilder;
 import org.camunda.bpm.model.xml.type.attribute.Attribute;
@@ -175,6 +177,10 @@ public class DefinitionsImpl extends BpmnModelElementInstanceImpl implements Def
   }
 
   public Collection<BpmnDiagram> getBpmDiagrams() {
+    ModelInstance modelInstance = getModelInstance();
+    if (modelInstance instanceof BpmnModelInstanceImpl) {
+      ((BpmnModelInstanceImpl) modelInstance).materializeDiagrams();
+    }
     return bpmnDiagramCollection.get(this);
   }
 
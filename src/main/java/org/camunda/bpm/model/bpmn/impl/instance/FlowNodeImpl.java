@@ -15,6 +15,7 @@ package org.camunda.bpm.model.bpmn.impl.instance;
 import org.camunda.bpm.model.bpmn.BpmnModelException;
 import org.camunda.bpm.model.bpmn.Query;
 import org.camunda.bpm.model.bpmn.builder.AbstractFlowNodeBuilder;
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
 import org.camunda.bpm.model.bpmn.impl.QueryImpl;
 import org.camunda.bpm.model.bpmn.instance.FlowElement;
 import org.camunda.bpm.model.bpmn.instance.FlowNode;
@@ -30,6 +31,7 @@ import org.camunda.bpm.model.xml.type.reference.ElementReferenceCollection;
 import org.camunda.bpm.model.xml.type.reference.Reference;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 
 import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.*;
@@ -41,6 +43,9 @@ import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.*;
  */
 public abstract class FlowNodeImpl extends FlowElementImpl implements FlowNode {
 
+  protected static final String PREVIOUS_NODES = "previousNodes";
+  protected static final String SUCCEEDING_NODES = "succeedingNodes";
+
   protected static ElementReferenceCollection<SequenceFlow, Incoming> incomingCollection;
   protected static ElementReferenceCollection<SequenceFlow, Outgoing> outgoingCollection;
 
@@ -125,19 +130,51 @@ public abstract class FlowNodeImpl extends FlowElementImpl implements FlowNode {
   }
 
   public Query<FlowNode> getPreviousNodes() {
-    Collection<FlowNode> previousNodes = new HashSet<FlowNode>();
-    for (SequenceFlow sequenceFlow : getIncoming()) {
-      previousNodes.add(sequenceFlow.getSource());
-    }
-    return new QueryImpl<FlowNode>(previousNodes);
+    return getAdjacentNodes(PREVIOUS_NODES, false);
   }
 
   public Query<FlowNode> getSucceedingNodes() {
-    Collection<FlowNode> succeedingNodes = new HashSet<FlowNode>();
-    for (SequenceFlow sequenceFlow : getOutgoing()) {
-      succeedingNodes.add(sequenceFlow.getTarget());
+    return getAdjacentNodes(SUCCEEDING_NODES, true);
+  }
+
+  /**
+   * The adjacent nodes are cached by the model until it is changed, since looking up
+   * the sequence flows of a node has to look at all sequence flows of the model. They
+   * are only cached if the changes of the model are already tracked, otherwise tracking
+   * them would slow down every later change, e.g. of a model being built.
+   */
+  @SuppressWarnings("unchecked")
+  protected Query<FlowNode> getAdjacentNodes(String name, boolean succeeding) {
+    BpmnModelInstanceImpl bpmnModelInstance = modelInstance instanceof BpmnModelInstanceImpl
+      ? (BpmnModelInstanceImpl) modelInstance : null;
+    long stamp = BpmnModelInstanceImpl.UNTRACKED;
+    if (bpmnModelInstance != null) {
+      stamp = bpmnModelInstance.getTrackedModificationStamp();
+      if (stamp != BpmnModelInstanceImpl.UNTRACKED) {
+        Query<FlowNode> cachedNodes = (Query<FlowNode>) bpmnModelInstance.getCachedResult(this, name);
+        if (cachedNodes != null) {
+          return cachedNodes;
+        }
+      }
+    }
+
+    Collection<FlowNode> adjacentNodes = new HashSet<FlowNode>();
+    if (succeeding) {
+      for (SequenceFlow sequenceFlow : getOutgoing()) {
+        adjacentNodes.add(sequenceFlow.getTarget());
+      }
+    }
+    else {
+      for (SequenceFlow sequenceFlow : getIncoming()) {
+        adjacentNodes.add(sequenceFlow.getSource());
+      }
+    }
+    Query<FlowNode> nodes = new QueryImpl<FlowNode>(Collections.unmodifiableCollection(adjacentNodes));
+
+    if (bpmnModelInstance != null) {
+      bpmnModelInstance.cacheResult(this, name, nodes, stamp);
     }
-    return new QueryImpl<FlowNode>(succeedingNodes);
+    return nodes;
   }
 
   /** Camunda Attributes */
@@ -0,0 +1,221 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import org.camunda.bpm.model.bpmn.WriteOptions.ValidationMode;
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.camunda.bpm.model.xml.impl.util.IoUtil;
+import org.junit.After;
+import org.junit.Test;
+
+public class BpmnModelCacheTest {
+
+  @After
+  public void disableCache() {
+    Bpmn.setModelCache(null);
+  }
+
+  @Test
+  public void shouldBeDisabledByDefault() {
+    assertThat(Bpmn.getModelCache()).isNull();
+  }
+
+  @Test
+  public void shouldReturnCopyOfCachedModel() {
+    BpmnModelCache cache = new BpmnModelCache(10, 1024 * 1024);
+    Bpmn.setModelCache(cache);
+
+    BpmnModelInstance first = readModel();
+    BpmnModelInstance second = readModel();
+
+    assertThat(cache.getMissCount()).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.isFrozen()).isFalse();
+
+    ServiceTask serviceTask = second.getModelElementById("serviceTask");
+    assertThat(serviceTask.getIncoming()).hasSize(1);
+    SequenceFlow sequenceFlow = second.getModelElementById("sequenceFlow2");
+    assertThat(sequenceFlow.getSource()).isEqualTo(serviceTask);
+    BpmnShape shape = second.getModelElementById("_BPMNShape_ServiceTask_9");
+    assertThat(shape.getBpmnElement()).isEqualTo(serviceTask);
+
+    // the copies are independent of each other and of the cached model
+    serviceTask.setName("changed");
+    assertThat(first.<ServiceTask>getModelElementById("serviceTask").getName()).isNotEqualTo("changed");
+    assertThat(readModel().<ServiceTask>getModelElementById("serviceTask").getName()).isNotEqualTo("changed");
+    Bpmn.validateModel(second);
+  }
+
+  @Test
+  public void shouldCacheModelsByParseOptions() {
+    BpmnModelCache cache = new BpmnModelCache(10, 1024 * 1024);
+    Bpmn.setModelCache(cache);
+
+    readModel();
+    BpmnModelInstance trustedModel = Bpmn.readModelFromStream(getClass().getResourceAsStream("BpmnDiTest.xml"), ParseOptions.trusted());
+    assertThat(cache.getMissCount()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(2);
+
+    Bpmn.readModelFromStream(getClass().getResourceAsStream("BpmnDiTest.xml"), ParseOptions.trusted());
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(trustedModel.<ServiceTask>getModelElementById("serviceTask").getOutgoing()).hasSize(1);
+  }
+
+  @Test
+  public void shouldCacheFrozenVersionOfModel() {
+    BpmnModelCache cache = new BpmnModelCache(10, 1024 * 1024);
+    BpmnModelInstance modelInstance = readModel();
+
+    cache.put("a", modelInstance, 1);
+    modelInstance.<ServiceTask>getModelElementById("serviceTask").setName("changed");
+
+    BpmnModelInstance cachedCopy = cache.get("a");
+    assertThat(cachedCopy.<ServiceTask>getModelElementById("serviceTask").getName()).isNotEqualTo("changed");
+    cachedCopy.<ServiceTask>getModelElementById("serviceTask").setName("changed again");
+    assertThat(cache.get("a").<ServiceTask>getModelElementById("serviceTask").getName()).isNotEqualTo("changed again");
+    assertThat(cache.getHitCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldTrackChangesOfCachedCopies() {
+    Bpmn.setModelCache(new BpmnModelCache(10, 1024 * 1024));
+    readModel();
+    BpmnModelInstanceImpl cachedCopy = (BpmnModelInstanceImpl) readModel();
+
+    assertThat(cachedCopy.getModificationStamp()).isNotEqualTo(BpmnModelInstanceImpl.UNTRACKED);
+    assertThat(cachedCopy.getElementTypeIndex()).isNotNull();
+    assertThat(cachedCopy.getElementIdIndex()).isNotNull();
+    assertThat(cachedCopy.getModelElementsByType(FlowNode.class)).hasSize(6);
+
+    Bpmn.convertToString(cachedCopy, WriteOptions.defaults().validation(ValidationMode.DIRTY_ONLY));
+    ServiceTask serviceTask = cachedCopy.getModelElementById("serviceTask");
+    serviceTask.setName("changed");
+    assertThat(cachedCopy.getDirtyElementTracker().isDocumentDirty()).isFalse();
+    assertThat(cachedCopy.getDirtyElementTracker().getDirtyElements()).hasSize(1);
+  }
+
+  @Test
+  public void shouldKeepDiagramsDeferred() {
+    BpmnModelCache cache = new BpmnModelCache(10, 1024 * 1024);
+    Bpmn.setModelCache(cache);
+    ParseOptions lazyDiagrams = ParseOptions.defaults().lazyDiagrams(true);
+
+    BpmnModelInstanceImpl parsedModel = (BpmnModelInstanceImpl) readModel(lazyDiagrams);
+    assertThat(parsedModel.hasDeferredDiagrams()).isTrue();
+    BpmnModelInstanceImpl cachedCopy = (BpmnModelInstanceImpl) readModel(lazyDiagrams);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cachedCopy.hasDeferredDiagrams()).isTrue();
+
+    ServiceTask serviceTask = cachedCopy.getModelElementById("serviceTask");
+    BpmnShape shape = cachedCopy.getModelElementById("_BPMNShape_ServiceTask_9");
+    assertThat(cachedCopy.hasDeferredDiagrams()).isFalse();
+    assertThat(shape.getBpmnElement()).isEqualTo(serviceTask);
+    assertThat(Bpmn.convertToString(cachedCopy)).isEqualTo(Bpmn.convertToString(readModel()));
+
+    // the diagrams of the next copy are still deferred
+    assertThat(((BpmnModelInstanceImpl) readModel(lazyDiagrams)).hasDeferredDiagrams()).isTrue();
+    assertThat(parsedModel.hasDeferredDiagrams()).isTrue();
+  }
+
+  @Test
+  public void shouldCreateKeyFromContent() {
+    byte[] content = readContent("BpmnDiTest.xml");
+    String key = BpmnModelCache.createKey(content, ParseOptions.defaults());
+
+    assertThat(BpmnModelCache.createKey(content.clone(), ParseOptions.defaults())).isEqualTo(key);
+    assertThat(BpmnModelCache.createKey(content, ParseOptions.trusted())).isNotEqualTo(key);
+    assertThat(BpmnModelCache.createKey(content, ParseOptions.defaults().lazyDiagrams(true))).isNotEqualTo(key);
+    assertThat(BpmnModelCache.createKey(content, ParseOptions.defaults().skipDiagrams(true))).isNotEqualTo(key);
+    assertThat(BpmnModelCache.createKey(readContent("CamundaExtensionsTest.xml"), ParseOptions.defaults())).isNotEqualTo(key);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedModels() {
+    BpmnModelCache cache = new BpmnModelCache(2, 1024 * 1024);
+    BpmnModelInstance modelInstance = Bpmn.createEmptyModel();
+
+    cache.put("a", modelInstance, 1);
+    cache.put("b", modelInstance, 1);
+    assertThat(cache.get("a")).isNotNull();
+    cache.put("c", modelInstance, 1);
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+    assertThat(cache.get("b")).isNull();
+    assertThat(cache.get("a")).isNotNull();
+    assertThat(cache.get("c")).isNotNull();
+  }
+
+  @Test
+  public void shouldEvictModelsByWeight() {
+    BpmnModelCache cache = new BpmnModelCache(10, 100);
+    BpmnModelInstance modelInstance = Bpmn.createEmptyModel();
+
+    cache.put("a", modelInstance, 60);
+    cache.put("b", modelInstance, 30);
+    assertThat(cache.getWeight()).isEqualTo(90);
+
+    cache.put("c", modelInstance, 30);
+    assertThat(cache.getWeight()).isEqualTo(60);
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+    assertThat(cache.get("a")).isNull();
+
+    // models heavier than the cache are not cached at all
+    cache.put("d", modelInstance, 101);
+    assertThat(cache.get("d")).isNull();
+    assertThat(cache.size()).isEqualTo(2);
+
+    cache.clear();
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.getWeight()).isEqualTo(0);
+  }
+
+  protected BpmnModelInstance readModel() {
+    return readModel(ParseOptions.defaults());
+  }
+
+  protected BpmnModelInstance readModel(ParseOptions parseOptions) {
+    return Bpmn.readModelFromStream(getClass().getResourceAsStream("BpmnDiTest.xml"), parseOptions);
+  }
+
+  protected byte[] readContent(String resource) {
+    InputStream is = getClass().getResourceAsStream(resource);
+    try {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        content.write(buffer, 0, read);
+      }
+      return content.toByteArray();
+    }
+    catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+    finally {
+      IoUtil.closeSilently(is);
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.camunda.bpm.model.bpmn.instance.EndEvent;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.junit.Test;
+
+public class CopyOnWriteTest {
+
+  @Test
+  public void shouldReadCopy() {
+    BpmnModelInstance modelInstance = readModel().freeze().copyOnWrite();
+
+    assertThat(modelInstance.isFrozen()).isFalse();
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    assertThat(serviceTask.getIncoming()).hasSize(1);
+    assertThat(serviceTask.getPreviousNodes().singleResult().getId()).isEqualTo("exclusiveGateway");
+    BpmnShape shape = modelInstance.getModelElementById("_BPMNShape_ServiceTask_9");
+    assertThat(shape.getBpmnElement()).isEqualTo(serviceTask);
+    assertThat(modelInstance.getModelElementsByType(FlowNode.class)).hasSize(6);
+  }
+
+  @Test
+  public void shouldNotChangeSharedModel() {
+    BpmnModelInstance frozenInstance = readModel().freeze();
+    BpmnModelInstance tenant1 = frozenInstance.copyOnWrite();
+    BpmnModelInstance tenant2 = frozenInstance.copyOnWrite();
+
+    tenant1.<ServiceTask>getModelElementById("serviceTask").setCamundaClass("org.example.Tenant1");
+    tenant2.<ServiceTask>getModelElementById("serviceTask").setCamundaClass("org.example.Tenant2");
+
+    assertThat(tenant1.<ServiceTask>getModelElementById("serviceTask").getCamundaClass()).isEqualTo("org.example.Tenant1");
+    assertThat(tenant2.<ServiceTask>getModelElementById("serviceTask").getCamundaClass()).isEqualTo("org.example.Tenant2");
+    assertThat(frozenInstance.<ServiceTask>getModelElementById("serviceTask").getCamundaClass()).isNull();
+  }
+
+  @Test
+  public void shouldCopyModifiableModel() {
+    BpmnModelInstance modelInstance = readModel();
+    BpmnModelInstance copy = modelInstance.copyOnWrite();
+
+    modelInstance.<ServiceTask>getModelElementById("serviceTask").setName("original");
+    copy.<ServiceTask>getModelElementById("serviceTask").setName("copy");
+
+    assertThat(modelInstance.<ServiceTask>getModelElementById("serviceTask").getName()).isEqualTo("original");
+    assertThat(copy.<ServiceTask>getModelElementById("serviceTask").getName()).isEqualTo("copy");
+  }
+
+  @Test
+  public void shouldWriteAndValidateCopy() {
+    BpmnModelInstance frozenInstance = readModel().freeze();
+    BpmnModelInstance modelInstance = frozenInstance.copyOnWrite();
+    assertThat(Bpmn.convertToString(modelInstance)).isEqualTo(Bpmn.convertToString(frozenInstance));
+
+    modelInstance.<ServiceTask>getModelElementById("serviceTask").setName("changed");
+    Bpmn.validateModel(modelInstance);
+    assertThat(Bpmn.convertToString(modelInstance)).contains("name=\"changed\"");
+  }
+
+  @Test
+  public void shouldChangeStructureOfCopy() {
+    BpmnModelInstance frozenInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .userTask("task")
+      .endEvent("end")
+      .done()
+      .freeze();
+    BpmnModelInstance modelInstance = frozenInstance.copyOnWrite();
+
+    modelInstance.<UserTask>getModelElementById("task").builder()
+      .serviceTask("service").camundaExpression("${tenantService}")
+      .connectTo("end");
+    Bpmn.validateModel(modelInstance);
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("service");
+    assertThat(serviceTask.getPreviousNodes().singleResult().getId()).isEqualTo("task");
+    assertThat(modelInstance.<EndEvent>getModelElementById("end").getIncoming()).hasSize(2);
+    assertThat(frozenInstance.getModelElementById("service")).isNull();
+    assertThat(frozenInstance.<EndEvent>getModelElementById("end").getIncoming()).hasSize(1);
+
+    SequenceFlow sequenceFlow = serviceTask.getOutgoing().iterator().next();
+    Process process = modelInstance.getModelElementById("process");
+    process.removeChildElement(sequenceFlow);
+    assertThat(modelInstance.getModelElementById(sequenceFlow.getId())).isNull();
+
+    BpmnModelInstance clone = modelInstance.clone();
+    assertThat(clone.getModelElementById("service")).isNotNull();
+    assertThat(clone.getModelElementById(sequenceFlow.getId())).isNull();
+  }
+
+  protected BpmnModelInstance readModel() {
+    return Bpmn.readModelFromStream(getClass().getResourceAsStream("BpmnDiTest.xml"));
+  }
+
+}
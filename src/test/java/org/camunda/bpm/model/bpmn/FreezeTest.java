@@ -0,0 +1,255 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.camunda.bpm.model.bpmn.builder.AbstractFlowNodeBuilder;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.junit.Test;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+
+public class FreezeTest {
+
+  protected static final int THREADS = 8;
+  protected static final int ITERATIONS = 50;
+
+  @Test
+  public void shouldFreezeModel() {
+    BpmnModelInstance modelInstance = readModel();
+    BpmnModelInstance frozenInstance = modelInstance.freeze();
+
+    assertThat(frozenInstance).isNotSameAs(modelInstance);
+    assertThat(frozenInstance.isFrozen()).isTrue();
+    assertThat(modelInstance.isFrozen()).isFalse();
+    assertThat(frozenInstance.freeze()).isSameAs(frozenInstance);
+  }
+
+  @Test
+  public void shouldResolveReferencesOfFrozenModel() {
+    BpmnModelInstance frozenInstance = readModel().freeze();
+
+    ServiceTask serviceTask = frozenInstance.getModelElementById("serviceTask");
+    assertThat(serviceTask.getIncoming()).hasSize(1);
+    assertThat(serviceTask.getOutgoing()).hasSize(1);
+    assertThat(serviceTask.getPreviousNodes().singleResult().getId()).isEqualTo("exclusiveGateway");
+
+    SequenceFlow sequenceFlow = frozenInstance.getModelElementById("sequenceFlow2");
+    assertThat(sequenceFlow.getSource()).isSameAs(serviceTask);
+
+    BpmnShape shape = frozenInstance.getModelElementById("_BPMNShape_ServiceTask_9");
+    assertThat(shape.getBpmnElement()).isSameAs(serviceTask);
+    assertThat(serviceTask.getDiagramElement()).isSameAs(shape);
+  }
+
+  @Test
+  public void shouldReadAttributesOfUndeclaredNamespace() {
+    BpmnModelInstance modelInstance = readModel();
+    BpmnModelInstance frozenInstance = modelInstance.freeze();
+
+    // the camunda namespace is not declared by the model
+    ServiceTask serviceTask = frozenInstance.getModelElementById("serviceTask");
+    assertThat(serviceTask.getCamundaClass()).isNull();
+    assertThat(serviceTask.isCamundaAsyncBefore()).isFalse();
+    assertThat(Bpmn.convertToString(frozenInstance)).isEqualTo(Bpmn.convertToString(modelInstance));
+  }
+
+  @Test
+  public void shouldWriteAndValidateFrozenModel() {
+    BpmnModelInstance modelInstance = readModel();
+    BpmnModelInstance frozenInstance = modelInstance.freeze();
+
+    Bpmn.validateModel(frozenInstance);
+    assertThat(Bpmn.convertToString(frozenInstance)).isEqualTo(Bpmn.convertToString(modelInstance));
+  }
+
+  @Test
+  public void shouldNotChangeFrozenModel() {
+    BpmnModelInstance frozenInstance = readModel().freeze();
+    ServiceTask serviceTask = frozenInstance.getModelElementById("serviceTask");
+
+    try {
+      serviceTask.setName("changed");
+      fail("exception expected");
+    }
+    catch (DOMException e) {
+      assertThat(e.code).isEqualTo(DOMException.NO_MODIFICATION_ALLOWED_ERR);
+    }
+
+    try {
+      frozenInstance.newInstance(UserTask.class);
+      fail("exception expected");
+    }
+    catch (DOMException e) {
+      assertThat(e.code).isEqualTo(DOMException.NO_MODIFICATION_ALLOWED_ERR);
+    }
+
+    try {
+      serviceTask.getParentElement().removeChildElement(serviceTask);
+      fail("exception expected");
+    }
+    catch (DOMException e) {
+      assertThat(e.code).isEqualTo(DOMException.NO_MODIFICATION_ALLOWED_ERR);
+    }
+
+    assertThat(serviceTask.getName()).isNull();
+    assertThat(frozenInstance.getModelElementById("serviceTask")).isSameAs(serviceTask);
+  }
+
+  @Test
+  public void shouldCloneFrozenModel() {
+    BpmnModelInstance frozenInstance = readModel().freeze();
+    BpmnModelInstance modelInstance = frozenInstance.clone();
+
+    assertThat(modelInstance.isFrozen()).isFalse();
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    serviceTask.setName("changed");
+    assertThat(serviceTask.getIncoming()).hasSize(1);
+    assertThat(frozenInstance.<ServiceTask>getModelElementById("serviceTask").getName()).isNull();
+    Bpmn.validateModel(modelInstance);
+  }
+
+  @Test
+  public void shouldReadFrozenModelConcurrently() throws Exception {
+    BpmnModelInstance modelInstance = createLargeModel();
+    final String expected = traverse(modelInstance);
+    final BpmnModelInstance frozenInstance = modelInstance.freeze();
+    final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+
+    ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < THREADS; i++) {
+        results.add(executorService.submit(new Callable<Integer>() {
+          public Integer call() throws Exception {
+            barrier.await();
+            int matches = 0;
+            for (int j = 0; j < ITERATIONS; j++) {
+              if (expected.equals(traverse(frozenInstance))) {
+                matches++;
+              }
+            }
+            return matches;
+          }
+        }));
+      }
+      for (Future<Integer> result : results) {
+        assertThat(result.get()).isEqualTo(ITERATIONS);
+      }
+    }
+    finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldLookUpElementsOfFrozenModelWithoutLocking() throws Exception {
+    final BpmnModelInstance frozenInstance = createLargeModel().freeze();
+    final FlowNode task = frozenInstance.getModelElementById("task0");
+    final FlowNode succeedingNode = frozenInstance.getModelElementById("join0");
+    assertThat(task.getSucceedingNodes().singleResult()).isSameAs(succeedingNode);
+    Document document = (Document) frozenInstance.getDocument().getDomSource().getNode();
+
+    ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+    try {
+      // other threads look up elements while this thread holds the locks of the model and its document
+      synchronized (document) {
+        synchronized (frozenInstance) {
+          List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+          for (int i = 0; i < THREADS; i++) {
+            results.add(executorService.submit(new Callable<Integer>() {
+              public Integer call() {
+                int matches = 0;
+                for (int j = 0; j < ITERATIONS; j++) {
+                  if (frozenInstance.getModelElementById("task" + j) != null
+                    && frozenInstance.getModelElementsByType(UserTask.class).size() == 50
+                    && task.getSucceedingNodes().singleResult() == succeedingNode) {
+                    matches++;
+                  }
+                }
+                return matches;
+              }
+            }));
+          }
+          for (Future<Integer> result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(ITERATIONS);
+          }
+        }
+      }
+    }
+    finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  protected BpmnModelInstance readModel() {
+    return Bpmn.readModelFromStream(getClass().getResourceAsStream("BpmnDiTest.xml"));
+  }
+
+  protected BpmnModelInstance createLargeModel() {
+    AbstractFlowNodeBuilder<?, ?> builder = Bpmn.createExecutableProcess("process").startEvent("start");
+    for (int i = 0; i < 50; i++) {
+      builder = builder.exclusiveGateway("fork" + i)
+        .userTask("task" + i).name("Task " + i)
+        .exclusiveGateway("join" + i)
+        .moveToNode("fork" + i)
+        .serviceTask("service" + i).camundaClass("Service" + i)
+        .connectTo("join" + i)
+        .moveToNode("join" + i);
+    }
+    return builder.endEvent("end").done();
+  }
+
+  /**
+   * Reads the whole model and returns a description of it, the description
+   * of a model read concurrently must not differ.
+   */
+  protected static String traverse(BpmnModelInstance modelInstance) {
+    StringBuilder description = new StringBuilder();
+    for (FlowNode flowNode : modelInstance.getModelElementsByType(FlowNode.class)) {
+      description.append(flowNode.getId()).append(':').append(flowNode.getName()).append('[');
+      for (SequenceFlow outgoing : flowNode.getOutgoing()) {
+        description.append(outgoing.getId()).append("->").append(outgoing.getTarget().getId()).append(',');
+      }
+      List<String> previousNodeIds = new ArrayList<String>();
+      for (FlowNode previousNode : flowNode.getPreviousNodes().list()) {
+        previousNodeIds.add(previousNode.getId());
+      }
+      // previous nodes are collected in a set, so their order is not stable
+      Collections.sort(previousNodeIds);
+      description.append("<-").append(previousNodeIds);
+      ModelElementInstance parent = flowNode.getParentElement();
+      description.append("]@").append(parent.getAttributeValue("id"));
+      description.append(modelInstance.getModelElementById(flowNode.getId()) == flowNode).append('\n');
+    }
+    return description.toString();
+  }
+
+}
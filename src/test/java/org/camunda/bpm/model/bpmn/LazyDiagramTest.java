@@ -0,0 +1,197 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.camunda.bpm.model.bpmn.impl.BpmnModelConstants;
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnDiagram;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.camunda.bpm.model.xml.ModelParseException;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class LazyDiagramTest {
+
+  protected static final String MODEL =
+    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+    "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" xmlns:bpmndi=\"http://www.omg.org/spec/BPMN/20100524/DI\" " +
+      "xmlns:dc=\"http://www.omg.org/spec/DD/20100524/DC\" targetNamespace=\"test\">\n" +
+    "  <!-- the process -->\n" +
+    "  <process id=\"process\">\n" +
+    "    <task id=\"task\" name=\"a &amp; &quot;b&quot;\"/>\n" +
+    "  </process>\n" +
+    "  <bpmndi:BPMNDiagram id=\"diagram1\" name=\"first &lt;diagram&gt;\">\n" +
+    "    <!-- shapes -->\n" +
+    "    <bpmndi:BPMNPlane id=\"plane1\" bpmnElement=\"process\">\n" +
+    "      <bpmndi:BPMNShape id=\"shape\" bpmnElement=\"task\">\n" +
+    "        <dc:Bounds height=\"80.0\" width=\"100.0\" x=\"10.0\" y=\"10.0\"/>\n" +
+    "      </bpmndi:BPMNShape>\n" +
+    "    </bpmndi:BPMNPlane>\n" +
+    "  </bpmndi:BPMNDiagram>\n" +
+    "  <BPMNDiagram xmlns=\"http://www.omg.org/spec/BPMN/20100524/DI\" id=\"diagram2\">\n" +
+    "    <BPMNPlane id=\"plane2\"/>\n" +
+    "  </BPMNDiagram>\n" +
+    "</definitions>";
+
+  protected static final String INVALID_DIAGRAM =
+    "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" xmlns:bpmndi=\"http://www.omg.org/spec/BPMN/20100524/DI\" targetNamespace=\"test\">" +
+      "<process id=\"process\"/>" +
+      "<bpmndi:BPMNDiagram id=\"diagram\"><bpmndi:unknownElement/></bpmndi:BPMNDiagram>" +
+    "</definitions>";
+
+  protected static final WriteOptions UNVALIDATED = WriteOptions.defaults().validation(WriteOptions.ValidationMode.NONE);
+
+  @Test
+  public void shouldDeferDiagrams() {
+    BpmnModelInstanceImpl modelInstance = readLazyModel(MODEL);
+
+    assertThat(modelInstance.hasDeferredDiagrams()).isTrue();
+    assertThat(countDiagrams(modelInstance)).isEqualTo(0);
+
+    Task task = modelInstance.getModelElementById("task");
+    assertThat(task.getName()).isEqualTo("a & \"b\"");
+    assertThat(modelInstance.getModelElementsByType(Task.class)).hasSize(1);
+    assertThat(modelInstance.hasDeferredDiagrams()).isTrue();
+  }
+
+  @Test
+  public void shouldMaterializeDiagramsOfDefinitions() {
+    BpmnModelInstanceImpl modelInstance = readLazyModel(MODEL);
+
+    assertThat(modelInstance.getDefinitions().getBpmDiagrams()).hasSize(2);
+    assertThat(modelInstance.hasDeferredDiagrams()).isFalse();
+    assertThat(countDiagrams(modelInstance)).isEqualTo(2);
+
+    BpmnDiagram diagram = modelInstance.getDefinitions().getBpmDiagrams().iterator().next();
+    assertThat(diagram.getName()).isEqualTo("first <diagram>");
+    assertThat(diagram.getBpmnPlane().getBpmnElement().getId()).isEqualTo("process");
+  }
+
+  @Test
+  public void shouldMaterializeDiagramElement() {
+    BpmnModelInstanceImpl modelInstance = readLazyModel(MODEL);
+
+    Task task = modelInstance.getModelElementById("task");
+    BpmnShape shape = task.getDiagramElement();
+
+    assertThat(shape.getId()).isEqualTo("shape");
+    assertThat(shape.getBpmnElement()).isEqualTo(task);
+    assertThat(shape.getBounds().getWidth()).isEqualTo(100.0);
+  }
+
+  @Test
+  public void shouldMaterializeDiagramsOnLookup() {
+    BpmnModelInstance modelInstance = readLazyModel(MODEL);
+    assertThat(modelInstance.getModelElementById("shape")).isInstanceOf(BpmnShape.class);
+
+    modelInstance = readLazyModel(MODEL);
+    assertThat(modelInstance.getModelElementsByType(BpmnShape.class)).hasSize(1);
+
+    modelInstance = readLazyModel(MODEL);
+    assertThat(modelInstance.getModelElementById("unknown")).isNull();
+    assertThat(((BpmnModelInstanceImpl) modelInstance).hasDeferredDiagrams()).isFalse();
+  }
+
+  @Test
+  public void shouldWriteModelUnchanged() {
+    String expected = Bpmn.convertToString(Bpmn.readModelFromStream(stream(MODEL)), UNVALIDATED);
+
+    assertThat(Bpmn.convertToString(readLazyModel(MODEL), UNVALIDATED)).isEqualTo(expected);
+    assertThat(Bpmn.convertToString(readLazyModel(MODEL))).isEqualTo(expected);
+
+    String expectedTrusted = Bpmn.convertToString(Bpmn.readModelFromStream(stream(MODEL), ParseOptions.trusted()), UNVALIDATED);
+    BpmnModelInstance trustedInstance = Bpmn.readModelFromStream(stream(MODEL), ParseOptions.trusted().lazyDiagrams(true));
+    assertThat(Bpmn.convertToString(trustedInstance, UNVALIDATED)).isEqualTo(expectedTrusted);
+  }
+
+  @Test
+  public void shouldWriteResourceUnchanged() {
+    String expected = Bpmn.convertToString(Bpmn.readModelFromStream(getClass().getResourceAsStream("BpmnDiTest.xml")));
+
+    BpmnModelInstance modelInstance = Bpmn.readModelFromStream(getClass().getResourceAsStream("BpmnDiTest.xml"),
+      ParseOptions.defaults().lazyDiagrams(true));
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    assertThat(serviceTask.getDiagramElement().getId()).isEqualTo("_BPMNShape_ServiceTask_9");
+
+    assertThat(Bpmn.convertToString(modelInstance)).isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldValidateDeferredDiagrams() {
+    try {
+      Bpmn.readModelFromStream(stream(INVALID_DIAGRAM), ParseOptions.defaults().lazyDiagrams(true));
+      fail("exception expected");
+    }
+    catch (ModelParseException e) {
+      // expected
+    }
+
+    BpmnModelInstance modelInstance = Bpmn.readModelFromStream(stream(INVALID_DIAGRAM), ParseOptions.trusted().lazyDiagrams(true));
+    assertThat(modelInstance.getModelElementById("process")).isNotNull();
+  }
+
+  @Test
+  public void shouldKeepDiagramsDeferredInClone() {
+    BpmnModelInstanceImpl modelInstance = readLazyModel(MODEL);
+    BpmnModelInstanceImpl copy = modelInstance.clone();
+    assertThat(copy.hasDeferredDiagrams()).isTrue();
+
+    assertThat(copy.getDefinitions().getBpmDiagrams()).hasSize(2);
+    assertThat(modelInstance.hasDeferredDiagrams()).isTrue();
+    assertThat(countDiagrams(modelInstance)).isEqualTo(0);
+
+    assertThat(Bpmn.convertToString(copy, UNVALIDATED)).isEqualTo(Bpmn.convertToString(modelInstance, UNVALIDATED));
+  }
+
+  @Test
+  public void shouldMaterializeDiagramsOfFrozenModel() {
+    BpmnModelInstance frozenInstance = readLazyModel(MODEL).freeze();
+
+    assertThat(frozenInstance.getDefinitions().getBpmDiagrams()).hasSize(2);
+    assertThat(frozenInstance.getModelElementById("shape")).isNotNull();
+  }
+
+  @Test
+  public void shouldInsertDiagramsOfChangedModel() {
+    BpmnModelInstance modelInstance = readLazyModel(MODEL);
+    Task task = modelInstance.getModelElementById("task");
+    task.getParentElement().removeChildElement(task);
+
+    String xml = Bpmn.convertToString(modelInstance, UNVALIDATED);
+    assertThat(xml).doesNotContain("id=\"task\"");
+    assertThat(xml).contains("id=\"diagram1\"").contains("id=\"diagram2\"");
+    assertThat(xml.indexOf("id=\"diagram1\"")).isLessThan(xml.indexOf("id=\"diagram2\""));
+  }
+
+  protected BpmnModelInstanceImpl readLazyModel(String xml) {
+    return (BpmnModelInstanceImpl) Bpmn.readModelFromStream(stream(xml), ParseOptions.defaults().lazyDiagrams(true));
+  }
+
+  protected int countDiagrams(BpmnModelInstance modelInstance) {
+    Document document = (Document) modelInstance.getDocument().getDomSource().getNode();
+    return document.getElementsByTagNameNS(BpmnModelConstants.BPMNDI_NS, BpmnModelConstants.BPMNDI_ELEMENT_BPMN_DIAGRAM).getLength();
+  }
+
+  protected static InputStream stream(String xml) {
+    return new ByteArrayInputStream(xml.getBytes());
+  }
+
+}
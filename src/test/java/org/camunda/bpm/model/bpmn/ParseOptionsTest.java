@@ -0,0 +1,109 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.camunda.bpm.model.xml.ModelParseException;
+import org.junit.Test;
+
+public class ParseOptionsTest {
+
+  protected static final String INVALID_MODEL =
+    "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" targetNamespace=\"test\">" +
+      "<process id=\"process\"><unknownElement/></process>" +
+    "</definitions>";
+
+  @Test
+  public void shouldValidateByDefault() {
+    assertThat(ParseOptions.defaults().isSchemaValidation()).isTrue();
+    assertThat(ParseOptions.trusted().isSchemaValidation()).isFalse();
+    assertThat(ParseOptions.defaults().isLazyDiagrams()).isFalse();
+    assertThat(ParseOptions.defaults().isSkipDiagrams()).isFalse();
+  }
+
+  @Test
+  public void shouldResolveIdsOfTrustedModel() {
+    BpmnModelInstance modelInstance = readTrustedModel();
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    assertThat(serviceTask).isNotNull();
+    assertThat(serviceTask.getIncoming()).hasSize(1);
+    assertThat(serviceTask.getOutgoing()).hasSize(1);
+
+    SequenceFlow sequenceFlow = modelInstance.getModelElementById("sequenceFlow2");
+    assertThat(sequenceFlow.getSource()).isEqualTo(serviceTask);
+    assertThat(sequenceFlow.getTarget().getId()).isEqualTo("endEvent1");
+
+    FlowNode previousNode = serviceTask.getPreviousNodes().singleResult();
+    assertThat(previousNode.getId()).isEqualTo("exclusiveGateway");
+  }
+
+  @Test
+  public void shouldResolveDiagramElementsOfTrustedModel() {
+    BpmnModelInstance modelInstance = readTrustedModel();
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    BpmnShape shape = modelInstance.getModelElementById("_BPMNShape_ServiceTask_9");
+    assertThat(shape.getBpmnElement()).isEqualTo(serviceTask);
+    assertThat(serviceTask.getDiagramElement()).isEqualTo(shape);
+  }
+
+  @Test
+  public void shouldKeepTrustedModelValid() {
+    BpmnModelInstance modelInstance = readTrustedModel();
+    Bpmn.validateModel(modelInstance);
+  }
+
+  @Test
+  public void shouldNotValidateTrustedModel() {
+    BpmnModelInstance modelInstance = Bpmn.readModelFromStream(stream(INVALID_MODEL), ParseOptions.trusted());
+    assertThat(modelInstance.getModelElementById("process")).isNotNull();
+
+    try {
+      Bpmn.readModelFromStream(stream(INVALID_MODEL), ParseOptions.defaults());
+      fail("exception expected");
+    }
+    catch (ModelParseException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void shouldSkipDiagrams() {
+    BpmnModelInstance modelInstance = Bpmn.readModelFromStream(getClass().getResourceAsStream("BpmnDiTest.xml"),
+      ParseOptions.defaults().skipDiagrams(true));
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    assertThat(serviceTask.getDiagramElement()).isNull();
+    assertThat(modelInstance.getModelElementsByType(BpmnShape.class)).isEmpty();
+    assertThat(Bpmn.convertToString(modelInstance)).doesNotContain("BPMNDiagram");
+  }
+
+  protected BpmnModelInstance readTrustedModel() {
+    return Bpmn.readModelFromStream(getClass().getResourceAsStream("BpmnDiTest.xml"), ParseOptions.trusted());
+  }
+
+  protected static InputStream stream(String xml) {
+    return new ByteArrayInputStream(xml.getBytes());
+  }
+
+}
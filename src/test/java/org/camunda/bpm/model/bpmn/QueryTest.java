@@ -13,14 +13,21 @@
 
 package org.camunda.bpm.model.bpmn;
 
+import org.camunda.bpm.model.bpmn.impl.QueryImpl;
 import org.camunda.bpm.model.bpmn.instance.FlowNode;
 import org.camunda.bpm.model.bpmn.instance.Gateway;
 import org.camunda.bpm.model.bpmn.instance.Task;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
 import org.camunda.bpm.model.xml.type.ModelElementType;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
@@ -112,4 +119,119 @@ public class QueryTest {
       assertThat(e).isInstanceOf(BpmnModelException.class).hasMessageEndingWith("<3>");
     }
   }
+
+  @Test
+  public void testFilterByAttribute() {
+    assertThat(startSucceeding.filterByAttribute(null, "id", "user").singleResult().getId()).isEqualTo("user");
+    assertThat(gateway1Succeeding.filterByAttribute(null, "id", "gateway2").count()).isEqualTo(1);
+    assertThat(gateway1Succeeding.filterByAttribute("", "id", "unknown").any()).isFalse();
+    assertThat(gateway2Succeeding.filterByAttribute(null, "name", null).count()).isEqualTo(3);
+
+    try {
+      startSucceeding.filterByAttribute(null, null, "user");
+      fail("exception expected");
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFilter() {
+    Predicate<FlowNode> isTask = new Predicate<FlowNode>() {
+      public boolean matches(FlowNode element) {
+        return element instanceof Task;
+      }
+    };
+
+    assertThat(gateway1Succeeding.filter(isTask).count()).isEqualTo(1);
+    assertThat(gateway2Succeeding.filter(isTask).filterByType(UserTask.class).singleResult()).isInstanceOf(UserTask.class);
+    assertThat(gateway2Succeeding.filterByType(Gateway.class).filter(isTask).any()).isFalse();
+  }
+
+  @Test
+  public void testLimit() {
+    assertThat(gateway2Succeeding.limit(2).list()).hasSize(2);
+    assertThat(gateway2Succeeding.limit(2).count()).isEqualTo(2);
+    assertThat(gateway2Succeeding.limit(5).count()).isEqualTo(3);
+    assertThat(gateway2Succeeding.limit(0).any()).isFalse();
+    assertThat(gateway2Succeeding.limit(1).singleResult()).isNotNull();
+    assertThat(gateway2Succeeding.limit(2).filterByType(Task.class).limit(5).count()).isEqualTo(2);
+  }
+
+  @Test
+  public void testFirstAndAny() {
+    assertThat(startSucceeding.first().getId()).isEqualTo("user");
+    assertThat(startSucceeding.any()).isTrue();
+    assertThat(startSucceeding.filterByType(Gateway.class).first()).isNull();
+    assertThat(startSucceeding.filterByType(Gateway.class).any()).isFalse();
+  }
+
+  @Test
+  public void testIterator() {
+    List<FlowNode> iterated = new ArrayList<FlowNode>();
+    for (FlowNode flowNode : gateway2Succeeding.filterByType(Task.class)) {
+      iterated.add(flowNode);
+    }
+    assertThat(iterated).isEqualTo(gateway2Succeeding.filterByType(Task.class).list());
+  }
+
+  @Test
+  public void testStopEvaluationEarly() {
+    CountingList elements = new CountingList(gateway2Succeeding.list());
+    Query<Task> query = new QueryImpl<FlowNode>(elements).filterByType(Task.class);
+
+    assertThat(query.any()).isTrue();
+    assertThat(elements.iterated).isEqualTo(1);
+
+    elements.iterated = 0;
+    assertThat(query.limit(2).count()).isEqualTo(2);
+    assertThat(elements.iterated).isEqualTo(2);
+
+    elements.iterated = 0;
+    try {
+      query.singleResult();
+      fail("more than one task expected");
+    }
+    catch (BpmnModelException e) {
+      assertThat(e).hasMessageEndingWith("<3>");
+    }
+  }
+
+  @Test
+  public void testEvaluateLazily() {
+    List<FlowNode> elements = new ArrayList<FlowNode>();
+    Query<Task> query = new QueryImpl<FlowNode>(elements).filterByType(Task.class);
+    assertThat(query.count()).isZero();
+
+    elements.addAll(gateway2Succeeding.list());
+    assertThat(query.count()).isEqualTo(3);
+  }
+
+  protected static class CountingList extends ArrayList<FlowNode> {
+
+    private static final long serialVersionUID = 1L;
+
+    protected int iterated = 0;
+
+    public CountingList(Collection<FlowNode> elements) {
+      super(elements);
+    }
+
+    public Iterator<FlowNode> iterator() {
+      final Iterator<FlowNode> iterator = super.iterator();
+      return new Iterator<FlowNode>() {
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+        public FlowNode next() {
+          iterated++;
+          return iterator.next();
+        }
+        public void remove() {
+          iterator.remove();
+        }
+      };
+    }
+  }
 }
@@ -0,0 +1,177 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.xml.impl.util.IoUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReadModelsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  protected ExecutorService executor;
+
+  @Before
+  public void createExecutor() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void shutdownExecutor() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldReadFilesConcurrently() throws IOException {
+    List<File> files = new ArrayList<File>();
+    for (int i = 0; i < 20; i++) {
+      File file = folder.newFile("process" + i + ".bpmn");
+      Bpmn.writeModelToFile(file, Bpmn.createExecutableProcess("process" + i).startEvent().endEvent().done());
+      files.add(file);
+    }
+
+    Map<File, BpmnReadResult> results = Bpmn.readModels(files, executor);
+
+    assertThat(results.keySet()).containsExactlyElementsOf(files);
+    for (int i = 0; i < files.size(); i++) {
+      BpmnReadResult result = results.get(files.get(i));
+      assertThat(result.isSuccessful()).isTrue();
+      assertThat(result.getException()).isNull();
+      Process process = result.getModelInstance().getModelElementById("process" + i);
+      assertThat(process).isNotNull();
+    }
+  }
+
+  @Test
+  public void shouldReportErrorsPerFile() throws IOException {
+    File validFile = folder.newFile("valid.bpmn");
+    Bpmn.writeModelToFile(validFile, Bpmn.createProcess("process").done());
+    File invalidFile = folder.newFile("invalid.bpmn");
+    writeString(invalidFile, "<definitions");
+    File missingFile = new File(folder.getRoot(), "missing.bpmn");
+
+    List<File> files = new ArrayList<File>();
+    files.add(validFile);
+    files.add(invalidFile);
+    files.add(missingFile);
+
+    Map<File, BpmnReadResult> results = Bpmn.readModels(files, executor);
+
+    assertThat(results.get(validFile).isSuccessful()).isTrue();
+    assertThat(results.get(invalidFile).isSuccessful()).isFalse();
+    assertThat(results.get(invalidFile).getModelInstance()).isNull();
+    assertThat(results.get(invalidFile).getException()).isNotNull();
+    assertThat(results.get(missingFile).getException()).isInstanceOf(BpmnModelException.class);
+  }
+
+  @Test
+  public void shouldReportUnexpectedExceptionsPerFile() throws IOException {
+    File firstFile = folder.newFile("first.bpmn");
+    Bpmn.writeModelToFile(firstFile, Bpmn.createProcess("first").done());
+    File secondFile = folder.newFile("second.bpmn");
+    Bpmn.writeModelToFile(secondFile, Bpmn.createProcess("second").done());
+
+    List<File> files = new ArrayList<File>();
+    files.add(firstFile);
+    files.add(null);
+    files.add(secondFile);
+
+    Map<File, BpmnReadResult> results = Bpmn.readModels(files, executor);
+
+    assertThat(results).hasSize(3);
+    assertThat(results.get(firstFile).getModelInstance().getModelElementById("first")).isNotNull();
+    assertThat(results.get(secondFile).getModelInstance().getModelElementById("second")).isNotNull();
+    BpmnReadResult failedResult = results.get(null);
+    assertThat(failedResult.isSuccessful()).isFalse();
+    assertThat(failedResult.getException()).isInstanceOf(BpmnModelException.class);
+    assertThat(failedResult.getException().getCause()).isInstanceOf(NullPointerException.class);
+  }
+
+  @Test
+  public void shouldReadBpmnEntriesOfZipFile() throws IOException {
+    File zipFile = folder.newFile("archive.zip");
+    ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipFile));
+    try {
+      zip.putNextEntry(new ZipEntry("processes/"));
+      zip.closeEntry();
+      addEntry(zip, "processes/first.bpmn", "ProcessTest.shouldImportProcess.bpmn");
+      addEntry(zip, "second.bpmn20.xml", "BpmnDiTest.xml");
+      addEntry(zip, "broken.bpmn", null);
+      addEntry(zip, "readme.xml", "BpmnDiTest.xml");
+    }
+    finally {
+      zip.close();
+    }
+
+    Map<String, BpmnReadResult> results = Bpmn.readModelsFromZip(zipFile, executor);
+
+    assertThat(results.keySet()).containsExactly("processes/first.bpmn", "second.bpmn20.xml", "broken.bpmn");
+    assertThat(results.get("processes/first.bpmn").getModelInstance().getDefinitions().getTargetNamespace())
+      .isEqualTo("http://camunda.org/test");
+    assertThat(results.get("second.bpmn20.xml").getModelInstance().getModelElementById("process2")).isNotNull();
+    assertThat(results.get("broken.bpmn").isSuccessful()).isFalse();
+  }
+
+  protected void addEntry(ZipOutputStream zip, String name, String resource) throws IOException {
+    zip.putNextEntry(new ZipEntry(name));
+    if (resource == null) {
+      zip.write("<definitions".getBytes("UTF-8"));
+    }
+    else {
+      InputStream inputStream = ReadModelsTest.class.getResourceAsStream(resource);
+      try {
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+          zip.write(buffer, 0, read);
+        }
+      }
+      finally {
+        IoUtil.closeSilently(inputStream);
+      }
+    }
+    zip.closeEntry();
+  }
+
+  protected void writeString(File file, String content) throws IOException {
+    OutputStream outputStream = new FileOutputStream(file);
+    try {
+      outputStream.write(content.getBytes("UTF-8"));
+    }
+    finally {
+      IoUtil.closeSilently(outputStream);
+    }
+  }
+
+}
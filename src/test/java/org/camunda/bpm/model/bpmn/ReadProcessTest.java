@@ -0,0 +1,143 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.camunda.bpm.model.bpmn.instance.Collaboration;
+import org.camunda.bpm.model.bpmn.instance.Error;
+import org.camunda.bpm.model.bpmn.instance.ItemDefinition;
+import org.camunda.bpm.model.bpmn.instance.Message;
+import org.camunda.bpm.model.bpmn.instance.MessageEventDefinition;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.Signal;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnDiagram;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnEdge;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.camunda.bpm.model.xml.ModelParseException;
+import org.junit.Test;
+
+public class ReadProcessTest {
+
+  protected static final String MODEL =
+    "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" xmlns:tns=\"test\" targetNamespace=\"test\">" +
+      "<itemDefinition id=\"item\" structureRef=\"string\"/>" +
+      "<message id=\"message\" itemRef=\"tns:item\"/>" +
+      "<message id=\"unusedMessage\"/>" +
+      "<signal id=\"signal\"/>" +
+      "<error id=\"error\"/>" +
+      "<process id=\"process1\">" +
+        "<startEvent id=\"start1\"><messageEventDefinition messageRef=\"tns:message\"/></startEvent>" +
+        "<intermediateThrowEvent id=\"throw1\"><signalEventDefinition signalRef=\"signal\"/></intermediateThrowEvent>" +
+      "</process>" +
+      "<process id=\"process2\">" +
+        "<endEvent id=\"end2\"><errorEventDefinition errorRef=\"error\"/></endEvent>" +
+      "</process>" +
+    "</definitions>";
+
+  @Test
+  public void shouldReadSingleProcess() {
+    BpmnModelInstance modelInstance = readCollaborationProcess(ParseOptions.defaults());
+
+    assertThat(modelInstance.getModelElementsByType(Process.class)).hasSize(1);
+    assertThat(modelInstance.getModelElementsByType(Collaboration.class)).isEmpty();
+    assertThat(modelInstance.getModelElementById("process1")).isNull();
+    assertThat(modelInstance.getModelElementById("serviceTask1")).isNull();
+
+    Process process = modelInstance.getModelElementById("process2");
+    assertThat(process.getFlowElements()).hasSize(7);
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask3");
+    assertThat(serviceTask.getIncoming().iterator().next().getSource().getId()).isEqualTo("ServiceTask_2");
+
+    Bpmn.validateModel(modelInstance);
+  }
+
+  @Test
+  public void shouldKeepDiagramOfProcess() {
+    BpmnModelInstance modelInstance = readCollaborationProcess(ParseOptions.defaults());
+
+    BpmnDiagram diagram = modelInstance.getModelElementsByType(BpmnDiagram.class).iterator().next();
+    assertThat(diagram.getBpmnPlane().getBpmnElement().getId()).isEqualTo("process2");
+    assertThat(modelInstance.getModelElementsByType(BpmnShape.class)).hasSize(4);
+    assertThat(modelInstance.getModelElementsByType(BpmnEdge.class)).hasSize(3);
+    assertThat(modelInstance.getModelElementById("BPMNEdge_MessageFlow_1")).isNull();
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask3");
+    assertThat(serviceTask.getDiagramElement().getId()).isEqualTo("_BPMNShape_ServiceTask_4");
+  }
+
+  @Test
+  public void shouldSkipDiagram() {
+    BpmnModelInstance modelInstance = readCollaborationProcess(ParseOptions.defaults().skipDiagrams(true));
+
+    assertThat(modelInstance.getModelElementsByType(BpmnDiagram.class)).isEmpty();
+    assertThat(modelInstance.getModelElementById("serviceTask3")).isNotNull();
+    Bpmn.validateModel(modelInstance);
+  }
+
+  @Test
+  public void shouldKeepReferencedRootElements() {
+    BpmnModelInstance modelInstance = Bpmn.readProcess(stream(MODEL), "process1");
+
+    Message message = modelInstance.getModelElementById("message");
+    assertThat(message.getItem().getId()).isEqualTo("item");
+    assertThat(modelInstance.getModelElementsByType(Message.class)).hasSize(1);
+    assertThat(modelInstance.getModelElementsByType(ItemDefinition.class)).hasSize(1);
+    assertThat(modelInstance.getModelElementsByType(Signal.class)).hasSize(1);
+    assertThat(modelInstance.getModelElementsByType(Error.class)).isEmpty();
+
+    MessageEventDefinition messageEventDefinition = modelInstance.getModelElementsByType(MessageEventDefinition.class).iterator().next();
+    assertThat(messageEventDefinition.getMessage()).isEqualTo(message);
+    Bpmn.validateModel(modelInstance);
+  }
+
+  @Test
+  public void shouldFailForUnknownProcess() {
+    try {
+      Bpmn.readProcess(stream(MODEL), "unknown");
+      fail("exception expected");
+    }
+    catch (BpmnModelException e) {
+      assertThat(e).hasMessageContaining("unknown");
+    }
+  }
+
+  @Test
+  public void shouldValidateSkippedProcesses() {
+    String invalidModel = MODEL.replace("<endEvent id=\"end2\">", "<endEvent id=\"end2\"><unknownElement/>");
+    try {
+      Bpmn.readProcess(stream(invalidModel), "process1");
+      fail("exception expected");
+    }
+    catch (ModelParseException e) {
+      // expected
+    }
+
+    BpmnModelInstance modelInstance = Bpmn.readProcess(stream(invalidModel), "process1", ParseOptions.trusted());
+    assertThat(modelInstance.getModelElementById("process1")).isNotNull();
+  }
+
+  protected BpmnModelInstance readCollaborationProcess(ParseOptions parseOptions) {
+    return Bpmn.readProcess(getClass().getResourceAsStream("CollaborationParserTest.bpmn"), "process2", parseOptions);
+  }
+
+  protected static InputStream stream(String xml) {
+    return new ByteArrayInputStream(xml.getBytes());
+  }
+
+}
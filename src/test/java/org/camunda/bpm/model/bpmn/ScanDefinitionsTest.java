@@ -0,0 +1,115 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.camunda.bpm.model.xml.ModelParseException;
+import org.camunda.bpm.model.xml.impl.util.IoUtil;
+import org.junit.Test;
+
+public class ScanDefinitionsTest {
+
+  @Test
+  public void shouldScanDefinitionsAndProcesses() {
+    DefinitionsSummary definitions = scan("BpmnDiTest.xml");
+
+    assertThat(definitions.getId()).isEqualTo("_1mnnUKkcEeOb8dj6bo70eQ");
+    assertThat(definitions.getTargetNamespace()).isEqualTo("http://activiti.org/bpmn");
+    assertThat(definitions.getProcesses()).hasSize(2);
+
+    ProcessSummary process = definitions.getProcesses().get(0);
+    assertThat(process.getId()).isEqualTo("process1");
+    assertThat(process.getName()).isNull();
+    assertThat(process.isExecutable()).isFalse();
+    assertThat(process.getCamundaAttributes()).isEmpty();
+    assertThat(process.getCalledElements()).isEmpty();
+
+    assertThat(definitions.getProcess("process2")).isNotNull();
+    assertThat(definitions.getProcess("unknown")).isNull();
+  }
+
+  @Test
+  public void shouldScanCamundaAttributesAndCalledElements() {
+    DefinitionsSummary definitions = scan("CamundaExtensionsTest.xml");
+
+    assertThat(definitions.getId()).isNull();
+    assertThat(definitions.getTargetNamespace()).isEqualTo("http://camunda.org/test");
+
+    ProcessSummary process = definitions.getProcess("process");
+    assertThat(process.getCamundaAttribute("candidateStarterGroups")).isEqualTo("group1, ${group2(a, b)}, group3");
+    assertThat(process.getCamundaAttribute("candidateStarterUsers")).isEqualTo("user1, ${user2(a, b)}, user3");
+    assertThat(process.getCalledElements()).isEmpty();
+  }
+
+  @Test
+  public void shouldMatchParsedModel() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .name("Process")
+      .startEvent()
+      .callActivity().calledElement("first")
+      .subProcess().embeddedSubProcess()
+        .startEvent()
+        .callActivity().calledElement("second")
+        .endEvent()
+      .subProcessDone()
+      .endEvent()
+      .done();
+
+    String xml = Bpmn.convertToString(modelInstance);
+    DefinitionsSummary definitions = Bpmn.scanDefinitions(new ByteArrayInputStream(xml.getBytes()));
+
+    ProcessSummary process = definitions.getProcess("process");
+    assertThat(process.getName()).isEqualTo("Process");
+    assertThat(process.isExecutable()).isTrue();
+    assertThat(process.getCalledElements()).containsExactly("first", "second");
+    assertThat(definitions.getCalledElements()).containsExactly("first", "second");
+  }
+
+  @Test
+  public void shouldRejectNonBpmnDocument() {
+    try {
+      Bpmn.scanDefinitions(new ByteArrayInputStream("<foo/>".getBytes()));
+      fail("exception expected");
+    }
+    catch (ModelParseException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void shouldRejectMalformedDocument() {
+    try {
+      Bpmn.scanDefinitions(new ByteArrayInputStream("<definitions".getBytes()));
+      fail("exception expected");
+    }
+    catch (ModelParseException e) {
+      // expected
+    }
+  }
+
+  protected DefinitionsSummary scan(String resource) {
+    InputStream inputStream = ScanDefinitionsTest.class.getResourceAsStream(resource);
+    try {
+      return Bpmn.scanDefinitions(inputStream);
+    }
+    finally {
+      IoUtil.closeSilently(inputStream);
+    }
+  }
+
+}
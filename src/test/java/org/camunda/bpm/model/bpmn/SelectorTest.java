@@ -0,0 +1,155 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.CAMUNDA_NS;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.camunda.bpm.model.bpmn.instance.BaseElement;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SelectorTest {
+
+  protected BpmnModelInstance modelInstance;
+
+  @Before
+  public void createModel() {
+    modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .serviceTask("serviceTask1").camundaAsyncBefore()
+      .subProcess("subProcess1")
+        .embeddedSubProcess()
+          .startEvent("subStart1")
+          .serviceTask("serviceTask2").camundaAsyncBefore()
+          .subProcess("subProcess2")
+            .embeddedSubProcess()
+              .startEvent("subStart2")
+              .serviceTask("serviceTask3")
+              .userTask("userTask1").name("Review")
+              .endEvent("subEnd2")
+          .subProcessDone()
+          .endEvent("subEnd1")
+      .subProcessDone()
+      .userTask("userTask2").name("Approve")
+      .endEvent("end")
+      .done();
+  }
+
+  @Test
+  public void shouldSelectElementsOfType() {
+    assertThat(getIds(Bpmn.select(modelInstance, "serviceTask"))).containsExactly("serviceTask1", "serviceTask2", "serviceTask3");
+    assertThat(getIds(Bpmn.select(modelInstance, "activity"))).contains("serviceTask1", "subProcess2", "userTask2");
+    assertThat(Bpmn.select(modelInstance, "scriptTask").any()).isFalse();
+  }
+
+  @Test
+  public void shouldSelectDescendants() {
+    assertThat(getIds(Bpmn.select(modelInstance, "subProcess serviceTask"))).containsExactly("serviceTask2", "serviceTask3");
+    assertThat(getIds(Bpmn.select(modelInstance, "subProcess subProcess userTask"))).containsExactly("userTask1");
+    assertThat(getIds(Bpmn.select(modelInstance, "process  subProcess"))).containsOnly("subProcess1", "subProcess2");
+  }
+
+  @Test
+  public void shouldSelectChildren() {
+    assertThat(getIds(Bpmn.select(modelInstance, "process > serviceTask"))).containsExactly("serviceTask1");
+    assertThat(getIds(Bpmn.select(modelInstance, "process>subProcess>serviceTask"))).containsExactly("serviceTask2");
+    assertThat(getIds(Bpmn.select(modelInstance, "process > subProcess serviceTask"))).containsExactly("serviceTask2", "serviceTask3");
+  }
+
+  @Test
+  public void shouldSelectByAttributes() {
+    assertThat(getIds(Bpmn.select(modelInstance, "serviceTask[camunda:asyncBefore=true]"))).containsExactly("serviceTask1", "serviceTask2");
+    assertThat(getIds(Bpmn.select(modelInstance, "subProcess serviceTask[camunda:asyncBefore='true']"))).containsExactly("serviceTask2");
+    assertThat(getIds(Bpmn.select(modelInstance, "userTask[name=\"Review\"]"))).containsExactly("userTask1");
+    assertThat(getIds(Bpmn.select(modelInstance, "*[name]"))).containsOnly("userTask1", "userTask2");
+    assertThat(getIds(Bpmn.select(modelInstance, "[ id = serviceTask3 ]"))).containsExactly("serviceTask3");
+  }
+
+  @Test
+  public void shouldSelectWithAttributeIndex() {
+    List<String> expected = getIds(Bpmn.select(modelInstance, "subProcess *[camunda:asyncBefore=true]"));
+
+    modelInstance.indexAttribute(CAMUNDA_NS, "asyncBefore");
+    assertThat(getIds(Bpmn.select(modelInstance, "subProcess *[camunda:asyncBefore=true]"))).isEqualTo(expected).containsExactly("serviceTask2");
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask3");
+    serviceTask.setCamundaAsyncBefore(true);
+    assertThat(getIds(Bpmn.select(modelInstance, "subProcess *[camunda:asyncBefore=true]"))).containsOnly("serviceTask2", "serviceTask3");
+  }
+
+  @Test
+  public void shouldSelectDescendantsOfScope() {
+    SubProcess subProcess = modelInstance.getModelElementById("subProcess2");
+    Selector selector = Bpmn.compileSelector("subProcess serviceTask");
+
+    assertThat(getIds(selector.select(subProcess))).containsExactly("serviceTask3");
+    assertThat(getIds(Bpmn.compileSelector("*[id]").select(subProcess))).hasSize(7);
+  }
+
+  @Test
+  public void shouldSelectFromFrozenModel() {
+    BpmnModelInstance frozenInstance = modelInstance.freeze();
+    assertThat(getIds(Bpmn.select(frozenInstance, "subProcess > serviceTask"))).containsExactly("serviceTask2", "serviceTask3");
+  }
+
+  @Test
+  public void shouldCacheCompiledSelectors() {
+    Selector selector = Bpmn.compileSelector("subProcess > serviceTask");
+    assertThat(selector.getExpression()).isEqualTo("subProcess > serviceTask");
+    assertThat(Bpmn.compileSelector("subProcess > serviceTask")).isSameAs(selector);
+  }
+
+  @Test
+  public void shouldRejectInvalidSelectors() {
+    assertInvalid("", "position 0");
+    assertInvalid("unknownElement", "unknown element type 'unknownElement'");
+    assertInvalid("foo:task", "unknown namespace prefix 'foo'");
+    assertInvalid("> task", "position 0");
+    assertInvalid("task >", "element selector expected");
+    assertInvalid("task[name", "']' expected");
+    assertInvalid("task[name='x]", "unterminated attribute value");
+    assertInvalid("task,userTask", "unexpected character ','");
+  }
+
+  protected void assertInvalid(String expression, String message) {
+    try {
+      Bpmn.compileSelector(expression);
+      fail("exception expected");
+    }
+    catch (BpmnModelException e) {
+      assertThat(e.getMessage()).contains(message);
+    }
+  }
+
+  protected List<String> getIds(Query<ModelElementInstance> query) {
+    return getIds(query.list());
+  }
+
+  protected List<String> getIds(Collection<? extends ModelElementInstance> elements) {
+    List<String> ids = new ArrayList<String>();
+    for (ModelElementInstance element : elements) {
+      ids.add(((BaseElement) element).getId());
+    }
+    return ids;
+  }
+
+}
@@ -0,0 +1,162 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.camunda.bpm.model.bpmn.instance.Documentation;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.camunda.bpm.model.xml.impl.util.IoUtil;
+import org.junit.Test;
+
+public class SnapshotTest {
+
+  @Test
+  public void shouldRoundTripParsedModel() {
+    for (String resource : Arrays.asList("BpmnDiTest.xml", "CamundaExtensionsTest.xml", "CollaborationParserTest.bpmn", "DataObjectTest.bpmn")) {
+      BpmnModelInstance modelInstance = readModel(resource);
+      BpmnModelInstance snapshotInstance = roundTrip(modelInstance);
+
+      String expected = Bpmn.convertToString(modelInstance, WriteOptions.defaults().prettyPrint(false).validation(WriteOptions.ValidationMode.NONE));
+      String actual = Bpmn.convertToString(snapshotInstance, WriteOptions.defaults().prettyPrint(false).validation(WriteOptions.ValidationMode.NONE));
+      assertThat(actual).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void shouldResolveIdsAndReferences() {
+    BpmnModelInstance modelInstance = roundTrip(readModel("BpmnDiTest.xml"));
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    assertThat(serviceTask.getIncoming()).hasSize(1);
+
+    SequenceFlow sequenceFlow = modelInstance.getModelElementById("sequenceFlow2");
+    assertThat(sequenceFlow.getSource()).isEqualTo(serviceTask);
+
+    FlowNode previousNode = serviceTask.getPreviousNodes().singleResult();
+    assertThat(previousNode.getId()).isEqualTo("exclusiveGateway");
+
+    BpmnShape shape = modelInstance.getModelElementById("_BPMNShape_ServiceTask_9");
+    assertThat(shape.getBpmnElement()).isEqualTo(serviceTask);
+    assertThat(serviceTask.getDiagramElement()).isEqualTo(shape);
+
+    assertThat(modelInstance.getModelElementsByType(Process.class)).hasSize(2);
+    Bpmn.validateModel(modelInstance);
+  }
+
+  @Test
+  public void shouldRoundTripBuiltModel() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent()
+      .userTask("task").name("äöü €\n\"quoted\"")
+      .endEvent()
+      .done();
+    UserTask userTask = modelInstance.getModelElementById("task");
+    Documentation documentation = modelInstance.newInstance(Documentation.class);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      text.append((char) ('a' + i % 26));
+    }
+    documentation.setTextContent(text.toString());
+    userTask.getDocumentations().add(documentation);
+
+    BpmnModelInstance snapshotInstance = roundTrip(modelInstance);
+
+    assertThat(Bpmn.convertToString(snapshotInstance)).isEqualTo(Bpmn.convertToString(modelInstance));
+    UserTask snapshotTask = snapshotInstance.getModelElementById("task");
+    assertThat(snapshotTask.getName()).isEqualTo(userTask.getName());
+    assertThat(snapshotTask.getDocumentations().iterator().next().getTextContent()).isEqualTo(text.toString());
+  }
+
+  @Test
+  public void shouldBeSmallerThanXml() {
+    BpmnModelInstance modelInstance = readModel("CamundaExtensionsTest.xml");
+    ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+    Bpmn.writeSnapshot(modelInstance, snapshot);
+
+    String xml = Bpmn.convertToString(modelInstance, WriteOptions.defaults().validation(WriteOptions.ValidationMode.NONE));
+    assertThat(snapshot.size()).isLessThan(xml.length());
+  }
+
+  @Test
+  public void shouldReadNoFurtherThanSnapshot() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    Bpmn.writeSnapshot(readModel("BpmnDiTest.xml"), outputStream);
+    Bpmn.writeSnapshot(readModel("CamundaExtensionsTest.xml"), outputStream);
+    outputStream.write(42);
+    InputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+
+    assertThat(Bpmn.readSnapshot(inputStream).getModelElementById("serviceTask")).isNotNull();
+    assertThat(Bpmn.readSnapshot(inputStream).getDefinitions()).isNotNull();
+    assertThat(inputStream.read()).isEqualTo(42);
+  }
+
+  @Test
+  public void shouldRejectInvalidSnapshot() {
+    assertRejected(new byte[] { 1, 2, 3, 4, 5 });
+    assertRejected(new byte[0]);
+
+    ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+    Bpmn.writeSnapshot(readModel("BpmnDiTest.xml"), snapshot);
+    byte[] bytes = snapshot.toByteArray();
+
+    byte[] otherVersion = bytes.clone();
+    otherVersion[4] = 2;
+    assertRejected(otherVersion);
+
+    byte[] otherTypes = bytes.clone();
+    otherTypes[5] ^= 1;
+    assertRejected(otherTypes);
+
+    assertRejected(Arrays.copyOf(bytes, bytes.length / 2));
+  }
+
+  protected void assertRejected(byte[] snapshot) {
+    try {
+      Bpmn.readSnapshot(new ByteArrayInputStream(snapshot));
+      fail("exception expected");
+    }
+    catch (BpmnModelException e) {
+      // expected
+    }
+  }
+
+  protected BpmnModelInstance roundTrip(BpmnModelInstance modelInstance) {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    Bpmn.writeSnapshot(modelInstance, outputStream);
+    return Bpmn.readSnapshot(new ByteArrayInputStream(outputStream.toByteArray()));
+  }
+
+  protected BpmnModelInstance readModel(String resource) {
+    InputStream inputStream = SnapshotTest.class.getResourceAsStream(resource);
+    try {
+      return Bpmn.readModelFromStream(inputStream, ParseOptions.trusted());
+    }
+    finally {
+      IoUtil.closeSilently(inputStream);
+    }
+  }
+
+}
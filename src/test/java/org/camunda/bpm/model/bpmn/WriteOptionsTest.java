@@ -0,0 +1,190 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN20_NS;
+
+import java.util.Collections;
+
+import org.camunda.bpm.model.bpmn.WriteOptions.ValidationMode;
+import org.camunda.bpm.model.bpmn.impl.BpmnModelInstanceImpl;
+import org.camunda.bpm.model.bpmn.impl.BpmnParser;
+import org.camunda.bpm.model.bpmn.impl.DirtyElementTracker;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.xml.ModelValidationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class WriteOptionsTest {
+
+  protected static final WriteOptions DIRTY_ONLY = WriteOptions.defaults().validation(ValidationMode.DIRTY_ONLY);
+
+  protected BpmnModelInstance modelInstance;
+  protected Document document;
+
+  @Before
+  public void createModel() {
+    modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .userTask("task")
+      .endEvent("end")
+      .done();
+    document = (Document) modelInstance.getDocument().getDomSource().getNode();
+  }
+
+  @Test
+  public void shouldValidateFullyByDefault() {
+    assertThat(WriteOptions.defaults().getValidationMode()).isEqualTo(ValidationMode.FULL);
+    assertThat(WriteOptions.defaults().isPrettyPrint()).isTrue();
+
+    addInvalidAttribute("task");
+    assertInvalid(WriteOptions.defaults());
+  }
+
+  @Test
+  public void shouldSkipValidation() {
+    addInvalidAttribute("task");
+
+    String xml = Bpmn.convertToString(modelInstance, WriteOptions.defaults().validation(ValidationMode.NONE));
+    assertThat(xml).contains("invalid=\"true\"");
+  }
+
+  @Test
+  public void shouldValidateWholeModelOnFirstDirtyOnlyValidation() {
+    addInvalidAttribute("task");
+    assertInvalid(DIRTY_ONLY);
+
+    // the model is still validated completely as long as it is invalid
+    assertInvalid(DIRTY_ONLY);
+
+    document.getElementById("task").removeAttribute("invalid");
+    Bpmn.convertToString(modelInstance, DIRTY_ONLY);
+  }
+
+  @Test
+  public void shouldValidateChangedElements() {
+    Bpmn.convertToString(modelInstance, DIRTY_ONLY);
+
+    UserTask userTask = modelInstance.getModelElementById("task");
+    userTask.setName("changed");
+    Bpmn.convertToString(modelInstance, DIRTY_ONLY);
+
+    addInvalidAttribute("task");
+    assertInvalid(DIRTY_ONLY);
+    // the element stays dirty until it is valid again
+    assertInvalid(DIRTY_ONLY);
+
+    document.getElementById("task").removeAttribute("invalid");
+    Bpmn.convertToString(modelInstance, DIRTY_ONLY);
+  }
+
+  @Test
+  public void shouldValidateInsertedElements() {
+    Bpmn.convertToString(modelInstance, DIRTY_ONLY);
+
+    Element process = document.getElementById("process");
+    Element unknown = document.createElementNS(BPMN20_NS, "unknownElement");
+    process.appendChild(unknown);
+    assertInvalid(DIRTY_ONLY);
+
+    process.removeChild(unknown);
+    Bpmn.convertToString(modelInstance, DIRTY_ONLY);
+  }
+
+  @Test
+  public void shouldValidateChangedText() {
+    Bpmn.convertToString(modelInstance, DIRTY_ONLY);
+
+    Element outgoing = (Element) document.getElementById("start").getElementsByTagNameNS(BPMN20_NS, "outgoing").item(0);
+    outgoing.getFirstChild().setNodeValue("not a valid QName");
+    assertInvalid(DIRTY_ONLY);
+  }
+
+  @Test
+  public void shouldOnlyValidateChangedSubtrees() {
+    Bpmn.convertToString(modelInstance, DIRTY_ONLY);
+    DirtyElementTracker tracker = ((BpmnModelInstanceImpl) modelInstance).getDirtyElementTracker();
+
+    // invalidate an element without tracking the change
+    ((BpmnModelInstanceImpl) modelInstance).getMutationEvents().removeListener(tracker);
+    addInvalidAttribute("end");
+    ((BpmnModelInstanceImpl) modelInstance).getMutationEvents().addListener(tracker);
+
+    UserTask userTask = modelInstance.getModelElementById("task");
+    userTask.setName("changed");
+    assertThat(tracker.getDirtyElements()).containsExactly(document.getElementById("task"));
+
+    Bpmn.convertToString(modelInstance, DIRTY_ONLY);
+    assertThat(tracker.getDirtyElements()).isEmpty();
+    assertInvalid(WriteOptions.defaults());
+  }
+
+  @Test
+  public void shouldOnlyValidateChangedSubtreesOfCopyOnWriteModel() {
+    BpmnModelInstanceImpl copy = (BpmnModelInstanceImpl) modelInstance.freeze().copyOnWrite();
+    Bpmn.convertToString(copy, DIRTY_ONLY);
+    DirtyElementTracker tracker = copy.getDirtyElementTracker();
+    assertThat(tracker).isNotNull();
+    assertThat(tracker.isDocumentDirty()).isFalse();
+
+    UserTask userTask = copy.getModelElementById("task");
+    userTask.setName("changed");
+    Document copyDocument = (Document) copy.getDocument().getDomSource().getNode();
+    assertThat(tracker.getDirtyElements()).containsExactly(copyDocument.getElementById("task"));
+
+    Bpmn.convertToString(copy, DIRTY_ONLY);
+    assertThat(tracker.getDirtyElements()).isEmpty();
+
+    userTask.setAttributeValue("invalid", "true");
+    try {
+      Bpmn.convertToString(copy, DIRTY_ONLY);
+      fail("exception expected");
+    }
+    catch (ModelValidationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void shouldValidateSubtreeOfNearestGlobalElement() {
+    BpmnParser parser = new BpmnParser();
+    assertThat(BpmnParser.getGlobalElementNames())
+      .contains("{" + BPMN20_NS + "}userTask", "{" + BPMN20_NS + "}definitions")
+      .doesNotContain("{" + BPMN20_NS + "}outgoing");
+
+    Element outgoing = (Element) document.getElementById("task").getElementsByTagNameNS(BPMN20_NS, "outgoing").item(0);
+    addInvalidAttribute("end");
+
+    // only the user task is validated, the reference to the end event is not resolved
+    parser.validateElements(modelInstance.getDocument(), Collections.singletonList(outgoing));
+  }
+
+  protected void addInvalidAttribute(String id) {
+    document.getElementById(id).setAttribute("invalid", "true");
+  }
+
+  protected void assertInvalid(WriteOptions writeOptions) {
+    try {
+      Bpmn.convertToString(modelInstance, writeOptions);
+      fail("exception expected");
+    }
+    catch (ModelValidationException e) {
+      // expected
+    }
+  }
+
+}
@@ -23,6 +23,7 @@ import org.camunda.bpm.model.bpmn.instance.BusinessRuleTask;
 import org.camunda.bpm.model.bpmn.instance.CallActivity;
 import org.camunda.bpm.model.bpmn.instance.Definitions;
 import org.camunda.bpm.model.bpmn.instance.Event;
+import org.camunda.bpm.model.bpmn.instance.ExclusiveGateway;
 import org.camunda.bpm.model.bpmn.instance.FlowNode;
 import org.camunda.bpm.model.bpmn.instance.Gateway;
 import org.camunda.bpm.model.bpmn.instance.Process;
@@ -377,6 +378,30 @@ public class ProcessBuilderTest {
       .done();
   }
 
+  @Test
+  public void testMoveToLastGatewayAfterJoin() {
+    modelInstance = Bpmn.createProcess()
+      .startEvent()
+      .exclusiveGateway("split")
+        .userTask("task1")
+        .userTask("merge")
+      .moveToNode("split")
+        .userTask("task2")
+        .connectTo("merge")
+      .serviceTask("after")
+      .moveToLastGateway()
+        .userTask("task3")
+        .connectTo("merge")
+      .moveToNode("after")
+      .endEvent()
+      .done();
+
+    ExclusiveGateway split = modelInstance.getModelElementById("split");
+    assertThat(split.getOutgoing()).hasSize(3);
+    UserTask merge = modelInstance.getModelElementById("merge");
+    assertThat(merge.getIncoming()).hasSize(3);
+  }
+
   @Test
   public void testTaskCamundaExtensions() {
     modelInstance = Bpmn.createProcess()
@@ -0,0 +1,151 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.junit.Test;
+
+public class DominatorTreeTest {
+
+  @Test
+  public void shouldFindDominatorsAndPostDominators() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .exclusiveGateway("loop")
+      .parallelGateway("fork")
+        .userTask("task1")
+        .parallelGateway("join")
+        .exclusiveGateway("retry")
+          .connectTo("loop")
+        .moveToNode("retry")
+          .endEvent("end")
+      .moveToNode("fork")
+        .userTask("task2")
+        .connectTo("join")
+      .done();
+    Process process = modelInstance.getModelElementById("process");
+    DominatorTree dominators = DominatorTree.of(process);
+    FlowGraph graph = dominators.getGraph();
+    int start = graph.indexOf("start");
+    int fork = graph.indexOf("fork");
+    int task1 = graph.indexOf("task1");
+    int task2 = graph.indexOf("task2");
+    int join = graph.indexOf("join");
+    int end = graph.indexOf("end");
+
+    assertThat(dominators.isPostDominatorTree()).isFalse();
+    assertThat(dominators.getRoots()).containsExactly(start);
+    assertThat(dominators.getImmediateDominator(start)).isEqualTo(-1);
+    assertThat(dominators.getImmediateDominator(task1)).isEqualTo(fork);
+    assertThat(dominators.getImmediateDominator(join)).isEqualTo(fork);
+    assertThat(dominators.getImmediateDominator(getNode(modelInstance, "loop")).getId()).isEqualTo("start");
+    assertThat(dominators.dominates(fork, end)).isTrue();
+    assertThat(dominators.dominates(task1, join)).isFalse();
+    assertThat(dominators.dominates(join, join)).isTrue();
+    assertThat(dominators.strictlyDominates(join, join)).isFalse();
+    assertThat(dominators.dominates(getNode(modelInstance, "loop"), getNode(modelInstance, "retry"))).isTrue();
+    assertThat(dominators.getNearestCommonDominator(task1, task2)).isEqualTo(fork);
+    assertThat(dominators.getChildren(fork)).containsOnly(task1, task2, join);
+    assertThat(dominators.getDepth(end)).isEqualTo(5);
+
+    DominatorTree postDominators = DominatorTree.postDominatorsOf(process);
+    assertThat(postDominators.isPostDominatorTree()).isTrue();
+    assertThat(postDominators.getRoots()).containsExactly(end);
+    assertThat(postDominators.getImmediateDominator(fork)).isEqualTo(join);
+    assertThat(postDominators.getImmediateDominator(task2)).isEqualTo(join);
+    assertThat(postDominators.dominates(join, start)).isTrue();
+    assertThat(postDominators.dominates(task1, fork)).isFalse();
+
+    assertThat(DominatorTree.of(process)).isSameAs(dominators);
+    assertThat(DominatorTree.postDominatorsOf(process)).isSameAs(postDominators);
+  }
+
+  @Test
+  public void shouldHandleIrreducibleLoops() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .exclusiveGateway("split")
+        .userTask("task1")
+        .userTask("task2")
+        .connectTo("task1")
+      .moveToNode("split")
+        .connectTo("task2")
+      .moveToNode("task1")
+        .endEvent("end")
+      .done();
+    DominatorTree dominators = DominatorTree.of(modelInstance.<Process>getModelElementById("process"));
+
+    // both nodes of the loop are entries, neither dominates the other
+    assertThat(dominators.getImmediateDominator(getNode(modelInstance, "task1")).getId()).isEqualTo("split");
+    assertThat(dominators.getImmediateDominator(getNode(modelInstance, "task2")).getId()).isEqualTo("split");
+    assertThat(dominators.getImmediateDominator(getNode(modelInstance, "end")).getId()).isEqualTo("task1");
+  }
+
+  @Test
+  public void shouldMatchDefinitionOnRandomGraphs() {
+    for (int seed = 0; seed < 10; seed++) {
+      FlowGraph graph = ReachabilityTest.createRandomGraph(40, 50 + seed * 5, seed);
+      boolean[] noEdges = new boolean[graph.getEdgeCount()];
+
+      for (boolean reverse : new boolean[] { false, true }) {
+        DominatorTree tree = reverse ? graph.getPostDominatorTree() : graph.getDominatorTree();
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+          int dominator = GatewayPairingTest.immediateDominator(graph, noEdges, node, reverse);
+          assertThat(tree.getImmediateDominator(node)).isEqualTo(dominator);
+          for (int other = 0; other < graph.getNodeCount(); other++) {
+            assertThat(tree.dominates(other, node)).isEqualTo(GatewayPairingTest.dominates(graph, noEdges, other, node, reverse));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldBuildDeepTreesWithoutRecursion() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process").done();
+    Process process = modelInstance.getModelElementById("process");
+    int nodeCount = 10000;
+    FlowNode previousTask = null;
+    // append the elements directly, addChildElement searches all children for the position
+    for (int i = 0; i < nodeCount; i++) {
+      Task task = modelInstance.newInstance(Task.class);
+      process.getDomElement().appendChild(task.getDomElement());
+      if (previousTask != null) {
+        SequenceFlow flow = modelInstance.newInstance(SequenceFlow.class);
+        process.getDomElement().appendChild(flow.getDomElement());
+        flow.setSource(previousTask);
+        flow.setTarget(task);
+      }
+      previousTask = task;
+    }
+    FlowGraph graph = FlowGraph.of(process);
+
+    DominatorTree dominators = graph.getDominatorTree();
+    assertThat(dominators.getDepth(nodeCount - 1)).isEqualTo(nodeCount - 1);
+    assertThat(dominators.dominates(0, nodeCount - 1)).isTrue();
+    assertThat(dominators.getNearestCommonDominator(1, nodeCount - 1)).isEqualTo(1);
+    assertThat(graph.getPostDominatorTree().dominates(nodeCount - 1, 0)).isTrue();
+  }
+
+  protected FlowNode getNode(BpmnModelInstance modelInstance, String id) {
+    return modelInstance.getModelElementById(id);
+  }
+
+}
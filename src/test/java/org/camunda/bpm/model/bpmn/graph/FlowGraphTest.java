@@ -0,0 +1,168 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.EndEvent;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlowGraphTest {
+
+  protected BpmnModelInstance modelInstance;
+  protected Process process;
+
+  @Before
+  public void createModel() {
+    modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .exclusiveGateway("split")
+        .userTask("task1")
+        .exclusiveGateway("join")
+        .endEvent("end")
+      .moveToNode("split")
+        .subProcess("subProcess")
+          .embeddedSubProcess()
+            .startEvent("subStart")
+            .serviceTask("subTask")
+            .endEvent("subEnd")
+        .subProcessDone()
+        .connectTo("join")
+      .done();
+    process = modelInstance.getModelElementById("process");
+  }
+
+  @Test
+  public void shouldNumberNodesInDocumentOrder() {
+    FlowGraph graph = FlowGraph.of(process);
+
+    assertThat(graph.getNodeCount()).isEqualTo(6);
+    assertThat(graph.getEdgeCount()).isEqualTo(6);
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      assertThat(graph.indexOf(graph.getNode(node))).isEqualTo(node);
+      assertThat(graph.indexOf(graph.getNode(node).getId())).isEqualTo(node);
+    }
+    assertThat(graph.indexOf("subTask")).isEqualTo(-1);
+    assertThat(graph.indexOf("unknown")).isEqualTo(-1);
+    assertThat(graph.getContainer()).isEqualTo(process);
+  }
+
+  @Test
+  public void shouldStoreSuccessorsAndPredecessors() {
+    FlowGraph graph = FlowGraph.of(process);
+
+    int split = graph.indexOf("split");
+    assertThat(getIds(graph, graph.getSuccessors(split))).containsExactly("task1", "subProcess");
+    assertThat(getIds(graph, graph.getPredecessors(split))).containsExactly("start");
+
+    int join = graph.indexOf("join");
+    assertThat(graph.getPredecessorCount(join)).isEqualTo(2);
+    assertThat(getIds(graph, graph.getPredecessors(join))).containsOnly("task1", "subProcess");
+    assertThat(getIds(graph, graph.getSuccessors(join))).containsExactly("end");
+
+    int end = graph.indexOf("end");
+    assertThat(graph.getSuccessorCount(end)).isEqualTo(0);
+    assertThat(graph.getPredecessorCount(graph.indexOf("start"))).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldStoreSequenceFlowsOfEdges() {
+    FlowGraph graph = FlowGraph.of(process);
+
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      for (int i = 0; i < graph.getSuccessorCount(node); i++) {
+        SequenceFlow flow = graph.getSuccessorFlow(node, i);
+        assertThat(flow.getSource()).isEqualTo(graph.getNode(node));
+        assertThat(flow.getTarget()).isEqualTo(graph.getNode(graph.getSuccessor(node, i)));
+      }
+      for (int i = 0; i < graph.getPredecessorCount(node); i++) {
+        SequenceFlow flow = graph.getPredecessorFlow(node, i);
+        assertThat(flow.getTarget()).isEqualTo(graph.getNode(node));
+        assertThat(flow.getSource()).isEqualTo(graph.getNode(graph.getPredecessor(node, i)));
+      }
+    }
+
+    try {
+      graph.getSuccessor(graph.indexOf("end"), 0);
+      fail("exception expected");
+    }
+    catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void shouldBuildGraphOfSubProcess() {
+    SubProcess subProcess = modelInstance.getModelElementById("subProcess");
+    FlowGraph graph = FlowGraph.of(subProcess);
+
+    assertThat(graph.getNodeCount()).isEqualTo(3);
+    assertThat(getIds(graph, graph.getSuccessors(graph.indexOf("subStart")))).containsExactly("subTask");
+    assertThat(getIds(graph, graph.getSuccessors(graph.indexOf("subTask")))).containsExactly("subEnd");
+    assertThat(graph.indexOf("split")).isEqualTo(-1);
+  }
+
+  @Test
+  public void shouldCacheGraphUntilModelChanges() {
+    FlowGraph graph = FlowGraph.of(process);
+    assertThat(FlowGraph.of(process)).isSameAs(graph);
+
+    EndEvent endEvent = modelInstance.newInstance(EndEvent.class);
+    endEvent.setId("end2");
+    process.addChildElement(endEvent);
+    SequenceFlow flow = modelInstance.newInstance(SequenceFlow.class);
+    flow.setId("flow");
+    process.addChildElement(flow);
+    flow.setSource(modelInstance.<EndEvent>getModelElementById("end"));
+    flow.setTarget(endEvent);
+
+    FlowGraph changedGraph = FlowGraph.of(process);
+    assertThat(changedGraph).isNotSameAs(graph);
+    assertThat(changedGraph.getNodeCount()).isEqualTo(7);
+    assertThat(getIds(changedGraph, changedGraph.getSuccessors(changedGraph.indexOf("end")))).containsExactly("end2");
+    assertThat(graph.getNodeCount()).isEqualTo(6);
+  }
+
+  @Test
+  public void shouldIgnoreFlowsLeavingContainer() {
+    SubProcess subProcess = modelInstance.getModelElementById("subProcess");
+    SequenceFlow flow = modelInstance.newInstance(SequenceFlow.class);
+    flow.setId("leavingFlow");
+    subProcess.addChildElement(flow);
+    flow.setSource(modelInstance.<EndEvent>getModelElementById("subEnd"));
+    flow.setTarget(modelInstance.<EndEvent>getModelElementById("end"));
+
+    FlowGraph graph = FlowGraph.of(subProcess);
+    assertThat(graph.getEdgeCount()).isEqualTo(2);
+    assertThat(graph.getSuccessorCount(graph.indexOf("subEnd"))).isEqualTo(0);
+  }
+
+  protected List<String> getIds(FlowGraph graph, int[] nodes) {
+    List<String> ids = new ArrayList<String>();
+    for (int node : nodes) {
+      ids.add(graph.getNode(node).getId());
+    }
+    return ids;
+  }
+
+}
@@ -0,0 +1,215 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.junit.Test;
+
+public class GatewayPairingTest {
+
+  @Test
+  public void shouldPairNestedSplitsAndJoins() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .parallelGateway("fork")
+        .exclusiveGateway("split")
+          .userTask("task1")
+          .exclusiveGateway("merge")
+          .parallelGateway("join")
+          .endEvent("end")
+        .moveToNode("split")
+          .userTask("task2")
+          .connectTo("merge")
+      .moveToNode("fork")
+        .userTask("task3")
+        .connectTo("join")
+      .done();
+    Process process = modelInstance.getModelElementById("process");
+    GatewayPairing pairing = GatewayPairing.of(process);
+
+    assertThat(pairing.getPairCount()).isEqualTo(2);
+    assertThat(pairing.getJoin(getNode(modelInstance, "fork")).getId()).isEqualTo("join");
+    assertThat(pairing.getSplit(getNode(modelInstance, "join")).getId()).isEqualTo("fork");
+    assertThat(pairing.getJoin(getNode(modelInstance, "split")).getId()).isEqualTo("merge");
+    assertThat(pairing.getSplit(getNode(modelInstance, "merge")).getId()).isEqualTo("split");
+    assertThat(pairing.getJoin(getNode(modelInstance, "task1"))).isNull();
+    assertThat(pairing.getSplit(getNode(modelInstance, "task1"))).isNull();
+
+    assertThat(pairing.getLastGateway(getNode(modelInstance, "task1")).getId()).isEqualTo("split");
+    assertThat(pairing.getLastGateway(getNode(modelInstance, "task3")).getId()).isEqualTo("fork");
+    assertThat(pairing.getLastGateway(getNode(modelInstance, "end")).getId()).isEqualTo("join");
+    assertThat(pairing.getLastGateway(getNode(modelInstance, "start"))).isNull();
+    assertThat(GatewayPairing.of(process)).isSameAs(pairing);
+  }
+
+  @Test
+  public void shouldNotPairUnstructuredSplitsAndLoops() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .exclusiveGateway("loopJoin")
+      .userTask("loopTask")
+      .exclusiveGateway("loopSplit")
+        .connectTo("loopJoin")
+      .moveToNode("loopSplit")
+        .exclusiveGateway("split")
+          .userTask("task1")
+          .exclusiveGateway("join")
+          .endEvent("end1")
+        .moveToNode("split")
+          .userTask("task2")
+          .connectTo("join")
+        .moveToNode("split")
+          .endEvent("end2")
+      .done();
+    GatewayPairing pairing = GatewayPairing.of(modelInstance.<Process>getModelElementById("process"));
+
+    assertThat(pairing.getPairCount()).isEqualTo(0);
+    assertThat(pairing.getJoin(getNode(modelInstance, "split"))).isNull();
+    assertThat(pairing.getSplit(getNode(modelInstance, "join"))).isNull();
+    assertThat(pairing.getJoin(getNode(modelInstance, "loopSplit"))).isNull();
+    assertThat(pairing.getSplit(getNode(modelInstance, "loopJoin"))).isNull();
+
+    // the back edge of the loop is ignored
+    assertThat(pairing.getLastGateway(getNode(modelInstance, "loopJoin"))).isNull();
+    assertThat(pairing.getLastGateway(getNode(modelInstance, "end1")).getId()).isEqualTo("join");
+    assertThat(pairing.getLastGateway(getNode(modelInstance, "task2")).getId()).isEqualTo("split");
+  }
+
+  @Test
+  public void shouldMatchDominatorsOfRandomGraphs() {
+    for (int seed = 0; seed < 10; seed++) {
+      FlowGraph graph = ReachabilityTest.createRandomGraph(40, 60 + seed * 5, seed);
+      GatewayPairing pairing = graph.getGatewayPairing();
+      boolean[] backEdges = graph.getLoopAnalysis().backEdgeFlags;
+      int[] dominators = Dominators.immediateDominators(graph, backEdges, false);
+      int[] postDominators = Dominators.immediateDominators(graph, backEdges, true);
+
+      int pairCount = 0;
+      for (int node = 0; node < graph.getNodeCount(); node++) {
+        assertThat(dominators[node]).isEqualTo(immediateDominator(graph, backEdges, node, false));
+        assertThat(postDominators[node]).isEqualTo(immediateDominator(graph, backEdges, node, true));
+
+        int join = postDominators[node];
+        boolean paired = degree(graph, backEdges, node, true) > 1 && join >= 0
+          && degree(graph, backEdges, join, false) > 1 && dominators[join] == node;
+        assertThat(pairing.getJoin(node)).isEqualTo(paired ? join : -1);
+        if (paired) {
+          assertThat(pairing.getSplit(join)).isEqualTo(node);
+          pairCount++;
+        }
+      }
+      assertThat(pairing.getPairCount()).isEqualTo(pairCount);
+    }
+  }
+
+  /**
+   * Finds the immediate dominator by its definition: the strict dominator of the node
+   * which is dominated by all other strict dominators.
+   */
+  protected static int immediateDominator(FlowGraph graph, boolean[] backEdges, int node, boolean reverse) {
+    int result = -1;
+    for (int dominator = 0; dominator < graph.getNodeCount(); dominator++) {
+      if (dominator != node && dominates(graph, backEdges, dominator, node, reverse)) {
+        if (result < 0 || dominates(graph, backEdges, result, dominator, reverse)) {
+          result = dominator;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return true if the node cannot be reached from a root of the graph without passing the dominator
+   */
+  protected static boolean dominates(FlowGraph graph, boolean[] backEdges, int dominator, int node, boolean reverse) {
+    boolean[] roots = roots(graph, backEdges, reverse);
+    boolean[] visited = new boolean[graph.getNodeCount()];
+    visited[dominator] = true;
+    for (int root = 0; root < graph.getNodeCount(); root++) {
+      if (roots[root] && !visited[root]) {
+        visit(graph, backEdges, root, reverse, visited);
+      }
+    }
+    return node == dominator || !visited[node];
+  }
+
+  /**
+   * @return the nodes without predecessors and, in index order, the nodes which cannot
+   * be reached from the roots before them
+   */
+  protected static boolean[] roots(FlowGraph graph, boolean[] backEdges, boolean reverse) {
+    boolean[] roots = new boolean[graph.getNodeCount()];
+    boolean[] visited = new boolean[graph.getNodeCount()];
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      if (degree(graph, backEdges, node, reverse) == 0) {
+        roots[node] = true;
+        visit(graph, backEdges, node, reverse, visited);
+      }
+    }
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      if (!visited[node]) {
+        roots[node] = true;
+        visit(graph, backEdges, node, reverse, visited);
+      }
+    }
+    return roots;
+  }
+
+  protected static void visit(FlowGraph graph, boolean[] backEdges, int start, boolean reverse, boolean[] visited) {
+    int[] stack = new int[graph.getNodeCount()];
+    int size = 0;
+    visited[start] = true;
+    stack[size++] = start;
+    while (size > 0) {
+      int current = stack[--size];
+      for (int other = 0; other < graph.getNodeCount(); other++) {
+        if (!visited[other] && isEdge(graph, backEdges, reverse ? other : current, reverse ? current : other)) {
+          visited[other] = true;
+          stack[size++] = other;
+        }
+      }
+    }
+  }
+
+  protected static boolean isEdge(FlowGraph graph, boolean[] backEdges, int source, int target) {
+    for (int i = 0; i < graph.getSuccessorCount(source); i++) {
+      if (graph.getSuccessor(source, i) == target && !backEdges[graph.successorOffsets[source] + i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected static int degree(FlowGraph graph, boolean[] backEdges, int node, boolean outgoing) {
+    int degree = 0;
+    for (int source = 0; source < graph.getNodeCount(); source++) {
+      for (int i = 0; i < graph.getSuccessorCount(source); i++) {
+        int target = graph.getSuccessor(source, i);
+        if ((outgoing ? source : target) == node && !backEdges[graph.successorOffsets[source] + i]) {
+          degree++;
+        }
+      }
+    }
+    return degree;
+  }
+
+  protected FlowNode getNode(BpmnModelInstance modelInstance, String id) {
+    return modelInstance.getModelElementById(id);
+  }
+
+}
@@ -0,0 +1,141 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.EndEvent;
+import org.camunda.bpm.model.bpmn.instance.ExclusiveGateway;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.InclusiveGateway;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.StartEvent;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InclusiveJoinDependenciesTest {
+
+  protected BpmnModelInstance modelInstance;
+
+  @Before
+  public void createModel() {
+    modelInstance = Bpmn.createExecutableProcess("process").done();
+    Process process = modelInstance.getModelElementById("process");
+
+    FlowNode start = createNode(process, StartEvent.class, "start");
+    FlowNode split = createNode(process, InclusiveGateway.class, "split");
+    FlowNode task1 = createNode(process, Task.class, "task1");
+    FlowNode task2 = createNode(process, Task.class, "task2");
+    FlowNode join = createNode(process, InclusiveGateway.class, "join");
+    FlowNode after = createNode(process, Task.class, "after");
+    FlowNode retry = createNode(process, ExclusiveGateway.class, "retry");
+    FlowNode end = createNode(process, EndEvent.class, "end");
+    createFlow(process, "flow1", start, split);
+    createFlow(process, "flow2", split, task1);
+    createFlow(process, "flow3", split, task2);
+    createFlow(process, "flow4", task1, join);
+    createFlow(process, "flow5", task2, join);
+    createFlow(process, "flow6", join, after);
+    createFlow(process, "flow7", after, retry);
+    createFlow(process, "flow8", retry, join);
+    createFlow(process, "flow9", retry, end);
+
+    SubProcess subProcess = createNode(process, SubProcess.class, "subProcess");
+    FlowNode subStart = createNode(subProcess, StartEvent.class, "subStart");
+    FlowNode subSplit = createNode(subProcess, InclusiveGateway.class, "subSplit");
+    FlowNode subJoin = createNode(subProcess, InclusiveGateway.class, "subJoin");
+    createFlow(subProcess, "subFlow1", subStart, subSplit);
+    createFlow(subProcess, "subFlow2", subSplit, subJoin);
+    createFlow(subProcess, "subFlow3", subSplit, subJoin);
+  }
+
+  @Test
+  public void shouldCollectUpstreamNodesAndFlows() {
+    InclusiveJoinDependencies dependencies = InclusiveJoinDependencies.of(modelInstance);
+
+    assertThat(dependencies.getJoinIds()).containsExactly("join", "subJoin");
+    assertThat(dependencies.isJoin("join")).isTrue();
+    assertThat(dependencies.isJoin("split")).isFalse();
+
+    assertThat(dependencies.getUpstreamNodeIds("join")).containsOnly("start", "split", "task1", "task2", "after", "retry");
+    // a token which left the join can return through the loop
+    assertThat(dependencies.getUpstreamFlowIds("join"))
+      .containsOnly("flow1", "flow2", "flow3", "flow4", "flow5", "flow6", "flow7", "flow8");
+    assertThat(dependencies.hasUpstreamNode("join", "retry")).isTrue();
+    assertThat(dependencies.hasUpstreamNode("join", "end")).isFalse();
+    assertThat(dependencies.hasUpstreamNode("join", "join")).isFalse();
+    assertThat(dependencies.hasUpstreamFlow("join", "flow9")).isFalse();
+
+    assertThat(dependencies.getUpstreamNodeIds("subJoin")).containsOnly("subStart", "subSplit");
+    assertThat(dependencies.hasUpstreamNode("subJoin", "start")).isFalse();
+    assertThat(dependencies.hasUpstreamNode("join", "subStart")).isFalse();
+    assertThat(dependencies.hasUpstreamFlow("subJoin", "subFlow3")).isTrue();
+    assertThat(dependencies.hasUpstreamFlow("subJoin", "flow1")).isFalse();
+
+    try {
+      dependencies.getUpstreamNodeIds("split");
+      fail("exception expected");
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void shouldSerializeDependencies() throws Exception {
+    InclusiveJoinDependencies dependencies = InclusiveJoinDependencies.of(modelInstance.<Process>getModelElementById("process"));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(dependencies);
+    out.close();
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    InclusiveJoinDependencies copy = (InclusiveJoinDependencies) in.readObject();
+    in.close();
+
+    assertThat(copy.getJoinIds()).isEqualTo(dependencies.getJoinIds());
+    for (String joinId : dependencies.getJoinIds()) {
+      assertThat(copy.getUpstreamNodeIds(joinId)).isEqualTo(dependencies.getUpstreamNodeIds(joinId));
+      assertThat(copy.getUpstreamFlowIds(joinId)).isEqualTo(dependencies.getUpstreamFlowIds(joinId));
+    }
+    assertThat(copy.hasUpstreamFlow("join", "flow8")).isTrue();
+  }
+
+  protected <T extends FlowNode> T createNode(ModelElementInstance parent, Class<T> type, String id) {
+    T node = modelInstance.newInstance(type);
+    node.setId(id);
+    parent.addChildElement(node);
+    return node;
+  }
+
+  protected void createFlow(ModelElementInstance parent, String id, FlowNode source, FlowNode target) {
+    SequenceFlow flow = modelInstance.newInstance(SequenceFlow.class);
+    flow.setId(id);
+    parent.addChildElement(flow);
+    flow.setSource(source);
+    flow.setTarget(target);
+  }
+
+}
@@ -0,0 +1,233 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.StartEvent;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.junit.Test;
+
+public class LoopAnalysisTest {
+
+  @Test
+  public void shouldFindNestedLoops() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .userTask("task1")
+      .userTask("task2")
+      .userTask("task3")
+      .exclusiveGateway("inner")
+        .connectTo("task2")
+      .moveToNode("inner")
+        .exclusiveGateway("outer")
+        .connectTo("task1")
+      .moveToNode("outer")
+        .endEvent("end")
+      .done();
+    Process process = modelInstance.getModelElementById("process");
+    LoopAnalysis analysis = LoopAnalysis.of(process);
+
+    assertThat(analysis.hasLoops()).isTrue();
+    assertThat(analysis.getLoops()).hasSize(2);
+    assertThat(analysis.getOutermostLoops()).hasSize(1);
+
+    Loop outerLoop = analysis.getLoops().get(0);
+    assertThat(outerLoop.getParent()).isNull();
+    assertThat(outerLoop.getDepth()).isEqualTo(1);
+    assertThat(getIds(outerLoop.getFlowNodes())).containsExactly("task1", "task2", "task3", "inner", "outer");
+    assertThat(getIds(outerLoop.getEntryNodes())).containsExactly("task1");
+    assertThat(outerLoop.getBackEdges()).hasSize(1);
+    assertThat(outerLoop.getBackEdges().get(0).getSource().getId()).isEqualTo("outer");
+
+    Loop innerLoop = analysis.getLoops().get(1);
+    assertThat(innerLoop.getParent()).isSameAs(outerLoop);
+    assertThat(outerLoop.getChildren()).containsExactly(innerLoop);
+    assertThat(innerLoop.getDepth()).isEqualTo(2);
+    assertThat(getIds(innerLoop.getFlowNodes())).containsExactly("task2", "task3", "inner");
+    assertThat(getIds(innerLoop.getEntryNodes())).containsExactly("task2");
+    assertThat(innerLoop.getBackEdges().get(0).getSource().getId()).isEqualTo("inner");
+
+    assertThat(analysis.getInnermostLoop(modelInstance.<FlowNode>getModelElementById("task1"))).isSameAs(outerLoop);
+    assertThat(analysis.getInnermostLoop(modelInstance.<FlowNode>getModelElementById("task3"))).isSameAs(innerLoop);
+    assertThat(analysis.getInnermostLoop(modelInstance.<FlowNode>getModelElementById("start"))).isNull();
+    assertThat(analysis.getBackEdges()).hasSize(2);
+    assertThat(LoopAnalysis.of(process)).isSameAs(analysis);
+  }
+
+  @Test
+  public void shouldFindLoopsOfSubProcesses() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .subProcess("subProcess")
+        .embeddedSubProcess()
+          .startEvent("subStart")
+          .userTask("subTask")
+          .exclusiveGateway("subGateway")
+            .connectTo("subTask")
+          .moveToNode("subGateway")
+            .endEvent("subEnd")
+      .subProcessDone()
+      .endEvent("end")
+      .done();
+    Process process = modelInstance.getModelElementById("process");
+
+    SubProcess eventSubProcess = modelInstance.newInstance(SubProcess.class);
+    eventSubProcess.setId("eventSubProcess");
+    eventSubProcess.setTriggeredByEvent(true);
+    process.addChildElement(eventSubProcess);
+    StartEvent eventStart = createNode(modelInstance, eventSubProcess, StartEvent.class, "eventStart");
+    Task eventTask = createNode(modelInstance, eventSubProcess, Task.class, "eventTask");
+    createFlow(modelInstance, eventSubProcess, eventStart, eventTask);
+    createFlow(modelInstance, eventSubProcess, eventTask, eventTask);
+
+    assertThat(LoopAnalysis.of(process).hasLoops()).isFalse();
+
+    List<LoopAnalysis> analyses = LoopAnalysis.ofAllScopes(process);
+    assertThat(analyses).hasSize(3);
+    assertThat(analyses.get(0).getGraph().getContainer()).isEqualTo(process);
+
+    LoopAnalysis subProcessAnalysis = LoopAnalysis.of(modelInstance.<SubProcess>getModelElementById("subProcess"));
+    assertThat(analyses).contains(subProcessAnalysis);
+    assertThat(getIds(subProcessAnalysis.getLoops().get(0).getEntryNodes())).containsExactly("subTask");
+
+    LoopAnalysis eventSubProcessAnalysis = LoopAnalysis.of(eventSubProcess);
+    assertThat(analyses).contains(eventSubProcessAnalysis);
+    Loop selfLoop = eventSubProcessAnalysis.getLoops().get(0);
+    assertThat(getIds(selfLoop.getFlowNodes())).containsExactly("eventTask");
+    assertThat(selfLoop.getBackEdges().get(0).getTarget()).isEqualTo(eventTask);
+  }
+
+  @Test
+  public void shouldAnalyzeDeepGraphsWithoutRecursion() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process").done();
+    Process process = modelInstance.getModelElementById("process");
+    int nodeCount = 10000;
+    FlowNode[] nodes = new FlowNode[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      nodes[i] = createNode(modelInstance, process, Task.class, "task" + i);
+      if (i > 0) {
+        createFlow(modelInstance, process, nodes[i - 1], nodes[i]);
+      }
+    }
+    // nested loops around the middle of the chain
+    int depth = 100;
+    for (int i = 0; i < depth; i++) {
+      createFlow(modelInstance, process, nodes[nodeCount / 2 + i], nodes[nodeCount / 2 - i]);
+    }
+    createFlow(modelInstance, process, nodes[nodeCount - 1], nodes[0]);
+
+    LoopAnalysis analysis = LoopAnalysis.of(process);
+
+    assertThat(analysis.getLoops()).hasSize(depth + 1);
+    assertThat(analysis.getLoops().get(0).getNodes()).hasSize(nodeCount);
+    assertThat(analysis.getInnermostLoop(nodes[nodeCount / 2]).getDepth()).isEqualTo(depth + 1);
+    assertThat(analysis.getInnermostLoop(nodes[0]).getDepth()).isEqualTo(1);
+    assertAcyclicWithoutBackEdges(analysis);
+  }
+
+  @Test
+  public void shouldBreakAllCyclesOfRandomGraphs() {
+    for (int seed = 0; seed < 10; seed++) {
+      FlowGraph graph = ReachabilityTest.createRandomGraph(100, 120 + seed * 15, seed);
+      LoopAnalysis analysis = graph.getLoopAnalysis();
+      StronglyConnectedComponents components = graph.getComponents();
+
+      for (int node = 0; node < graph.getNodeCount(); node++) {
+        boolean cyclic = components.isCyclic(components.getComponent(node));
+        assertThat(analysis.getInnermostLoop(node) != null).isEqualTo(cyclic);
+      }
+      for (Loop loop : analysis.getLoops()) {
+        for (int entry : loop.getEntries()) {
+          assertThat(loop.contains(entry)).isTrue();
+        }
+        if (loop.getParent() != null) {
+          for (int node : loop.getNodes()) {
+            assertThat(loop.getParent().contains(node)).isTrue();
+          }
+        }
+      }
+      assertAcyclicWithoutBackEdges(analysis);
+    }
+  }
+
+  /**
+   * Sorts the graph topologically, ignoring the back edges.
+   */
+  protected void assertAcyclicWithoutBackEdges(LoopAnalysis analysis) {
+    FlowGraph graph = analysis.getGraph();
+    int[] inDegrees = new int[graph.getNodeCount()];
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      for (int i = 0; i < graph.getSuccessorCount(node); i++) {
+        if (!analysis.isBackEdge(node, i)) {
+          inDegrees[graph.getSuccessor(node, i)]++;
+        }
+      }
+    }
+    int[] queue = new int[graph.getNodeCount()];
+    int head = 0;
+    int tail = 0;
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      if (inDegrees[node] == 0) {
+        queue[tail++] = node;
+      }
+    }
+    while (head < tail) {
+      int node = queue[head++];
+      for (int i = 0; i < graph.getSuccessorCount(node); i++) {
+        if (!analysis.isBackEdge(node, i) && --inDegrees[graph.getSuccessor(node, i)] == 0) {
+          queue[tail++] = graph.getSuccessor(node, i);
+        }
+      }
+    }
+    assertThat(tail).isEqualTo(graph.getNodeCount());
+  }
+
+  /**
+   * Appends the node as last child, since addChildElement searches the insert position
+   * among all children, which is too slow for the deep graphs.
+   */
+  protected <T extends FlowNode> T createNode(BpmnModelInstance modelInstance, ModelElementInstance parent, Class<T> type, String id) {
+    T node = modelInstance.newInstance(type);
+    node.setId(id);
+    parent.getDomElement().appendChild(node.getDomElement());
+    return node;
+  }
+
+  protected SequenceFlow createFlow(BpmnModelInstance modelInstance, ModelElementInstance parent, FlowNode source, FlowNode target) {
+    SequenceFlow flow = modelInstance.newInstance(SequenceFlow.class);
+    parent.getDomElement().appendChild(flow.getDomElement());
+    flow.setSource(source);
+    flow.setTarget(target);
+    return flow;
+  }
+
+  protected List<String> getIds(List<FlowNode> flowNodes) {
+    List<String> ids = new ArrayList<String>();
+    for (FlowNode flowNode : flowNodes) {
+      ids.add(flowNode.getId());
+    }
+    return ids;
+  }
+
+}
@@ -0,0 +1,136 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Random;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.Definitions;
+import org.camunda.bpm.model.bpmn.instance.EndEvent;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.StartEvent;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.junit.Test;
+
+public class ReachabilityTest {
+
+  @Test
+  public void shouldAnswerReachabilityOfNodes() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .userTask("task1")
+      .exclusiveGateway("gateway")
+        .userTask("task2")
+        .connectTo("task1")
+      .moveToNode("gateway")
+        .endEvent("end1")
+      .done();
+    Process process = modelInstance.getModelElementById("process");
+    Reachability reachability = Reachability.of(process);
+
+    FlowNode start = modelInstance.getModelElementById("start");
+    FlowNode task1 = modelInstance.getModelElementById("task1");
+    FlowNode task2 = modelInstance.getModelElementById("task2");
+    FlowNode end = modelInstance.getModelElementById("end1");
+
+    assertThat(reachability.isReachable(start, end)).isTrue();
+    assertThat(reachability.isReachable(task2, task1)).isTrue();
+    assertThat(reachability.isReachable(task1, task1)).isTrue();
+    assertThat(reachability.isReachable(start, start)).isFalse();
+    assertThat(reachability.isReachable(end, start)).isFalse();
+    assertThat(reachability.isReachable(task1, start)).isFalse();
+
+    assertThat(reachability.getReachableNodes(start)).containsExactly(task1, modelInstance.<FlowNode>getModelElementById("gateway"), task2, end);
+    assertThat(reachability.getReachableNodes(end)).isEmpty();
+    assertThat(Reachability.of(process)).isSameAs(reachability);
+  }
+
+  @Test
+  public void shouldMatchSearchOfRandomGraphs() {
+    for (int seed = 0; seed < 5; seed++) {
+      FlowGraph graph = createRandomGraph(150, 180 + seed * 20, seed);
+      Reachability reachability = graph.getReachability();
+
+      for (int source = 0; source < graph.getNodeCount(); source++) {
+        BitSet expected = search(graph, source);
+        assertThat(reachability.getReachableSet(source)).isEqualTo(expected);
+        for (int target = 0; target < graph.getNodeCount(); target++) {
+          assertThat(reachability.isReachable(source, target)).isEqualTo(expected.get(target));
+        }
+      }
+    }
+  }
+
+  protected BitSet search(FlowGraph graph, int source) {
+    BitSet reachable = new BitSet();
+    Deque<Integer> queue = new ArrayDeque<Integer>();
+    queue.add(source);
+    while (!queue.isEmpty()) {
+      int node = queue.poll();
+      for (int i = 0; i < graph.getSuccessorCount(node); i++) {
+        int successor = graph.getSuccessor(node, i);
+        if (!reachable.get(successor)) {
+          reachable.set(successor);
+          queue.add(successor);
+        }
+      }
+    }
+    return reachable;
+  }
+
+  /**
+   * Creates a process with a start event, an end event and tasks which are connected
+   * by random sequence flows, including back edges and self loops.
+   */
+  protected static FlowGraph createRandomGraph(int taskCount, int flowCount, long seed) {
+    Random random = new Random(seed);
+    BpmnModelInstance modelInstance = Bpmn.createEmptyModel();
+    Definitions definitions = modelInstance.newInstance(Definitions.class);
+    definitions.setTargetNamespace("http://camunda.org/test");
+    modelInstance.setDefinitions(definitions);
+    Process process = modelInstance.newInstance(Process.class);
+    process.setId("process");
+    definitions.addChildElement(process);
+
+    FlowNode[] nodes = new FlowNode[taskCount + 2];
+    nodes[0] = modelInstance.newInstance(StartEvent.class);
+    for (int i = 1; i <= taskCount; i++) {
+      nodes[i] = modelInstance.newInstance(Task.class);
+    }
+    nodes[taskCount + 1] = modelInstance.newInstance(EndEvent.class);
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i].setId("node" + i);
+      process.addChildElement(nodes[i]);
+    }
+
+    for (int i = 0; i < flowCount; i++) {
+      FlowNode source = nodes[random.nextInt(nodes.length - 1)];
+      FlowNode target = nodes[1 + random.nextInt(nodes.length - 1)];
+      SequenceFlow flow = modelInstance.newInstance(SequenceFlow.class);
+      flow.setId("flow" + i);
+      process.addChildElement(flow);
+      flow.setSource(source);
+      flow.setTarget(target);
+    }
+    return FlowGraph.of(process);
+  }
+
+}
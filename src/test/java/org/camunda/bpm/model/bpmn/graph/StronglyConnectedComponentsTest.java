@@ -0,0 +1,84 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.junit.Test;
+
+public class StronglyConnectedComponentsTest {
+
+  @Test
+  public void shouldFindComponentsOfLoops() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .userTask("task1")
+      .exclusiveGateway("gateway1")
+        .userTask("task2")
+        .exclusiveGateway("gateway2")
+          .connectTo("task1")
+      .moveToNode("gateway2")
+        .endEvent("end")
+      .done();
+    FlowGraph graph = FlowGraph.of(modelInstance.<Process>getModelElementById("process"));
+    StronglyConnectedComponents components = graph.getComponents();
+
+    assertThat(components.getComponentCount()).isEqualTo(3);
+    int loop = components.getComponent(graph.indexOf("task1"));
+    assertThat(getIds(graph, components.getComponentNodes(loop))).containsExactly("task1", "gateway1", "task2", "gateway2");
+    assertThat(components.isCyclic(loop)).isTrue();
+
+    int start = components.getComponent(graph.indexOf("start"));
+    int end = components.getComponent(graph.indexOf("end"));
+    assertThat(components.isCyclic(start)).isFalse();
+    assertThat(components.getComponentSize(end)).isEqualTo(1);
+
+    // reverse topological order
+    assertThat(end).isLessThan(loop);
+    assertThat(loop).isLessThan(start);
+    assertThat(graph.getComponents()).isSameAs(components);
+  }
+
+  @Test
+  public void shouldNumberComponentsInReverseTopologicalOrder() {
+    FlowGraph graph = ReachabilityTest.createRandomGraph(200, 260, 7);
+    StronglyConnectedComponents components = graph.getComponents();
+
+    int nodeCount = 0;
+    for (int component = 0; component < components.getComponentCount(); component++) {
+      nodeCount += components.getComponentSize(component);
+    }
+    assertThat(nodeCount).isEqualTo(graph.getNodeCount());
+
+    for (int node = 0; node < graph.getNodeCount(); node++) {
+      for (int i = 0; i < graph.getSuccessorCount(node); i++) {
+        assertThat(components.getComponent(graph.getSuccessor(node, i))).isLessThanOrEqualTo(components.getComponent(node));
+      }
+    }
+  }
+
+  protected List<String> getIds(FlowGraph graph, int[] nodes) {
+    List<String> ids = new ArrayList<String>();
+    for (int node : nodes) {
+      ids.add(graph.getNode(node).getId());
+    }
+    return ids;
+  }
+
+}
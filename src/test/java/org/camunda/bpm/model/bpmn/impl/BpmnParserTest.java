@@ -0,0 +1,131 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.camunda.bpm.model.bpmn.impl.BpmnParser.ValidatorPool;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.xml.ModelParseException;
+import org.camunda.bpm.model.xml.impl.util.IoUtil;
+import org.junit.Test;
+
+public class BpmnParserTest {
+
+  protected static final String VALID_MODEL =
+    "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" targetNamespace=\"test\">" +
+      "<process id=\"process\"><startEvent id=\"start\"/></process>" +
+    "</definitions>";
+
+  protected static final String INVALID_MODEL =
+    "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" targetNamespace=\"test\">" +
+      "<process id=\"process\"><unknownElement/></process>" +
+    "</definitions>";
+
+  @Test
+  public void shouldShareCompiledSchema() {
+    ValidatorPool validatorPool = (ValidatorPool) new BpmnParser().validatorPool;
+    ValidatorPool otherValidatorPool = (ValidatorPool) new BpmnParser().validatorPool;
+
+    assertThat(validatorPool.schema).isSameAs(BpmnParser.getBpmnSchema());
+    assertThat(otherValidatorPool.schema).isSameAs(validatorPool.schema);
+  }
+
+  @Test
+  public void shouldReuseDocumentBuilders() {
+    BpmnParser parser = new BpmnParser();
+
+    parser.parseModelFromStream(stream(VALID_MODEL));
+    parser.parseModelFromStream(stream(VALID_MODEL));
+
+    assertThat(parser.documentBuilderPool.getIdleCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldReuseValidators() {
+    BpmnParser parser = new BpmnParser();
+    BpmnModelInstanceImpl modelInstance = parser.parseModelFromStream(stream(VALID_MODEL));
+
+    parser.validateModel(modelInstance.getDocument());
+    parser.validateModel(modelInstance.getDocument());
+
+    assertThat(parser.validatorPool.getIdleCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldResolveIdsOfParsedModel() {
+    BpmnModelInstanceImpl modelInstance = new BpmnParser().parseModelFromStream(stream(VALID_MODEL));
+
+    Process process = modelInstance.getModelElementById("process");
+    assertThat(process).isNotNull();
+    assertThat(process.getFlowElements()).hasSize(1);
+  }
+
+  @Test
+  public void shouldRejectInvalidModelAndRecover() {
+    BpmnParser parser = new BpmnParser();
+
+    try {
+      parser.parseModelFromStream(stream(INVALID_MODEL));
+      fail("exception expected");
+    }
+    catch (ModelParseException e) {
+      // expected
+    }
+
+    assertThat(parser.parseModelFromStream(stream(VALID_MODEL)).getDefinitions()).isNotNull();
+  }
+
+  @Test
+  public void shouldParseConcurrently() throws Exception {
+    final BpmnParser parser = new BpmnParser();
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 40; i++) {
+        results.add(executorService.submit(new Callable<String>() {
+          public String call() throws Exception {
+            InputStream inputStream = BpmnParserTest.class.getResourceAsStream("../ProcessTest.shouldImportProcess.bpmn");
+            try {
+              return parser.parseModelFromStream(inputStream).getDefinitions().getTargetNamespace();
+            }
+            finally {
+              IoUtil.closeSilently(inputStream);
+            }
+          }
+        }));
+      }
+      for (Future<String> result : results) {
+        assertThat(result.get()).isEqualTo("http://camunda.org/test");
+      }
+    }
+    finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  protected static InputStream stream(String xml) {
+    return new ByteArrayInputStream(xml.getBytes());
+  }
+
+}
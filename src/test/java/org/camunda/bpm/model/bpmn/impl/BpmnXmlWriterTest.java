@@ -0,0 +1,164 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN20_NS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.ParseOptions;
+import org.camunda.bpm.model.bpmn.WriteOptions;
+import org.camunda.bpm.model.bpmn.instance.Documentation;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.xml.impl.util.IoUtil;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class BpmnXmlWriterTest {
+
+  protected BpmnXmlWriter writer = new BpmnXmlWriter();
+
+  @Test
+  public void shouldWriteSameFormatAsTransformer() {
+    BpmnModelInstance modelInstance = Bpmn.createExecutableProcess("process")
+      .startEvent()
+      .userTask("task").name("line1\nline2 & \"quoted\" <tag>\t").camundaAssignee("demo")
+      .parallelGateway("fork")
+      .serviceTask().camundaClass("org.camunda.Delegate")
+      .endEvent()
+      .moveToNode("fork")
+      .callActivity().calledElement("subProcess")
+      .endEvent()
+      .done();
+
+    String expected = IoUtil.convertXmlDocumentToString(modelInstance.getDocument());
+    assertThat(writer.toString(getDocument(modelInstance), WriteOptions.defaults())).isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldPreserveAttributeValues() {
+    BpmnModelInstance modelInstance = Bpmn.createProcess("process").startEvent().userTask("task").done();
+    UserTask userTask = modelInstance.getModelElementById("task");
+    userTask.setName("line1\r\nline2\ttab & <tag> \"quoted\" 'single' ä€");
+
+    BpmnModelInstance readModel = writeAndRead(modelInstance, WriteOptions.defaults());
+
+    UserTask readTask = readModel.getModelElementById("task");
+    assertThat(readTask.getName()).isEqualTo(userTask.getName());
+  }
+
+  @Test
+  public void shouldPreserveTextAndCData() {
+    BpmnModelInstance modelInstance = Bpmn.createProcess("process").startEvent().userTask("task").done();
+    UserTask userTask = modelInstance.getModelElementById("task");
+    Documentation documentation = modelInstance.newInstance(Documentation.class);
+    documentation.setTextContent("  text & <tag> ]]> \r\n  ");
+    userTask.getDocumentations().add(documentation);
+    Element documentationElement = (Element) getDocument(modelInstance).getElementById("task")
+      .getElementsByTagNameNS(BPMN20_NS, "documentation").item(0);
+    documentationElement.appendChild(documentationElement.getOwnerDocument().createCDATASection("cdata ]]> end"));
+
+    BpmnModelInstance readModel = writeAndRead(modelInstance, WriteOptions.defaults());
+
+    UserTask readTask = readModel.getModelElementById("task");
+    assertThat(readTask.getDocumentations().iterator().next().getRawTextContent())
+      .isEqualTo("  text & <tag> ]]> \r\n  cdata ]]> end");
+  }
+
+  @Test
+  public void shouldAddMissingNamespaceDeclarations() {
+    BpmnModelInstance modelInstance = Bpmn.createProcess("process").startEvent().userTask("task").done();
+    Document document = getDocument(modelInstance);
+    Element userTask = document.getElementById("task");
+    userTask.setAttributeNS("http://example.org/attributes", "ex:attribute", "value");
+    userTask.setAttributeNS("http://example.org/unprefixed", "other", "value");
+    Element extension = document.createElementNS("http://example.org/elements", "custom");
+    extension.appendChild(document.createElementNS(null, "plain"));
+    userTask.appendChild(extension);
+
+    String xml = writer.toString(document, WriteOptions.defaults());
+    Document readDocument = getDocument(Bpmn.readModelFromStream(toStream(xml), ParseOptions.trusted()));
+    Element readTask = readDocument.getElementById("task");
+
+    assertThat(readTask.getAttributeNS("http://example.org/attributes", "attribute")).isEqualTo("value");
+    assertThat(readTask.getAttributeNS("http://example.org/unprefixed", "other")).isEqualTo("value");
+    Element readExtension = (Element) readTask.getElementsByTagNameNS("http://example.org/elements", "custom").item(0);
+    assertThat(readExtension).isNotNull();
+    Element plain = (Element) readExtension.getElementsByTagNameNS(null, "plain").item(0);
+    assertThat(plain.getLocalName()).isEqualTo("plain");
+    assertThat(plain.getNamespaceURI()).isNull();
+  }
+
+  @Test
+  public void shouldIndentElementOnlyContent() {
+    String xml = "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" targetNamespace=\"test\">\n" +
+      "      <!-- comment -->\n" +
+      "   <process id=\"process\">   <documentation>  keep  </documentation></process>\n" +
+      "</definitions>";
+    BpmnModelInstance modelInstance = Bpmn.readModelFromStream(toStream(xml), ParseOptions.trusted());
+
+    assertThat(writer.toString(getDocument(modelInstance), WriteOptions.defaults())).isEqualTo(
+      "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n" +
+      "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" targetNamespace=\"test\">\n" +
+      "  <!-- comment -->\n" +
+      "  <process id=\"process\">\n" +
+      "    <documentation>  keep  </documentation>\n" +
+      "  </process>\n" +
+      "</definitions>\n");
+
+    assertThat(writer.toString(getDocument(modelInstance), WriteOptions.defaults().prettyPrint(false))).isEqualTo(
+      "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>" + xml);
+  }
+
+  @Test
+  public void shouldWriteDocumentsLargerThanBuffer() {
+    BpmnModelInstance modelInstance = Bpmn.createProcess("process").startEvent().userTask("task").done();
+    StringBuilder name = new StringBuilder();
+    for (int i = 0; i < 3 * BpmnXmlWriter.BUFFER_SIZE; i++) {
+      name.append((char) ('a' + i % 26));
+    }
+    UserTask userTask = modelInstance.getModelElementById("task");
+    userTask.setName(name.toString());
+
+    BpmnModelInstance readModel = writeAndRead(modelInstance, WriteOptions.defaults().prettyPrint(false));
+
+    assertThat(((UserTask) readModel.getModelElementById("task")).getName()).isEqualTo(name.toString());
+    assertThat(writer.bufferPool.getIdleCount()).isGreaterThan(0);
+  }
+
+  protected BpmnModelInstance writeAndRead(BpmnModelInstance modelInstance, WriteOptions writeOptions) {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    writer.write(getDocument(modelInstance), outputStream, writeOptions);
+    return Bpmn.readModelFromStream(new ByteArrayInputStream(outputStream.toByteArray()));
+  }
+
+  protected Document getDocument(BpmnModelInstance modelInstance) {
+    return (Document) modelInstance.getDocument().getDomSource().getNode();
+  }
+
+  protected ByteArrayInputStream toStream(String xml) {
+    try {
+      return new ByteArrayInputStream(xml.getBytes("UTF-8"));
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+}
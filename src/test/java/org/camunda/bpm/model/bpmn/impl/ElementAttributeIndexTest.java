@@ -0,0 +1,185 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.BPMN20_NS;
+import static org.camunda.bpm.model.bpmn.impl.BpmnModelConstants.CAMUNDA_NS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.Query;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.camunda.bpm.model.xml.instance.DomElement;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElementAttributeIndexTest {
+
+  protected BpmnModelInstanceImpl modelInstance;
+
+  @Before
+  public void createModel() {
+    modelInstance = (BpmnModelInstanceImpl) Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .serviceTask("serviceTask1").camundaClass("org.example.A")
+      .serviceTask("serviceTask2").camundaClass("org.example.B")
+      .serviceTask("serviceTask3").camundaClass("org.example.A")
+      .endEvent("end")
+      .done();
+  }
+
+  @Test
+  public void shouldIndexAttributeValues() {
+    assertThat(modelInstance.getAttributeIndex(CAMUNDA_NS, "class")).isNull();
+    assertThat(modelInstance.indexAttribute(CAMUNDA_NS, "class")).isTrue();
+
+    ElementAttributeIndex index = modelInstance.getAttributeIndex(CAMUNDA_NS, "class");
+    assertThat(index.size()).isEqualTo(3);
+    assertThat(getIds(index.getElements("org.example.A"))).containsOnly("serviceTask1", "serviceTask3");
+    assertThat(getIds(index.getElements("org.example.B"))).containsOnly("serviceTask2");
+    assertThat(index.getElements("org.example.C")).isEmpty();
+  }
+
+  @Test
+  public void shouldIndexAttributesWithoutNamespace() {
+    modelInstance.indexAttribute(null, "id");
+
+    ElementAttributeIndex index = modelInstance.getAttributeIndex("", "id");
+    assertThat(getIds(index.getElements("serviceTask2"))).containsExactly("serviceTask2");
+    assertThat(index.getElements("org.example.A")).isEmpty();
+  }
+
+  @Test
+  public void shouldUpdateChangedAttributes() {
+    modelInstance.indexAttribute(CAMUNDA_NS, "class");
+    ElementAttributeIndex index = modelInstance.getAttributeIndex(CAMUNDA_NS, "class");
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask1");
+    serviceTask.setCamundaClass("org.example.B");
+    assertThat(getIds(index.getElements("org.example.A"))).containsOnly("serviceTask3");
+    assertThat(getIds(index.getElements("org.example.B"))).containsOnly("serviceTask1", "serviceTask2");
+
+    serviceTask.removeAttributeNs(CAMUNDA_NS, "class");
+    assertThat(getIds(index.getElements("org.example.B"))).containsOnly("serviceTask2");
+    assertThat(index.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldUpdateInsertedAndRemovedElements() {
+    modelInstance.indexAttribute(CAMUNDA_NS, "class");
+    ElementAttributeIndex index = modelInstance.getAttributeIndex(CAMUNDA_NS, "class");
+
+    Process process = modelInstance.getModelElementById("process");
+    ServiceTask serviceTask = modelInstance.newInstance(ServiceTask.class);
+    serviceTask.setId("serviceTask4");
+    serviceTask.setCamundaClass("org.example.A");
+    process.addChildElement(serviceTask);
+    assertThat(getIds(index.getElements("org.example.A"))).containsOnly("serviceTask1", "serviceTask3", "serviceTask4");
+
+    process.removeChildElement(modelInstance.getModelElementById("serviceTask3"));
+    assertThat(getIds(index.getElements("org.example.A"))).containsOnly("serviceTask1", "serviceTask4");
+    assertThat(index.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldFilterQueriesWithIndex() {
+    Query<Task> query = new QueryImpl<Task>(modelInstance.getModelElementsByType(Task.class));
+    List<Task> expected = query.filterByAttribute(CAMUNDA_NS, "class", "org.example.A").list();
+
+    modelInstance.indexAttribute(CAMUNDA_NS, "class");
+    assertThat(query.filterByAttribute(CAMUNDA_NS, "class", "org.example.A").list()).isEqualTo(expected);
+    assertThat(expected).hasSize(2);
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask2");
+    serviceTask.setCamundaClass("org.example.A");
+    assertThat(query.filterByAttribute(CAMUNDA_NS, "class", "org.example.A").count()).isEqualTo(3);
+    assertThat(query.filterByAttribute(CAMUNDA_NS, "class", null).any()).isFalse();
+  }
+
+  @Test
+  public void shouldNotIndexEmptyValues() {
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask2");
+    serviceTask.setAttributeValueNs(CAMUNDA_NS, "class", "");
+    Query<Task> query = new QueryImpl<Task>(modelInstance.getModelElementsByType(Task.class));
+    List<Task> expectedEmpty = query.filterByAttribute(CAMUNDA_NS, "class", "").list();
+    List<Task> expectedMissing = query.filterByAttribute(CAMUNDA_NS, "class", null).list();
+
+    modelInstance.indexAttribute(CAMUNDA_NS, "class");
+    ElementAttributeIndex index = modelInstance.getAttributeIndex(CAMUNDA_NS, "class");
+    assertThat(index.getElements("")).isEmpty();
+    assertThat(index.size()).isEqualTo(2);
+    assertThat(query.filterByAttribute(CAMUNDA_NS, "class", "").list()).isEqualTo(expectedEmpty).isEmpty();
+    assertThat(query.filterByAttribute(CAMUNDA_NS, "class", null).list()).isEqualTo(expectedMissing).containsExactly(serviceTask);
+
+    serviceTask.setCamundaClass("org.example.A");
+    serviceTask.setAttributeValueNs(CAMUNDA_NS, "class", "");
+    assertThat(index.getElements("")).isEmpty();
+    assertThat(getIds(index.getElements("org.example.A"))).containsOnly("serviceTask1", "serviceTask3");
+  }
+
+  @Test
+  public void shouldResolveAttributesInNamespaceOfElement() {
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask2");
+    serviceTask.setName("Review");
+    Query<Task> query = new QueryImpl<Task>(modelInstance.getModelElementsByType(Task.class));
+    List<Task> expected = query.filterByAttribute(BPMN20_NS, "name", "Review").list();
+    assertThat(expected).containsExactly(serviceTask);
+
+    modelInstance.indexAttribute(BPMN20_NS, "name");
+    assertThat(query.filterByAttribute(BPMN20_NS, "name", "Review").list()).isEqualTo(expected);
+
+    serviceTask.setName("Approve");
+    assertThat(query.filterByAttribute(BPMN20_NS, "name", "Review").any()).isFalse();
+    assertThat(query.filterByAttribute(BPMN20_NS, "name", "Approve").list()).containsExactly(serviceTask);
+  }
+
+  @Test
+  public void shouldKeepOrderAndFiltersOfIndexedQueries() {
+    Query<Task> query = new QueryImpl<Task>(modelInstance.getModelElementsByType(Task.class));
+    List<ServiceTask> expected = query.filterByType(ServiceTask.class)
+      .filterByAttribute(CAMUNDA_NS, "class", "org.example.A").list();
+    Task first = query.filterByAttribute(CAMUNDA_NS, "class", "org.example.A").first();
+
+    modelInstance.indexAttribute(CAMUNDA_NS, "class");
+    assertThat(query.filterByType(ServiceTask.class)
+      .filterByAttribute(CAMUNDA_NS, "class", "org.example.A").list()).isEqualTo(expected);
+    assertThat(query.filterByAttribute(CAMUNDA_NS, "class", "org.example.A").first()).isSameAs(first);
+    assertThat(query.filterByAttribute(CAMUNDA_NS, "class", "org.example.A").limit(1).list()).containsExactly(first);
+    assertThat(expected).containsExactly(modelInstance.<ServiceTask>getModelElementById("serviceTask1"),
+      modelInstance.<ServiceTask>getModelElementById("serviceTask3"));
+  }
+
+  @Test
+  public void shouldIndexFrozenModel() {
+    BpmnModelInstance frozenInstance = modelInstance.freeze();
+    assertThat(frozenInstance.indexAttribute(CAMUNDA_NS, "class")).isTrue();
+
+    ElementAttributeIndex index = ((BpmnModelInstanceImpl) frozenInstance).getAttributeIndex(CAMUNDA_NS, "class");
+    assertThat(getIds(index.getElements("org.example.A"))).containsOnly("serviceTask1", "serviceTask3");
+  }
+
+  protected List<String> getIds(List<DomElement> elements) {
+    List<String> ids = new ArrayList<String>();
+    for (DomElement element : elements) {
+      ids.add(element.getAttribute("id"));
+    }
+    return ids;
+  }
+
+}
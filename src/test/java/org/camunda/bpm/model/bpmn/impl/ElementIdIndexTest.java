@@ -0,0 +1,193 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.ParseOptions;
+import org.camunda.bpm.model.bpmn.impl.instance.Incoming;
+import org.camunda.bpm.model.bpmn.impl.instance.Outgoing;
+import org.camunda.bpm.model.bpmn.instance.Documentation;
+import org.camunda.bpm.model.bpmn.instance.LaneSet;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.TextAnnotation;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.camunda.bpm.model.xml.instance.DomElement;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElementIdIndexTest {
+
+  protected BpmnModelInstanceImpl modelInstance;
+  protected Process process;
+
+  @Before
+  public void createModel() {
+    modelInstance = (BpmnModelInstanceImpl) Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .userTask("userTask")
+      .sequenceFlowId("flow")
+      .serviceTask("serviceTask")
+      .endEvent("end")
+      .done();
+    process = modelInstance.getModelElementById("process");
+  }
+
+  @Test
+  public void shouldFindElementsById() {
+    ElementIdIndex index = modelInstance.getElementIdIndex();
+    assertThat(index).isNotNull();
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    assertThat(serviceTask.getId()).isEqualTo("serviceTask");
+    assertThat(index.getElement("serviceTask")).isNotNull();
+    assertThat(modelInstance.<ModelElementInstance>getModelElementById("unknown")).isNull();
+  }
+
+  @Test
+  public void shouldFollowChangedIds() {
+    modelInstance.getElementIdIndex();
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    SequenceFlow flow = modelInstance.getModelElementById("flow");
+
+    serviceTask.setId("renamedTask");
+
+    assertThat(modelInstance.<ModelElementInstance>getModelElementById("serviceTask")).isNull();
+    assertThat(modelInstance.<ModelElementInstance>getModelElementById("renamedTask")).isEqualTo(serviceTask);
+    assertThat(flow.getAttributeValue("targetRef")).isEqualTo("renamedTask");
+    assertThat(flow.getTarget()).isEqualTo(serviceTask);
+  }
+
+  @Test
+  public void shouldUpdateReferencesOfRenamedElements() {
+    modelInstance.getElementIdIndex();
+    SequenceFlow flow = modelInstance.getModelElementById("flow");
+    UserTask userTask = modelInstance.getModelElementById("userTask");
+
+    flow.setId("renamedFlow");
+
+    assertThat(flow.getAttributeValue("sourceRef")).isEqualTo("userTask");
+    assertThat(getTexts(userTask.getChildElementsByType(Outgoing.class))).containsExactly("renamedFlow");
+    assertThat(userTask.getOutgoing()).containsExactly(flow);
+    assertThat(modelInstance.isReferencedIdentifier("flow")).isFalse();
+    assertThat(modelInstance.isReferencedIdentifier("renamedFlow")).isTrue();
+  }
+
+  @Test
+  public void shouldTrackReferencedIdentifiers() {
+    assertThat(modelInstance.isReferencedIdentifier(null)).isFalse();
+    assertThat(modelInstance.isReferencedIdentifier("userTask")).isTrue();
+    assertThat(modelInstance.isReferencedIdentifier("process")).isFalse();
+
+    UserTask userTask = modelInstance.newInstance(UserTask.class);
+    assertThat(modelInstance.isReferencedIdentifier(userTask.getId())).isFalse();
+
+    process.addChildElement(userTask);
+    Incoming incoming = modelInstance.newInstance(Incoming.class);
+    incoming.setTextContent("anotherFlow");
+    userTask.addChildElement(incoming);
+    assertThat(modelInstance.isReferencedIdentifier("anotherFlow")).isTrue();
+
+    incoming.setTextContent("yetAnotherFlow");
+    assertThat(modelInstance.isReferencedIdentifier("anotherFlow")).isFalse();
+    assertThat(modelInstance.isReferencedIdentifier("yetAnotherFlow")).isTrue();
+
+    userTask.removeChildElement(incoming);
+    assertThat(modelInstance.isReferencedIdentifier("yetAnotherFlow")).isFalse();
+  }
+
+  @Test
+  public void shouldRemoveRemovedElements() {
+    modelInstance.getElementIdIndex();
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+
+    process.removeChildElement(serviceTask);
+
+    assertThat(modelInstance.getElementIdIndex().getElement("serviceTask")).isNull();
+    assertThat(modelInstance.<ModelElementInstance>getModelElementById("serviceTask")).isNull();
+  }
+
+  @Test
+  public void shouldUpdateReplacedElements() {
+    modelInstance.getElementIdIndex();
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    UserTask userTask = modelInstance.newInstance(UserTask.class);
+    userTask.setId("replacingTask");
+
+    serviceTask.replaceWithElement(userTask);
+
+    assertThat(modelInstance.<ModelElementInstance>getModelElementById("serviceTask")).isNull();
+    assertThat(modelInstance.<ModelElementInstance>getModelElementById("replacingTask")).isEqualTo(userTask);
+  }
+
+  @Test
+  public void shouldUpdateReferencesOfDeferredDiagrams() {
+    BpmnModelInstanceImpl lazyInstance = (BpmnModelInstanceImpl) Bpmn.readModelFromStream(
+      Bpmn.class.getResourceAsStream("BpmnDiTest.xml"), ParseOptions.defaults().lazyDiagrams(true));
+    ServiceTask serviceTask = lazyInstance.getModelElementById("serviceTask");
+
+    serviceTask.setId("renamedTask");
+
+    BpmnShape shape = lazyInstance.getModelElementById("_BPMNShape_ServiceTask_9");
+    assertThat(shape.getBpmnElement()).isEqualTo(serviceTask);
+  }
+
+  @Test
+  public void shouldInsertChildElementsInSequenceOrder() {
+    process.addChildElement(modelInstance.newInstance(TextAnnotation.class));
+    process.addChildElement(modelInstance.newInstance(UserTask.class));
+    process.addChildElement(modelInstance.newInstance(Documentation.class));
+    process.addChildElement(modelInstance.newInstance(LaneSet.class));
+
+    List<String> childNames = new ArrayList<String>();
+    for (DomElement childElement : process.getDomElement().getChildElements()) {
+      childNames.add(childElement.getLocalName());
+    }
+    assertThat(childNames).hasSize(11);
+    assertThat(childNames.subList(0, 3)).containsExactly("documentation", "laneSet", "startEvent");
+    assertThat(childNames.subList(9, 11)).containsExactly("userTask", "textAnnotation");
+  }
+
+  @Test
+  public void shouldIndexCopyOnWriteModel() {
+    BpmnModelInstanceImpl copy = (BpmnModelInstanceImpl) modelInstance.freeze().copyOnWrite();
+
+    assertThat(copy.getElementIdIndex()).isNotNull();
+    assertThat(copy.<ServiceTask>getModelElementById("serviceTask").getId()).isEqualTo("serviceTask");
+    assertThat(copy.isReferencedIdentifier("serviceTask")).isTrue();
+    assertThat(copy.isReferencedIdentifier("process")).isFalse();
+
+    copy.<ServiceTask>getModelElementById("serviceTask").setId("renamedTask");
+    assertThat(copy.getModelElementById("serviceTask")).isNull();
+    assertThat(copy.<ServiceTask>getModelElementById("renamedTask").getIncoming()).hasSize(1);
+    assertThat(copy.isReferencedIdentifier("renamedTask")).isTrue();
+    assertThat(modelInstance.<ServiceTask>getModelElementById("serviceTask")).isNotNull();
+  }
+
+  protected List<String> getTexts(Iterable<? extends ModelElementInstance> elements) {
+    List<String> texts = new ArrayList<String>();
+    for (ModelElementInstance element : elements) {
+      texts.add(element.getTextContent());
+    }
+    return texts;
+  }
+
+}
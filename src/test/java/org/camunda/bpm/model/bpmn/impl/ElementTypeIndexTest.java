@@ -0,0 +1,147 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.instance.Definitions;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.camunda.bpm.model.xml.type.ModelElementType;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElementTypeIndexTest {
+
+  protected BpmnModelInstanceImpl modelInstance;
+  protected Process process;
+
+  @Before
+  public void createModel() {
+    modelInstance = (BpmnModelInstanceImpl) Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .userTask("userTask")
+      .serviceTask("serviceTask")
+      .endEvent("end")
+      .done();
+    process = modelInstance.getModelElementById("process");
+  }
+
+  @Test
+  public void shouldFindElementsOfTypeAndSubtypes() {
+    assertThat(modelInstance.getElementTypeIndex()).isNotNull();
+
+    assertThat(getIds(modelInstance.getModelElementsByType(UserTask.class))).containsExactly("userTask");
+    assertThat(getIds(modelInstance.getModelElementsByType(Task.class))).containsOnly("userTask", "serviceTask");
+    assertThat(modelInstance.getModelElementsByType(FlowNode.class)).hasSize(4);
+    assertIndexMatchesDocument(FlowNode.class);
+  }
+
+  @Test
+  public void shouldAddInsertedElements() {
+    modelInstance.getElementTypeIndex();
+
+    UserTask userTask = modelInstance.newInstance(UserTask.class);
+    userTask.setId("addedTask");
+    process.addChildElement(userTask);
+
+    UserTask firstTask = modelInstance.newInstance(UserTask.class);
+    firstTask.setId("firstTask");
+    process.getDomElement().insertChildElementAfter(firstTask.getDomElement(), null);
+
+    assertThat(getIds(modelInstance.getModelElementsByType(UserTask.class))).containsExactly("firstTask", "userTask", "addedTask");
+    assertIndexMatchesDocument(FlowNode.class);
+  }
+
+  @Test
+  public void shouldRemoveRemovedElements() {
+    modelInstance.getElementTypeIndex();
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    process.removeChildElement(serviceTask);
+
+    assertThat(modelInstance.getModelElementsByType(ServiceTask.class)).isEmpty();
+    assertThat(getIds(modelInstance.getModelElementsByType(Task.class))).containsExactly("userTask");
+    assertIndexMatchesDocument(FlowNode.class);
+  }
+
+  @Test
+  public void shouldUpdateReplacedElements() {
+    modelInstance.getElementTypeIndex();
+
+    ServiceTask serviceTask = modelInstance.getModelElementById("serviceTask");
+    UserTask userTask = modelInstance.newInstance(UserTask.class);
+    userTask.setId("replacingTask");
+    serviceTask.replaceWithElement(userTask);
+
+    assertThat(modelInstance.getModelElementsByType(ServiceTask.class)).isEmpty();
+    assertThat(getIds(modelInstance.getModelElementsByType(UserTask.class))).containsExactly("userTask", "replacingTask");
+
+    modelInstance.setDefinitions(modelInstance.newInstance(Definitions.class));
+    assertThat(modelInstance.getModelElementsByType(Task.class)).isEmpty();
+    assertThat(modelInstance.getModelElementsByType(Process.class)).isEmpty();
+  }
+
+  @Test
+  public void shouldIndexFrozenModel() {
+    BpmnModelInstanceImpl frozenInstance = (BpmnModelInstanceImpl) modelInstance.freeze();
+
+    assertThat(frozenInstance.getElementTypeIndex()).isNotNull();
+    assertThat(getIds(frozenInstance.getModelElementsByType(Task.class))).containsOnly("userTask", "serviceTask");
+  }
+
+  @Test
+  public void shouldIndexCopyOnWriteModel() {
+    BpmnModelInstanceImpl copy = (BpmnModelInstanceImpl) modelInstance.freeze().copyOnWrite();
+
+    assertThat(copy.getElementTypeIndex()).isNotNull();
+    assertThat(getIds(copy.getModelElementsByType(Task.class))).containsExactly("userTask", "serviceTask");
+
+    Process copiedProcess = copy.getModelElementById("process");
+    UserTask firstTask = copy.newInstance(UserTask.class);
+    firstTask.setId("firstTask");
+    copiedProcess.getDomElement().insertChildElementAfter(firstTask.getDomElement(), null);
+    copiedProcess.removeChildElement(copy.getModelElementById("serviceTask"));
+
+    assertThat(getIds(copy.getModelElementsByType(Task.class))).containsExactly("firstTask", "userTask");
+    assertThat(getIds(modelInstance.getModelElementsByType(Task.class))).containsExactly("userTask", "serviceTask");
+  }
+
+  protected void assertIndexMatchesDocument(Class<? extends ModelElementInstance> typeClass) {
+    ModelElementType type = modelInstance.getModel().getType(typeClass);
+    List<ModelElementInstance> expected = new ArrayList<ModelElementInstance>();
+    for (ModelElementType extendingType : type.getAllExtendingTypes()) {
+      if (!extendingType.isAbstract()) {
+        expected.addAll(extendingType.getInstances(modelInstance));
+      }
+    }
+    assertThat(modelInstance.getModelElementsByType(type)).isEqualTo(expected);
+  }
+
+  protected List<String> getIds(Iterable<? extends ModelElementInstance> elements) {
+    List<String> ids = new ArrayList<String>();
+    for (ModelElementInstance element : elements) {
+      ids.add(element.getAttributeValue("id"));
+    }
+    return ids;
+  }
+
+}
@@ -0,0 +1,88 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.DataObject;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.ItemAwareElement;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.xml.Model;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.camunda.bpm.model.xml.type.ModelElementType;
+import org.junit.Test;
+
+public class ElementTypeRegistryTest {
+
+  protected final ElementTypeRegistry registry = Bpmn.INSTANCE.getElementTypeRegistry();
+  protected final Model model = Bpmn.INSTANCE.getBpmnModel();
+
+  @Test
+  public void shouldAssignOrdinalsToTypes() {
+    ModelElementType taskType = model.getType(Task.class);
+    int ordinal = registry.getOrdinal(taskType);
+
+    assertThat(ordinal).isGreaterThanOrEqualTo(0);
+    assertThat(registry.getType(ordinal)).isSameAs(taskType);
+    assertThat(registry.getOrdinal(Task.class)).isEqualTo(ordinal);
+    assertThat(registry.getOrdinal(taskType.getTypeNamespace(), taskType.getTypeName())).isEqualTo(ordinal);
+    assertThat(registry.getOrdinal(String.class)).isEqualTo(-1);
+  }
+
+  @Test
+  public void shouldMatchTypeTestsOfInstances() {
+    BpmnModelInstance modelInstance = Bpmn.createEmptyModel();
+    for (int ordinal = 0; ordinal < registry.size(); ordinal++) {
+      ModelElementType type = registry.getType(ordinal);
+      if (type.isAbstract()) {
+        continue;
+      }
+      ModelElementInstance instance = modelInstance.newInstance(type);
+      for (int otherOrdinal = 0; otherOrdinal < registry.size(); otherOrdinal++) {
+        boolean isInstance = registry.getType(otherOrdinal).getInstanceType().isInstance(instance);
+        assertThat(registry.isAssignable(ordinal, otherOrdinal))
+          .as(type.getTypeName() + " assignable to " + registry.getType(otherOrdinal).getTypeName())
+          .isEqualTo(isInstance);
+      }
+    }
+  }
+
+  @Test
+  public void shouldIncludeInterfacesOutsideOfBaseTypes() {
+    int dataObject = registry.getOrdinal(DataObject.class);
+    assertThat(registry.isAssignable(dataObject, registry.getOrdinal(ItemAwareElement.class))).isTrue();
+    assertThat(registry.isAssignable(dataObject, registry.getOrdinal(FlowNode.class))).isFalse();
+  }
+
+  @Test
+  public void shouldCacheInstantiableTypes() {
+    ModelElementType taskType = model.getType(Task.class);
+    List<ModelElementType> expected = new ArrayList<ModelElementType>();
+    for (ModelElementType extendingType : taskType.getAllExtendingTypes()) {
+      if (!extendingType.isAbstract()) {
+        expected.add(extendingType);
+      }
+    }
+
+    assertThat(registry.getInstantiableTypes(taskType)).isEqualTo(expected);
+    assertThat(registry.getInstantiableTypes(taskType)).contains(model.getType(UserTask.class));
+  }
+
+}
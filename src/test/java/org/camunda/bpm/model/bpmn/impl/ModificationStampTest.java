@@ -0,0 +1,140 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.Query;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModificationStampTest {
+
+  protected BpmnModelInstanceImpl modelInstance;
+
+  @Before
+  public void createModel() {
+    modelInstance = (BpmnModelInstanceImpl) Bpmn.createExecutableProcess("process")
+      .startEvent("start")
+      .userTask("userTask")
+      .endEvent("end")
+      .done();
+  }
+
+  @Test
+  public void shouldChangeStampOnModification() {
+    long stamp = modelInstance.getModificationStamp();
+    assertThat(stamp).isNotEqualTo(BpmnModelInstanceImpl.UNTRACKED);
+    assertThat(modelInstance.getModificationStamp()).isEqualTo(stamp);
+
+    UserTask userTask = modelInstance.getModelElementById("userTask");
+    userTask.setName("Review");
+    long changedStamp = modelInstance.getModificationStamp();
+    assertThat(changedStamp).isNotEqualTo(stamp);
+
+    Process process = modelInstance.getModelElementById("process");
+    process.addChildElement(modelInstance.newInstance(ServiceTask.class));
+    assertThat(modelInstance.getModificationStamp()).isNotEqualTo(changedStamp);
+  }
+
+  @Test
+  public void shouldNotChangeStampOfFrozenModel() {
+    BpmnModelInstanceImpl frozenInstance = (BpmnModelInstanceImpl) modelInstance.freeze();
+    assertThat(frozenInstance.getModificationStamp()).isEqualTo(0);
+
+    FlowNode userTask = frozenInstance.getModelElementById("userTask");
+    assertThat(userTask.getSucceedingNodes()).isSameAs(userTask.getSucceedingNodes());
+  }
+
+  @Test
+  public void shouldCacheResultsUntilModification() {
+    long stamp = modelInstance.getModificationStamp();
+    modelInstance.cacheResult(this, "result", "value", stamp);
+    assertThat(modelInstance.getCachedResult(this, "result")).isEqualTo("value");
+    assertThat(modelInstance.getCachedResult(this, "other")).isNull();
+
+    UserTask userTask = modelInstance.getModelElementById("userTask");
+    userTask.setName("Review");
+    assertThat(modelInstance.getCachedResult(this, "result")).isNull();
+
+    modelInstance.cacheResult(this, "result", "value", stamp);
+    assertThat(modelInstance.getCachedResult(this, "result")).isNull();
+  }
+
+  @Test
+  public void shouldNotTrackChangesForAdjacentNodes() {
+    FlowNode userTask = modelInstance.getModelElementById("userTask");
+    assertThat(userTask.getSucceedingNodes()).isNotSameAs(userTask.getSucceedingNodes());
+    assertThat(userTask.getSucceedingNodes().singleResult().getId()).isEqualTo("end");
+    assertThat(modelInstance.getTrackedModificationStamp()).isEqualTo(BpmnModelInstanceImpl.UNTRACKED);
+    assertThat(modelInstance.modificationCounter).isNull();
+  }
+
+  @Test
+  public void shouldCacheAdjacentNodes() {
+    modelInstance.getModificationStamp();
+    FlowNode userTask = modelInstance.getModelElementById("userTask");
+    Query<FlowNode> succeedingNodes = userTask.getSucceedingNodes();
+    assertThat(userTask.getSucceedingNodes()).isSameAs(succeedingNodes);
+    assertThat(userTask.getPreviousNodes()).isSameAs(userTask.getPreviousNodes());
+    assertThat(succeedingNodes.singleResult().getId()).isEqualTo("end");
+
+    ServiceTask serviceTask = modelInstance.newInstance(ServiceTask.class);
+    serviceTask.setId("serviceTask");
+    Process process = modelInstance.getModelElementById("process");
+    process.addChildElement(serviceTask);
+    SequenceFlow sequenceFlow = modelInstance.newInstance(SequenceFlow.class);
+    process.addChildElement(sequenceFlow);
+    sequenceFlow.setSource(userTask);
+    sequenceFlow.setTarget(serviceTask);
+    userTask.getOutgoing().add(sequenceFlow);
+
+    assertThat(userTask.getSucceedingNodes()).isNotSameAs(succeedingNodes);
+    assertThat(userTask.getSucceedingNodes().count()).isEqualTo(2);
+    assertThat(succeedingNodes.count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldCacheSelectedElements() {
+    Query<ModelElementInstance> tasks = Bpmn.select(modelInstance, "process > task");
+    assertThat(Bpmn.select(modelInstance, "process > task")).isSameAs(tasks);
+    assertThat(tasks.count()).isEqualTo(1);
+
+    modelInstance.getModelElementById("process").addChildElement(modelInstance.newInstance(ServiceTask.class));
+    assertThat(Bpmn.select(modelInstance, "process > task").count()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldCacheResultsOfCopyOnWriteModel() {
+    BpmnModelInstanceImpl copy = (BpmnModelInstanceImpl) modelInstance.freeze().copyOnWrite();
+    long stamp = copy.getModificationStamp();
+    assertThat(stamp).isNotEqualTo(BpmnModelInstanceImpl.UNTRACKED);
+
+    FlowNode userTask = copy.getModelElementById("userTask");
+    Query<FlowNode> succeedingNodes = userTask.getSucceedingNodes();
+    assertThat(userTask.getSucceedingNodes()).isSameAs(succeedingNodes);
+    assertThat(succeedingNodes.singleResult().getId()).isEqualTo("end");
+
+    userTask.setName("Review");
+    assertThat(copy.getModificationStamp()).isNotEqualTo(stamp);
+    assertThat(userTask.getSucceedingNodes()).isNotSameAs(succeedingNodes);
+  }
+
+}
@@ -0,0 +1,234 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.camunda.bpm.model.bpmn.impl.dom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.MutationEvent;
+
+public class CopyOnWriteDocumentTest {
+
+  protected static final String NS = "http://example.org/test";
+
+  protected static final String XML =
+    "<root xmlns=\"" + NS + "\" xmlns:p=\"http://example.org/prefixed\" id=\"root\">" +
+      "<item id=\"item1\" value=\"a\"><child id=\"child1\">text</child></item>" +
+      "<item id=\"item2\" value=\"b\"/>" +
+      "<diagram id=\"diagram\"><shape id=\"shape1\"/><shape id=\"shape2\"/></diagram>" +
+    "</root>";
+
+  protected ReadOnlyDocument sharedDocument;
+
+  @Before
+  public void createSharedDocument() throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(XML.getBytes("UTF-8")));
+    registerIds(document.getDocumentElement());
+    sharedDocument = ReadOnlyDocument.copyOf(document);
+    sharedDocument.seal();
+  }
+
+  @Test
+  public void shouldNotModifySharedDocument() {
+    ReadOnlyElement item = (ReadOnlyElement) sharedDocument.getElementById("item1");
+    try {
+      item.setAttribute("value", "changed");
+      fail("exception expected");
+    }
+    catch (DOMException e) {
+      assertThat(e.code).isEqualTo(DOMException.NO_MODIFICATION_ALLOWED_ERR);
+    }
+    try {
+      item.setUserData("key", "value", null);
+      fail("exception expected");
+    }
+    catch (DOMException e) {
+      assertThat(e.code).isEqualTo(DOMException.NO_MODIFICATION_ALLOWED_ERR);
+    }
+  }
+
+  @Test
+  public void shouldCopyOnlyChangedAndVisitedNodes() {
+    CopyOnWriteDocument document = new CopyOnWriteDocument(sharedDocument);
+    assertThat(document.children).isNull();
+
+    Element item = document.getElementById("item2");
+    item.setAttribute("value", "changed");
+
+    assertThat(item.getAttribute("value")).isEqualTo("changed");
+    assertThat(sharedDocument.getElementById("item2").getAttribute("value")).isEqualTo("b");
+
+    CopyOnWriteElement root = (CopyOnWriteElement) document.getDocumentElement();
+    CopyOnWriteElement item1 = (CopyOnWriteElement) root.getFirstChild();
+    CopyOnWriteElement diagram = (CopyOnWriteElement) root.getLastChild();
+    assertThat(item1.getAttribute("value")).isEqualTo("a");
+    assertThat(item1.attributes).isNull();
+    assertThat(item1.children).isNull();
+    assertThat(diagram.children).isNull();
+    assertThat(root.attributes).isNull();
+  }
+
+  @Test
+  public void shouldFindElementsById() {
+    CopyOnWriteDocument document = new CopyOnWriteDocument(sharedDocument);
+
+    Element child = document.getElementById("child1");
+    assertThat(child.getTextContent()).isEqualTo("text");
+    assertThat(document.getElementById("child1")).isSameAs(child);
+    assertThat(document.getElementById("unknown")).isNull();
+
+    child.setAttribute("id", "renamed");
+    assertThat(document.getElementById("child1")).isNull();
+    assertThat(document.getElementById("renamed")).isSameAs(child);
+
+    Element shape = document.getElementById("shape2");
+    shape.getParentNode().removeChild(shape);
+    assertThat(document.getElementById("shape2")).isNull();
+
+    Element item = document.getElementById("item1");
+    item.appendChild(shape);
+    assertThat(document.getElementById("shape2")).isSameAs(shape);
+  }
+
+  @Test
+  public void shouldChangeChildNodes() {
+    CopyOnWriteDocument document = new CopyOnWriteDocument(sharedDocument);
+    Element root = document.getDocumentElement();
+
+    Element item = document.createElementNS(NS, "item");
+    item.setAttributeNS(null, "id", "item3");
+    item.setIdAttributeNS(null, "id", true);
+    Element item2 = document.getElementById("item2");
+    root.insertBefore(item, item2);
+
+    assertThat(item.getPreviousSibling()).isSameAs(document.getElementById("item1"));
+    assertThat(item.getNextSibling()).isSameAs(item2);
+    assertThat(root.getChildNodes().getLength()).isEqualTo(4);
+    assertThat(document.getElementById("item3")).isSameAs(item);
+    assertThat(document.getElementsByTagNameNS(NS, "item").getLength()).isEqualTo(3);
+
+    root.replaceChild(document.createTextNode("replaced"), item2);
+    assertThat(item2.getParentNode()).isNull();
+    assertThat(root.getLastChild().getPreviousSibling().getNodeValue()).isEqualTo("replaced");
+    assertThat(document.getElementById("item2")).isNull();
+
+    item.setTextContent("content");
+    assertThat(item.getTextContent()).isEqualTo("content");
+    assertThat(sharedDocument.getDocumentElement().getChildNodes().getLength()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldResolveNamespaces() {
+    CopyOnWriteDocument document = new CopyOnWriteDocument(sharedDocument);
+    Element child = document.getElementById("child1");
+
+    assertThat(child.getNamespaceURI()).isEqualTo(NS);
+    assertThat(child.lookupNamespaceURI(null)).isEqualTo(NS);
+    assertThat(child.lookupNamespaceURI("p")).isEqualTo("http://example.org/prefixed");
+    assertThat(child.lookupPrefix("http://example.org/prefixed")).isEqualTo("p");
+    assertThat(child.isDefaultNamespace(NS)).isTrue();
+  }
+
+  @Test
+  public void shouldCloneDocument() {
+    CopyOnWriteDocument document = new CopyOnWriteDocument(sharedDocument);
+    document.getElementById("item1").setAttribute("value", "changed");
+
+    Document clone = (Document) document.cloneNode(true);
+    assertThat(clone).isNotInstanceOf(CopyOnWriteDocument.class);
+    assertThat(clone.getElementById("item1").getAttribute("value")).isEqualTo("changed");
+    assertThat(clone.getElementById("shape2")).isNotNull();
+    assertThat(clone.getDocumentElement().isEqualNode(document.getDocumentElement())).isTrue();
+  }
+
+  @Test
+  public void shouldFireMutationEvents() {
+    CopyOnWriteDocument document = new CopyOnWriteDocument(sharedDocument);
+    final List<String> events = new ArrayList<String>();
+    EventListener listener = new EventListener() {
+      public void handleEvent(Event event) {
+        MutationEvent mutationEvent = (MutationEvent) event;
+        Node target = (Node) mutationEvent.getTarget();
+        events.add(event.getType() + " " + target.getNodeName() + " " + mutationEvent.getPrevValue() + " " + mutationEvent.getNewValue());
+      }
+    };
+    for (String type : new String[] { CopyOnWriteDocument.NODE_INSERTED, CopyOnWriteDocument.NODE_REMOVED,
+      CopyOnWriteDocument.ATTRIBUTE_MODIFIED, CopyOnWriteDocument.CHARACTER_DATA_MODIFIED }) {
+      document.addEventListener(type, listener, true);
+    }
+
+    Element item = document.createElementNS(NS, "item");
+    item.setAttribute("value", "c");
+    document.getDocumentElement().appendChild(item);
+    document.getElementById("item1").setAttribute("value", "changed");
+    document.getElementById("item2").removeAttribute("value");
+    document.getElementById("child1").getFirstChild().setNodeValue("changed");
+    item.getParentNode().removeChild(item);
+    item.setAttribute("value", "detached");
+
+    assertThat(events).containsExactly(
+      "DOMNodeInserted item null null",
+      "DOMAttrModified item a changed",
+      "DOMAttrModified item b null",
+      "DOMCharacterDataModified #text text changed",
+      "DOMNodeRemoved item null null");
+
+    events.clear();
+    for (String type : new String[] { CopyOnWriteDocument.NODE_INSERTED, CopyOnWriteDocument.NODE_REMOVED,
+      CopyOnWriteDocument.ATTRIBUTE_MODIFIED, CopyOnWriteDocument.CHARACTER_DATA_MODIFIED }) {
+      document.removeEventListener(type, listener, true);
+    }
+    document.getElementById("item1").setAttribute("value", "unobserved");
+    assertThat(events).isEmpty();
+  }
+
+  @Test
+  public void shouldCompareDocumentPositions() {
+    CopyOnWriteDocument document = new CopyOnWriteDocument(sharedDocument);
+    Element item1 = document.getElementById("item1");
+    Element child1 = document.getElementById("child1");
+    Element shape1 = document.getElementById("shape1");
+
+    assertThat(child1.compareDocumentPosition(shape1) & Node.DOCUMENT_POSITION_FOLLOWING).isNotEqualTo(0);
+    assertThat(shape1.compareDocumentPosition(child1) & Node.DOCUMENT_POSITION_PRECEDING).isNotEqualTo(0);
+    assertThat(item1.compareDocumentPosition(child1) & Node.DOCUMENT_POSITION_CONTAINED_BY).isNotEqualTo(0);
+    assertThat(child1.compareDocumentPosition(item1) & Node.DOCUMENT_POSITION_CONTAINS).isNotEqualTo(0);
+    assertThat(item1.compareDocumentPosition(document.createElementNS(NS, "item")) & Node.DOCUMENT_POSITION_DISCONNECTED).isNotEqualTo(0);
+  }
+
+  protected static void registerIds(Element element) {
+    element.setIdAttributeNS(null, "id", true);
+    for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        registerIds((Element) child);
+      }
+    }
+  }
+
+}